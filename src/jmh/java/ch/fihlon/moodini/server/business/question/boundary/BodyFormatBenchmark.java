@@ -0,0 +1,100 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.boundary;
+
+import ch.fihlon.moodini.server.business.question.entity.Answer;
+import ch.fihlon.moodini.server.business.question.entity.Question;
+import ch.fihlon.moodini.server.business.question.entity.Tally;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.Json;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+/**
+ * This is the benchmark for encoding and decoding a page of 100
+ * {@link Question}s and their {@link Tally}s in every {@link BodyFormat}.
+ * The setup logs the sizes of the payloads, compared with the pretty JSON
+ * served before (see {@link JsonBenchmark} for its throughput).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BodyFormatBenchmark {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BodyFormatBenchmark.class);
+    private static final int PAGE_SIZE = 100;
+
+    @Param({"JSON", "CBOR", "SMILE"})
+    private String formatName;
+
+    private BodyFormat format;
+    private List<Question> page;
+    private List<Tally> tallies;
+    private Buffer encodedPage;
+
+    @Setup
+    public void setUp() {
+        format = BodyFormat.valueOf(formatName);
+        page = LongStream.rangeClosed(1, PAGE_SIZE)
+                .mapToObj(id -> Question.builder().questionId(id).version(id * id).text("Question " + id + "?").build())
+                .collect(Collectors.toList());
+        tallies = LongStream.rangeClosed(1, PAGE_SIZE)
+                .mapToObj(id -> Tally.create(id, Collections.singletonMap(Answer.GOOD, id)).withVoters(id))
+                .collect(Collectors.toList());
+        encodedPage = format.encode(page);
+        LOGGER.info(String.format("%s: questions %d bytes (pretty JSON %d), tallies %d bytes (pretty JSON %d)",
+                format, encodedPage.length(), Json.encodePrettily(page).length(),
+                format.encode(tallies).length(), Json.encodePrettily(tallies).length()));
+    }
+
+    @Benchmark
+    public Buffer encodeQuestions() {
+        return format.encode(page);
+    }
+
+    @Benchmark
+    public Question[] decodeQuestions() {
+        return format.decode(encodedPage, Question[].class);
+    }
+
+    @Benchmark
+    public Buffer encodeTallies() {
+        return format.encode(tallies);
+    }
+
+}
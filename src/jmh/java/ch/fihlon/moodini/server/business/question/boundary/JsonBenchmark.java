@@ -0,0 +1,97 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.boundary;
+
+import ch.fihlon.moodini.server.business.question.entity.Question;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.Json;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+/**
+ * This is the benchmark for the serialization of {@link Question}s to JSON,
+ * pretty and compact, and for the responses served by the {@link ResponseCache}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonBenchmark {
+
+    @Param({"1", "100", "1000"})
+    private int pageSize;
+
+    private final ResponseCache responseCache = new ResponseCache();
+    private Question question;
+    private List<Question> page;
+
+    @Setup
+    public void setUp() {
+        page = LongStream.rangeClosed(1, pageSize)
+                .mapToObj(id -> Question.builder().questionId(id).version(id).text("Question " + id).build())
+                .collect(Collectors.toList());
+        question = page.get(0);
+    }
+
+    @Benchmark
+    public String encodeQuestionPrettily() {
+        return Json.encodePrettily(question);
+    }
+
+    @Benchmark
+    public String encodeQuestion() {
+        return Json.encode(question);
+    }
+
+    @Benchmark
+    public Buffer cachedQuestion() {
+        return responseCache.question(question).getBody(BodyFormat.JSON);
+    }
+
+    @Benchmark
+    public String encodePagePrettily() {
+        return Json.encodePrettily(page);
+    }
+
+    @Benchmark
+    public String encodePage() {
+        return Json.encode(page);
+    }
+
+    @Benchmark
+    public Buffer cachedPage() {
+        return responseCache.page(1, "page", () -> CachedBody.forContent(page)).getBody(BodyFormat.JSON);
+    }
+
+}
@@ -0,0 +1,97 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.boundary;
+
+import ch.fihlon.moodini.server.business.question.entity.Answer;
+import ch.fihlon.moodini.server.exception.BadRequestException;
+import ch.fihlon.moodini.server.exception.NotFoundException;
+import io.vertx.core.buffer.Buffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This is the benchmark for parsing a vote request, comparing the former
+ * path (decoding the body into a {@link String}, {@link Answer#valueOf(String)}
+ * and {@link Long#valueOf(String)}, failing with exceptions filling in their
+ * stack trace) with the one of the {@link VoteHandler}. Run it with the GC
+ * profiler to see the garbage per vote ({@code gc.alloc.rate.norm}):
+ * {@code mvn test -Pbenchmark -Djmh.args="-prof gc VoteBenchmark"}. The
+ * stack here is much shallower than in the server, so the traces are cheap.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VoteBenchmark {
+
+    private final String questionId = "4711";
+    private final Buffer body = Buffer.buffer("GOOD");
+    private final Buffer unknown = Buffer.buffer("GOOSE");
+
+    @Benchmark
+    public Answer stringAnswer() {
+        Long.valueOf(questionId);
+        return Answer.valueOf(body.toString());
+    }
+
+    @Benchmark
+    public Answer bufferAnswer() {
+        VoteHandler.parseId(questionId);
+        return VoteHandler.parseAnswer(body);
+    }
+
+    @Benchmark
+    public Object stringUnknownAnswer() {
+        try {
+            return Answer.valueOf(unknown.toString());
+        } catch (final IllegalArgumentException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public Object bufferUnknownAnswer() {
+        try {
+            return VoteHandler.parseAnswer(unknown);
+        } catch (final BadRequestException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public Object unknownQuestionWithStackTrace() {
+        return new IllegalStateException("Unknown question");
+    }
+
+    @Benchmark
+    public Object unknownQuestion() {
+        return new NotFoundException();
+    }
+
+}
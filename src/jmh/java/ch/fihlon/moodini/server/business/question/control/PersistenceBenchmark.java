@@ -0,0 +1,107 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.control;
+
+import ch.fihlon.moodini.server.EventLog;
+import ch.fihlon.moodini.server.SnapshotController;
+import ch.fihlon.moodini.server.business.question.entity.Answer;
+import ch.fihlon.moodini.server.business.question.entity.Question;
+import ch.fihlon.moodini.server.business.question.entity.Vote;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import pl.setblack.airomem.core.disk.PersistenceDiskHelper;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This is the benchmark for the writes of the persistence engines the
+ * {@link QuestionService} does, including the journaling and the snapshots
+ * taken automatically. It uses its own temporary folder.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PersistenceBenchmark {
+
+    private static final int BATCH_SIZE = 256;
+
+    @Param({"airomem", "log"})
+    private String engine;
+
+    private String name;
+    private QuestionStore store;
+    private Vote vote;
+    private List<Vote> batch;
+
+    @Setup
+    public void setUp() {
+        name = "moodini-benchmark-" + System.nanoTime();
+        if ("log".equals(engine)) {
+            store = new LogQuestionStore(new EventLog(PersistenceDiskHelper.calcUserPath(name)));
+        } else {
+            store = new AiromemQuestionStore(new SnapshotController<>(name, QuestionRepository::new));
+        }
+        final Long questionId = store.create(Question.builder().text("Benchmark").build()).getQuestionId();
+        vote = new Vote(questionId, Answer.GOOD);
+        batch = Collections.nCopies(BATCH_SIZE, vote);
+    }
+
+    @TearDown
+    public void tearDown() {
+        store.close();
+        PersistenceDiskHelper.delete(PersistenceDiskHelper.calcUserPath(name).toString());
+    }
+
+    @Benchmark
+    public Long vote() {
+        return store.vote(vote);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Long voteConcurrently() {
+        return store.vote(vote);
+    }
+
+    @Benchmark
+    public long[] voteBatch() {
+        return store.vote(batch);
+    }
+
+    @Benchmark
+    public Question create() {
+        return store.create(Question.builder().text("Created").build());
+    }
+
+}
@@ -0,0 +1,108 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.control;
+
+import ch.fihlon.moodini.server.business.question.entity.Answer;
+import ch.fihlon.moodini.server.business.question.entity.Question;
+import ch.fihlon.moodini.server.business.question.entity.Vote;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This is the benchmark for the in-memory operations of the class
+ * {@link QuestionRepository}, without any persistence.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QuestionRepositoryBenchmark {
+
+    private static final int PAGE_SIZE = 100;
+
+    @Param({"1000", "100000"})
+    private int questions;
+
+    private QuestionRepository repository;
+    private Long questionId;
+    private Vote vote;
+    private long voter;
+
+    @Setup
+    public void setUp() {
+        repository = new QuestionRepository();
+        for (int i = 0; i < questions; i++) {
+            questionId = repository.create(Question.builder().text("Question " + i).build()).getQuestionId();
+        }
+        repository.vote(new Vote(questionId, Answer.GOOD), System.currentTimeMillis());
+        vote = new Vote(questionId, Answer.AMPED);
+    }
+
+    @Benchmark
+    public Long vote() {
+        return repository.vote(vote, System.currentTimeMillis());
+    }
+
+    @Benchmark
+    public Long voteIdentified() {
+        return repository.vote(new Vote(questionId, Answer.AMPED, HyperLogLog.hash(Long.toString(voter++))),
+                System.currentTimeMillis());
+    }
+
+    @Benchmark
+    public Optional<Question> read() {
+        return repository.read(questionId);
+    }
+
+    @Benchmark
+    public List<Question> readFirstPage() {
+        return repository.readPage(null, PAGE_SIZE, false);
+    }
+
+    @Benchmark
+    public List<Question> readNewestPage() {
+        return repository.readPage(null, PAGE_SIZE, true);
+    }
+
+    @Benchmark
+    public Optional<Question> readLatest() {
+        return repository.readLatest();
+    }
+
+    @Benchmark
+    public Map<Answer, Long> readVotes() {
+        return repository.readVotes(questionId);
+    }
+
+}
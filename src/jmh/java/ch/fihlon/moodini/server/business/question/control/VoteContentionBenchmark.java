@@ -0,0 +1,74 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.control;
+
+import ch.fihlon.moodini.server.business.question.entity.Answer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This is the benchmark for the contention on the {@link VoteCounters} when
+ * an increasing number of threads votes for the same question.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VoteContentionBenchmark {
+
+    private static final long QUESTION_ID = 1L;
+
+    private final VoteCounters counters = new VoteCounters();
+
+    @Benchmark
+    @Threads(1)
+    public long threads01() {
+        return counters.increment(QUESTION_ID, Answer.GOOD);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long threads04() {
+        return counters.increment(QUESTION_ID, Answer.GOOD);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public long threads16() {
+        return counters.increment(QUESTION_ID, Answer.GOOD);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public long threads64() {
+        return counters.increment(QUESTION_ID, Answer.GOOD);
+    }
+
+}
@@ -0,0 +1,297 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server;
+
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.validation.constraints.NotNull;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongFunction;
+import java.util.stream.Stream;
+
+/**
+ * This class is an append-only log of changes, every change is one line of
+ * text addressed by its offset. Offsets start at one and are never reused,
+ * also not after a restart. The latest {@code changes.window} lines are kept
+ * in memory, all lines are written to segment files of
+ * {@code changes.segment.lines} lines each, the last one is continued after
+ * a restart, and the oldest segments are
+ * deleted when there are more than {@code changes.segments} of them. So
+ * readers which fall behind the window are served from disk until the
+ * changes are deleted, then they continue with the oldest change left.
+ * <p>
+ * A segment is named after the offset of its first line. Every line reaches
+ * the page cache when it is appended, like the records of the {@link EventLog};
+ * a batch of lines is written with one flush. Appending is serialized, reading
+ * never waits for a writer. A line torn by a crash is cut off when the log is
+ * opened again.
+ */
+@Slf4j
+@SuppressWarnings("PMD.TooManyMethods")
+public class ChangeLog implements AutoCloseable {
+
+    private static final int DEF_WINDOW = 10_000;
+    private static final int DEF_SEGMENT_LINES = 100_000;
+    private static final int DEF_SEGMENTS = 10;
+    private static final String SUFFIX = ".changes";
+
+    private final Path folder;
+    private final int segmentLines;
+    private final int maxSegments;
+    private final AtomicReferenceArray<Entry> window;
+    private final AtomicLong last = new AtomicLong();
+    private final ConcurrentNavigableMap<Long, Path> segments = new ConcurrentSkipListMap<>();
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+    private final Object lock = new Object();
+    private BufferedWriter writer;
+    private long segmentFirst;
+
+    /**
+     * Open the change log in the specified folder. The folder is created if
+     * it does not exist, otherwise the log continues after its last complete line.
+     *
+     * @param folder the folder of the segments
+     */
+    public ChangeLog(@NotNull final Path folder) {
+        this.folder = folder;
+        window = new AtomicReferenceArray<>(Math.max(1, Configuration.getInteger("changes.window", DEF_WINDOW)));
+        segmentLines = Math.max(1, Configuration.getInteger("changes.segment.lines", DEF_SEGMENT_LINES));
+        maxSegments = Math.max(1, Configuration.getInteger("changes.segments", DEF_SEGMENTS));
+        try (Stream<Path> files = Files.list(Files.createDirectories(folder))) {
+            files.filter(file -> file.toString().endsWith(SUFFIX))
+                    .forEach(file -> segments.put(offsetOf(file), file));
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        // continue the last segment while it has room, so restarts do not push the history out
+        final long first = Optional.ofNullable(segments.lastEntry())
+                .map(segment -> {
+                    last.set(segment.getKey() + new ChangeSegment(segment.getValue()).repair() - 1);
+                    return segment.getKey();
+                })
+                .filter(start -> last.get() + 1 - start < segmentLines)
+                .orElseGet(() -> last.get() + 1);
+        synchronized (lock) {
+            openSegment(first);
+        }
+        log.info("Opened the change log {} at offset {}", folder, last.get());
+    }
+
+    /**
+     * Append a change. The listeners are called after the change can be read.
+     *
+     * @param encoder encodes the change with the specified offset as one line without line breaks
+     * @return the offset of the change
+     */
+    public long append(@NotNull final LongFunction<String> encoder) {
+        return appendAll(Collections.singletonList(encoder));
+    }
+
+    /**
+     * Append a batch of changes with consecutive offsets and flush them at
+     * once. The listeners are called once after all changes can be read.
+     *
+     * @param encoders encode the changes with the specified offsets as one line without line breaks each
+     * @return the offset of the last change
+     */
+    public long appendAll(@NotNull final List<LongFunction<String>> encoders) {
+        final long offset = write(encoders);
+        listeners.forEach(Runnable::run);
+        return offset;
+    }
+
+    @SuppressWarnings({"PMD.DataflowAnomalyAnalysis", "PMD.AvoidInstantiatingObjectsInLoops"})
+    private long write(@NotNull final List<LongFunction<String>> encoders) {
+        synchronized (lock) {
+            long offset = last.get();
+            try {
+                for (final LongFunction<String> encoder : encoders) {
+                    offset++;
+                    final String line = encoder.apply(offset);
+                    if (offset - segmentFirst >= segmentLines) {
+                        openSegment(offset);
+                    }
+                    writer.write(line);
+                    writer.newLine();
+                    window.set(slot(offset), new Entry(offset, line));
+                }
+                writer.flush();
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            last.set(offset);
+            return offset;
+        }
+    }
+
+    /**
+     * Read the changes after the specified offset. If they were deleted
+     * already, the changes are read starting with the oldest one left.
+     *
+     * @param after the offset of the last change the reader got, {@code 0} to start at the beginning
+     * @param limit the maximum number of changes to read
+     * @return the changes in the order they were appended, empty if there are no newer changes
+     */
+    @SuppressWarnings("PMD.DataflowAnomalyAnalysis")
+    public List<String> read(final long after, final int limit) {
+        final long lastOffset = last.get();
+        // clamped first, so an offset beyond the last change can not overflow to the oldest one
+        long offset = Math.max(Math.min(after, lastOffset) + 1, segments.firstKey());
+        final long until = Math.min(lastOffset, offset + limit - 1);
+        final List<String> lines = new ArrayList<>();
+        Entry entry = window.get(slot(offset));
+        while (offset <= until && entry != null && entry.getOffset() == offset) {
+            lines.add(entry.getLine());
+            offset++;
+            entry = window.get(slot(offset));
+        }
+        while (offset <= until) {
+            offset = readSegment(offset, until, lines);
+        }
+        return lines;
+    }
+
+    private int slot(final long offset) {
+        return (int) (offset % window.length());
+    }
+
+    /**
+     * Read the changes of the segment containing the specified offset, or of
+     * the oldest segment if that one was deleted already.
+     *
+     * @return the offset to continue reading at
+     */
+    @SuppressWarnings("PMD.DataflowAnomalyAnalysis")
+    private long readSegment(final long from, final long until, @NotNull final List<String> lines) {
+        final Map.Entry<Long, Path> segment = Optional.ofNullable(segments.floorEntry(from))
+                .orElseGet(segments::firstEntry);
+        final long first = Math.max(from, segment.getKey());
+        final long end = Math.min(until + 1,
+                Optional.ofNullable(segments.higherKey(segment.getKey())).orElse(last.get() + 1));
+        long next = Math.max(end, first);
+        try (BufferedReader reader = Files.newBufferedReader(segment.getValue(), StandardCharsets.UTF_8)) {
+            for (long offset = segment.getKey(); offset < first; offset++) {
+                reader.readLine();
+            }
+            for (long offset = first; offset < end; offset++) {
+                lines.add(reader.readLine());
+            }
+        } catch (final NoSuchFileException e) {
+            // deleted concurrently, the next attempt continues with the oldest segment left
+            next = from;
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return next;
+    }
+
+    private void openSegment(final long first) {
+        try {
+            if (writer != null) {
+                writer.close();
+            }
+            final Path file = folder.resolve(String.format("%019d%s", first, SUFFIX));
+            writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            segments.put(first, file);
+            segmentFirst = first;
+            while (segments.size() > maxSegments) {
+                Files.deleteIfExists(segments.pollFirstEntry().getValue());
+            }
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long offsetOf(@NotNull final Path file) {
+        final String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.indexOf('.')));
+    }
+
+    /**
+     * Get the offset of the latest change.
+     *
+     * @return the offset of the latest change or {@code 0} if there are no changes yet
+     */
+    public long getLastOffset() {
+        return last.get();
+    }
+
+    /**
+     * Add a listener which is called after every change, on the thread which
+     * appended it. It must return quickly.
+     *
+     * @param listener the listener
+     */
+    public void addListener(@NotNull final Runnable listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Remove a listener added before.
+     *
+     * @param listener the listener
+     */
+    public void removeListener(@NotNull final Runnable listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Close the current segment.
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            try {
+                writer.close();
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * A line of the window together with its offset, so a reader notices
+     * when the slot was overwritten by a newer change.
+     */
+    @Value
+    private static class Entry {
+        private long offset;
+        private String line;
+    }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.validation.constraints.NotNull;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This class reads and repairs a segment file of the {@link ChangeLog}, which
+ * holds one change per line.
+ */
+@Slf4j
+class ChangeSegment {
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final byte NEW_LINE = '\n';
+
+    private final Path file;
+
+    ChangeSegment(@NotNull final Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Cut off a torn last line and count the complete lines left.
+     *
+     * @return the number of lines
+     */
+    long repair() {
+        try {
+            truncateTornLine();
+            return countLines();
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Cut off the last line if it is not complete, because the process
+     * stopped while it was written.
+     *
+     * @throws IOException if the segment can't be read or truncated
+     */
+    @SuppressWarnings("PMD.DataflowAnomalyAnalysis")
+    void truncateTornLine() throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            final long size = channel.size();
+            final ByteBuffer chunk = ByteBuffer.allocate(BUFFER_SIZE);
+            long complete = -1;
+            for (long end = size; complete < 0 && end > 0; end -= chunk.limit()) {
+                final long start = Math.max(0, end - BUFFER_SIZE);
+                chunk.clear().limit((int) (end - start));
+                for (int read = 0; chunk.hasRemaining() && read >= 0;) {
+                    read = channel.read(chunk, start + chunk.position());
+                }
+                complete = lastLineEnd(chunk, start);
+            }
+            complete = Math.max(0, complete);
+            if (complete < size) {
+                log.warn("Cut off the torn last line of {}", file);
+                channel.truncate(complete);
+            }
+        }
+    }
+
+    private static long lastLineEnd(@NotNull final ByteBuffer chunk, final long start) {
+        long end = -1;
+        for (int i = chunk.limit() - 1; end < 0 && i >= 0; i--) {
+            if (chunk.get(i) == NEW_LINE) {
+                end = start + i + 1;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Count the complete lines.
+     *
+     * @return the number of lines
+     * @throws IOException if the segment can't be read
+     */
+    @SuppressWarnings("PMD.DataflowAnomalyAnalysis")
+    long countLines() throws IOException {
+        long lines = 0;
+        try (InputStream input = Files.newInputStream(file)) {
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            for (int read = input.read(buffer); read > 0; read = input.read(buffer)) {
+                for (int i = 0; i < read; i++) {
+                    if (buffer[i] == NEW_LINE) {
+                        lines++;
+                    }
+                }
+            }
+        }
+        return lines;
+    }
+
+}
@@ -0,0 +1,176 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server;
+
+import lombok.Value;
+
+import javax.validation.constraints.NotNull;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class describes the layout of a Moodini cluster, configured with the
+ * addresses ({@code host:port}) of all nodes in {@code cluster.nodes} and the
+ * index of this node in {@code cluster.node}. Without nodes Moodini runs
+ * standalone as a cluster of one.
+ * <p>
+ * The questions are partitioned by their id: every node allocates the ids of
+ * its own shard from a local sequence, interleaved with the other nodes, so
+ * the ids are unique without any coordination and the owner of a question is
+ * derived from its id alone. The layout of a cluster must not change once it
+ * has data, the ids of a shard depend on it: it is recorded with the data of
+ * every node, and a node refuses to start with another layout.
+ */
+@Value
+@SuppressWarnings("PMD.UnusedPrivateField")
+public class Cluster {
+
+    private static final String NODES = "cluster.nodes";
+    private static final String NODE = "cluster.node";
+    private static final int DEF_NODE = 0;
+    private static final String LAYOUT = "cluster.layout";
+
+    private final List<String> nodes;
+    private final int node;
+
+    /**
+     * Create the layout of a cluster.
+     *
+     * @param nodes the addresses of all nodes, empty for a standalone node
+     * @param node the index of this node
+     * @throws IllegalArgumentException if the index is not one of the nodes
+     */
+    public Cluster(@NotNull final List<String> nodes, final int node) {
+        if (node < 0 || node >= Math.max(1, nodes.size())) {
+            throw new IllegalArgumentException(String.format("There is no node %d in %s", node, nodes));
+        }
+        this.nodes = Collections.unmodifiableList(nodes);
+        this.node = node;
+    }
+
+    /**
+     * Get the layout of the cluster from the {@link Configuration}.
+     *
+     * @return the configured cluster
+     */
+    public static Cluster configured() {
+        return new Cluster(Configuration.getStrings(NODES), Configuration.getInteger(NODE, DEF_NODE));
+    }
+
+    /**
+     * Check that the data in a directory was written with the layout of this
+     * node, the first check records it. A node with another layout would
+     * allocate ids which are owned by other nodes or already in use.
+     *
+     * @param directory the data directory of this node
+     * @throws IllegalStateException if the data was written with another layout
+     */
+    public void checkLayout(@NotNull final Path directory) {
+        final Path file = directory.resolve(LAYOUT);
+        final String layout = String.format("node %d of %d", node, getShards());
+        try {
+            if (Files.exists(file)) {
+                final String recorded = new String(Files.readAllBytes(file), StandardCharsets.UTF_8).trim();
+                if (!recorded.equals(layout)) {
+                    throw new IllegalStateException(String.format(
+                            "The data in %s was written by %s, this is %s!", directory, recorded, layout));
+                }
+            } else {
+                Files.createDirectories(directory);
+                Files.write(file, layout.getBytes(StandardCharsets.UTF_8));
+            }
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Check whether this node is part of a cluster with other nodes.
+     *
+     * @return {@code true} if more than one node is configured
+     */
+    public boolean isClustered() {
+        return nodes.size() > 1;
+    }
+
+    /**
+     * Get the number of shards, one per node.
+     *
+     * @return the number of shards
+     */
+    public int getShards() {
+        return Math.max(1, nodes.size());
+    }
+
+    /**
+     * Allocate the id of a question in the shard of this node.
+     *
+     * @param sequence the local sequence number of the question, starting with {@code 1}
+     * @return the globally unique id of the question
+     */
+    public long questionId(final long sequence) {
+        return (sequence - 1) * getShards() + node + 1;
+    }
+
+    /**
+     * Get the node which owns a question.
+     *
+     * @param questionId the id of the question
+     * @return the index of the owning node
+     */
+    public int ownerOf(final long questionId) {
+        return (int) Math.floorMod(questionId - 1, (long) getShards());
+    }
+
+    /**
+     * Check whether this node owns a question.
+     *
+     * @param questionId the id of the question
+     * @return {@code true} if the question belongs to the shard of this node
+     */
+    public boolean owns(final long questionId) {
+        return ownerOf(questionId) == node;
+    }
+
+    /**
+     * Get the host name of a node.
+     *
+     * @param index the index of the node
+     * @return the host name
+     */
+    public String hostOf(final int index) {
+        final String address = nodes.get(index);
+        return address.substring(0, address.lastIndexOf(':'));
+    }
+
+    /**
+     * Get the HTTP port of a node.
+     *
+     * @param index the index of the node
+     * @return the port
+     */
+    public int portOf(final int index) {
+        final String address = nodes.get(index);
+        return Integer.parseInt(address.substring(address.lastIndexOf(':') + 1));
+    }
+}
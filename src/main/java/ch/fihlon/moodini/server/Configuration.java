@@ -0,0 +1,101 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import lombok.experimental.UtilityClass;
+
+import javax.validation.constraints.NotNull;
+import java.util.List;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * This utility class holds the configuration of the application. It is set
+ * by the verticle from the Vert.x deployment configuration and read by the
+ * services which are created by the {@link Injector}.
+ */
+@UtilityClass
+public class Configuration {
+
+    private static JsonObject config = new JsonObject();
+
+    /**
+     * Set the configuration of the application.
+     *
+     * @param newConfig the configuration, typically read from the {@code config.json} file
+     */
+    public static void setConfig(@NotNull final JsonObject newConfig) {
+        config = newConfig.copy();
+    }
+
+    /**
+     * Reset the configuration to an empty one, so all defaults apply.
+     */
+    public static void resetConfig() {
+        config = new JsonObject();
+    }
+
+    /**
+     * Get an integer value from the configuration.
+     *
+     * @param key the key of the configuration value
+     * @param defaultValue the value to return if the key is not configured
+     * @return the configured value or the default value
+     */
+    public static Integer getInteger(@NotNull final String key, final Integer defaultValue) {
+        return config.getInteger(key, defaultValue);
+    }
+
+    /**
+     * Get a long value from the configuration.
+     *
+     * @param key the key of the configuration value
+     * @param defaultValue the value to return if the key is not configured
+     * @return the configured value or the default value
+     */
+    public static Long getLong(@NotNull final String key, final Long defaultValue) {
+        return config.getLong(key, defaultValue);
+    }
+
+    /**
+     * Get a string value from the configuration.
+     *
+     * @param key the key of the configuration value
+     * @param defaultValue the value to return if the key is not configured
+     * @return the configured value or the default value
+     */
+    public static String getString(@NotNull final String key, final String defaultValue) {
+        return config.getString(key, defaultValue);
+    }
+
+    /**
+     * Get a list of string values from the configuration.
+     *
+     * @param key the key of the configuration value
+     * @return the configured values or an empty list
+     */
+    public static List<String> getStrings(@NotNull final String key) {
+        final JsonArray values = config.getJsonArray(key, new JsonArray());
+        return values.stream()
+                .map(String::valueOf)
+                .collect(toList());
+    }
+
+}
@@ -0,0 +1,286 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.validation.constraints.NotNull;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * This class is an append-only log of binary records in memory-mapped segment
+ * files together with snapshots of the state the records are applied to.
+ * Records are encoded directly into the mapped segment by the writer passed
+ * to {@link #append(int, Consumer)} and replayed directly from it, nothing is
+ * copied in between. They reach the page
+ * cache immediately, so they survive a crash of the process, but not
+ * necessarily a crash of the operating system.
+ * <p>
+ * A segment is named after the sequence number of its first record, a
+ * snapshot after the sequence number of the first record it does not
+ * contain. Segments have a size of {@code persistence.journal.segment.bytes}
+ * and a snapshot is due after {@code persistence.snapshot.entries} records or
+ * {@code persistence.snapshot.bytes} bytes, like for the {@link SnapshotController}.
+ * The position in the log, the current segment and the status are guarded by
+ * a lock, so the status can be read while records are appended.
+ */
+@Slf4j
+public class EventLog implements AutoCloseable {
+
+    private static final int DEF_SEGMENT_BYTES = 8 * 1024 * 1024;
+    private static final long DEF_MAX_ENTRIES = 100_000;
+    private static final long DEF_MAX_BYTES = 64L * 1024 * 1024;
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SNAPSHOT_SUFFIX = ".snapshot";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final Path folder;
+    private final int segmentBytes;
+    private final long entryLimit;
+    private final long byteLimit;
+    private final Object lock = new Object();
+    private LogSegment segment;
+    private long segmentSequence;
+    private long nextSequence;
+    private long entries;
+    private long bytes;
+    private long snapshots;
+    private long lastDuration;
+
+    /**
+     * Create an event log in the specified folder. The folder is created if
+     * it does not exist. The log has to be loaded before records are appended.
+     *
+     * @param folder the folder of the segments and snapshots
+     */
+    public EventLog(@NotNull final Path folder) {
+        this.folder = folder;
+        segmentBytes = Configuration.getInteger("persistence.journal.segment.bytes", DEF_SEGMENT_BYTES);
+        entryLimit = Configuration.getLong("persistence.snapshot.entries", DEF_MAX_ENTRIES);
+        byteLimit = Configuration.getLong("persistence.snapshot.bytes", DEF_MAX_BYTES);
+        try {
+            Files.createDirectories(folder);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Load the state from the latest snapshot and apply the records appended
+     * after it. The buffers passed to the applier are read-only views of the
+     * mapped segments and only valid during the call.
+     *
+     * @param constructor creates the initial state if there is no snapshot yet
+     * @param applier applies a record to the state
+     * @param <T> the type of the state
+     * @return the state
+     */
+    @SuppressWarnings({"PMD.DataflowAnomalyAnalysis", "PMD.PrematureDeclaration"})
+    public <T extends Serializable> T load(@NotNull final Supplier<T> constructor,
+                                           @NotNull final BiConsumer<T, ByteBuffer> applier) {
+        synchronized (lock) {
+            final long start = System.nanoTime();
+            final T state = readSnapshot(constructor);
+            final long snapshotMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            for (final Path file : list(SEGMENT_SUFFIX)) {
+                final long first = sequenceOf(file);
+                if (first >= nextSequence) {
+                    try (LogSegment replayed = LogSegment.open(file)) {
+                        final long count = replayed.replay(record -> applier.accept(state, record));
+                        nextSequence = first + count;
+                        entries += count;
+                        bytes += replayed.getPosition();
+                    } catch (final IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            }
+            final long replayMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) - snapshotMillis;
+            log.info("Read the snapshot of {} in {} ms", folder, snapshotMillis);
+            log.info("Replayed {} records in {} ms", entries, replayMillis);
+            roll();
+            return state;
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "PMD.DataflowAnomalyAnalysis"})
+    private <T extends Serializable> T readSnapshot(@NotNull final Supplier<T> constructor) {
+        final List<Path> files = list(SNAPSHOT_SUFFIX);
+        T state = constructor.get();
+        if (!files.isEmpty()) {
+            final Path file = files.get(files.size() - 1);
+            try (ObjectInputStream stream = new ObjectInputStream(
+                    new BufferedInputStream(Files.newInputStream(file)))) {
+                state = (T) stream.readObject();
+            } catch (final IOException | ClassNotFoundException e) {
+                throw new IllegalStateException("Unable to read the snapshot " + file, e);
+            }
+            nextSequence = sequenceOf(file);
+        }
+        return state;
+    }
+
+    /**
+     * Append a record to the log. A new segment is started if the current one is full.
+     *
+     * @param length the length of the record in bytes
+     * @param writer writes exactly {@code length} bytes to the buffer it is called with
+     */
+    public void append(final int length, @NotNull final Consumer<ByteBuffer> writer) {
+        synchronized (lock) {
+            if (!segment.append(length, writer)) {
+                roll();
+                if (!segment.append(length, writer)) {
+                    throw new IllegalArgumentException("The record is larger than a segment: " + length);
+                }
+            }
+            nextSequence++;
+            entries++;
+            bytes += LogSegment.HEADER_BYTES + length;
+        }
+    }
+
+    /**
+     * Check if a snapshot is due because of the number or size of the records
+     * appended since the last snapshot.
+     *
+     * @return {@code true} if a snapshot should be taken
+     */
+    public boolean isSnapshotDue() {
+        synchronized (lock) {
+            return entryLimit > 0 && entries >= entryLimit || byteLimit > 0 && bytes >= byteLimit;
+        }
+    }
+
+    /**
+     * Write a snapshot of the state, which must contain all appended records,
+     * and delete the segments and snapshots not needed anymore.
+     *
+     * @param state the state
+     * @return the status after the snapshot
+     */
+    @SuppressWarnings({"PMD.DataflowAnomalyAnalysis", "PMD.PrematureDeclaration"})
+    public SnapshotStatus snapshot(@NotNull final Serializable state) {
+        synchronized (lock) {
+            final long start = System.nanoTime();
+            final Path file = folder.resolve(fileName(nextSequence, SNAPSHOT_SUFFIX));
+            final Path temp = folder.resolve(fileName(nextSequence, TEMP_SUFFIX));
+            try (ObjectOutputStream stream = new ObjectOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                stream.writeObject(state);
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (segmentSequence < nextSequence) {
+                roll();
+            }
+            entries = 0;
+            bytes = 0;
+            final long deleted = list(SEGMENT_SUFFIX, SNAPSHOT_SUFFIX, TEMP_SUFFIX).stream()
+                    .filter(obsolete -> sequenceOf(obsolete) < nextSequence)
+                    .filter(obsolete -> obsolete.toFile().delete())
+                    .count();
+            lastDuration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            snapshots++;
+            log.info("Took a snapshot of {} in {} ms and deleted {} files", folder, lastDuration, deleted);
+            return getStatus();
+        }
+    }
+
+    private void roll() {
+        try {
+            if (segment != null) {
+                segment.close();
+            }
+            segment = LogSegment.create(folder.resolve(fileName(nextSequence, SEGMENT_SUFFIX)), segmentBytes);
+            segmentSequence = nextSequence;
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private List<Path> list(@NotNull final String... suffixes) {
+        try (Stream<Path> files = Files.list(folder)) {
+            return files
+                    .filter(file -> Stream.of(suffixes).anyMatch(suffix -> file.toString().endsWith(suffix)))
+                    .sorted()
+                    .collect(Collectors.toList());
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String fileName(final long sequence, @NotNull final String suffix) {
+        return String.format("%019d%s", sequence, suffix);
+    }
+
+    private static long sequenceOf(@NotNull final Path file) {
+        final String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.indexOf('.')));
+    }
+
+    /**
+     * Get the status of the records and the snapshots.
+     *
+     * @return the status
+     */
+    public SnapshotStatus getStatus() {
+        synchronized (lock) {
+            return new SnapshotStatus(entries, bytes, snapshots, lastDuration);
+        }
+    }
+
+    /**
+     * Close and unmap the current segment.
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            try {
+                if (segment != null) {
+                    segment.close();
+                }
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+}
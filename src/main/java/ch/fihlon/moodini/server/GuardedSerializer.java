@@ -0,0 +1,97 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server;
+
+import org.prevayler.foundation.serialization.Serializer;
+
+import javax.validation.constraints.NotNull;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * This serializer delegates to another serializer unless it was created with
+ * a refusal: then reading any object fails with an {@link IllegalStateException}
+ * explaining why. It guards the replay of a journal written with commands of
+ * another version, which must not be deserialized at all.
+ */
+@SuppressWarnings("PMD.SignatureDeclareThrowsException")
+class GuardedSerializer implements Serializer {
+
+    private final Serializer delegate;
+    private final String refusal;
+    private boolean refused;
+
+    /**
+     * Create a guarded serializer.
+     *
+     * @param delegate the serializer to delegate to
+     * @param refusal the reason to refuse reading, {@code null} to read
+     */
+    GuardedSerializer(@NotNull final Serializer delegate, final String refusal) {
+        this.delegate = delegate;
+        this.refusal = refusal;
+    }
+
+    /**
+     * Write an object using the delegate.
+     *
+     * @param stream the stream to write to
+     * @param object the object to write
+     * @throws Exception if the delegate fails to write the object
+     */
+    @Override
+    public void writeObject(@NotNull final OutputStream stream, @NotNull final Object object) throws Exception {
+        delegate.writeObject(stream, object);
+    }
+
+    /**
+     * Read an object using the delegate, if reading is not refused.
+     *
+     * @param stream the stream to read from
+     * @return the object read
+     * @throws Exception if the delegate fails to read the object
+     * @throws IllegalStateException if reading is refused
+     */
+    @Override
+    public Object readObject(@NotNull final InputStream stream) throws Exception {
+        if (refusal != null) {
+            refused = true;
+            throw new IllegalStateException(refusal);
+        }
+        return delegate.readObject(stream);
+    }
+
+    /**
+     * Check if reading was refused.
+     *
+     * @return {@code true} if an object was to be read, but reading was refused
+     */
+    boolean isRefused() {
+        return refused;
+    }
+
+    /**
+     * Get the reason to refuse reading.
+     *
+     * @return the reason, {@code null} if reading is not refused
+     */
+    String getRefusal() {
+        return refusal;
+    }
+
+}
@@ -23,15 +23,18 @@ import com.google.inject.Module;
 import lombok.experimental.UtilityClass;
 
 import javax.validation.constraints.NotNull;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * This utility class wraps the Google Guice injection to inject mocks and stubs
- * with less code.
+ * with less code. The Guice injector is created once per module and shared, so
+ * singletons like the services are shared by all verticle instances, too.
  */
 @UtilityClass
 public class Injector {
 
-    private static Module module = createModule();
+    private static final AtomicReference<com.google.inject.Injector> GUICE_INJECTOR =
+            new AtomicReference<>(Guice.createInjector(createModule()));
 
     /**
      * Injects dependencies into the fields and methods of {@code instance}. Ignores the presence or absence of an
@@ -40,7 +43,7 @@ public class Injector {
      * @param instance any instance
      */
     public static void injectMembers(@NotNull final Object instance) {
-        Guice.createInjector(module).injectMembers(instance);
+        GUICE_INJECTOR.get().injectMembers(instance);
     }
 
     private static Module createModule() {
@@ -53,14 +56,14 @@ public class Injector {
      * @param newModule the module contributes configuration information, typically interface bindings
      */
     public static void setModule(@NotNull final Module newModule) {
-        module = newModule;
+        GUICE_INJECTOR.set(Guice.createInjector(newModule));
     }
 
     /**
      * Reset the module to the default module instance.
      */
     public static void resetModule() {
-        module = createModule();
+        GUICE_INJECTOR.set(Guice.createInjector(createModule()));
     }
 
     /**
@@ -0,0 +1,138 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server;
+
+import lombok.extern.slf4j.Slf4j;
+import org.prevayler.implementation.PrevaylerDirectory;
+
+import javax.validation.constraints.NotNull;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * This class gives access to the files in the folder of a prevalent system:
+ * the segments of the journal, the snapshots and the version of the commands
+ * in the journal.
+ */
+@Slf4j
+class JournalFolder {
+
+    static final String JOURNAL_SUFFIX = "journal";
+    static final String SNAPSHOT_SUFFIX = "snapshot";
+
+    private static final String VERSION_FILE = "journal.version";
+    private static final int FIRST_VERSION = 1;
+
+    private final File folder;
+
+    JournalFolder(@NotNull final File folder) {
+        this.folder = folder;
+    }
+
+    /**
+     * Get the size of all journal segments.
+     *
+     * @return the size in bytes
+     */
+    long journalBytes() {
+        return Arrays.stream(listFiles(JOURNAL_SUFFIX)).mapToLong(File::length).sum();
+    }
+
+    /**
+     * Get the version of the commands in the journal. A journal written before
+     * the version was recorded has the first version, a folder without a
+     * journal has none.
+     *
+     * @return the version, zero if there is no journal
+     */
+    @SuppressWarnings("PMD.DataflowAnomalyAnalysis")
+    int journalVersion() {
+        final Path file = folder.toPath().resolve(VERSION_FILE);
+        int version = 0;
+        try {
+            if (Files.exists(file)) {
+                version = Integer.parseInt(new String(Files.readAllBytes(file), StandardCharsets.UTF_8).trim());
+            } else if (listFiles(JOURNAL_SUFFIX).length > 0) {
+                version = FIRST_VERSION;
+            }
+        } catch (final IOException | NumberFormatException e) {
+            throw new IllegalStateException("Unable to read the journal version of " + folder, e);
+        }
+        return version;
+    }
+
+    /**
+     * Record the version of the commands written to the journal from now on.
+     *
+     * @param version the version
+     */
+    void writeJournalVersion(final int version) {
+        try {
+            Files.write(folder.toPath().resolve(VERSION_FILE),
+                    String.valueOf(version).getBytes(StandardCharsets.UTF_8));
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Delete the journal segments and snapshots which are not needed to
+     * restore the prevalent system from the latest snapshot.
+     *
+     * @return the number of deleted files
+     */
+    @SuppressWarnings("PMD.DataflowAnomalyAnalysis")
+    int deleteUnnecessaryFiles() {
+        int deleted = 0;
+        try {
+            final Set<?> necessary = new PrevaylerDirectory(folder).necessaryFiles();
+            for (final File file : listFiles(JOURNAL_SUFFIX, SNAPSHOT_SUFFIX)) {
+                if (!necessary.contains(file) && file.delete()) {
+                    deleted++;
+                }
+            }
+        } catch (final IOException e) {
+            log.warn("Unable to delete the files not needed anymore in {}", folder, e);
+        }
+        return deleted;
+    }
+
+    private File[] listFiles(@NotNull final String... suffixes) {
+        final File[] files = folder.listFiles((dir, fileName) ->
+                Arrays.stream(suffixes).anyMatch(suffix -> fileName.endsWith('.' + suffix)));
+        return Optional.ofNullable(files).orElseGet(() -> new File[0]);
+    }
+
+    /**
+     * Get the path of the folder.
+     *
+     * @return the path of the folder
+     */
+    @Override
+    public String toString() {
+        return folder.getPath();
+    }
+
+}
@@ -0,0 +1,177 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.validation.constraints.NotNull;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * This class is one memory-mapped segment file of an {@link EventLog}. Every
+ * record is prefixed with its length and the CRC32 checksum of its content.
+ * The length is written last, so a record torn by a crash of the process has
+ * a length of zero and a record torn by a crash of the system has a wrong
+ * checksum; both end the replay of the segment. Closing a segment unmaps
+ * its file right away instead of waiting for the garbage collector, so the
+ * buffers of a closed segment must not be used anymore.
+ */
+@Slf4j
+final class LogSegment implements AutoCloseable {
+
+    static final int HEADER_BYTES = 2 * Integer.BYTES;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+
+    private LogSegment(@NotNull final FileChannel channel, @NotNull final MappedByteBuffer buffer) {
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Create an empty segment to append records to. An existing file is replaced.
+     *
+     * @param file the segment file
+     * @param size the size of the segment in bytes
+     * @return the segment
+     * @throws IOException if the file could not be created or mapped
+     */
+    static LogSegment create(@NotNull final Path file, final int size) throws IOException {
+        final FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new LogSegment(channel, channel.map(MapMode.READ_WRITE, 0, size));
+    }
+
+    /**
+     * Open an existing segment to replay its records.
+     *
+     * @param file the segment file
+     * @return the segment
+     * @throws IOException if the file could not be opened or mapped
+     */
+    static LogSegment open(@NotNull final Path file) throws IOException {
+        final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        return new LogSegment(channel, channel.map(MapMode.READ_ONLY, 0, channel.size()));
+    }
+
+    /**
+     * Append a record if there is enough space left in this segment.
+     *
+     * @param length the length of the record in bytes
+     * @param writer writes exactly {@code length} bytes to the buffer it is called with
+     * @return {@code true} if the record was appended, {@code false} if this segment is full
+     */
+    boolean append(final int length, @NotNull final Consumer<ByteBuffer> writer) {
+        final boolean fits = buffer.remaining() >= HEADER_BYTES + length;
+        if (fits) {
+            final int start = buffer.position();
+            final ByteBuffer record = slice(start + HEADER_BYTES, length);
+            writer.accept(record);
+            record.clear();
+            buffer.putInt(start + Integer.BYTES, checksum(record));
+            buffer.putInt(start, length);
+            buffer.position(start + HEADER_BYTES + length);
+        }
+        return fits;
+    }
+
+    /**
+     * Replay all complete records of this segment, in the order they were appended.
+     * The buffers passed to the consumer are read-only views of the mapped file.
+     *
+     * @param consumer the consumer of the records
+     * @return the number of replayed records
+     */
+    @SuppressWarnings("PMD.DataflowAnomalyAnalysis")
+    long replay(@NotNull final Consumer<ByteBuffer> consumer) {
+        long count = 0;
+        int position = buffer.position();
+        while (buffer.limit() - position >= HEADER_BYTES) {
+            final int length = buffer.getInt(position);
+            if (length <= 0 || length > buffer.limit() - position - HEADER_BYTES) {
+                break;
+            }
+            final ByteBuffer record = slice(position + HEADER_BYTES, length).asReadOnlyBuffer();
+            if (checksum(record.duplicate()) != buffer.getInt(position + Integer.BYTES)) {
+                break;
+            }
+            consumer.accept(record);
+            position += HEADER_BYTES + length;
+            count++;
+        }
+        buffer.position(position);
+        return count;
+    }
+
+    /**
+     * Get the number of bytes used by the records of this segment.
+     *
+     * @return the number of bytes used
+     */
+    int getPosition() {
+        return buffer.position();
+    }
+
+    private ByteBuffer slice(final int offset, final int length) {
+        final ByteBuffer view = buffer.duplicate();
+        view.position(offset);
+        view.limit(offset + length);
+        return view.slice();
+    }
+
+    private static int checksum(@NotNull final ByteBuffer record) {
+        final CRC32 crc = new CRC32();
+        crc.update(record);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Unmap and close the file of this segment.
+     *
+     * @throws IOException if the file could not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (channel.isOpen()) {
+            unmap(buffer);
+            channel.close();
+        }
+    }
+
+    private static void unmap(@NotNull final MappedByteBuffer mapped) {
+        try {
+            final Method cleanerMethod = mapped.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            final Object cleaner = cleanerMethod.invoke(mapped);
+            cleaner.getClass().getMethod("clean").invoke(cleaner);
+        } catch (final ReflectiveOperationException | SecurityException e) {
+            log.debug("Unable to unmap the segment, the garbage collector will do it", e);
+        }
+    }
+
+}
@@ -0,0 +1,104 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server;
+
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Launcher;
+import io.vertx.core.json.JsonObject;
+
+import javax.validation.constraints.NotNull;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * This launcher starts Moodini like the default Vert.x {@link Launcher}, but
+ * deploys the main verticle as many times as configured with the
+ * {@code http.instances} option. A value of zero (or less) deploys one
+ * instance per available processor core. All instances share the same HTTP
+ * port and the same services, Vert.x distributes the connections among them.
+ * The {@code -instances} command line option still takes precedence.
+ */
+public class MoodiniLauncher extends Launcher {
+
+    private static final String INSTANCES_KEY = "http.instances";
+    private static final int DEF_INSTANCES = 1;
+    private static final Pattern INSTANCES_OPTION = Pattern.compile("--?instances(=.*)?");
+
+    private boolean instancesOption;
+
+    /**
+     * Main entry point of Moodini.
+     *
+     * @param args the user command line arguments
+     */
+    public static void main(@NotNull final String... args) {
+        new MoodiniLauncher().dispatch(args);
+    }
+
+    /**
+     * Remembers whether the {@code -instances} option was given before
+     * dispatching the command line.
+     *
+     * @param main the main object, may be {@code null}
+     * @param args the user command line arguments
+     */
+    @Override
+    public void dispatch(final Object main, @NotNull final String... args) {
+        parseInstancesOption(args);
+        super.dispatch(main, args);
+    }
+
+    /**
+     * Check the command line for the {@code -instances} option.
+     *
+     * @param args the user command line arguments
+     */
+    void parseInstancesOption(@NotNull final String... args) {
+        instancesOption = Arrays.stream(args).anyMatch(arg -> INSTANCES_OPTION.matcher(arg).matches());
+    }
+
+    /**
+     * Sets the number of verticle instances from the configuration if it was
+     * not specified on the command line.
+     *
+     * @param deploymentOptions the deployment options
+     */
+    @Override
+    public void beforeDeployingVerticle(@NotNull final DeploymentOptions deploymentOptions) {
+        super.beforeDeployingVerticle(deploymentOptions);
+        if (!instancesOption) {
+            deploymentOptions.setInstances(instances(deploymentOptions.getConfig()));
+        }
+    }
+
+    /**
+     * Calculate the number of verticle instances to deploy.
+     *
+     * @param config the configuration, may be {@code null}
+     * @return the number of instances, at least one
+     */
+    static int instances(final JsonObject config) {
+        final int instances = Optional.ofNullable(config)
+                .map(json -> json.getInteger(INSTANCES_KEY, DEF_INSTANCES))
+                .orElse(DEF_INSTANCES);
+        return Optional.of(instances)
+                .filter(count -> count > 0)
+                .orElseGet(Runtime.getRuntime()::availableProcessors);
+    }
+}
@@ -19,6 +19,7 @@ package ch.fihlon.moodini.server;
 
 import lombok.experimental.UtilityClass;
 import pl.setblack.airomem.core.SimpleController;
+import pl.setblack.airomem.core.disk.PersistenceDiskHelper;
 
 import java.io.Serializable;
 import java.nio.file.Path;
@@ -34,6 +35,26 @@ public class PersistenceManager {
 
     private static final Path DATA_DIRECTORY = Paths.get("moodini");
 
+    /**
+     * Get the data directory of this node. Every node of a {@link Cluster}
+     * persists its shard in a directory of its own, so several nodes can run
+     * on the same machine. The layout of the cluster is checked against the
+     * one the data was written with, before any data is read.
+     *
+     * @return the data directory
+     * @throws IllegalStateException if the data was written with another layout
+     */
+    @SuppressWarnings("PMD.DataflowAnomalyAnalysis")
+    static Path dataDirectory() {
+        final Cluster cluster = Cluster.configured();
+        Path directory = DATA_DIRECTORY;
+        if (cluster.isClustered()) {
+            directory = directory.resolve("shard-" + cluster.getNode());
+        }
+        cluster.checkLayout(PersistenceDiskHelper.calcUserPath(directory.toString()));
+        return directory;
+    }
+
     /**
      * Create a {@link SimpleController} for the specified entity using the specified repository constructor.
      *
@@ -44,8 +65,47 @@ public class PersistenceManager {
      */
     public static <T extends Serializable> SimpleController<T> createSimpleController(
             final Class<? extends Serializable> clazz, final Supplier<T> constructor) {
-        final String dir = DATA_DIRECTORY.resolve(clazz.getName()).toString();
+        final String dir = dataDirectory().resolve(clazz.getName()).toString();
         return SimpleController.loadOptional(dir, constructor);
     }
 
+    /**
+     * Create a {@link SnapshotController} for the specified entity using the specified repository constructor.
+     * It uses the same files as the {@link SimpleController} but takes and cleans up the snapshots itself.
+     *
+     * @param clazz the entity class
+     * @param constructor the constructor of the repository class
+     * @param <T> the type of the entity, must extend {@link Serializable}
+     * @return a {@link SnapshotController} for the entity repository
+     */
+    public static <T extends Serializable> SnapshotController<T> createSnapshotController(
+            final Class<? extends Serializable> clazz, final Supplier<T> constructor) {
+        final String dir = dataDirectory().resolve(clazz.getName()).toString();
+        return new SnapshotController<>(dir, constructor);
+    }
+
+    /**
+     * Create an {@link EventLog} for the specified entity. It uses its own folder next to
+     * the one of the {@link SnapshotController}, so both engines can not mix up their files.
+     *
+     * @param clazz the entity class
+     * @return an {@link EventLog} for the entity repository, not loaded yet
+     */
+    public static EventLog createEventLog(final Class<? extends Serializable> clazz) {
+        final String dir = dataDirectory().resolve(clazz.getName() + ".log").toString();
+        return new EventLog(PersistenceDiskHelper.calcUserPath(dir));
+    }
+
+    /**
+     * Create a {@link ChangeLog} for the specified entity. It uses its own folder, so
+     * the changes are kept when the persistence engine is switched.
+     *
+     * @param clazz the entity class
+     * @return a {@link ChangeLog} for the changes of the entities
+     */
+    public static ChangeLog createChangeLog(final Class<? extends Serializable> clazz) {
+        final String dir = dataDirectory().resolve(clazz.getName() + ".changes").toString();
+        return new ChangeLog(PersistenceDiskHelper.calcUserPath(dir));
+    }
+
 }
@@ -0,0 +1,284 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server;
+
+import lombok.extern.slf4j.Slf4j;
+import org.prevayler.PrevaylerFactory;
+import org.prevayler.foundation.serialization.JavaSerializer;
+import pl.setblack.airomem.core.Command;
+import pl.setblack.airomem.core.ContextCommand;
+import pl.setblack.airomem.core.PrevalanceContext;
+import pl.setblack.airomem.core.disk.PersistenceDiskHelper;
+import pl.setblack.airomem.core.impl.PersistenceControllerImpl;
+import pl.setblack.airomem.core.impl.RoyalFoodTester;
+import pl.setblack.airomem.core.kryo.KryoSerializer;
+import pl.setblack.airomem.data.DataRoot;
+
+import javax.validation.constraints.NotNull;
+import java.io.Serializable;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * This class connects to a persistence store like the {@code SimpleController}
+ * of airomem and uses the same files, but it takes care of the snapshots:
+ * a snapshot is taken automatically when the journal written since the last
+ * snapshot exceeds {@code persistence.snapshot.entries} entries or
+ * {@code persistence.snapshot.bytes} bytes (zero disables the limit). The
+ * journal is split into segments of {@code persistence.journal.segment.bytes}
+ * bytes, so after a snapshot the older segments and snapshots are deleted and
+ * a restart only has to replay the entries written after the last snapshot.
+ * The journal records the version of its commands: a journal with entries
+ * to replay that were written with commands of another version is refused.
+ *
+ * @param <T> the type of the prevalent system
+ */
+@Slf4j
+@SuppressWarnings("PMD.TooManyMethods")
+public class SnapshotController<T extends Serializable> implements AutoCloseable {
+
+    /**
+     * The version of the commands journaled by Moodini. It has to be increased
+     * whenever a journaled command changes its serialized form, because the
+     * entries of an older journal would not be replayed correctly anymore.
+     * Version 2: votes are context commands with the time of their execution.
+     * Version 3: votes take a {@code Vote}, which may identify the voter.
+     */
+    static final int JOURNAL_VERSION = 3;
+
+    private static final long DEF_MAX_ENTRIES = 100_000;
+    private static final long DEF_MAX_BYTES = 64L * 1024 * 1024;
+    private static final long DEF_SEGMENT_BYTES = 8L * 1024 * 1024;
+    private static final long SIZE_CHECK = 1024;
+
+    private final PersistenceControllerImpl<DataRoot<T, T>, T> controller;
+    private final JournalFolder folder;
+    private final long entryLimit;
+    private final long byteLimit;
+    private final AtomicLong entries = new AtomicLong();
+    private final AtomicLong snapshots = new AtomicLong();
+    private final AtomicLong lastDuration = new AtomicLong();
+    private final Object lock = new Object();
+
+    /**
+     * Load the prevalent system from the specified folder below the prevayler
+     * folder of the user or create a new one using the specified constructor.
+     *
+     * @param name the name of the folder
+     * @param constructor the constructor of the prevalent system if there is none yet
+     */
+    public SnapshotController(@NotNull final String name, @NotNull final Supplier<T> constructor) {
+        entryLimit = Configuration.getLong("persistence.snapshot.entries", DEF_MAX_ENTRIES);
+        byteLimit = Configuration.getLong("persistence.snapshot.bytes", DEF_MAX_BYTES);
+        folder = new JournalFolder(PersistenceDiskHelper.calcUserPath(name).toFile());
+        controller = new PersistenceControllerImpl<>(name);
+        load(constructor);
+        if (isDue(entries.get())) {
+            takeSnapshot();
+        }
+    }
+
+    private void load(@NotNull final Supplier<T> constructor) {
+        final TimedSerializer snapshotReader = new TimedSerializer(new JavaSerializer());
+        final GuardedSerializer guard = new GuardedSerializer(new KryoSerializer(), refusal(folder.journalVersion()));
+        final TimedSerializer journalReader = new TimedSerializer(guard);
+        final PrevaylerFactory<RoyalFoodTester<DataRoot<T, T>>> factory = new PrevaylerFactory<>();
+        factory.configurePrevalentSystem(RoyalFoodTester.of(new DataRoot<>(constructor.get()), true));
+        factory.configurePrevalenceDirectory(folder.toString());
+        factory.configureJournalDiskSync(false);
+        factory.configureJournalFileSizeThreshold(
+                Configuration.getLong("persistence.journal.segment.bytes", DEF_SEGMENT_BYTES));
+        factory.configureJournalSerializer(JournalFolder.JOURNAL_SUFFIX, journalReader);
+        factory.configureSnapshotSerializer(JournalFolder.SNAPSHOT_SUFFIX, snapshotReader);
+        factory.configureTransactionDeepCopy(false);
+        final long start = System.nanoTime();
+        initSystem(factory, guard);
+        final long total = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        final long snapshotMillis = snapshotReader.getReadMillis();
+        final long replayed = journalReader.getReads();
+        final long replayMillis = total - snapshotMillis;
+        log.info("Read the snapshot of {} in {} ms", folder, snapshotMillis);
+        log.info("Replayed {} journal entries in {} ms", replayed, replayMillis);
+        entries.set(replayed);
+        folder.writeJournalVersion(JOURNAL_VERSION);
+    }
+
+    @SuppressWarnings("PMD.DataflowAnomalyAnalysis")
+    private String refusal(final int version) {
+        String refusal = null;
+        if (version != 0 && version != JOURNAL_VERSION) {
+            refusal = String.format("The journal of %s has entries written with version %d of the commands, "
+                    + "but this version of Moodini reads version %d. Shut the previous version of Moodini down "
+                    + "cleanly, which takes a snapshot, before upgrading.", folder, version, JOURNAL_VERSION);
+        }
+        return refusal;
+    }
+
+    @SuppressWarnings("PMD.AvoidCatchingGenericException")
+    private void initSystem(@NotNull final PrevaylerFactory<RoyalFoodTester<DataRoot<T, T>>> factory,
+                            @NotNull final GuardedSerializer guard) {
+        try {
+            controller.initSystem(factory.create());
+            // CHECKSTYLE DISABLE IllegalCatch FOR 4 LINES
+        } catch (final Exception e) {
+            throw new IllegalStateException("Unable to load " + folder, e);
+        } catch (final Error e) {
+            // Prevayler wraps a failed replay in an Error, the refusal explains it better
+            if (guard.isRefused()) {
+                throw new IllegalStateException(guard.getRefusal(), e);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Get the prevalent system to read from it. It must not be modified!
+     *
+     * @return the prevalent system
+     */
+    public T readOnly() {
+        return controller.query(immutable -> immutable);
+    }
+
+    /**
+     * Execute a command which modifies the prevalent system and journal it.
+     * A {@link RuntimeException} thrown by the command is rethrown as it is,
+     * not wrapped like by airomem.
+     *
+     * @param command the command
+     * @param <R> the type of the result of the command
+     * @return the result of the command
+     */
+    public <R> R executeAndQuery(@NotNull final Command<T, R> command) {
+        return journaled(execute(command));
+    }
+
+    /**
+     * Execute a command which modifies the prevalent system and journal it.
+     * The command gets the time of its execution from the context, which is
+     * journaled with it, so the command sees the same time when it is replayed.
+     *
+     * @param command the command
+     * @param <R> the type of the result of the command
+     * @return the result of the command
+     */
+    public <R> R executeAndQuery(@NotNull final ContextCommand<T, R> command) {
+        return journaled(execute(command));
+    }
+
+    @SuppressWarnings({"PMD.AvoidCatchingGenericException", "PMD.PreserveStackTrace"})
+    private <R> R execute(@NotNull final Command<T, R> command) {
+        try {
+            return controller.executeAndQuery((DataRoot<T, T> root) -> command.execute(root.getDataObject()));
+        // CHECKSTYLE DISABLE IllegalCatch FOR 1 LINES
+        } catch (final RuntimeException e) {
+            throw unwrap(e);
+        }
+    }
+
+    @SuppressWarnings({"PMD.AvoidCatchingGenericException", "PMD.PreserveStackTrace"})
+    private <R> R execute(@NotNull final ContextCommand<T, R> command) {
+        try {
+            return controller.executeAndQuery((DataRoot<T, T> root, PrevalanceContext context) ->
+                    command.execute(root.getDataObject(), context));
+        // CHECKSTYLE DISABLE IllegalCatch FOR 1 LINES
+        } catch (final RuntimeException e) {
+            throw unwrap(e);
+        }
+    }
+
+    private static RuntimeException unwrap(@NotNull final RuntimeException exception) {
+        return Optional.ofNullable(exception.getCause())
+                .filter(RuntimeException.class::isInstance)
+                .map(RuntimeException.class::cast)
+                .orElse(exception);
+    }
+
+    private <R> R journaled(final R result) {
+        final long count = entries.incrementAndGet();
+        if (isDue(count)) {
+            snapshot(count);
+        }
+        return result;
+    }
+
+    private boolean isDue(final long count) {
+        return entryLimit > 0 && count >= entryLimit
+                || byteLimit > 0 && count % SIZE_CHECK == 0 && folder.journalBytes() >= byteLimit;
+    }
+
+    private void snapshot(final long due) {
+        synchronized (lock) {
+            if (entries.get() >= due) {
+                takeSnapshot();
+            }
+        }
+    }
+
+    /**
+     * Take a snapshot of the prevalent system and delete the journal segments
+     * and snapshots which are not needed anymore to restore it.
+     *
+     * @return the status after the snapshot
+     */
+    public SnapshotStatus snapshot() {
+        synchronized (lock) {
+            takeSnapshot();
+        }
+        return getStatus();
+    }
+
+    private void takeSnapshot() {
+        final long start = System.nanoTime();
+        controller.snapshot();
+        entries.set(0);
+        final int deleted = folder.deleteUnnecessaryFiles();
+        lastDuration.set(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        snapshots.incrementAndGet();
+        log.info("Took a snapshot of {} in {} ms and deleted {} files", folder, lastDuration.get(), deleted);
+    }
+
+    /**
+     * Get the status of the journal and the snapshots.
+     *
+     * @return the status
+     */
+    public SnapshotStatus getStatus() {
+        return new SnapshotStatus(entries.get(), folder.journalBytes(), snapshots.get(), lastDuration.get());
+    }
+
+    /**
+     * Close the persistence store. A last snapshot is taken, so the next start
+     * does not have to replay the journal.
+     */
+    @Override
+    public void close() {
+        controller.close();
+        folder.deleteUnnecessaryFiles();
+    }
+
+    /**
+     * Close the persistence store without taking a snapshot, like a crash would.
+     */
+    public void shut() {
+        controller.shut();
+    }
+
+}
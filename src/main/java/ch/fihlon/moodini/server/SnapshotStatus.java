@@ -0,0 +1,41 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server;
+
+import lombok.Value;
+
+/**
+ * This class describes the state of the journal and the snapshots of a
+ * {@link SnapshotController}: the number of journal entries written since
+ * the last snapshot, the size of the journal files in bytes, the number of
+ * snapshots taken since the start and the duration of the last snapshot in
+ * milliseconds.
+ */
+@Value
+@SuppressWarnings("PMD.UnusedPrivateField")
+public class SnapshotStatus {
+
+    private long journalEntries;
+
+    private long journalBytes;
+
+    private long snapshots;
+
+    private long lastDuration;
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server;
+
+import org.prevayler.foundation.serialization.Serializer;
+
+import javax.validation.constraints.NotNull;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This serializer delegates to another serializer and measures how many
+ * objects were read and how long it took. Prevayler reads only while it
+ * loads the snapshot and replays the journal, so this is used to report
+ * the phases of the startup.
+ */
+@SuppressWarnings("PMD.SignatureDeclareThrowsException")
+class TimedSerializer implements Serializer {
+
+    private final Serializer delegate;
+    private final AtomicLong reads = new AtomicLong();
+    private final AtomicLong readNanos = new AtomicLong();
+
+    TimedSerializer(@NotNull final Serializer delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Write an object using the delegate.
+     *
+     * @param stream the stream to write to
+     * @param object the object to write
+     * @throws Exception if the delegate fails to write the object
+     */
+    @Override
+    public void writeObject(@NotNull final OutputStream stream, @NotNull final Object object) throws Exception {
+        delegate.writeObject(stream, object);
+    }
+
+    /**
+     * Read an object using the delegate and measure it.
+     *
+     * @param stream the stream to read from
+     * @return the object read
+     * @throws Exception if the delegate fails to read the object
+     */
+    @Override
+    @SuppressWarnings("PMD.DataflowAnomalyAnalysis")
+    public Object readObject(@NotNull final InputStream stream) throws Exception {
+        final long start = System.nanoTime();
+        try {
+            return delegate.readObject(stream);
+        } finally {
+            readNanos.addAndGet(System.nanoTime() - start);
+            reads.incrementAndGet();
+        }
+    }
+
+    long getReads() {
+        return reads.get();
+    }
+
+    long getReadMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(readNanos.get());
+    }
+
+}
@@ -0,0 +1,268 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.boundary;
+
+import ch.fihlon.moodini.server.exception.BadRequestException;
+import com.fasterxml.jackson.annotation.JsonValue;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import javax.validation.constraints.NotNull;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * This enum represents the formats of the bodies of the questions and
+ * tallies. Compact JSON is the default, clients which prefer a binary format
+ * ask for CBOR or Smile in the {@code Accept} header of the request and send
+ * them with the matching {@code Content-Type}. All formats are written by
+ * Jackson from the same annotated entities or from the JSON types of Vert.x.
+ */
+@SuppressWarnings("PMD.DataflowAnomalyAnalysis")
+enum BodyFormat {
+
+    // CHECKSTYLE DISABLE JavadocVariable FOR 3 LINES
+    JSON("application/json", "; charset=utf-8", Json.mapper),
+    CBOR("application/cbor", "", binary(new CBORFactory())),
+    SMILE("application/x-jackson-smile", "", binary(new SmileFactory()));
+
+    private static final String ACCEPT = "Accept";
+    private static final String CONTENT_TYPE = "Content-Type";
+    private static final String VARY = "Vary";
+    private static final String VARY_HEADERS = "Accept, Accept-Encoding";
+    private static final String QUALITY = "q=";
+    private static final String SEPARATOR = ";";
+    private static final List<String> WILDCARDS = Arrays.asList("*/*", "application/*");
+
+    private final String mediaType;
+    private final String contentType;
+    private final ObjectMapper mapper;
+
+    BodyFormat(@NotNull final String mediaType,
+               @NotNull final String parameters,
+               @NotNull final ObjectMapper mapper) {
+        this.mediaType = mediaType;
+        this.contentType = mediaType + parameters;
+        this.mapper = mapper;
+    }
+
+    /**
+     * Create the mapper of a binary format. It writes the {@link JsonObject}s
+     * and {@link JsonArray}s of Vert.x as maps and lists, like the JSON mapper.
+     *
+     * @param factory the factory of the binary format
+     * @return the mapper
+     */
+    private static ObjectMapper binary(@NotNull final JsonFactory factory) {
+        return new ObjectMapper(factory)
+                .addMixIn(JsonObject.class, JsonObjectMixIn.class)
+                .addMixIn(JsonArray.class, JsonArrayMixIn.class);
+    }
+
+    /**
+     * Get the format the client asked for in the {@code Accept} header. The
+     * format with the highest quality wins, wildcards and unknown or missing
+     * media types fall back to JSON.
+     *
+     * @param request the HTTP request
+     * @return the format of the response
+     */
+    static BodyFormat accepted(@NotNull final HttpServerRequest request) {
+        final String accept = request.getHeader(ACCEPT);
+        BodyFormat accepted = JSON;
+        if (accept != null) {
+            double best = 0;
+            for (final String range : accept.split(",")) {
+                final String[] parameters = range.split(SEPARATOR);
+                final BodyFormat format = parse(parameters[0]);
+                final double quality = quality(parameters);
+                if (format != null && quality > best) {
+                    accepted = format;
+                    best = quality;
+                }
+            }
+        }
+        return accepted;
+    }
+
+    /**
+     * Get the format of the body of the request from its {@code Content-Type}
+     * header. Unknown or missing content types are read as JSON.
+     *
+     * @param request the HTTP request
+     * @return the format of the body of the request
+     */
+    static BodyFormat received(@NotNull final HttpServerRequest request) {
+        final String contentType = request.getHeader(CONTENT_TYPE);
+        BodyFormat received = JSON;
+        if (contentType != null) {
+            final BodyFormat format = parse(contentType.split(SEPARATOR)[0]);
+            if (format != null) {
+                received = format;
+            }
+        }
+        return received;
+    }
+
+    private static BodyFormat parse(@NotNull final String range) {
+        final String type = range.trim().toLowerCase(Locale.ENGLISH);
+        BodyFormat parsed = null;
+        if (WILDCARDS.contains(type)) {
+            parsed = JSON;
+        }
+        for (final BodyFormat format : values()) {
+            if (format.mediaType.equals(type)) {
+                parsed = format;
+            }
+        }
+        return parsed;
+    }
+
+    /**
+     * Get the quality of a media range or content coding, it is {@code 1}
+     * if the {@code q} parameter is missing and {@code 0} if it is invalid.
+     *
+     * @param parameters the range or coding followed by its parameters
+     * @return the quality
+     */
+    static double quality(@NotNull final String... parameters) {
+        double quality = 1;
+        for (int i = 1; i < parameters.length; i++) {
+            final String parameter = parameters[i].trim();
+            if (parameter.startsWith(QUALITY)) {
+                try {
+                    quality = Double.parseDouble(parameter.substring(QUALITY.length()));
+                } catch (final NumberFormatException e) {
+                    quality = 0;
+                }
+            }
+        }
+        return quality;
+    }
+
+    /**
+     * Serialize a value in this format.
+     *
+     * @param value the value
+     * @return the serialized value
+     */
+    Buffer encode(@NotNull final Object value) {
+        try {
+            return Buffer.buffer(mapper.writeValueAsBytes(value));
+        } catch (final JsonProcessingException e) {
+            throw new IllegalStateException("Failed to encode as " + this, e);
+        }
+    }
+
+    /**
+     * Deserialize the body of a request in this format.
+     *
+     * @param body the body
+     * @param type the type of the value
+     * @param <T> the type of the value
+     * @return the value
+     * @throws BadRequestException if the body is not a valid value in this format
+     */
+    <T> T decode(@NotNull final Buffer body, @NotNull final Class<T> type) {
+        return decode(body, mapper.constructType(type));
+    }
+
+    /**
+     * Deserialize a value of a generic type in this format.
+     *
+     * @param body the body
+     * @param type the type of the value
+     * @param <T> the type of the value
+     * @return the value
+     * @throws BadRequestException if the body is not a valid value in this format
+     */
+    <T> T decode(@NotNull final Buffer body, @NotNull final JavaType type) {
+        try {
+            return mapper.readValue(body.getBytes(), type);
+        } catch (final IOException e) {
+            throw new BadRequestException("The body is no valid " + this, e);
+        }
+    }
+
+    /**
+     * Set the {@code Content-Type} of this format on a response. The response
+     * varies with the {@code Accept} header of the request and, as it may be
+     * compressed, with the {@code Accept-Encoding} header.
+     *
+     * @param response the HTTP response
+     * @return the HTTP response
+     */
+    HttpServerResponse describe(@NotNull final HttpServerResponse response) {
+        return response.putHeader(CONTENT_TYPE, contentType).putHeader(VARY, VARY_HEADERS);
+    }
+
+    /**
+     * Get the entity tag of the representation in this format. JSON keeps the
+     * entity tag, the other formats get a suffix.
+     *
+     * @param etag the entity tag of the content, including the quotes
+     * @return the entity tag of the representation, including the quotes
+     */
+    String tag(@NotNull final String etag) {
+        String tag = etag;
+        if (this != JSON) {
+            tag = etag.substring(0, etag.length() - 1) + '-' + name().toLowerCase(Locale.ENGLISH) + '"';
+        }
+        return tag;
+    }
+
+    /**
+     * Writes a {@link JsonObject} as its map.
+     */
+    private interface JsonObjectMixIn {
+        /**
+         * Get the map of the object.
+         *
+         * @return the map
+         */
+        @JsonValue
+        Map<String, Object> getMap();
+    }
+
+    /**
+     * Writes a {@link JsonArray} as its list.
+     */
+    private interface JsonArrayMixIn {
+        /**
+         * Get the list of the array.
+         *
+         * @return the list
+         */
+        @JsonValue
+        List<?> getList();
+    }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.boundary;
+
+import ch.fihlon.moodini.server.business.question.entity.BulkVote;
+import io.vertx.core.Context;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+
+import javax.validation.constraints.NotNull;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletionStage;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * This class handles the HTTP requests to upload votes in bulk, see
+ * {@link BulkVotes} for the format, the status of every vote is sent in the
+ * format accepted by the client. The number of votes of an upload and the
+ * count of a single vote are limited; an upload with too many votes is
+ * rejected, a vote with a larger count is an invalid vote. The size of the
+ * body is limited by the BodyHandler of the route. The votes are counted
+ * by the nodes which own their questions, see {@link ShardVotes}.
+ */
+class BulkVoteHandler {
+
+    private final ShardVotes shardVotes;
+    private final int maxVotes;
+    private final long maxCount;
+
+    BulkVoteHandler(@NotNull final ShardVotes shardVotes,
+                    final int maxVotes, final long maxCount) {
+        this.shardVotes = shardVotes;
+        this.maxVotes = maxVotes;
+        this.maxCount = maxCount;
+    }
+
+    void voteBulk(@NotNull final RoutingContext routingContext) {
+        ServerTiming.mark(routingContext, "body");
+        final List<Optional<BulkVote>> votes = BulkVotes.read(routingContext, maxVotes, maxCount);
+        final List<BulkVote> validVotes = votes.stream()
+                .filter(Optional::isPresent)
+                .map(Optional::get)
+                .collect(toList());
+        ServerTiming.mark(routingContext, "parse");
+        final CompletionStage<List<JsonObject>> stage = shardVotes.vote(validVotes,
+                routingContext.request().headers().contains(ShardProxy.FORWARDED));
+        ServerTiming.mark(routingContext, "service");
+        final Context context = routingContext.vertx().getOrCreateContext();
+        stage.whenComplete((results, failure) ->
+            context.runOnContext(done -> {
+                ServerTiming.mark(routingContext, "persist");
+                if (failure == null) {
+                    final BodyFormat format = BodyFormat.accepted(routingContext.request());
+                    final Buffer body = format.encode(BulkVotes.write(votes, results));
+                    ServerTiming.mark(routingContext, "encode");
+                    format.describe(routingContext.response()).end(body);
+                } else {
+                    routingContext.fail(failure);
+                }
+            }));
+    }
+
+}
@@ -0,0 +1,214 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.boundary;
+
+import ch.fihlon.moodini.server.business.question.entity.Answer;
+import ch.fihlon.moodini.server.business.question.entity.BulkVote;
+import ch.fihlon.moodini.server.exception.BadRequestException;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+import lombok.experimental.UtilityClass;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.validation.constraints.NotNull;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * This utility class reads the votes uploaded in bulk and writes the status
+ * of every vote. The votes are sent either as a JSON array or as
+ * newline-delimited JSON ({@code application/x-ndjson}), one object per
+ * vote: {@code {"questionId": 1, "answer": "GOOD", "count": 3}}. The count
+ * is optional and defaults to one, a count above the maximum makes the vote
+ * invalid. An invalid vote does not fail the whole upload, it gets the
+ * status 400 while the other votes are counted. The valid votes are
+ * written in the same format to send them to the node which owns them.
+ */
+@Slf4j
+@UtilityClass
+@SuppressWarnings("PMD.DataflowAnomalyAnalysis")
+class BulkVotes {
+
+    private static final int SC_OK = 200;
+    private static final int SC_BAD_REQUEST = 400;
+    private static final int SC_NOT_FOUND = 404;
+    private static final String NDJSON = "application/x-ndjson";
+    private static final String STATUS = "status";
+    private static final String QUESTION_ID = "questionId";
+    private static final String ANSWER = "answer";
+    private static final String COUNT = "count";
+    private static final Pattern LINES = Pattern.compile("\\r?\\n");
+
+    /**
+     * Read the votes from the body of the request.
+     *
+     * @param routingContext the context of the request
+     * @param maxVotes the maximum number of votes accepted at once
+     * @param maxCount the maximum count of a single vote
+     * @return the votes in the order they were sent, empty for an invalid vote
+     */
+    static List<Optional<BulkVote>> read(@NotNull final RoutingContext routingContext,
+                                         final int maxVotes, final long maxCount) {
+        final String contentType = routingContext.request().getHeader("Content-Type");
+        final String body = routingContext.getBodyAsString();
+        final List<Optional<BulkVote>> votes = new ArrayList<>();
+        if (contentType != null && contentType.startsWith(NDJSON)) {
+            for (final String line : LINES.split(body)) {
+                if (!line.trim().isEmpty()) {
+                    votes.add(parseLine(line, maxCount));
+                }
+            }
+        } else {
+            final Iterator<Object> items = parseArray(body).iterator();
+            while (items.hasNext()) {
+                votes.add(parseVote(items.next(), maxCount));
+            }
+        }
+        if (votes.size() > maxVotes) {
+            throw new BadRequestException(String.format("At most %d votes can be uploaded at once!", maxVotes));
+        }
+        return votes;
+    }
+
+    /**
+     * Write the status of every vote as an array in the order the votes were sent.
+     * A counted vote has the status 200 and the number of votes for its answer.
+     *
+     * @param votes the votes as read
+     * @param counts the number of votes for each valid vote, zero for unknown questions
+     * @return the array, to be encoded in the format accepted by the client
+     */
+    @SuppressWarnings("PMD.UseVarargs")
+    static JsonArray write(@NotNull final List<Optional<BulkVote>> votes, @NotNull final long[] counts) {
+        return write(votes, results(counts));
+    }
+
+    /**
+     * Write the status of every vote as an array in the order the votes were sent.
+     *
+     * @param votes the votes as read
+     * @param results the status of each valid vote
+     * @return the array, to be encoded in the format accepted by the client
+     */
+    static JsonArray write(@NotNull final List<Optional<BulkVote>> votes, @NotNull final List<JsonObject> results) {
+        final JsonArray statuses = new JsonArray();
+        final Iterator<JsonObject> next = results.iterator();
+        for (final Optional<BulkVote> vote : votes) {
+            if (vote.isPresent()) {
+                statuses.add(next.next());
+            } else {
+                statuses.add(withStatus(SC_BAD_REQUEST));
+            }
+        }
+        return statuses;
+    }
+
+    /**
+     * Get the status of counted votes: 200 and the number of votes for the
+     * answer, or 404 for an unknown question.
+     *
+     * @param counts the number of votes for each vote, zero for unknown questions
+     * @return the status of each vote
+     */
+    @SuppressWarnings("PMD.UseVarargs")
+    static List<JsonObject> results(@NotNull final long[] counts) {
+        final List<JsonObject> results = new ArrayList<>(counts.length);
+        for (final long count : counts) {
+            results.add(result(count));
+        }
+        return results;
+    }
+
+    /**
+     * Create the status of a vote.
+     *
+     * @param status the HTTP status code
+     * @return the status of the vote
+     */
+    static JsonObject withStatus(final int status) {
+        return new JsonObject().put(STATUS, status);
+    }
+
+    /**
+     * Write valid votes as a JSON array, to upload them to another node.
+     *
+     * @param votes the valid votes
+     * @return the array of the votes
+     */
+    @SuppressWarnings("PMD.AvoidInstantiatingObjectsInLoops")
+    static JsonArray encode(@NotNull final List<BulkVote> votes) {
+        final JsonArray array = new JsonArray();
+        for (final BulkVote vote : votes) {
+            array.add(new JsonObject()
+                    .put(QUESTION_ID, vote.getQuestionId())
+                    .put(ANSWER, vote.getAnswer().name())
+                    .put(COUNT, vote.getCount()));
+        }
+        return array;
+    }
+
+    private static JsonObject result(final long count) {
+        JsonObject result = withStatus(SC_NOT_FOUND);
+        if (count > 0) {
+            result = withStatus(SC_OK).put("votes", count);
+        }
+        return result;
+    }
+
+    private static JsonArray parseArray(@NotNull final String body) {
+        try {
+            return new JsonArray(body);
+        } catch (final DecodeException e) {
+            throw new BadRequestException("The votes must be a JSON array!", e);
+        }
+    }
+
+    private static Optional<BulkVote> parseLine(@NotNull final String line, final long maxCount) {
+        Optional<BulkVote> vote = Optional.empty();
+        try {
+            vote = parseVote(new JsonObject(line), maxCount);
+        } catch (final DecodeException e) {
+            log.debug("The vote is not JSON: {}", line);
+        }
+        return vote;
+    }
+
+    private static Optional<BulkVote> parseVote(@NotNull final Object item, final long maxCount) {
+        Optional<BulkVote> vote = Optional.empty();
+        if (item instanceof JsonObject) {
+            final JsonObject json = (JsonObject) item;
+            try {
+                final Long questionId = json.getLong(QUESTION_ID);
+                final String answer = json.getString(ANSWER);
+                final Long count = json.getLong(COUNT, 1L);
+                if (questionId != null && answer != null && count != null && count > 0 && count <= maxCount) {
+                    vote = Optional.of(new BulkVote(questionId, Answer.valueOf(answer), count));
+                }
+            } catch (final ClassCastException | IllegalArgumentException e) {
+                log.debug("Invalid vote: {}", json);
+            }
+        }
+        return vote;
+    }
+
+}
@@ -0,0 +1,208 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.boundary;
+
+import ch.fihlon.moodini.server.business.question.entity.Question;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.ext.web.RoutingContext;
+import lombok.Value;
+
+import javax.validation.constraints.NotNull;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * This class holds the serialized representations of a response together
+ * with its entity tag. Every {@link BodyFormat} is serialized once, when it
+ * is asked for the first time, and shared by all responses, and so is its
+ * gzipped version, so the server does not compress it again. A conditional
+ * request with a matching {@code If-None-Match} header is answered with
+ * "304 NOT MODIFIED" and no body at all. The entity tags of the formats are
+ * built once, too, and the cached body of a {@link Question} keeps its version,
+ * so validating it does not build any strings. A gzipped body has the entity
+ * tag of its format with the suffix {@code -gzip}.
+ */
+@Value
+@SuppressWarnings("PMD.UnusedPrivateField")
+class CachedBody {
+
+    private static final int SC_NOT_MODIFIED = 304;
+    private static final String ETAG = "ETag";
+    private static final String IF_NONE_MATCH = "If-None-Match";
+    private static final String ANY = "*";
+    private static final String LINK = "Link";
+    private static final String CONTENT_ENCODING = "Content-Encoding";
+    private static final String GZIP = "gzip";
+    private static final String GZIP_SUFFIX = "-gzip\"";
+    private static final long NO_VERSION = -1;
+
+    private final String etag;
+    private final long version;
+    private final Object content;
+    private final Map<BodyFormat, Buffer> bodies;
+    private final Map<BodyFormat, Buffer> gzipped;
+    private final Map<BodyFormat, String> tags;
+    private final Map<BodyFormat, String> gzippedTags;
+    private final String link;
+
+    /**
+     * Create the cached body of a {@link Question}. The entity tag is derived
+     * from the id and the version of the {@link Question}.
+     *
+     * @param question the {@link Question}
+     * @return the cached body
+     */
+    static CachedBody forQuestion(@NotNull final Question question) {
+        return new CachedBody(etagOf(question), question.getVersion(), question, new ConcurrentHashMap<>(),
+                new ConcurrentHashMap<>(), new ConcurrentHashMap<>(), new ConcurrentHashMap<>(), null);
+    }
+
+    /**
+     * Create the cached body of any content. The entity tag is derived from
+     * the checksum of the content serialized in JSON.
+     *
+     * @param content the content to serialize
+     * @return the cached body
+     */
+    static CachedBody forContent(@NotNull final Object content) {
+        final Buffer json = BodyFormat.JSON.encode(content);
+        final CRC32 checksum = new CRC32();
+        checksum.update(json.getBytes());
+        final String etag = String.format("\"%x-%x\"", json.length(), checksum.getValue());
+        final Map<BodyFormat, Buffer> bodies = new ConcurrentHashMap<>();
+        bodies.put(BodyFormat.JSON, json);
+        return new CachedBody(etag, NO_VERSION, content, bodies,
+                new ConcurrentHashMap<>(), new ConcurrentHashMap<>(), new ConcurrentHashMap<>(), null);
+    }
+
+    /**
+     * Create a copy of this cached body which is sent with a {@code Link} header.
+     *
+     * @param newLink the value of the {@code Link} header
+     * @return the cached body with the link
+     */
+    CachedBody withLink(@NotNull final String newLink) {
+        return new CachedBody(etag, version, content, bodies, gzipped, tags, gzippedTags, newLink);
+    }
+
+    /**
+     * Get the body serialized in a format.
+     *
+     * @param format the format
+     * @return the serialized body
+     */
+    Buffer getBody(@NotNull final BodyFormat format) {
+        return bodies.computeIfAbsent(format, missing -> missing.encode(content));
+    }
+
+    /**
+     * Get the body serialized in a format and compressed with gzip.
+     *
+     * @param format the format
+     * @return the gzipped body
+     */
+    Buffer getGzippedBody(@NotNull final BodyFormat format) {
+        return gzipped.computeIfAbsent(format, missing -> Compression.compress(getBody(missing)));
+    }
+
+    /**
+     * Get the entity tag of the body serialized in a format.
+     *
+     * @param format the format
+     * @return the entity tag including the quotes
+     */
+    String getTag(@NotNull final BodyFormat format) {
+        return tags.computeIfAbsent(format, missing -> missing.tag(etag));
+    }
+
+    /**
+     * Get the entity tag of the body serialized in a format and compressed with gzip.
+     *
+     * @param format the format
+     * @return the entity tag including the quotes
+     */
+    String getGzippedTag(@NotNull final BodyFormat format) {
+        return gzippedTags.computeIfAbsent(format, missing -> {
+            final String tag = getTag(missing);
+            return tag.substring(0, tag.length() - 1) + GZIP_SUFFIX;
+        });
+    }
+
+    /**
+     * Check if this is the cached body of a version of a {@link Question}.
+     *
+     * @param question the {@link Question}
+     * @return {@code true} if the version of the {@link Question} matches
+     */
+    boolean isVersionOf(@NotNull final Question question) {
+        return version == question.getVersion();
+    }
+
+    /**
+     * Get the entity tag of a {@link Question}.
+     *
+     * @param question the {@link Question}
+     * @return the entity tag including the quotes
+     */
+    static String etagOf(@NotNull final Question question) {
+        return String.format("\"%d-%d\"", question.getQuestionId(), question.getVersion());
+    }
+
+    /**
+     * Send this body as the response or "304 NOT MODIFIED" if the client already has it.
+     *
+     * @param routingContext the routing context of the request
+     * @param compression the compression settings of the server
+     */
+    @SuppressWarnings("PMD.DataflowAnomalyAnalysis")
+    void send(@NotNull final RoutingContext routingContext, @NotNull final Compression compression) {
+        final HttpServerRequest request = routingContext.request();
+        final BodyFormat format = BodyFormat.accepted(request);
+        final boolean gzip = compression.accepts(request);
+        String tag = getTag(format);
+        if (gzip) {
+            tag = getGzippedTag(format);
+        }
+        final HttpServerResponse response = format.describe(routingContext.response())
+                .putHeader(ETAG, compression.entityTag(request, tag));
+        if (link != null) {
+            response.putHeader(LINK, link);
+        }
+        if (isNotModified(tag, request.getHeader(IF_NONE_MATCH))) {
+            response.setStatusCode(SC_NOT_MODIFIED).end();
+        } else if (gzip) {
+            response.putHeader(CONTENT_ENCODING, GZIP).end(getGzippedBody(format));
+        } else {
+            response.end(getBody(format));
+        }
+    }
+
+    private static boolean isNotModified(@NotNull final String etag, final String ifNoneMatch) {
+        boolean matches = false;
+        if (ifNoneMatch != null) {
+            for (final String tag : ifNoneMatch.split(",")) {
+                final String trimmed = tag.trim();
+                matches |= ANY.equals(trimmed) || etag.equals(trimmed) || etag.equals(trimmed.replace("W/", ""));
+            }
+        }
+        return matches;
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.boundary;
+
+import ch.fihlon.moodini.server.business.question.control.QuestionService;
+import ch.fihlon.moodini.server.exception.BadRequestException;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.ext.web.RoutingContext;
+
+import javax.validation.constraints.NotNull;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * This class handles the HTTP requests to read the change feed
+ * ({@code after=<offset>&limit=N&wait=<seconds>}). The changes after the
+ * offset are sent as newline delimited JSON, the consumer continues with the
+ * offset of the last change it got. If there are no newer changes, the
+ * request waits up to {@code wait} seconds for them (long polling) and is
+ * answered without changes when the time is up. The handler listens to the
+ * {@link ch.fihlon.moodini.server.ChangeLog} only while requests are waiting; all waiting requests
+ * are served by one task on the event loop, no matter how many changes were
+ * appended in the meantime.
+ */
+@SuppressWarnings("PMD.UseConcurrentHashMap")
+class ChangesHandler {
+
+    private static final int DEFAULT_LIMIT = 1000;
+    private static final int MAX_LIMIT = 10_000;
+    private static final long MAX_WAIT = 60;
+    private static final String PARAM_AFTER = "after";
+    private static final String PARAM_LIMIT = "limit";
+    private static final String PARAM_WAIT = "wait";
+    private static final String LAST_OFFSET = "X-Last-Offset";
+    private static final String NDJSON = "application/x-ndjson";
+
+    private final Vertx vertx;
+    private final Context context;
+    private final QuestionService questionService;
+    private final Set<Waiter> waiters = new HashSet<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final Runnable listener = this::changed;
+
+    ChangesHandler(@NotNull final Vertx vertx,
+                   @NotNull final QuestionService questionService) {
+        this.vertx = vertx;
+        this.context = vertx.getOrCreateContext();
+        this.questionService = questionService;
+    }
+
+    void changes(@NotNull final RoutingContext routingContext) {
+        final HttpServerRequest request = routingContext.request();
+        final long after = parseNumber(request, PARAM_AFTER, 0);
+        final long limit = parseNumber(request, PARAM_LIMIT, DEFAULT_LIMIT);
+        final long wait = Math.min(MAX_WAIT, parseNumber(request, PARAM_WAIT, 0));
+        final Waiter waiter = new Waiter(routingContext.response(), after, (int) Math.min(MAX_LIMIT, limit));
+        final List<String> lines = read(waiter);
+        if (lines.isEmpty() && wait > 0) {
+            if (waiters.isEmpty()) {
+                questionService.getChangeLog().addListener(listener);
+            }
+            waiters.add(waiter);
+            waiter.timer = vertx.setTimer(TimeUnit.SECONDS.toMillis(wait), timer -> expire(waiter));
+            waiter.response.closeHandler(closed -> remove(waiter));
+            answerIfChanged(waiter);
+        } else {
+            send(waiter, lines);
+        }
+    }
+
+    private List<String> read(@NotNull final Waiter waiter) {
+        return questionService.getChangeLog().read(waiter.after, waiter.limit);
+    }
+
+    private void answerIfChanged(@NotNull final Waiter waiter) {
+        final List<String> lines = read(waiter);
+        if (!lines.isEmpty() && remove(waiter)) {
+            send(waiter, lines);
+        }
+    }
+
+    private void expire(@NotNull final Waiter waiter) {
+        if (remove(waiter)) {
+            send(waiter, Collections.emptyList());
+        }
+    }
+
+    private boolean remove(@NotNull final Waiter waiter) {
+        final boolean removed = waiters.remove(waiter);
+        if (removed) {
+            vertx.cancelTimer(waiter.timer);
+            if (waiters.isEmpty()) {
+                questionService.getChangeLog().removeListener(listener);
+            }
+        }
+        return removed;
+    }
+
+    private void send(@NotNull final Waiter waiter, @NotNull final List<String> lines) {
+        final Buffer body = Buffer.buffer();
+        lines.forEach(line -> body.appendString(line).appendString("\n"));
+        waiter.response
+                .putHeader("Content-Type", NDJSON)
+                .putHeader(LAST_OFFSET, Long.toString(questionService.getChangeLog().getLastOffset()))
+                .end(body);
+    }
+
+    private void changed() {
+        if (scheduled.compareAndSet(false, true)) {
+            context.runOnContext(done -> {
+                scheduled.set(false);
+                new HashSet<>(waiters).forEach(this::answerIfChanged);
+            });
+        }
+    }
+
+    private static long parseNumber(@NotNull final HttpServerRequest request,
+                                    @NotNull final String name,
+                                    final long defaultValue) {
+        final String value = request.getParam(name);
+        try {
+            final long number = Optional.ofNullable(value).map(Long::parseLong).orElse(defaultValue);
+            if (number < 0 || PARAM_LIMIT.equals(name) && number == 0) {
+                throw new BadRequestException(String.format("The %s must be positive!", name));
+            }
+            return number;
+        } catch (final NumberFormatException e) {
+            throw new BadRequestException(String.format("'%s' is not a number!", value), e);
+        }
+    }
+
+    /**
+     * A request waiting for changes after an offset, until its timer expires.
+     */
+    private static final class Waiter {
+        private final HttpServerResponse response;
+        private final long after;
+        private final int limit;
+        private long timer;
+
+        Waiter(@NotNull final HttpServerResponse response, final long after, final int limit) {
+            this.response = response;
+            this.after = after;
+            this.limit = limit;
+        }
+    }
+
+}
@@ -0,0 +1,126 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.boundary;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpVersion;
+import lombok.Value;
+
+import javax.validation.constraints.NotNull;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * This class holds the compression settings of the HTTP server. Streamed
+ * responses are compressed by the server for every request, with gzip or
+ * deflate as the client accepts it. The {@link CachedBody}s are compressed
+ * once with gzip at the best level and kept next to their plain version.
+ * <p>
+ * Over HTTP/1.1 the server passes a body through unchanged if its
+ * {@code Content-Encoding} is set, only the "identity" encoding would be
+ * compressed again. Over HTTP/2 the server always compresses a body in the
+ * encoding set, so the cached bodies are sent plain and compressed by it.
+ * <p>
+ * A gzipped cached body has its own entity tag. Over HTTP/2 the same body may
+ * be sent plain or compressed by the server, so its entity tag is weak.
+ */
+@Value
+@SuppressWarnings({"PMD.UnusedPrivateField", "PMD.DataflowAnomalyAnalysis"})
+class Compression {
+
+    private static final String GZIP = "gzip";
+    private static final String ACCEPT_ENCODING = "Accept-Encoding";
+    private static final String ANY = "*";
+    private static final String WEAK = "W/";
+
+    private final boolean enabled;
+
+    /**
+     * Check whether a gzipped body is sent over HTTP/1.x. The client must
+     * accept gzip, explicitly or by a wildcard. An explicit quality of gzip
+     * overrides the one of the wildcard.
+     *
+     * @param request the HTTP request
+     * @return {@code true} if the gzipped body is sent
+     */
+    boolean accepts(@NotNull final HttpServerRequest request) {
+        final String acceptEncoding = request.getHeader(ACCEPT_ENCODING);
+        double gzip = -1;
+        double any = 0;
+        if (enabled && acceptEncoding != null && request.version() != HttpVersion.HTTP_2) {
+            for (final String coding : acceptEncoding.split(",")) {
+                final String[] parameters = coding.split(";");
+                final String name = parameters[0].trim().toLowerCase(Locale.ENGLISH);
+                if (GZIP.equals(name)) {
+                    gzip = BodyFormat.quality(parameters);
+                } else if (ANY.equals(name)) {
+                    any = BodyFormat.quality(parameters);
+                }
+            }
+        }
+        return gzip > 0 || gzip < 0 && any > 0;
+    }
+
+    /**
+     * Get the entity tag to send with a cached body. It is weak over HTTP/2
+     * if the server compresses, because the tag of the plain body is also
+     * sent with the body the server compressed.
+     *
+     * @param request the HTTP request
+     * @param tag the entity tag of the body as sent, including the quotes
+     * @return the entity tag for the {@code ETag} header
+     */
+    String entityTag(@NotNull final HttpServerRequest request, @NotNull final String tag) {
+        String entityTag = tag;
+        if (enabled && request.version() == HttpVersion.HTTP_2) {
+            entityTag = WEAK + tag;
+        }
+        return entityTag;
+    }
+
+    /**
+     * Compress a body with gzip at the best compression level.
+     *
+     * @param body the plain body
+     * @return the gzipped body
+     */
+    static Buffer compress(@NotNull final Buffer body) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(body.length() / 2);
+        try (OutputStream gzip = new BestGZIPOutputStream(bytes)) {
+            gzip.write(body.getBytes());
+        } catch (final IOException e) {
+            throw new IllegalStateException("Failed to gzip the body", e);
+        }
+        return Buffer.buffer(bytes.toByteArray());
+    }
+
+    /**
+     * A gzip stream which compresses at the best level instead of the default one.
+     */
+    private static class BestGZIPOutputStream extends GZIPOutputStream {
+        BestGZIPOutputStream(@NotNull final OutputStream out) throws IOException {
+            super(out);
+            def.setLevel(Deflater.BEST_COMPRESSION);
+        }
+    }
+}
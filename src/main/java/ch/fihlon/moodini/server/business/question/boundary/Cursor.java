@@ -0,0 +1,88 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.boundary;
+
+import ch.fihlon.moodini.server.exception.BadRequestException;
+import io.vertx.core.MultiMap;
+import io.vertx.core.http.HttpServerRequest;
+import lombok.Value;
+
+import javax.validation.constraints.NotNull;
+import java.util.Optional;
+
+/**
+ * This class holds the pagination parameters of a list request
+ * ({@code after=<id>&limit=N&order=desc}) and creates the link to the
+ * next page. The page size is always bounded, so the response size does not
+ * grow with the number of stored questions.
+ */
+@Value
+@SuppressWarnings("PMD.UnusedPrivateField")
+class Cursor {
+
+    private static final int DEFAULT_LIMIT = 100;
+    private static final int MAX_LIMIT = 1000;
+
+    private static final int MIN_LIMIT = 1;
+
+    private static final String PARAM_AFTER = "after";
+    private static final String PARAM_LIMIT = "limit";
+    private static final String PARAM_ORDER = "order";
+    private static final String ORDER_ASC = "asc";
+    private static final String ORDER_DESC = "desc";
+
+    private final Long after;
+    private final int limit;
+    private final boolean descending;
+
+    static Cursor parse(@NotNull final HttpServerRequest request) {
+        return parse(request.params());
+    }
+
+    static Cursor parse(@NotNull final MultiMap params) {
+        final String order = params.get(PARAM_ORDER);
+        if (order != null && !ORDER_ASC.equals(order) && !ORDER_DESC.equals(order)) {
+            throw new BadRequestException("The order must be 'asc' or 'desc'!");
+        }
+        final Long limit = Optional.ofNullable(parseNumber(params.get(PARAM_LIMIT)))
+                .orElse((long) DEFAULT_LIMIT);
+        if (limit < MIN_LIMIT) {
+            throw new BadRequestException("The limit must be positive!");
+        }
+        final Long after = parseNumber(params.get(PARAM_AFTER));
+        return new Cursor(after, (int) Math.min(MAX_LIMIT, limit), ORDER_DESC.equals(order));
+    }
+
+    @SuppressWarnings("PMD.DataflowAnomalyAnalysis")
+    String next(@NotNull final String path, @NotNull final Long lastId) {
+        String order = ORDER_ASC;
+        if (descending) {
+            order = ORDER_DESC;
+        }
+        return String.format("<%s?%s=%d&%s=%d&%s=%s>; rel=\"next\"",
+                path, PARAM_AFTER, lastId, PARAM_LIMIT, limit, PARAM_ORDER, order);
+    }
+
+    private static Long parseNumber(final String value) {
+        try {
+            return Optional.ofNullable(value).map(Long::valueOf).orElse(null);
+        } catch (final NumberFormatException e) {
+            throw new BadRequestException(String.format("'%s' is not a number!", value), e);
+        }
+    }
+}
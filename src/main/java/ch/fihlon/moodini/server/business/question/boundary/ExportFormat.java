@@ -0,0 +1,134 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.boundary;
+
+import ch.fihlon.moodini.server.business.question.entity.Answer;
+import ch.fihlon.moodini.server.business.question.entity.Question;
+import ch.fihlon.moodini.server.business.question.entity.Tally;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+
+import javax.validation.constraints.NotNull;
+import java.util.Locale;
+
+/**
+ * This enum represents the formats of the export. Every {@link Question} is
+ * written as one line with its {@link Tally}.
+ */
+enum ExportFormat {
+
+    /**
+     * Newline delimited JSON, one object per {@link Question}.
+     */
+    NDJSON("application/x-ndjson") {
+        @Override
+        void writeHeader(@NotNull final Buffer buffer) {
+            // every line describes itself
+        }
+
+        @Override
+        void write(@NotNull final Buffer buffer, @NotNull final Question question, @NotNull final Tally tally) {
+            final JsonObject votes = new JsonObject();
+            tally.getVotes().forEach((answer, count) -> votes.put(answer.getAnswer(), count));
+            final JsonObject line = new JsonObject()
+                    .put(QUESTION_ID, question.getQuestionId())
+                    .put(VERSION, question.getVersion())
+                    .put(TEXT, question.getText())
+                    .put("votes", votes);
+            if (tally.getVoters() != null) {
+                line.put(VOTERS, tally.getVoters());
+            }
+            buffer.appendString(line.encode()).appendByte(NEW_LINE);
+        }
+    },
+
+    /**
+     * Comma separated values with a header line and one column per {@link Answer}.
+     * The text is always quoted, so it may contain commas, quotes and line breaks.
+     */
+    CSV("text/csv; charset=utf-8") {
+        @Override
+        void writeHeader(@NotNull final Buffer buffer) {
+            buffer.appendString(QUESTION_ID).appendByte(COMMA).appendString(VERSION).appendByte(COMMA)
+                    .appendString(TEXT);
+            for (final Answer answer : ANSWERS) {
+                buffer.appendByte(COMMA).appendString(answer.getAnswer());
+            }
+            buffer.appendByte(COMMA).appendString(VOTERS).appendString(CRLF);
+        }
+
+        @Override
+        void write(@NotNull final Buffer buffer, @NotNull final Question question, @NotNull final Tally tally) {
+            buffer.appendString(String.valueOf(question.getQuestionId())).appendByte(COMMA)
+                    .appendString(String.valueOf(question.getVersion())).appendByte(COMMA)
+                    .appendByte(QUOTE);
+            if (question.getText() != null) {
+                buffer.appendString(question.getText().replace("\"", "\"\""));
+            }
+            buffer.appendByte(QUOTE);
+            for (final Answer answer : ANSWERS) {
+                buffer.appendByte(COMMA).appendString(String.valueOf(tally.getVotes().get(answer)));
+            }
+            buffer.appendByte(COMMA);
+            if (tally.getVoters() != null) {
+                buffer.appendString(String.valueOf(tally.getVoters()));
+            }
+            buffer.appendString(CRLF);
+        }
+    };
+
+    private static final String QUESTION_ID = "questionId";
+    private static final String VERSION = "version";
+    private static final String TEXT = "text";
+    private static final String VOTERS = "voters";
+    private static final String CRLF = "\r\n";
+    private static final byte NEW_LINE = '\n';
+    private static final byte COMMA = ',';
+    private static final byte QUOTE = '"';
+    private static final Answer[] ANSWERS = Answer.values();
+
+    private final String contentType;
+
+    ExportFormat(@NotNull final String contentType) {
+        this.contentType = contentType;
+    }
+
+    /**
+     * Get the format with the specified name, ignoring the case.
+     *
+     * @param name the name of the format
+     * @return the format
+     * @throws IllegalArgumentException if there is no format with this name
+     */
+    static ExportFormat parse(@NotNull final String name) {
+        return valueOf(name.toUpperCase(Locale.ROOT));
+    }
+
+    String getContentType() {
+        return contentType;
+    }
+
+    String getExtension() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    abstract void writeHeader(@NotNull Buffer buffer);
+
+    abstract void write(@NotNull Buffer buffer, @NotNull Question question, @NotNull Tally tally);
+
+}
@@ -0,0 +1,135 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.boundary;
+
+import ch.fihlon.moodini.server.business.question.control.QuestionService;
+import ch.fihlon.moodini.server.business.question.entity.Question;
+import ch.fihlon.moodini.server.business.question.entity.Tally;
+import ch.fihlon.moodini.server.exception.BadRequestException;
+import io.vertx.core.Context;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.ext.web.RoutingContext;
+
+import javax.validation.constraints.NotNull;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * This class handles the HTTP requests to export all {@link Question}s with
+ * their {@link Tally}s ({@code format=ndjson|csv}). The export is streamed
+ * in chunks of {@code export.chunk.questions} questions, read with a cursor
+ * like the pages of the list. One chunk is written per turn of the event
+ * loop, and writing pauses while the write queue of the response is full,
+ * so the memory needed does not grow with the number of questions and other
+ * requests are served in between. Questions created or deleted while the
+ * export is running may or may not be included.
+ */
+class ExportHandler {
+
+    private static final String PARAM_FORMAT = "format";
+    private static final String CONTENT_TYPE = "Content-Type";
+    private static final String DISPOSITION = "Content-Disposition";
+    private static final int LINE_BYTES = 128;
+
+    private final QuestionService questionService;
+    private final int chunkSize;
+
+    ExportHandler(@NotNull final QuestionService questionService, final int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("The export.chunk.questions must be at least 1: " + chunkSize);
+        }
+        this.questionService = questionService;
+        this.chunkSize = chunkSize;
+    }
+
+    void export(@NotNull final RoutingContext routingContext) {
+        final ExportFormat format = parseFormat(routingContext.request().getParam(PARAM_FORMAT));
+        final HttpServerResponse response = routingContext.response()
+                .setChunked(true)
+                .putHeader(CONTENT_TYPE, format.getContentType())
+                .putHeader(DISPOSITION, "attachment; filename=\"moodini." + format.getExtension() + '"');
+        new Export(routingContext.vertx().getOrCreateContext(), response, format).start();
+    }
+
+    private static ExportFormat parseFormat(final String format) {
+        try {
+            return Optional.ofNullable(format).map(ExportFormat::parse).orElse(ExportFormat.NDJSON);
+        } catch (final IllegalArgumentException e) {
+            throw new BadRequestException("Unknown export format: " + format, e);
+        }
+    }
+
+    /**
+     * The state of one running export.
+     */
+    private final class Export {
+
+        private final Context context;
+        private final HttpServerResponse response;
+        private final ExportFormat format;
+        private boolean closed;
+
+        Export(@NotNull final Context context,
+               @NotNull final HttpServerResponse response,
+               @NotNull final ExportFormat format) {
+            this.context = context;
+            this.response = response;
+            this.format = format;
+        }
+
+        void start() {
+            response.closeHandler(ignored -> closed = true);
+            next(null);
+        }
+
+        private void next(final Long after) {
+            if (!closed) {
+                final List<Question> page = questionService.readPage(after, chunkSize, false);
+                final Buffer chunk = Buffer.buffer(page.size() * LINE_BYTES);
+                if (after == null) {
+                    format.writeHeader(chunk);
+                }
+                page.forEach(question -> format.write(chunk, question, tally(question)));
+                if (page.size() < chunkSize) {
+                    response.end(chunk);
+                } else {
+                    response.write(chunk);
+                    continueAfter(page.get(page.size() - 1).getQuestionId());
+                }
+            }
+        }
+
+        private void continueAfter(@NotNull final Long last) {
+            if (response.writeQueueFull()) {
+                response.drainHandler(drained -> {
+                    response.drainHandler(null);
+                    next(last);
+                });
+            } else {
+                context.runOnContext(nextTurn -> next(last));
+            }
+        }
+
+        private Tally tally(@NotNull final Question question) {
+            return questionService.readResults(question.getQuestionId())
+                    .orElseGet(() -> Tally.create(question.getQuestionId(), Collections.emptyMap()));
+        }
+    }
+}
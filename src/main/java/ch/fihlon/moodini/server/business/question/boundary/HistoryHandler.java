@@ -0,0 +1,97 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.boundary;
+
+import ch.fihlon.moodini.server.business.question.control.QuestionService;
+import ch.fihlon.moodini.server.business.question.entity.History;
+import ch.fihlon.moodini.server.business.question.entity.Period;
+import ch.fihlon.moodini.server.business.question.entity.Resolution;
+import ch.fihlon.moodini.server.exception.BadRequestException;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.ext.web.RoutingContext;
+
+import javax.validation.constraints.NotNull;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class handles the HTTP requests to read the {@link History} of the
+ * votes for a question ({@code from=<time>&to=<time>&resolution=minute}).
+ * The times are milliseconds since the epoch or ISO-8601 instants, the
+ * period defaults to the last hour. Without a resolution the finest one
+ * which still keeps the start of the period is used, so long periods are
+ * read from the coarse buckets.
+ */
+class HistoryHandler {
+
+    private static final long DEFAULT_PERIOD = TimeUnit.HOURS.toMillis(1);
+
+    private static final String PARAM_NAME_ID = "id";
+    private static final String PARAM_FROM = "from";
+    private static final String PARAM_TO = "to";
+    private static final String PARAM_RESOLUTION = "resolution";
+
+    private final QuestionService questionService;
+
+    HistoryHandler(@NotNull final QuestionService questionService) {
+        this.questionService = questionService;
+    }
+
+    void history(@NotNull final RoutingContext routingContext) {
+        final HttpServerRequest request = routingContext.request();
+        final long now = System.currentTimeMillis();
+        final long until = parseTime(request.getParam(PARAM_TO)).orElse(now);
+        final long from = parseTime(request.getParam(PARAM_FROM)).orElse(until - DEFAULT_PERIOD);
+        if (from >= until) {
+            throw new BadRequestException("The period must start before it ends!");
+        }
+        final Resolution resolution = parseResolution(request.getParam(PARAM_RESOLUTION))
+                .orElseGet(() -> Resolution.covering(from, now));
+        final Long questionId = Long.valueOf(request.getParam(PARAM_NAME_ID));
+        final History history = questionService.readHistory(questionId, resolution, new Period(from, until));
+        final BodyFormat format = BodyFormat.accepted(request);
+        format.describe(routingContext.response()).end(format.encode(history));
+    }
+
+    private static Optional<Long> parseTime(final String value) {
+        try {
+            return Optional.ofNullable(value).map(HistoryHandler::toMillis);
+        } catch (final DateTimeParseException e) {
+            throw new BadRequestException(String.format("'%s' is not a time!", value), e);
+        }
+    }
+
+    private static long toMillis(@NotNull final String value) {
+        return Optional.of(value)
+                .filter(text -> text.chars().allMatch(Character::isDigit))
+                .map(Long::valueOf)
+                .orElseGet(() -> Instant.parse(value).toEpochMilli());
+    }
+
+    private static Optional<Resolution> parseResolution(final String value) {
+        try {
+            return Optional.ofNullable(value).map(text -> Resolution.valueOf(text.toUpperCase(Locale.ROOT)));
+        } catch (final IllegalArgumentException e) {
+            throw new BadRequestException("The resolution must be 'minute', 'hour' or 'day'!", e);
+        }
+    }
+
+}
@@ -0,0 +1,69 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.boundary;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerOptions;
+import lombok.experimental.UtilityClass;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * This utility class creates the HTTP servers. Vert.x 3.3 has no option to
+ * disable HTTP/2 over cleartext (h2c), every server reads the system property
+ * {@code vertx.disableH2c} when it is created. The property is only set while
+ * a server is created and restored afterwards, so other servers of the JVM
+ * are not affected.
+ */
+@UtilityClass
+@SuppressWarnings("PMD.DataflowAnomalyAnalysis")
+class HttpServers {
+
+    private static final String DISABLE_H2C = "vertx.disableH2c";
+    private static final Object LOCK = new Object();
+
+    /**
+     * Create an HTTP server.
+     *
+     * @param vertx the Vert.x instance
+     * @param options the options of the server
+     * @param h2c {@code true} to accept HTTP/2 over cleartext
+     * @return the HTTP server, not listening yet
+     */
+    static HttpServer create(@NotNull final Vertx vertx, @NotNull final HttpServerOptions options, final boolean h2c) {
+        synchronized (LOCK) {
+            final String previous = System.getProperty(DISABLE_H2C);
+            System.setProperty(DISABLE_H2C, Boolean.toString(!h2c));
+            try {
+                return vertx.createHttpServer(options);
+            } finally {
+                restore(previous);
+            }
+        }
+    }
+
+    private static void restore(final String previous) {
+        if (previous == null) {
+            System.clearProperty(DISABLE_H2C);
+        } else {
+            System.setProperty(DISABLE_H2C, previous);
+        }
+    }
+
+}
@@ -0,0 +1,224 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.boundary;
+
+import ch.fihlon.moodini.server.Configuration;
+import ch.fihlon.moodini.server.exception.BadRequestException;
+import ch.fihlon.moodini.server.exception.UnprocessableEntityException;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.ext.web.RoutingContext;
+import lombok.Value;
+
+import javax.inject.Singleton;
+import javax.validation.constraints.NotNull;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * This singleton remembers the results of the requests with an
+ * {@code Idempotency-Key} header, shared by all verticle instances. A client
+ * retrying such a request gets the original result and the request is not
+ * applied again. A key is scoped to the path of the request, reusing it for
+ * another body is rejected. Retries of a request in progress wait for its
+ * result, a failed request is forgotten, so it can be retried.
+ * <p>
+ * The keys expire after {@code idempotency.ttl.seconds}. The memory of every
+ * entry is estimated from its key, the body is remembered by its SHA-256
+ * digest only. The oldest entries are evicted when the estimate exceeds
+ * {@code idempotency.max.bytes}. All entries live equally long, so the oldest entry is also the next one to expire.
+ */
+@Singleton
+@SuppressWarnings("PMD.UseConcurrentHashMap")
+class IdempotencyCache {
+
+    static final String HEADER = "Idempotency-Key";
+    static final String REPLAYED = "Idempotent-Replayed";
+
+    private static final long DEF_TTL_SECONDS = 86_400;
+    private static final long DEF_MAX_BYTES = 16_777_216;
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final String DIGEST = "SHA-256";
+    // estimated size of an entry, its map node, the fingerprint, the future and the result without the key
+    private static final int ENTRY_BYTES = 320;
+
+    private final long ttlMillis = TimeUnit.SECONDS.toMillis(
+            Configuration.getLong("idempotency.ttl.seconds", DEF_TTL_SECONDS));
+    private final long maxBytes = Configuration.getLong("idempotency.max.bytes", DEF_MAX_BYTES);
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private long bytes;
+
+    /**
+     * Execute a request once per {@code Idempotency-Key}. Requests without
+     * the header are always executed.
+     *
+     * @param routingContext the context of the request
+     * @param request executes the request
+     * @param <T> the type of the result
+     * @return the result of the request or of the first request with the same key
+     */
+    <T> CompletionStage<T> execute(@NotNull final RoutingContext routingContext,
+                                   @NotNull final Supplier<CompletionStage<T>> request) {
+        final String idempotencyKey = routingContext.request().getHeader(HEADER);
+        CompletionStage<T> result;
+        if (idempotencyKey == null) {
+            result = request.get();
+        } else {
+            result = executeOnce(routingContext, idempotencyKey, request);
+        }
+        return result;
+    }
+
+    @SuppressWarnings({"unchecked", "PMD.CompareObjectsWithEquals"})
+    private <T> CompletionStage<T> executeOnce(@NotNull final RoutingContext routingContext,
+                                               @NotNull final String idempotencyKey,
+                                               @NotNull final Supplier<CompletionStage<T>> request) {
+        if (idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new BadRequestException("The Idempotency-Key must not be longer than " + MAX_KEY_LENGTH);
+        }
+        final String key = routingContext.request().path() + ' ' + idempotencyKey;
+        final Entry created = new Entry(fingerprint(routingContext.getBody()), System.currentTimeMillis(),
+                ENTRY_BYTES + 2L * key.length());
+        final Entry entry = putIfAbsent(key, created);
+        if (!MessageDigest.isEqual(entry.getFingerprint(), created.getFingerprint())) {
+            throw new UnprocessableEntityException("The Idempotency-Key was used for another request");
+        }
+        if (entry == created) {
+            misses.increment();
+            // failures of the supplier complete the stage exceptionally instead of leaving the entry pending
+            CompletableFuture.completedFuture(key)
+                    .thenCompose(ignored -> request.get())
+                    .whenComplete((result, failure) -> {
+                        if (failure == null) {
+                            entry.getResult().complete(result);
+                        } else {
+                            forget(key, entry);
+                            entry.getResult().completeExceptionally(failure);
+                        }
+                    });
+        } else {
+            hits.increment();
+            routingContext.response().putHeader(REPLAYED, "true");
+        }
+        return (CompletionStage<T>) entry.getResult();
+    }
+
+    private static byte[] fingerprint(@NotNull final Buffer body) {
+        try {
+            // the raw bytes, decoding binary bodies (CBOR, Smile) would map different bytes to the same text
+            return MessageDigest.getInstance(DIGEST).digest(body.getBytes());
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Entry putIfAbsent(@NotNull final String key, @NotNull final Entry created) {
+        synchronized (entries) {
+            expire(created.getCreated() - ttlMillis);
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                entry = created;
+                entries.put(key, entry);
+                bytes += entry.getBytes();
+                evict();
+            }
+            return entry;
+        }
+    }
+
+    private void expire(final long createdBefore) {
+        final Iterator<Entry> oldest = entries.values().iterator();
+        while (oldest.hasNext()) {
+            final Entry entry = oldest.next();
+            if (entry.getCreated() > createdBefore) {
+                break;
+            }
+            oldest.remove();
+            bytes -= entry.getBytes();
+            expirations.increment();
+        }
+    }
+
+    private void evict() {
+        final Iterator<Entry> oldest = entries.values().iterator();
+        while (bytes > maxBytes && oldest.hasNext()) {
+            bytes -= oldest.next().getBytes();
+            oldest.remove();
+            evictions.increment();
+        }
+    }
+
+    private void forget(@NotNull final String key, @NotNull final Entry entry) {
+        synchronized (entries) {
+            if (entries.remove(key, entry)) {
+                bytes -= entry.getBytes();
+            }
+        }
+    }
+
+    long getHits() {
+        return hits.sum();
+    }
+
+    long getMisses() {
+        return misses.sum();
+    }
+
+    long getEvictions() {
+        return evictions.sum();
+    }
+
+    long getExpirations() {
+        return expirations.sum();
+    }
+
+    long getBytes() {
+        synchronized (entries) {
+            return bytes;
+        }
+    }
+
+    int getEntries() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * A request remembered with the SHA-256 digest of its body and the estimated memory it needs.
+     */
+    @Value
+    @SuppressWarnings("PMD.UnusedPrivateField")
+    private static class Entry {
+        private final byte[] fingerprint;
+        private final long created;
+        private final long bytes;
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.boundary;
+
+import ch.fihlon.moodini.server.business.question.control.QuestionService;
+import ch.fihlon.moodini.server.business.question.entity.Question;
+import io.vertx.core.Context;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.parsetools.RecordParser;
+import io.vertx.ext.web.RoutingContext;
+import org.hibernate.validator.messageinterpolation.ParameterMessageInterpolator;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import javax.validation.constraints.NotNull;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static java.util.stream.Collectors.joining;
+
+/**
+ * This class handles the HTTP requests to import {@link Question}s from a
+ * body with one {@link Question} in JSON per line (NDJSON). The body is parsed
+ * line by line while it is uploaded, it is never buffered as a whole. Every
+ * {@link Question} is validated, the valid ones are created in chunks of
+ * {@code import.chunk.questions}, each chunk as one write, and reading the
+ * body pauses while a chunk is persisted. Ids and versions in the body are
+ * ignored. The response streams a line in JSON for every line rejected and
+ * for every chunk created, and ends with a summary when the import is done.
+ * Reading the body also pauses while the response can't be sent fast enough.
+ * A line longer than {@code import.line.bytes} ends the import, with the
+ * status 413 if the response has not started yet.
+ */
+@SuppressWarnings("PMD.TooManyMethods")
+class ImportHandler {
+
+    private static final String LINE = "line";
+    private static final String ERROR = "error";
+    private static final String NEWLINE = "\n";
+    private static final String NDJSON = "application/x-ndjson";
+    private static final int SC_TOO_LARGE = 413;
+    private static final byte LINE_BREAK = '\n';
+    private static final Validator VALIDATOR = Validation.byDefaultProvider().configure()
+            .messageInterpolator(new ParameterMessageInterpolator())
+            .buildValidatorFactory()
+            .getValidator();
+
+    private final QuestionService questionService;
+    private final int chunkSize;
+    private final int maxLineBytes;
+
+    ImportHandler(@NotNull final QuestionService questionService, final int chunkSize, final int maxLineBytes) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("The import.chunk.questions must be at least 1: " + chunkSize);
+        }
+        this.questionService = questionService;
+        this.chunkSize = chunkSize;
+        this.maxLineBytes = maxLineBytes;
+    }
+
+    void importQuestions(@NotNull final RoutingContext routingContext) {
+        final HttpServerResponse response = routingContext.response()
+                .setChunked(true)
+                .putHeader("Content-Type", NDJSON);
+        new Import(routingContext.vertx().getOrCreateContext(), routingContext.request(), response).start();
+    }
+
+    /**
+     * The state of one running import.
+     */
+    @SuppressWarnings("PMD.TooManyMethods")
+    private final class Import {
+
+        private final Context context;
+        private final HttpServerRequest request;
+        private final HttpServerResponse response;
+        private List<Question> chunk = new ArrayList<>();
+        private long line;
+        private long imported;
+        private long rejected;
+        private int lineBytes;
+        private boolean persisting;
+        private boolean draining;
+        private boolean ended;
+        private boolean refused;
+        private boolean closed;
+
+        Import(@NotNull final Context context,
+               @NotNull final HttpServerRequest request,
+               @NotNull final HttpServerResponse response) {
+            this.context = context;
+            this.request = request;
+            this.response = response;
+        }
+
+        void start() {
+            final RecordParser parser = RecordParser.newDelimited(NEWLINE, this::parse);
+            response.closeHandler(ignored -> closed = true);
+            request.handler(buffer -> receive(parser, buffer));
+            request.endHandler(ignored -> {
+                if (!refused) {
+                    // The last line does not need to end with a line break.
+                    parser.handle(Buffer.buffer(NEWLINE));
+                    ended = true;
+                    if (!persisting) {
+                        next();
+                    }
+                }
+            });
+        }
+
+        private void receive(@NotNull final RecordParser parser, @NotNull final Buffer buffer) {
+            for (int i = 0; i < buffer.length() && lineBytes <= maxLineBytes; i++) {
+                if (buffer.getByte(i) == LINE_BREAK) {
+                    lineBytes = 0;
+                } else {
+                    lineBytes++;
+                }
+            }
+            if (lineBytes > maxLineBytes) {
+                refuse();
+            } else {
+                parser.handle(buffer);
+            }
+        }
+
+        private void refuse() {
+            refused = true;
+            request.handler(null);
+            if (!response.headWritten()) {
+                response.setStatusCode(SC_TOO_LARGE);
+            }
+            if (!closed) {
+                response.end(progress().put(ERROR, "The line is longer than " + maxLineBytes + " bytes")
+                        .encode() + '\n');
+            }
+        }
+
+        private void parse(@NotNull final Buffer record) {
+            line++;
+            final String json = record.toString(StandardCharsets.UTF_8).trim();
+            if (!json.isEmpty()) {
+                try {
+                    validate(Json.decodeValue(json, Question.class));
+                } catch (final DecodeException e) {
+                    reject(e.getMessage());
+                }
+            }
+            if (chunk.size() >= chunkSize && !persisting) {
+                persist();
+            }
+        }
+
+        private void validate(@NotNull final Question question) {
+            final Set<ConstraintViolation<Question>> violations = VALIDATOR.validate(question);
+            if (violations.isEmpty()) {
+                chunk.add(question);
+            } else {
+                reject(violations.stream()
+                        .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+                        .sorted()
+                        .collect(joining(", ")));
+            }
+        }
+
+        private void reject(@NotNull final String error) {
+            rejected++;
+            write(new JsonObject().put(LINE, line).put(ERROR, error));
+        }
+
+        private void persist() {
+            persisting = true;
+            request.pause();
+            final List<Question> batch = chunk;
+            chunk = new ArrayList<>();
+            questionService.createAll(batch).whenComplete((created, failure) ->
+                context.runOnContext(done -> persisted(batch.size(), failure)));
+        }
+
+        private void persisted(final int size, final Throwable failure) {
+            persisting = false;
+            if (failure == null) {
+                imported += size;
+                write(progress());
+            } else {
+                rejected += size;
+                write(progress().put(ERROR, Optional.ofNullable(failure.getCause()).orElse(failure).getMessage()));
+            }
+            if (ended || chunk.size() >= chunkSize) {
+                next();
+            } else {
+                resume();
+            }
+        }
+
+        private void resume() {
+            if (!persisting && !draining && !refused) {
+                request.resume();
+            }
+        }
+
+        private void next() {
+            if (chunk.isEmpty()) {
+                if (!closed) {
+                    response.end(progress().put("done", true).encode() + '\n');
+                }
+            } else {
+                persist();
+            }
+        }
+
+        private JsonObject progress() {
+            return new JsonObject().put(LINE, line).put("imported", imported).put("rejected", rejected);
+        }
+
+        private void write(@NotNull final JsonObject json) {
+            if (!closed && !refused) {
+                response.write(json.encode() + '\n');
+                if (response.writeQueueFull() && !draining) {
+                    draining = true;
+                    request.pause();
+                    response.drainHandler(drained -> {
+                        response.drainHandler(null);
+                        draining = false;
+                        resume();
+                    });
+                }
+            }
+        }
+    }
+}
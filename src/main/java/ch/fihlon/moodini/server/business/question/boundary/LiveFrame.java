@@ -0,0 +1,59 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.boundary;
+
+import io.vertx.core.buffer.Buffer;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * This class is a serialized update of the results which is sent to all
+ * subscribers of a question. It is serialized once per tick and shared by
+ * all subscribers, regardless of the protocol they use.
+ */
+final class LiveFrame {
+
+    private final String text;
+    private Buffer event;
+
+    LiveFrame(@NotNull final String text) {
+        this.text = text;
+    }
+
+    /**
+     * Get the update as text, as sent in a WebSocket text frame.
+     *
+     * @return the serialized update
+     */
+    String getText() {
+        return text;
+    }
+
+    /**
+     * Get the update as a Server-Sent Event. The buffer is created on first use and shared afterwards.
+     *
+     * @return the serialized update as a Server-Sent Event
+     */
+    Buffer getEvent() {
+        if (event == null) {
+            event = Buffer.buffer("data: " + text + "\n\n");
+        }
+        return event;
+    }
+
+}
@@ -0,0 +1,199 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.boundary;
+
+import ch.fihlon.moodini.server.business.question.control.QuestionService;
+import ch.fihlon.moodini.server.business.question.entity.Answer;
+import ch.fihlon.moodini.server.business.question.entity.Tally;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.http.ServerWebSocket;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+
+import javax.validation.constraints.NotNull;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * This class pushes the results of questions to subscribed clients, either
+ * as Server-Sent Events or over a WebSocket. The changes are coalesced and
+ * published once per tick: every update is serialized only once and the
+ * same frame is sent to all subscribers of a question. Subscribers which
+ * can not keep up skip updates and get the complete results when they are
+ * ready again. All methods are called on the event loop of the verticle.
+ */
+@SuppressWarnings("PMD.UseConcurrentHashMap")
+class LiveResultsHandler {
+
+    private static final int SC_NOT_FOUND = 404;
+    private static final long NO_TIMER = -1;
+    private static final String PARAM_NAME_ID = "id";
+    private static final Pattern WEBSOCKET_PATH = Pattern.compile("^/api/questions/(\\d+)/live$");
+
+    private final Vertx vertx;
+    private final QuestionService questionService;
+    private final long tickMillis;
+    private final Map<Long, Channel> channels = new HashMap<>();
+    private long timerId = NO_TIMER;
+
+    LiveResultsHandler(@NotNull final Vertx vertx,
+                       @NotNull final QuestionService questionService,
+                       final long tickMillis) {
+        this.vertx = vertx;
+        this.questionService = questionService;
+        this.tickMillis = tickMillis;
+    }
+
+    void events(@NotNull final RoutingContext routingContext) {
+        final Long questionId = Long.valueOf(routingContext.request().getParam(PARAM_NAME_ID));
+        final HttpServerResponse response = routingContext.response();
+        if (questionService.readResults(questionId).isPresent()) {
+            response.setChunked(true)
+                    .putHeader("Content-Type", "text/event-stream")
+                    .putHeader("Cache-Control", "no-cache");
+            final LiveSubscriber subscriber = LiveSubscriber.forEvents(response);
+            response.closeHandler(closed -> unsubscribe(questionId, subscriber));
+            subscribe(questionId, subscriber);
+        } else {
+            response.setStatusCode(SC_NOT_FOUND).end();
+        }
+    }
+
+    void webSocket(@NotNull final ServerWebSocket webSocket) {
+        final Matcher matcher = WEBSOCKET_PATH.matcher(webSocket.path());
+        if (matcher.matches() && questionService.readResults(Long.valueOf(matcher.group(1))).isPresent()) {
+            final Long questionId = Long.valueOf(matcher.group(1));
+            final LiveSubscriber subscriber = LiveSubscriber.forWebSocket(webSocket);
+            webSocket.closeHandler(closed -> unsubscribe(questionId, subscriber));
+            subscribe(questionId, subscriber);
+        } else {
+            webSocket.reject();
+        }
+    }
+
+    private void subscribe(@NotNull final Long questionId,
+                           @NotNull final LiveSubscriber subscriber) {
+        final Channel channel = channels.computeIfAbsent(questionId, this::createChannel);
+        channel.subscribers.add(subscriber);
+        subscriber.send(channel.getFullFrame());
+        if (timerId == NO_TIMER) {
+            timerId = vertx.setPeriodic(tickMillis, timer -> publish());
+        }
+    }
+
+    private Channel createChannel(@NotNull final Long questionId) {
+        return new Channel(questionService.readResults(questionId).orElseThrow(IllegalStateException::new));
+    }
+
+    private void unsubscribe(@NotNull final Long questionId,
+                             @NotNull final LiveSubscriber subscriber) {
+        final Channel channel = channels.get(questionId);
+        if (channel != null) {
+            channel.subscribers.remove(subscriber);
+            channel.lagging.remove(subscriber);
+            if (channel.subscribers.isEmpty()) {
+                channels.remove(questionId);
+            }
+        }
+        if (channels.isEmpty() && timerId != NO_TIMER) {
+            vertx.cancelTimer(timerId);
+            timerId = NO_TIMER;
+        }
+    }
+
+    private void publish() {
+        channels.entrySet().removeIf(entry -> {
+            final Optional<Tally> tally = questionService.readResults(entry.getKey());
+            if (tally.isPresent()) {
+                entry.getValue().publish(tally.get());
+            } else {
+                entry.getValue().subscribers.forEach(LiveSubscriber::close);
+            }
+            return !tally.isPresent();
+        });
+    }
+
+    private static LiveFrame createFrame(@NotNull final Tally tally,
+                                         @NotNull final Map<Answer, Long> previousVotes) {
+        final JsonObject votes = new JsonObject();
+        tally.getVotes().forEach((answer, count) -> {
+            if (!count.equals(previousVotes.get(answer))) {
+                votes.put(answer.getAnswer(), count);
+            }
+        });
+        return new LiveFrame(new JsonObject()
+                .put("questionId", tally.getQuestionId())
+                .put("version", tally.getVersion())
+                .put("votes", votes)
+                .encode());
+    }
+
+    /**
+     * The subscribers of the results of one question together with the
+     * last published results.
+     */
+    private static final class Channel {
+
+        private final Set<LiveSubscriber> subscribers = new HashSet<>();
+        private final Set<LiveSubscriber> lagging = new HashSet<>();
+        private Tally published;
+        private Tally framed;
+        private LiveFrame fullFrame;
+
+        Channel(@NotNull final Tally tally) {
+            this.published = tally;
+        }
+
+        private LiveFrame getFullFrame() {
+            if (!published.equals(framed)) {
+                fullFrame = createFrame(published, Collections.emptyMap());
+                framed = published;
+            }
+            return fullFrame;
+        }
+
+        private void publish(@NotNull final Tally tally) {
+            if (tally.getVersion().equals(published.getVersion())) {
+                new HashSet<>(lagging).forEach(subscriber -> send(subscriber, getFullFrame()));
+            } else {
+                final LiveFrame delta = createFrame(tally, published.getVotes());
+                published = tally;
+                subscribers.forEach(subscriber -> send(subscriber, delta));
+            }
+        }
+
+        private void send(@NotNull final LiveSubscriber subscriber,
+                          @NotNull final LiveFrame delta) {
+            if (subscriber.isBusy()) {
+                lagging.add(subscriber);
+            } else if (lagging.remove(subscriber)) {
+                subscriber.send(getFullFrame());
+            } else {
+                subscriber.send(delta);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,92 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.boundary;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.http.ServerWebSocket;
+import io.vertx.core.streams.WriteStream;
+
+import javax.validation.constraints.NotNull;
+import java.util.function.Consumer;
+
+/**
+ * This class represents a client subscribed to live updates of the results
+ * of a question, independent of the protocol used by the client.
+ */
+final class LiveSubscriber {
+
+    private final Consumer<LiveFrame> sender;
+    private final WriteStream<Buffer> stream;
+    private final Runnable closer;
+
+    private LiveSubscriber(@NotNull final Consumer<LiveFrame> sender,
+                           @NotNull final WriteStream<Buffer> stream,
+                           @NotNull final Runnable closer) {
+        this.sender = sender;
+        this.stream = stream;
+        this.closer = closer;
+    }
+
+    /**
+     * Create a subscriber receiving the updates as Server-Sent Events.
+     *
+     * @param response the HTTP response to stream the events to
+     * @return a new subscriber
+     */
+    static LiveSubscriber forEvents(@NotNull final HttpServerResponse response) {
+        return new LiveSubscriber(frame -> response.write(frame.getEvent()), response, response::end);
+    }
+
+    /**
+     * Create a subscriber receiving the updates as WebSocket text frames.
+     *
+     * @param webSocket the WebSocket to send the frames to
+     * @return a new subscriber
+     */
+    static LiveSubscriber forWebSocket(@NotNull final ServerWebSocket webSocket) {
+        return new LiveSubscriber(frame -> webSocket.writeFinalTextFrame(frame.getText()), webSocket,
+                webSocket::close);
+    }
+
+    /**
+     * Send an update to the client.
+     *
+     * @param frame the serialized update
+     */
+    void send(@NotNull final LiveFrame frame) {
+        sender.accept(frame);
+    }
+
+    /**
+     * Check whether the client can not keep up and updates should be skipped.
+     *
+     * @return {@code true} if the write queue of the client is full
+     */
+    boolean isBusy() {
+        return stream.writeQueueFull();
+    }
+
+    /**
+     * Close the connection to the client.
+     */
+    void close() {
+        closer.run();
+    }
+
+}
@@ -0,0 +1,164 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.boundary;
+
+import ch.fihlon.moodini.server.SnapshotStatus;
+import ch.fihlon.moodini.server.business.question.control.QuestionService;
+import ch.fihlon.moodini.server.business.question.entity.Answer;
+import ch.fihlon.moodini.server.business.question.entity.Tally;
+import io.vertx.ext.web.RoutingContext;
+import org.HdrHistogram.Histogram;
+
+import javax.validation.constraints.NotNull;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class handles the HTTP requests for the metrics in the Prometheus
+ * text format: the latencies and the status codes of the routes measured by
+ * the {@link RequestMetrics} and gauges of the {@link QuestionService}.
+ * The latencies are exported as summaries with percentiles up to p99.9
+ * since the start of the server, a route without requests has no percentiles.
+ * The gauges of the questions merge the tallies and the voter sketches of all
+ * questions, so they are merged at most once per second and shared by the
+ * scrapes in between.
+ */
+@SuppressWarnings("PMD.DataflowAnomalyAnalysis")
+class MetricsHandler {
+
+    private static final String CONTENT_TYPE = "Content-Type";
+    private static final String TEXT_PLAIN = "text/plain; version=0.0.4; charset=utf-8";
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final double MICROS_PER_SECOND = 1_000_000.0;
+    private static final double MILLIS_PER_SECOND = 1_000.0;
+    private static final String TYPE_LINE = "# TYPE ";
+    private static final String COUNTER = "counter";
+    private static final String ROUTE = "{route=\"";
+    private static final String END_LABELS = "\"} ";
+    private static final String DURATION = "moodini_http_request_duration_seconds";
+    private static final String REQUESTS = "moodini_http_requests_total";
+    private static final String VOTES = "moodini_votes_total";
+    private static final long MERGE_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
+    private final QuestionService questionService;
+    private final RequestMetrics requestMetrics;
+    private final IdempotencyCache idempotencyCache;
+    private String merged;
+    private long mergedAt;
+
+    MetricsHandler(@NotNull final QuestionService questionService,
+                   @NotNull final RequestMetrics requestMetrics,
+                   @NotNull final IdempotencyCache idempotencyCache) {
+        this.questionService = questionService;
+        this.requestMetrics = requestMetrics;
+        this.idempotencyCache = idempotencyCache;
+    }
+
+    void metrics(@NotNull final RoutingContext routingContext) {
+        final StringBuilder text = new StringBuilder(1024);
+        writeRoutes(text, requestMetrics.getRoutes());
+        text.append(mergeQuestions());
+        final SnapshotStatus status = questionService.getSnapshotStatus();
+        writeGauge(text, "moodini_journal_entries", status.getJournalEntries());
+        writeGauge(text, "moodini_journal_bytes", status.getJournalBytes());
+        writeCounter(text, "moodini_snapshots_total", status.getSnapshots());
+        writeGauge(text, "moodini_snapshot_duration_seconds", status.getLastDuration() / MILLIS_PER_SECOND);
+        writeGauge(text, "moodini_writes_pending", questionService.getPendingWrites());
+        writeCounter(text, "moodini_writes_rejected_total", questionService.getRejectedWrites());
+        writeIdempotency(text, idempotencyCache);
+        routingContext.response()
+                .putHeader(CONTENT_TYPE, TEXT_PLAIN)
+                .end(text.toString());
+    }
+
+    private static void writeRoutes(@NotNull final StringBuilder text, @NotNull final List<RouteMetrics> routes) {
+        type(text, DURATION, "summary");
+        for (final RouteMetrics route : routes) {
+            final Histogram latencies = route.getLatencies();
+            for (int i = 0; i < QUANTILES.length && latencies.getTotalCount() > 0; i++) {
+                final double seconds = latencies.getValueAtPercentile(QUANTILES[i] * 100) / MICROS_PER_SECOND;
+                text.append(DURATION).append(ROUTE).append(route.getRoute())
+                        .append("\",quantile=\"").append(QUANTILES[i]).append(END_LABELS).append(seconds).append('\n');
+            }
+            text.append(DURATION).append("_sum").append(ROUTE).append(route.getRoute()).append(END_LABELS)
+                    .append(route.getTotalMicros() / MICROS_PER_SECOND).append('\n');
+            text.append(DURATION).append("_count").append(ROUTE).append(route.getRoute()).append(END_LABELS)
+                    .append(latencies.getTotalCount()).append('\n');
+        }
+        type(text, REQUESTS, COUNTER);
+        for (final RouteMetrics route : routes) {
+            for (final Map.Entry<Integer, Long> entry : route.getStatusCodes().entrySet()) {
+                text.append(REQUESTS).append(ROUTE).append(route.getRoute())
+                        .append("\",status=\"").append(entry.getKey()).append(END_LABELS).append(entry.getValue())
+                        .append('\n');
+            }
+        }
+    }
+
+    private String mergeQuestions() {
+        final long now = System.nanoTime();
+        if (merged == null || now - mergedAt >= MERGE_INTERVAL) {
+            final StringBuilder text = new StringBuilder(256);
+            writeQuestions(text, questionService.readAllResults());
+            writeGauge(text, "moodini_voters", questionService.countVoters());
+            merged = text.toString();
+            mergedAt = now;
+        }
+        return merged;
+    }
+
+    private static void writeQuestions(@NotNull final StringBuilder text, @NotNull final List<Tally> tallies) {
+        writeGauge(text, "moodini_questions", tallies.size());
+        final EnumMap<Answer, Long> votes = new EnumMap<>(Answer.class);
+        for (final Tally tally : tallies) {
+            tally.getVotes().forEach((answer, count) -> votes.merge(answer, count, Long::sum));
+        }
+        type(text, VOTES, COUNTER);
+        for (final Answer answer : Answer.values()) {
+            text.append(VOTES).append("{answer=\"").append(answer.getAnswer()).append(END_LABELS)
+                    .append(votes.getOrDefault(answer, 0L)).append('\n');
+        }
+    }
+
+    private static void writeIdempotency(@NotNull final StringBuilder text, @NotNull final IdempotencyCache cache) {
+        writeCounter(text, "moodini_idempotency_hits_total", cache.getHits());
+        writeCounter(text, "moodini_idempotency_misses_total", cache.getMisses());
+        writeCounter(text, "moodini_idempotency_evictions_total", cache.getEvictions());
+        writeCounter(text, "moodini_idempotency_expirations_total", cache.getExpirations());
+        writeGauge(text, "moodini_idempotency_entries", cache.getEntries());
+        writeGauge(text, "moodini_idempotency_bytes", cache.getBytes());
+    }
+
+    private static void writeGauge(@NotNull final StringBuilder text, @NotNull final String name,
+                                   @NotNull final Number value) {
+        type(text, name, "gauge").append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void writeCounter(@NotNull final StringBuilder text, @NotNull final String name,
+                                     @NotNull final Number value) {
+        type(text, name, COUNTER).append(name).append(' ').append(value).append('\n');
+    }
+
+    private static StringBuilder type(@NotNull final StringBuilder text, @NotNull final String name,
+                                      @NotNull final String type) {
+        return text.append(TYPE_LINE).append(name).append(' ').append(type).append('\n');
+    }
+
+}
@@ -0,0 +1,181 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.boundary;
+
+import ch.fihlon.moodini.server.business.question.control.QuestionService;
+import ch.fihlon.moodini.server.business.question.entity.Answer;
+import ch.fihlon.moodini.server.business.question.entity.Question;
+import ch.fihlon.moodini.server.business.question.entity.Tally;
+import ch.fihlon.moodini.server.exception.AbstractStatusCodeException;
+import ch.fihlon.moodini.server.exception.NotFoundException;
+import io.vertx.core.Context;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.eventbus.Message;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.validation.constraints.NotNull;
+import java.util.Collections;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * This class offers the {@link QuestionService} on the event bus, so other
+ * verticles deployed with Moodini use it without HTTP and JSON. The id of a
+ * {@link Question} is sent in the {@value #QUESTION_ID} header, a list is paged with
+ * the {@code after}, {@code limit} and {@code order} headers like the HTTP
+ * resource. The {@link Question}s, {@link Tally}s and their lists are
+ * immutable and passed by reference within the JVM, see {@link ReferenceCodec}.
+ * A failed request is answered with the HTTP status code of its failure, a
+ * body of the wrong type with 400 and an unexpected failure with 500.
+ * <ul>
+ * <li>{@value #CREATE}: a {@link Question}, replied with the created {@link Question}</li>
+ * <li>{@value #READ}: replied with the {@link Question}</li>
+ * <li>{@value #LIST}: replied with a list of {@link Question}s</li>
+ * <li>{@value #LATEST}: replied with the latest {@link Question}</li>
+ * <li>{@value #VOTE}: an {@link Answer} and the optional {@value #VOTER} token,
+ *     replied with the number of votes for the {@link Answer}</li>
+ * <li>{@value #RESULTS}: replied with the {@link Tally} or, without an id,
+ *     with a list of the {@link Tally}s of all {@link Question}s</li>
+ * </ul>
+ */
+@Slf4j
+public class QuestionsBus {
+
+    /** The address to create a {@link Question}. */
+    public static final String CREATE = "moodini.questions.create";
+    /** The address to read a {@link Question}. */
+    public static final String READ = "moodini.questions.read";
+    /** The address to read a page of {@link Question}s. */
+    public static final String LIST = "moodini.questions.list";
+    /** The address to read the latest {@link Question}. */
+    public static final String LATEST = "moodini.questions.latest";
+    /** The address to vote for an {@link Answer}. */
+    public static final String VOTE = "moodini.questions.vote";
+    /** The address to read the {@link Tally}s. */
+    public static final String RESULTS = "moodini.questions.results";
+    /** The header with the id of the {@link Question}. */
+    public static final String QUESTION_ID = "id";
+    /** The header with the token of the voter. */
+    public static final String VOTER = "voter";
+
+    private static final int DEF_STATUS_CODE = 500;
+    private static final int SC_BAD_REQUEST = 400;
+    private static final String CODECS = "moodini.codecs";
+    private static final String QUESTIONS_CODEC = "moodini.questions";
+    private static final String TALLIES_CODEC = "moodini.tallies";
+    private static final DeliveryOptions QUESTIONS = new DeliveryOptions().setCodecName(QUESTIONS_CODEC);
+    private static final DeliveryOptions TALLIES = new DeliveryOptions().setCodecName(TALLIES_CODEC);
+
+    private final Vertx vertx;
+    private final QuestionService questionService;
+
+    QuestionsBus(@NotNull final Vertx vertx,
+                 @NotNull final QuestionService questionService) {
+        this.vertx = vertx;
+        this.questionService = questionService;
+    }
+
+    /**
+     * Register the consumers of all addresses. Every verticle instance
+     * registers its own consumers, the codecs are registered once per Vert.x
+     * instance.
+     */
+    void register() {
+        final EventBus eventBus = vertx.eventBus();
+        if (vertx.sharedData().getLocalMap(CODECS).putIfAbsent(CODECS, Boolean.TRUE) == null) {
+            eventBus.registerDefaultCodec(Question.class, new ReferenceCodec<>(Question.class));
+            eventBus.registerDefaultCodec(Tally.class, new ReferenceCodec<>(Tally.class));
+            eventBus.registerDefaultCodec(Answer.class, new ReferenceCodec<>(Answer.class));
+            eventBus.registerCodec(ReferenceCodec.listOf(QUESTIONS_CODEC, Question.class));
+            eventBus.registerCodec(ReferenceCodec.listOf(TALLIES_CODEC, Tally.class));
+        }
+        eventBus.<Question>consumer(CREATE, guarded(message -> reply(message, questionService.create(message.body()))));
+        eventBus.consumer(READ, guarded(message ->
+                message.reply(questionService.read(questionId(message)).orElseThrow(NotFoundException::new))));
+        eventBus.consumer(LIST, guarded(message -> {
+            final Cursor cursor = Cursor.parse(message.headers());
+            message.reply(Collections.unmodifiableList(questionService.readPage(
+                    cursor.getAfter(), cursor.getLimit(), cursor.isDescending())), QUESTIONS);
+        }));
+        eventBus.consumer(LATEST, guarded(message -> message.reply(questionService.readLatest())));
+        eventBus.<Answer>consumer(VOTE, guarded(message -> reply(message,
+                questionService.vote(questionId(message), message.body(), message.headers().get(VOTER)))));
+        eventBus.consumer(RESULTS, guarded(this::readResults));
+    }
+
+    private void readResults(@NotNull final Message<Object> message) {
+        if (message.headers().contains(QUESTION_ID)) {
+            message.reply(questionService.readResults(questionId(message)).orElseThrow(NotFoundException::new));
+        } else {
+            message.reply(questionService.readAllResults(), TALLIES);
+        }
+    }
+
+    private static Long questionId(@NotNull final Message<?> message) {
+        final String value = message.headers().get(QUESTION_ID);
+        if (value == null) {
+            throw new NotFoundException();
+        }
+        return VoteHandler.parseId(value);
+    }
+
+    @SuppressWarnings("PMD.AvoidCatchingGenericException")
+    private static <T> Handler<Message<T>> guarded(@NotNull final Handler<Message<T>> handler) {
+        return message -> {
+            try {
+                handler.handle(message);
+            } catch (final ClassCastException e) {
+                message.fail(SC_BAD_REQUEST, "The body has the wrong type for " + message.address());
+            } catch (final AbstractStatusCodeException e) {
+                fail(message, e);
+            // CHECKSTYLE DISABLE IllegalCatch FOR 1 LINES
+            } catch (final RuntimeException e) {
+                log.error("Failed to handle a message", e);
+                fail(message, e);
+            }
+        };
+    }
+
+    private <T> void reply(@NotNull final Message<?> message, @NotNull final CompletionStage<T> stage) {
+        final Context context = vertx.getOrCreateContext();
+        stage.whenComplete((result, failure) ->
+            context.runOnContext(done -> {
+                if (failure == null) {
+                    message.reply(result);
+                } else {
+                    fail(message, failure);
+                }
+            }));
+    }
+
+    @SuppressWarnings("PMD.DataflowAnomalyAnalysis")
+    private static void fail(@NotNull final Message<?> message, @NotNull final Throwable failure) {
+        Throwable cause = failure;
+        if (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        int statusCode = DEF_STATUS_CODE;
+        if (cause instanceof AbstractStatusCodeException) {
+            statusCode = ((AbstractStatusCodeException) cause).getStatusCode();
+        }
+        message.fail(statusCode, cause.getMessage());
+    }
+}
@@ -17,14 +17,20 @@
  */
 package ch.fihlon.moodini.server.business.question.boundary;
 
+import ch.fihlon.moodini.server.Cluster;
+import ch.fihlon.moodini.server.Configuration;
 import ch.fihlon.moodini.server.Injector;
 import ch.fihlon.moodini.server.business.question.control.QuestionService;
-import ch.fihlon.moodini.server.business.question.entity.Answer;
 import ch.fihlon.moodini.server.business.question.entity.Question;
 import ch.fihlon.moodini.server.exception.AbstractStatusCodeException;
+import ch.fihlon.moodini.server.exception.ServiceUnavailableException;
 import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Context;
 import io.vertx.core.Future;
-import io.vertx.core.json.Json;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.Http2Settings;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpServerOptions;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.RoutingContext;
 import io.vertx.ext.web.handler.BodyHandler;
@@ -32,7 +38,9 @@ import io.vertx.ext.web.handler.BodyHandler;
 import javax.inject.Inject;
 import javax.validation.constraints.NotNull;
 import java.io.File;
-import java.util.Optional;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Consumer;
 
 /**
  * This verticle is the entry point fo the HTTP requests to the RESTful JSON
@@ -41,17 +49,43 @@ import java.util.Optional;
 public class QuestionsVerticle extends AbstractVerticle {
 
     private static final int DEFAULT_HTTP_PORT = 8080;
+    private static final long DEFAULT_LIVE_TICK = 1000;
+    private static final int DEF_BULK_VOTES = 10_000;
+    private static final long DEF_BULK_COUNT = 10_000;
+    private static final long DEF_BULK_BYTES = 1024 * 1024;
     private static final int SC_CREATED = 201;
     private static final int SC_NO_CONTENT = 204;
-    private static final int SC_NOT_FOUND = 404;
     private static final String PARAM_NAME_ID = "id";
+    private static final String BULK_VOTES = "/api/votes";
     private static final String LOCATION = "Location";
-    private static final String CONTENT_TYPE = "Content-Type";
-    private static final String APPLICATION_JSON = "application/json; charset=utf-8";
+    private static final String RETRY_AFTER = "Retry-After";
+    private static final String CHANGES = "/api/changes";
+    private static final String EXPORT = "/api/export";
+    private static final int DEF_EXPORT_CHUNK = 256;
+    private static final int DEF_IMPORT_CHUNK = 1000;
+    private static final int DEF_IMPORT_LINE = 64 * 1024;
+    private static final long DEF_H2_STREAMS = 100;
+    private static final int DEF_PROXY_POOL = 64;
+    private static final long DEF_PROXY_TIMEOUT = 10_000;
+    private static final String BODY = "body";
+    private static final String PARSE = "parse";
+    private static final String SERVICE = "service";
+    private static final String ENCODE = "encode";
 
     @Inject
     private QuestionService questionService;
 
+    @Inject
+    private ResponseCache responseCache;
+
+    @Inject
+    private RequestMetrics requestMetrics;
+
+    @Inject
+    private IdempotencyCache idempotencyCache;
+
+    private Compression compression;
+
     /**
      * Start this verticle.
      *
@@ -59,29 +93,97 @@ public class QuestionsVerticle extends AbstractVerticle {
      */
     @Override
     public void start(@NotNull final Future<Void> future) {
+        Configuration.setConfig(config());
         Injector.injectMembers(this);
+        compression = new Compression(config().getBoolean("http.compression", false));
 
         // Create a router object.
         final Router router = Router.router(vertx);
+        final ReadHandler readHandler = new ReadHandler(questionService, responseCache, compression);
+        final ResultsHandler resultsHandler = new ResultsHandler(questionService);
+        final StatusHandler statusHandler = new StatusHandler(questionService);
+        final LiveResultsHandler liveHandler = new LiveResultsHandler(vertx, questionService,
+                config().getLong("live.tick.millis", DEFAULT_LIVE_TICK));
 
-        // Add the body handler
+        // Add the timing and the body handler, votes read their small bodies themselves
+        final RequestMetrics timer = requestMetrics;
+        router.route("/api/*").handler(new ServerTiming(config().getBoolean("timing.enabled", false),
+                config().getBoolean("timing.header", true), config().getDouble("timing.log.sample", 0.0))::start);
+        final ShardVotes shardVotes = shard(router);
+        router.post("/api/questions/:id/vote").handler(timer.timed("vote",
+                new VoteHandler(questionService, idempotencyCache)::vote));
         router.route("/api/questions*").handler(BodyHandler.create())
                 .failureHandler(this::failueHandler);
+        router.route(BULK_VOTES).handler(BodyHandler.create().setBodyLimit(
+                config().getLong("vote.bulk.bytes", DEF_BULK_BYTES)))
+                .failureHandler(this::failueHandler);
+        router.route(CHANGES).failureHandler(this::failueHandler);
+        router.route(EXPORT).failureHandler(this::failueHandler);
+        router.route("/api/admin/*").failureHandler(this::failueHandler);
 
         // Add the routing
-        // CHECKSTYLE DISABLE MultipleStringLiterals FOR 7 LINES
-        router.post("/api/questions").handler(this::create);
-        router.get("/api/questions").handler(this::list);
-        router.get("/api/questions/latest").handler(this::latest);
-        router.get("/api/questions/:id").handler(this::read);
-        router.put("/api/questions/:id").handler(this::update);
-        router.delete("/api/questions/:id").handler(this::delete);
-        router.post("/api/questions/:id/vote").handler(this::vote);
+        // CHECKSTYLE DISABLE MultipleStringLiterals FOR 17 LINES
+        router.post("/api/questions").handler(timer.timed("create", this::create));
+        router.get("/api/questions").handler(timer.timed("list", readHandler::list));
+        router.get("/api/questions/latest").handler(timer.timed("latest", readHandler::latest));
+        router.get("/api/questions/results").handler(timer.timed("results", resultsHandler::list));
+        router.get("/api/questions/:id").handler(timer.timed("read", readHandler::read));
+        router.get("/api/questions/:id/results").handler(timer.timed("result", resultsHandler::read));
+        router.get("/api/questions/:id/history").handler(timer.timed("history",
+                new HistoryHandler(questionService)::history));
+        router.get("/api/questions/:id/live").handler(liveHandler::events);
+        router.put("/api/questions/:id").handler(timer.timed("update", this::update));
+        router.delete("/api/questions/:id").handler(timer.timed("delete", this::delete));
+        router.post(BULK_VOTES).handler(timer.timed("votes", new BulkVoteHandler(shardVotes,
+                config().getInteger("vote.bulk.max", DEF_BULK_VOTES),
+                config().getLong("vote.bulk.count.max", DEF_BULK_COUNT))::voteBulk));
+        router.get(CHANGES).handler(new ChangesHandler(vertx, questionService)::changes);
+        router.get(EXPORT).handler(timer.timed("export", new ExportHandler(questionService,
+                config().getInteger("export.chunk.questions", DEF_EXPORT_CHUNK))::export));
+        router.post("/api/import").handler(timer.timed("import", createImportHandler()::importQuestions));
+        router.get("/api/admin/status").handler(statusHandler::status);
+        router.post("/api/admin/snapshot").handler(routingContext ->
+            whenDone(routingContext, questionService.snapshot(), status -> statusHandler.status(routingContext)));
+        router.get("/metrics").handler(new MetricsHandler(questionService, requestMetrics, idempotencyCache)::metrics);
+
+        new QuestionsBus(vertx, questionService).register();
+        listen(router, liveHandler, future);
+    }
+
+    private ImportHandler createImportHandler() {
+        return new ImportHandler(questionService,
+                config().getInteger("import.chunk.questions", DEF_IMPORT_CHUNK),
+                config().getInteger("import.line.bytes", DEF_IMPORT_LINE));
+    }
+
+    private ShardVotes shard(@NotNull final Router router) {
+        final HttpClientOptions options = new HttpClientOptions()
+                .setMaxPoolSize(config().getInteger("cluster.proxy.connections", DEF_PROXY_POOL));
+        final ShardClient shards = new ShardClient(Cluster.configured(), vertx.createHttpClient(options),
+                config().getLong("cluster.proxy.timeout.millis", DEF_PROXY_TIMEOUT));
+        if (shards.getCluster().isClustered()) {
+            final ShardProxy proxy = new ShardProxy(shards);
+            final ShardGather gather = new ShardGather(shards, questionService);
+            ShardProxy.PATHS.forEach(path -> router.route(path).handler(proxy::route));
+            router.get("/api/questions").handler(gather::list);
+            router.get("/api/questions/latest").handler(gather::latest);
+            router.get("/api/questions/results").handler(gather::results);
+        }
+        return new ShardVotes(shards, questionService);
+    }
+
+    private void listen(@NotNull final Router router,
+                        @NotNull final LiveResultsHandler liveHandler,
+                        @NotNull final Future<Void> future) {
+        final HttpServerOptions options = new HttpServerOptions()
+                .setCompressionSupported(compression.isEnabled())
+                .setInitialSettings(new Http2Settings()
+                        .setMaxConcurrentStreams(config().getLong("http.h2.streams", DEF_H2_STREAMS)));
 
         // Create the HTTP server and pass the "accept" method to the request handler.
-        vertx
-            .createHttpServer()
+        HttpServers.create(vertx, options, config().getBoolean("http.h2c", true))
             .requestHandler(router::accept)
+            .websocketHandler(liveHandler::webSocket)
             .listen(
                 // Retrieve the port from the configuration,
                 // default to 8080.
@@ -97,81 +199,86 @@ public class QuestionsVerticle extends AbstractVerticle {
     }
 
     private void failueHandler(@NotNull final RoutingContext routingContext) {
-        @SuppressWarnings("ThrowableResultOfMethodCallIgnored")
-        final Throwable failure = routingContext.failure();
+        Throwable failure = routingContext.failure();
+        if (failure instanceof CompletionException) {
+            failure = failure.getCause();
+        }
+        if (failure instanceof ServiceUnavailableException) {
+            final long retryAfter = ((ServiceUnavailableException) failure).getRetryAfter();
+            routingContext.response().putHeader(RETRY_AFTER, Long.toString(retryAfter));
+        }
         if (failure instanceof AbstractStatusCodeException) {
             final AbstractStatusCodeException exception = (AbstractStatusCodeException) failure;
             routingContext.response().setStatusCode(exception.getStatusCode());
+        } else if (failure == null && routingContext.statusCode() > 0) {
+            // failed with a status code, like 413 by the BodyHandler
+            routingContext.response().setStatusCode(routingContext.statusCode());
         }
         routingContext.response().end();
     }
 
-    private void vote(@NotNull final RoutingContext routingContext) {
-        final Long questionId = Long.valueOf(routingContext.request().getParam(PARAM_NAME_ID));
-        final String body = routingContext.getBodyAsString();
-        final Answer answer = Answer.valueOf(body);
-        questionService.vote(questionId, answer);
-        routingContext.response()
-                .end();
-    }
-
-    private void list(@NotNull final RoutingContext routingContext) {
-        routingContext.response()
-                .putHeader(CONTENT_TYPE, APPLICATION_JSON)
-                .end(Json.encodePrettily(questionService.readAll()));
-    }
-
-    private void read(@NotNull final RoutingContext routingContext) {
-        final Long questionId = Long.valueOf(routingContext.request().getParam(PARAM_NAME_ID));
-        final Optional<Question> question = questionService.read(questionId);
-        if (question.isPresent()) {
-            routingContext.response()
-                    .putHeader(CONTENT_TYPE, APPLICATION_JSON)
-                    .end(Json.encodePrettily(question.get()));
-        } else {
-            routingContext.response()
-                    .setStatusCode(SC_NOT_FOUND)
-                    .end();
-        }
-    }
-
-    private void latest(@NotNull final RoutingContext routingContext) {
-        final Question question = questionService.readLatest();
-        routingContext.response()
-                .putHeader(CONTENT_TYPE, APPLICATION_JSON)
-                .end(Json.encodePrettily(question));
+    private <T> void whenDone(@NotNull final RoutingContext routingContext,
+                              @NotNull final CompletionStage<T> stage,
+                              @NotNull final Consumer<T> onSuccess) {
+        final Context context = vertx.getOrCreateContext();
+        stage.whenComplete((result, failure) ->
+            context.runOnContext(done -> {
+                ServerTiming.mark(routingContext, "persist");
+                if (failure == null) {
+                    onSuccess.accept(result);
+                } else {
+                    routingContext.fail(failure);
+                }
+            }));
     }
 
     private void create(@NotNull final RoutingContext routingContext) {
-        final String body = routingContext.getBodyAsString();
-        final Question question = Json.decodeValue(body,
-                Question.class);
-        final Question createdQuestion = questionService.create(question);
-        final String location = routingContext.normalisedPath() +
-                File.separator + createdQuestion.getQuestionId().toString();
-        routingContext.response()
-                .setStatusCode(SC_CREATED)
-                .putHeader(LOCATION, location)
-                .putHeader(CONTENT_TYPE, APPLICATION_JSON)
-                .end(Json.encodePrettily(createdQuestion));
+        ServerTiming.mark(routingContext, BODY);
+        final Question question = BodyFormat.received(routingContext.request())
+                .decode(routingContext.getBody(), Question.class);
+        ServerTiming.mark(routingContext, PARSE);
+        final CompletionStage<Question> stage = idempotencyCache.execute(routingContext,
+            () -> questionService.create(question));
+        ServerTiming.mark(routingContext, SERVICE);
+        whenDone(routingContext, stage, createdQuestion -> {
+            final String location = routingContext.normalisedPath() +
+                    File.separator + createdQuestion.getQuestionId().toString();
+            final BodyFormat format = BodyFormat.accepted(routingContext.request());
+            final Buffer body = format.encode(createdQuestion);
+            ServerTiming.mark(routingContext, ENCODE);
+            format.describe(routingContext.response())
+                    .setStatusCode(SC_CREATED)
+                    .putHeader(LOCATION, location)
+                    .end(body);
+        });
     }
 
     private void update(@NotNull final RoutingContext routingContext) {
+        ServerTiming.mark(routingContext, BODY);
         final Long questionId = Long.valueOf(routingContext.request().getParam(PARAM_NAME_ID));
-        final Question question = Json.decodeValue(routingContext.getBodyAsString(),
-                Question.class).toBuilder().questionId(questionId).build();
-        final Question updatedQuestion = questionService.update(question);
-        routingContext.response()
-                .putHeader(CONTENT_TYPE, APPLICATION_JSON)
-                .end(Json.encodePrettily(updatedQuestion));
+        final Question question = BodyFormat.received(routingContext.request())
+                .decode(routingContext.getBody(), Question.class).toBuilder().questionId(questionId).build();
+        ServerTiming.mark(routingContext, PARSE);
+        final CompletionStage<Question> stage = questionService.update(question);
+        ServerTiming.mark(routingContext, SERVICE);
+        whenDone(routingContext, stage, updatedQuestion -> {
+            final BodyFormat format = BodyFormat.accepted(routingContext.request());
+            final Buffer body = format.encode(updatedQuestion);
+            ServerTiming.mark(routingContext, ENCODE);
+            format.describe(routingContext.response()).end(body);
+        });
     }
 
     private void delete(@NotNull final RoutingContext routingContext) {
         final Long questionId = Long.valueOf(routingContext.request().getParam(PARAM_NAME_ID));
-        questionService.delete(questionId);
-        routingContext.response()
-                .setStatusCode(SC_NO_CONTENT)
-                .end();
+        final CompletionStage<Void> stage = questionService.delete(questionId);
+        ServerTiming.mark(routingContext, SERVICE);
+        whenDone(routingContext, stage, deleted -> {
+            responseCache.evict(questionId);
+            routingContext.response()
+                    .setStatusCode(SC_NO_CONTENT)
+                    .end();
+        });
     }
 
 }
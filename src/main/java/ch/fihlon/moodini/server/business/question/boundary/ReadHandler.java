@@ -0,0 +1,91 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.boundary;
+
+import ch.fihlon.moodini.server.business.question.control.QuestionService;
+import ch.fihlon.moodini.server.business.question.entity.Question;
+import io.vertx.ext.web.RoutingContext;
+
+import javax.validation.constraints.NotNull;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * This class handles the HTTP requests to read {@link Question}s. The
+ * responses come from the {@link ResponseCache}, so re-reading unchanged
+ * {@link Question}s does not serialize them again, and conditional requests
+ * are answered without a body. Their compressed versions are cached as well.
+ */
+class ReadHandler {
+
+    private static final int SC_NOT_FOUND = 404;
+    private static final String PARAM_NAME_ID = "id";
+    private static final String LATEST_KEY = "latest";
+
+    private final QuestionService questionService;
+    private final ResponseCache responseCache;
+    private final Compression compression;
+
+    ReadHandler(@NotNull final QuestionService questionService,
+                @NotNull final ResponseCache responseCache,
+                @NotNull final Compression compression) {
+        this.questionService = questionService;
+        this.responseCache = responseCache;
+        this.compression = compression;
+    }
+
+    void read(@NotNull final RoutingContext routingContext) {
+        final Long questionId = Long.valueOf(routingContext.request().getParam(PARAM_NAME_ID));
+        final Optional<Question> question = questionService.read(questionId);
+        if (question.isPresent()) {
+            responseCache.question(question.get()).send(routingContext, compression);
+        } else {
+            responseCache.evict(questionId);
+            routingContext.response()
+                    .setStatusCode(SC_NOT_FOUND)
+                    .end();
+        }
+    }
+
+    void list(@NotNull final RoutingContext routingContext) {
+        final Cursor cursor = Cursor.parse(routingContext.request());
+        final String path = routingContext.normalisedPath();
+        final long generation = questionService.getGeneration();
+        responseCache.page(generation, cursor.toString(), () -> renderPage(cursor, path))
+                .send(routingContext, compression);
+    }
+
+    void latest(@NotNull final RoutingContext routingContext) {
+        final long generation = questionService.getGeneration();
+        responseCache.page(generation, LATEST_KEY, () -> CachedBody.forQuestion(questionService.readLatest()))
+                .send(routingContext, compression);
+    }
+
+    @SuppressWarnings("PMD.DataflowAnomalyAnalysis")
+    private CachedBody renderPage(@NotNull final Cursor cursor, @NotNull final String path) {
+        final List<Question> questions = questionService.readPage(
+                cursor.getAfter(), cursor.getLimit(), cursor.isDescending());
+        CachedBody body = CachedBody.forContent(questions);
+        if (questions.size() == cursor.getLimit()) {
+            final Long lastId = questions.get(questions.size() - 1).getQuestionId();
+            body = body.withLink(cursor.next(path, lastId));
+        }
+        return body;
+    }
+
+}
@@ -0,0 +1,120 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.boundary;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.MessageCodec;
+
+import javax.validation.constraints.NotNull;
+import java.util.List;
+
+/**
+ * This codec passes immutable values on the event bus. Within the JVM the
+ * receiver gets the same instance as the sender, nothing is copied or
+ * serialized. Sent to another node of a cluster the value is serialized
+ * with Smile, prefixed by its length.
+ *
+ * @param <T> the type of the values, it must be immutable
+ */
+class ReferenceCodec<T> implements MessageCodec<T, T> {
+
+    private static final int LENGTH_BYTES = 4;
+    private static final byte NO_SYSTEM_CODEC = -1;
+
+    private final String codecName;
+    private final JavaType type;
+
+    ReferenceCodec(@NotNull final Class<T> type) {
+        this(type.getName(), TypeFactory.defaultInstance().constructType(type));
+    }
+
+    private ReferenceCodec(@NotNull final String name, @NotNull final JavaType type) {
+        this.codecName = name;
+        this.type = type;
+    }
+
+    /**
+     * Create a codec for immutable lists.
+     *
+     * @param name the name of the codec, it must be set in the delivery options
+     * @param type the type of the elements
+     * @param <E> the type of the elements
+     * @return the codec
+     */
+    static <E> ReferenceCodec<List<E>> listOf(@NotNull final String name, @NotNull final Class<E> type) {
+        return new ReferenceCodec<>(name, TypeFactory.defaultInstance().constructCollectionType(List.class, type));
+    }
+
+    /**
+     * Serialize a value sent to another node.
+     *
+     * @param buffer the buffer to append the value to
+     * @param value the value
+     */
+    @Override
+    public void encodeToWire(@NotNull final Buffer buffer, @NotNull final T value) {
+        final Buffer body = BodyFormat.SMILE.encode(value);
+        buffer.appendInt(body.length()).appendBuffer(body);
+    }
+
+    /**
+     * Deserialize a value received from another node.
+     *
+     * @param pos the position of the value in the buffer
+     * @param buffer the buffer
+     * @return the value
+     */
+    @Override
+    public T decodeFromWire(final int pos, @NotNull final Buffer buffer) {
+        final int start = pos + LENGTH_BYTES;
+        return BodyFormat.SMILE.decode(buffer.getBuffer(start, start + buffer.getInt(pos)), type);
+    }
+
+    /**
+     * Pass a value within the JVM, the immutable value is not copied.
+     *
+     * @param value the value sent
+     * @return the value received, the same instance
+     */
+    @Override
+    public T transform(@NotNull final T value) {
+        return value;
+    }
+
+    /**
+     * Get the name of this codec.
+     *
+     * @return the name
+     */
+    @Override
+    public String name() {
+        return codecName;
+    }
+
+    /**
+     * This is no codec of Vert.x itself.
+     *
+     * @return {@code -1}
+     */
+    @Override
+    public byte systemCodecID() {
+        return NO_SYSTEM_CODEC;
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.boundary;
+
+import io.vertx.core.Handler;
+import io.vertx.ext.web.RoutingContext;
+
+import javax.inject.Singleton;
+import javax.validation.constraints.NotNull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * This singleton collects the {@link RouteMetrics} of all routes, shared by
+ * all verticle instances. A route is measured from the moment its handler
+ * is called until the last byte of the response is written, so the time
+ * spent waiting for the persistence is included.
+ */
+@Singleton
+class RequestMetrics {
+
+    private final ConcurrentNavigableMap<String, RouteMetrics> routes = new ConcurrentSkipListMap<>();
+
+    /**
+     * Wrap a handler, so the requests it handles are measured.
+     *
+     * @param route the name of the route
+     * @param handler the handler of the route
+     * @return the measuring handler
+     */
+    @SuppressWarnings("PMD.DataflowAnomalyAnalysis")
+    Handler<RoutingContext> timed(@NotNull final String route, @NotNull final Handler<RoutingContext> handler) {
+        final RouteMetrics metrics = routes.computeIfAbsent(route, RouteMetrics::new);
+        return routingContext -> {
+            final long start = System.nanoTime();
+            routingContext.addBodyEndHandler(done ->
+                metrics.record(routingContext.response().getStatusCode(), System.nanoTime() - start));
+            handler.handle(routingContext);
+        };
+    }
+
+    List<RouteMetrics> getRoutes() {
+        return new ArrayList<>(routes.values());
+    }
+
+}
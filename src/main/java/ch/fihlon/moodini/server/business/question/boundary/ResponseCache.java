@@ -0,0 +1,89 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.boundary;
+
+import ch.fihlon.moodini.server.business.question.entity.Question;
+import lombok.Value;
+
+import javax.inject.Singleton;
+import javax.validation.constraints.NotNull;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * This singleton caches the serialized responses shared by all verticle
+ * instances. Single {@link Question}s are validated by their version, the
+ * lists and the latest {@link Question} by the generation of the
+ * question service: a new generation discards all cached pages at once.
+ */
+@Singleton
+class ResponseCache {
+
+    private static final int MAX_PAGES = 1024;
+
+    private final Map<Long, CachedBody> questions = new ConcurrentHashMap<>();
+    private final AtomicReference<Pages> pages = new AtomicReference<>(new Pages(-1));
+
+    CachedBody question(@NotNull final Question question) {
+        CachedBody body = questions.get(question.getQuestionId());
+        if (body == null || !body.isVersionOf(question)) {
+            body = CachedBody.forQuestion(question);
+            questions.put(question.getQuestionId(), body);
+        }
+        return body;
+    }
+
+    void evict(@NotNull final Long questionId) {
+        questions.remove(questionId);
+    }
+
+    CachedBody page(final long generation,
+                    @NotNull final String key,
+                    @NotNull final Supplier<CachedBody> supplier) {
+        final Pages current = pages.updateAndGet(previous -> previous.next(generation));
+        CachedBody body = current.getBodies().get(key);
+        if (body == null) {
+            body = supplier.get();
+            if (current.getGeneration() == generation && current.getBodies().size() < MAX_PAGES) {
+                current.getBodies().putIfAbsent(key, body);
+            }
+        }
+        return body;
+    }
+
+    /**
+     * The cached pages of one generation.
+     */
+    @Value
+    @SuppressWarnings("PMD.UnusedPrivateField")
+    private static class Pages {
+        private final long generation;
+        private final Map<String, CachedBody> bodies = new ConcurrentHashMap<>();
+
+        @SuppressWarnings("PMD.DataflowAnomalyAnalysis")
+        Pages next(final long nextGeneration) {
+            Pages next = this;
+            if (nextGeneration > generation) {
+                next = new Pages(nextGeneration);
+            }
+            return next;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.boundary;
+
+import ch.fihlon.moodini.server.business.question.control.QuestionService;
+import ch.fihlon.moodini.server.business.question.entity.Tally;
+import io.vertx.ext.web.RoutingContext;
+
+import javax.validation.constraints.NotNull;
+import java.util.Optional;
+
+/**
+ * This class handles the HTTP requests to read the {@link Tally}s of the
+ * votes. It serves the precomputed snapshots of the {@link QuestionService},
+ * so polling the results does not slow down voting. The snapshots are
+ * serialized in the {@link BodyFormat} the client accepts.
+ */
+class ResultsHandler {
+
+    private static final int SC_NOT_FOUND = 404;
+    private static final String PARAM_NAME_ID = "id";
+
+    private final QuestionService questionService;
+
+    ResultsHandler(@NotNull final QuestionService questionService) {
+        this.questionService = questionService;
+    }
+
+    void list(@NotNull final RoutingContext routingContext) {
+        send(routingContext, questionService.readAllResults());
+    }
+
+    void read(@NotNull final RoutingContext routingContext) {
+        final Long questionId = Long.valueOf(routingContext.request().getParam(PARAM_NAME_ID));
+        final Optional<Tally> tally = questionService.readResults(questionId);
+        if (tally.isPresent()) {
+            send(routingContext, tally.get());
+        } else {
+            routingContext.response()
+                    .setStatusCode(SC_NOT_FOUND)
+                    .end();
+        }
+    }
+
+    /**
+     * Send content in the format accepted by the client.
+     *
+     * @param routingContext the routing context of the request
+     * @param content the content
+     */
+    static void send(@NotNull final RoutingContext routingContext, @NotNull final Object content) {
+        final BodyFormat format = BodyFormat.accepted(routingContext.request());
+        format.describe(routingContext.response()).end(format.encode(content));
+    }
+
+}
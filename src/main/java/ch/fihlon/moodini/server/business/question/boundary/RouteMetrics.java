@@ -0,0 +1,76 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.boundary;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class records the latencies and the status codes of the requests of
+ * one route. The latencies are recorded in microseconds into a histogram
+ * with a precision of two significant digits, recording never blocks and
+ * does not allocate. Latencies above one hour are recorded as one hour.
+ */
+final class RouteMetrics {
+
+    private static final long MAX_MICROS = TimeUnit.HOURS.toMicros(1);
+    private static final int PRECISION = 2;
+
+    private final String route;
+    private final Histogram latencies = new ConcurrentHistogram(MAX_MICROS, PRECISION);
+    private final LongAdder totalMicros = new LongAdder();
+    private final NavigableMap<Integer, LongAdder> statusCodes = new ConcurrentSkipListMap<>();
+
+    RouteMetrics(final String route) {
+        this.route = route;
+    }
+
+    void record(final int statusCode, final long nanos) {
+        final long micros = Math.min(Math.max(TimeUnit.NANOSECONDS.toMicros(nanos), 1), MAX_MICROS);
+        latencies.recordValue(micros);
+        totalMicros.add(micros);
+        statusCodes.computeIfAbsent(statusCode, key -> new LongAdder()).increment();
+    }
+
+    String getRoute() {
+        return route;
+    }
+
+    Histogram getLatencies() {
+        return latencies.copy();
+    }
+
+    long getTotalMicros() {
+        return totalMicros.sum();
+    }
+
+    NavigableMap<Integer, Long> getStatusCodes() {
+        final NavigableMap<Integer, Long> counts = new ConcurrentSkipListMap<>();
+        for (final Map.Entry<Integer, LongAdder> entry : statusCodes.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().sum());
+        }
+        return counts;
+    }
+
+}
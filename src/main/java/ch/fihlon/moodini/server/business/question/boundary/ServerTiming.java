@@ -0,0 +1,95 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.boundary;
+
+import io.vertx.ext.web.RoutingContext;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.validation.constraints.NotNull;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * This class adds a {@code Server-Timing} header with the stages of a
+ * request, like buffering the body, parsing, calling the service, waiting
+ * for the persistence and encoding the response. Timing is enabled for all
+ * requests with {@code timing.enabled} or for single requests sending the
+ * header {@code X-Server-Timing} if {@code timing.header} is enabled. The
+ * fraction {@code timing.log.sample} of the timed requests is logged.
+ * <p>
+ * The handlers mark the end of their stages with {@link #mark(RoutingContext, String)}.
+ * If a request is not timed, a mark is a lookup in the context of the request only.
+ */
+@Slf4j
+class ServerTiming {
+
+    private static final String KEY = StageTimer.class.getName();
+    private static final String REQUEST_HEADER = "X-Server-Timing";
+    private static final String RESPONSE_HEADER = "Server-Timing";
+
+    private final boolean enabled;
+    private final boolean header;
+    private final double sample;
+
+    ServerTiming(final boolean enabled, final boolean header, final double sample) {
+        this.enabled = enabled;
+        this.header = header;
+        this.sample = sample;
+    }
+
+    /**
+     * Start timing the request if timing is enabled for it. This handler has
+     * to be added before all other handlers, so buffering the body is included.
+     *
+     * @param routingContext the context of the request
+     */
+    void start(@NotNull final RoutingContext routingContext) {
+        if (enabled || header && routingContext.request().getHeader(REQUEST_HEADER) != null) {
+            final StageTimer timer = new StageTimer(System.nanoTime());
+            routingContext.put(KEY, timer);
+            routingContext.addHeadersEndHandler(done ->
+                routingContext.response().putHeader(RESPONSE_HEADER, timer.format()));
+            if (sample > 0) {
+                routingContext.addBodyEndHandler(done -> log(routingContext, timer));
+            }
+        }
+        routingContext.next();
+    }
+
+    private void log(@NotNull final RoutingContext routingContext, @NotNull final StageTimer timer) {
+        if (ThreadLocalRandom.current().nextDouble() < sample) {
+            final String path = routingContext.request().path();
+            final int status = routingContext.response().getStatusCode();
+            final String stages = timer.format();
+            log.info("Server-Timing of {} ({}): {}", path, status, stages);
+        }
+    }
+
+    /**
+     * Mark the end of a stage of the request, if the request is timed.
+     *
+     * @param routingContext the context of the request
+     * @param stage the name of the stage which ended
+     */
+    static void mark(@NotNull final RoutingContext routingContext, @NotNull final String stage) {
+        final StageTimer timer = routingContext.get(KEY);
+        if (timer != null) {
+            timer.mark(stage);
+        }
+    }
+
+}
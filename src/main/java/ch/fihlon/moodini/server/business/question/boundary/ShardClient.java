@@ -0,0 +1,100 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.boundary;
+
+import ch.fihlon.moodini.server.Cluster;
+import ch.fihlon.moodini.server.exception.AbstractStatusCodeException;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientRequest;
+import io.vertx.core.http.HttpMethod;
+
+import javax.validation.constraints.NotNull;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * This class sends the requests of this node to the other nodes of the
+ * {@link Cluster}. All of them share one pool of connections, and a node
+ * which does not answer in time fails the request with a
+ * {@link TimeoutException}, answered with "504 GATEWAY TIMEOUT" instead of
+ * the "502 BAD GATEWAY" of an unreachable node.
+ */
+@SuppressWarnings("PMD.DataflowAnomalyAnalysis")
+class ShardClient {
+
+    private static final int SC_BAD_GATEWAY = 502;
+    private static final int SC_TIMEOUT = 504;
+
+    private final Cluster cluster;
+    private final HttpClient client;
+    private final long timeout;
+
+    ShardClient(@NotNull final Cluster cluster,
+                @NotNull final HttpClient client,
+                final long timeout) {
+        this.cluster = cluster;
+        this.client = client;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Get the layout of the cluster.
+     *
+     * @return the cluster
+     */
+    Cluster getCluster() {
+        return cluster;
+    }
+
+    /**
+     * Create a request to another node, marked as forwarded by this node.
+     * The caller sets the response handler and ends the request.
+     *
+     * @param method the method of the request
+     * @param node the index of the node
+     * @param uri the uri of the request
+     * @return the request, not sent yet
+     */
+    HttpClientRequest request(@NotNull final HttpMethod method, final int node, @NotNull final String uri) {
+        return client.request(method, cluster.portOf(node), cluster.hostOf(node), uri)
+                .setTimeout(timeout)
+                .putHeader(ShardProxy.FORWARDED, String.valueOf(cluster.getNode()));
+    }
+
+    /**
+     * Get the status to answer a request with which a node failed.
+     *
+     * @param failure the failure of the request to the node
+     * @return the status of a failure with a status code (e.g. 503 if the
+     * write queue of this node is full), 504 if the node did not answer in
+     * time, 502 otherwise
+     */
+    static int statusOf(@NotNull final Throwable failure) {
+        Throwable cause = failure;
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        int status = SC_BAD_GATEWAY;
+        if (cause instanceof AbstractStatusCodeException) {
+            status = ((AbstractStatusCodeException) cause).getStatusCode();
+        } else if (cause instanceof TimeoutException) {
+            status = SC_TIMEOUT;
+        }
+        return status;
+    }
+}
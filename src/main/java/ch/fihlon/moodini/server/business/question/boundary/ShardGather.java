@@ -0,0 +1,187 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.boundary;
+
+import ch.fihlon.moodini.server.Cluster;
+import ch.fihlon.moodini.server.business.question.control.QuestionService;
+import ch.fihlon.moodini.server.business.question.entity.Question;
+import ch.fihlon.moodini.server.business.question.entity.Tally;
+import ch.fihlon.moodini.server.exception.AbstractStatusCodeException;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+import io.vertx.core.Context;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.ext.web.RoutingContext;
+
+import javax.validation.constraints.NotNull;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * This class answers the requests for all {@link Question}s of a
+ * {@link Cluster}. The page or the {@link Tally}s of this node are read
+ * directly, those of the other nodes are requested in parallel and merged
+ * by the id of the {@link Question}s. A request from another node is
+ * passed on to the next handler and answered with the local shard only. If
+ * a node can not be reached, the request is answered with "502 BAD GATEWAY",
+ * if it does not answer in time with "504 GATEWAY TIMEOUT".
+ */
+@SuppressWarnings("PMD.DataflowAnomalyAnalysis")
+class ShardGather {
+
+    private static final int SC_OK = 200;
+    private static final int SC_NOT_FOUND = 404;
+    private static final String ACCEPT = "Accept";
+    private static final String APPLICATION_JSON = "application/json";
+    private static final String LINK = "Link";
+    private static final String LATEST_URI = "/api/questions?limit=1&order=desc";
+    private static final Comparator<Question> BY_ID = Comparator.comparing(Question::getQuestionId);
+
+    private final ShardClient shards;
+    private final Cluster cluster;
+    private final QuestionService questionService;
+
+    ShardGather(@NotNull final ShardClient shards,
+                @NotNull final QuestionService questionService) {
+        this.shards = shards;
+        this.cluster = shards.getCluster();
+        this.questionService = questionService;
+    }
+
+    void list(@NotNull final RoutingContext routingContext) {
+        if (isForwarded(routingContext)) {
+            routingContext.next();
+        } else {
+            final Cursor cursor = Cursor.parse(routingContext.request());
+            final List<Question> local = questionService.readPage(
+                    cursor.getAfter(), cursor.getLimit(), cursor.isDescending());
+            whenGathered(routingContext, gather(routingContext.request().uri(), Question.class, local), questions -> {
+                final List<Question> page = questions.stream()
+                        .sorted(order(cursor))
+                        .limit(cursor.getLimit())
+                        .collect(toList());
+                if (page.size() == cursor.getLimit()) {
+                    routingContext.response().putHeader(LINK, cursor.next(routingContext.normalisedPath(),
+                            page.get(page.size() - 1).getQuestionId()));
+                }
+                ResultsHandler.send(routingContext, page);
+            });
+        }
+    }
+
+    void latest(@NotNull final RoutingContext routingContext) {
+        if (isForwarded(routingContext)) {
+            routingContext.next();
+        } else {
+            final List<Question> local = questionService.readPage(null, 1, true);
+            whenGathered(routingContext, gather(LATEST_URI, Question.class, local), questions -> {
+                if (questions.isEmpty()) {
+                    routingContext.response().setStatusCode(SC_NOT_FOUND).end();
+                } else {
+                    ResultsHandler.send(routingContext, questions.stream().max(BY_ID).get());
+                }
+            });
+        }
+    }
+
+    void results(@NotNull final RoutingContext routingContext) {
+        if (isForwarded(routingContext)) {
+            routingContext.next();
+        } else {
+            final List<Tally> local = questionService.readAllResults();
+            whenGathered(routingContext, gather(routingContext.request().uri(), Tally.class, local), tallies ->
+                ResultsHandler.send(routingContext, tallies.stream()
+                        .sorted(Comparator.comparing(Tally::getQuestionId))
+                        .collect(toList())));
+        }
+    }
+
+    private static boolean isForwarded(@NotNull final RoutingContext routingContext) {
+        return routingContext.request().headers().contains(ShardProxy.FORWARDED);
+    }
+
+    private static Comparator<Question> order(@NotNull final Cursor cursor) {
+        Comparator<Question> order = BY_ID;
+        if (cursor.isDescending()) {
+            order = order.reversed();
+        }
+        return order;
+    }
+
+    private <T> CompletableFuture<List<T>> gather(@NotNull final String uri,
+                                                  @NotNull final Class<T> type,
+                                                  @NotNull final List<T> local) {
+        final JavaType listType = TypeFactory.defaultInstance().constructCollectionType(List.class, type);
+        final List<CompletableFuture<List<T>>> lists = new ArrayList<>();
+        for (int node = 0; node < cluster.getShards(); node++) {
+            if (node == cluster.getNode()) {
+                lists.add(CompletableFuture.completedFuture(local));
+            } else {
+                lists.add(fetch(node, uri, listType));
+            }
+        }
+        return CompletableFuture.allOf(lists.toArray(new CompletableFuture<?>[lists.size()]))
+                .thenApply(done -> lists.stream()
+                        .flatMap(list -> list.join().stream())
+                        .collect(toList()));
+    }
+
+    private static <T> void whenGathered(@NotNull final RoutingContext routingContext,
+                                         @NotNull final CompletableFuture<List<T>> gathered,
+                                         @NotNull final Consumer<List<T>> onGathered) {
+        final Context context = routingContext.vertx().getOrCreateContext();
+        gathered.whenComplete((values, failure) ->
+            context.runOnContext(done -> {
+                if (failure == null) {
+                    onGathered.accept(values);
+                } else {
+                    routingContext.response().setStatusCode(ShardClient.statusOf(failure)).end();
+                }
+            }));
+    }
+
+    private <T> CompletableFuture<List<T>> fetch(final int node,
+                                                 @NotNull final String uri,
+                                                 @NotNull final JavaType listType) {
+        final CompletableFuture<List<T>> list = new CompletableFuture<>();
+        shards.request(HttpMethod.GET, node, uri).handler(response -> {
+            response.exceptionHandler(list::completeExceptionally);
+            if (response.statusCode() == SC_OK) {
+                response.bodyHandler(body -> {
+                    try {
+                        list.complete(BodyFormat.JSON.decode(body, listType));
+                    } catch (final AbstractStatusCodeException e) {
+                        list.completeExceptionally(e);
+                    }
+                });
+            } else {
+                list.completeExceptionally(new IllegalStateException(
+                        String.format("Node %d answered %d", node, response.statusCode())));
+            }
+        })
+            .putHeader(ACCEPT, APPLICATION_JSON)
+            .exceptionHandler(list::completeExceptionally)
+            .end();
+        return list;
+    }
+}
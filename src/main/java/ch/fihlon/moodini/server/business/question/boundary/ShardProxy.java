@@ -0,0 +1,126 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.boundary;
+
+import ch.fihlon.moodini.server.Cluster;
+import io.vertx.core.MultiMap;
+import io.vertx.core.http.HttpClientRequest;
+import io.vertx.core.http.HttpClientResponse;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.streams.Pump;
+import io.vertx.ext.web.RoutingContext;
+
+import javax.validation.constraints.NotNull;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * This class routes the requests for a single {@link
+ * ch.fihlon.moodini.server.business.question.entity.Question} to the node of
+ * the {@link Cluster} which owns it. The request is forwarded as it is, its
+ * body and the response are streamed, so server-sent events pass as well.
+ * A request forwarded once is never forwarded again: if two nodes disagree
+ * about the owner, their layouts differ and it is answered with
+ * "421 MISDIRECTED REQUEST". An unreachable owner is answered with
+ * "502 BAD GATEWAY", an owner which does not answer in time with
+ * "504 GATEWAY TIMEOUT".
+ */
+@SuppressWarnings("PMD.DataflowAnomalyAnalysis")
+class ShardProxy {
+
+    static final String FORWARDED = "Moodini-Forwarded";
+    static final List<String> PATHS = Arrays.asList("/api/questions/:id", "/api/questions/:id/*");
+
+    private static final int SC_MISDIRECTED = 421;
+    private static final String PARAM_NAME_ID = "id";
+    private static final String TRANSFER_ENCODING = "Transfer-Encoding";
+    private static final int MAX_ID_DIGITS = 18;
+    private static final List<String> HOP_BY_HOP = Arrays.asList("connection", "keep-alive",
+            "proxy-authenticate", "proxy-authorization", "te", "trailer", "transfer-encoding", "upgrade");
+
+    private final ShardClient shards;
+    private final Cluster cluster;
+
+    ShardProxy(@NotNull final ShardClient shards) {
+        this.shards = shards;
+        this.cluster = shards.getCluster();
+    }
+
+    /**
+     * Forward the request to the owner of the question or pass it on to the
+     * next handler if this node owns it. Paths without a numeric id are
+     * always passed on.
+     *
+     * @param routingContext the routing context of the request
+     */
+    void route(@NotNull final RoutingContext routingContext) {
+        final Long questionId = parseId(routingContext.request().getParam(PARAM_NAME_ID));
+        if (questionId == null || cluster.owns(questionId)) {
+            routingContext.next();
+        } else if (routingContext.request().headers().contains(FORWARDED)) {
+            routingContext.response().setStatusCode(SC_MISDIRECTED).end();
+        } else {
+            forward(routingContext, cluster.ownerOf(questionId));
+        }
+    }
+
+    private static Long parseId(final String value) {
+        Long questionId = null;
+        if (value != null && !value.isEmpty() && value.length() <= MAX_ID_DIGITS
+                && value.chars().allMatch(Character::isDigit)) {
+            questionId = Long.valueOf(value);
+        }
+        return questionId;
+    }
+
+    private void forward(@NotNull final RoutingContext routingContext, final int owner) {
+        final HttpServerRequest request = routingContext.request();
+        final HttpServerResponse response = routingContext.response();
+        final HttpClientRequest forward = shards.request(request.method(), owner, request.uri())
+                .handler(answer -> respond(answer, response));
+        copy(request.headers(), forward.headers());
+        forward.setChunked(request.headers().contains(TRANSFER_ENCODING));
+        forward.exceptionHandler(failure -> {
+            if (!response.headWritten()) {
+                response.setStatusCode(ShardClient.statusOf(failure)).end();
+            }
+        });
+        Pump.pump(request, forward).start();
+        request.endHandler(end -> forward.end());
+    }
+
+    private static void respond(@NotNull final HttpClientResponse answer,
+                                @NotNull final HttpServerResponse response) {
+        response.setStatusCode(answer.statusCode()).setStatusMessage(answer.statusMessage());
+        copy(answer.headers(), response.headers());
+        response.setChunked(answer.headers().contains(TRANSFER_ENCODING));
+        Pump.pump(answer, response).start();
+        answer.endHandler(end -> response.end());
+    }
+
+    private static void copy(@NotNull final MultiMap source, @NotNull final MultiMap target) {
+        for (final Map.Entry<String, String> header : source) {
+            if (!HOP_BY_HOP.contains(header.getKey().toLowerCase(Locale.ENGLISH))) {
+                target.add(header.getKey(), header.getValue());
+            }
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.boundary;
+
+import ch.fihlon.moodini.server.Cluster;
+import ch.fihlon.moodini.server.business.question.control.QuestionService;
+import ch.fihlon.moodini.server.business.question.entity.BulkVote;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import javax.validation.constraints.NotNull;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * This class counts the votes uploaded in bulk in the shards of the
+ * {@link Cluster} which own their questions. The votes of this node are
+ * counted directly, those of the other nodes are uploaded to them in
+ * parallel, one upload per node, and their statuses are merged in the order
+ * of the votes. A node which can not be reached fails its own votes only,
+ * with the status 502, or 504 if it does not answer in time, and so does
+ * this node if it can not count its votes (e.g. 503 for a full write queue),
+ * the other nodes have already counted theirs. An upload
+ * forwarded by another node is never forwarded again, its votes for other
+ * shards get the status 421.
+ */
+@SuppressWarnings({"PMD.DataflowAnomalyAnalysis", "PMD.UseConcurrentHashMap"})
+class ShardVotes {
+
+    private static final int SC_OK = 200;
+    private static final int SC_MISDIRECTED = 421;
+    private static final String BULK_VOTES = "/api/votes";
+    private static final String APPLICATION_JSON = "application/json";
+
+    private final ShardClient shards;
+    private final Cluster cluster;
+    private final QuestionService questionService;
+
+    ShardVotes(@NotNull final ShardClient shards,
+               @NotNull final QuestionService questionService) {
+        this.shards = shards;
+        this.cluster = shards.getCluster();
+        this.questionService = questionService;
+    }
+
+    /**
+     * Count the votes in the shards which own them.
+     *
+     * @param votes the valid votes
+     * @param forwarded whether the votes were forwarded by another node
+     * @return the status of every vote, in the order of the votes
+     */
+    CompletableFuture<List<JsonObject>> vote(@NotNull final List<BulkVote> votes, final boolean forwarded) {
+        final Map<Integer, List<BulkVote>> byOwner = votes.stream()
+                .collect(groupingBy(vote -> cluster.ownerOf(vote.getQuestionId())));
+        final Map<Integer, CompletableFuture<List<JsonObject>>> results = new HashMap<>();
+        byOwner.forEach((owner, owned) -> results.put(owner, vote(owner, owned, forwarded)));
+        return CompletableFuture.allOf(results.values().toArray(new CompletableFuture<?>[results.size()]))
+                .thenApply(done -> merge(votes, results));
+    }
+
+    private CompletableFuture<List<JsonObject>> vote(final int owner,
+                                                     @NotNull final List<BulkVote> votes,
+                                                     final boolean forwarded) {
+        CompletableFuture<List<JsonObject>> results =
+                CompletableFuture.completedFuture(statuses(votes.size(), SC_MISDIRECTED));
+        if (owner == cluster.getNode()) {
+            results = questionService.voteBulk(votes).toCompletableFuture()
+                    .thenApply(BulkVotes::results)
+                    .exceptionally(failure -> statuses(votes.size(), ShardClient.statusOf(failure)));
+        } else if (!forwarded) {
+            results = upload(owner, votes)
+                    .exceptionally(failure -> statuses(votes.size(), ShardClient.statusOf(failure)));
+        }
+        return results;
+    }
+
+    private CompletableFuture<List<JsonObject>> upload(final int owner, @NotNull final List<BulkVote> votes) {
+        final CompletableFuture<List<JsonObject>> results = new CompletableFuture<>();
+        shards.request(HttpMethod.POST, owner, BULK_VOTES).handler(response -> {
+            response.exceptionHandler(results::completeExceptionally);
+            if (response.statusCode() == SC_OK) {
+                response.bodyHandler(body -> {
+                    try {
+                        results.complete(parse(new JsonArray(body.toString()), votes.size()));
+                    } catch (final DecodeException | ClassCastException | IllegalStateException e) {
+                        results.completeExceptionally(e);
+                    }
+                });
+            } else {
+                results.completeExceptionally(new IllegalStateException(
+                        String.format("Node %d answered %d", owner, response.statusCode())));
+            }
+        })
+            .putHeader("Accept", APPLICATION_JSON)
+            .putHeader("Content-Type", APPLICATION_JSON)
+            .exceptionHandler(results::completeExceptionally)
+            .end(BulkVotes.encode(votes).encode());
+        return results;
+    }
+
+    private static List<JsonObject> parse(@NotNull final JsonArray array, final int size) {
+        if (array.size() != size) {
+            throw new IllegalStateException(String.format("Expected %d statuses, got %d", size, array.size()));
+        }
+        final List<JsonObject> results = new ArrayList<>(size);
+        for (int index = 0; index < size; index++) {
+            results.add(array.getJsonObject(index));
+        }
+        return results;
+    }
+
+    private static List<JsonObject> statuses(final int size, final int status) {
+        return Collections.nCopies(size, BulkVotes.withStatus(status));
+    }
+
+    private List<JsonObject> merge(@NotNull final List<BulkVote> votes,
+                                   @NotNull final Map<Integer, CompletableFuture<List<JsonObject>>> results) {
+        final Map<Integer, Iterator<JsonObject>> next = new HashMap<>();
+        results.forEach((owner, result) -> next.put(owner, result.join().iterator()));
+        return votes.stream()
+                .map(vote -> next.get(cluster.ownerOf(vote.getQuestionId())).next())
+                .collect(toList());
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.boundary;
+
+import javax.validation.constraints.NotNull;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class records the stages of one request. Every stage ends with a
+ * mark and starts where the previous one ended, the first one starts when
+ * the request arrived. It is only used on the event loop of the request.
+ */
+final class StageTimer {
+
+    private static final int INITIAL_STAGES = 8;
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final long start;
+    private long last;
+    private String[] names = new String[INITIAL_STAGES];
+    private long[] durations = new long[INITIAL_STAGES];
+    private int size;
+
+    StageTimer(final long start) {
+        this.start = start;
+        this.last = start;
+    }
+
+    void mark(@NotNull final String stage) {
+        final long now = System.nanoTime();
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+            durations = Arrays.copyOf(durations, size * 2);
+        }
+        names[size] = stage;
+        durations[size] = now - last;
+        size++;
+        last = now;
+    }
+
+    /**
+     * Format the stages as the value of a {@code Server-Timing} header,
+     * followed by the total time since the request arrived.
+     *
+     * @return the stages with their durations in milliseconds
+     */
+    String format() {
+        final StringBuilder header = new StringBuilder(size * 16 + 16);
+        for (int i = 0; i < size; i++) {
+            append(header, names[i], durations[i]).append(", ");
+        }
+        return append(header, "total", System.nanoTime() - start).toString();
+    }
+
+    private static StringBuilder append(@NotNull final StringBuilder header,
+                                        @NotNull final String stage,
+                                        final long nanos) {
+        return header.append(stage).append(";dur=")
+                .append(String.format(Locale.ROOT, "%.3f", nanos / NANOS_PER_MILLI));
+    }
+
+}
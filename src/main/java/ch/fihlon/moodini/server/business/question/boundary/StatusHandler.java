@@ -0,0 +1,54 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.boundary;
+
+import ch.fihlon.moodini.server.SnapshotStatus;
+import ch.fihlon.moodini.server.business.question.control.QuestionService;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * This class handles the HTTP requests for the operational status of the
+ * server, like the depth of the write queue, to monitor the backpressure,
+ * and the state of the journal and the snapshots, in the format accepted by
+ * the client.
+ */
+class StatusHandler {
+
+    private final QuestionService questionService;
+
+    StatusHandler(@NotNull final QuestionService questionService) {
+        this.questionService = questionService;
+    }
+
+    void status(@NotNull final RoutingContext routingContext) {
+        final JsonObject writes = new JsonObject()
+                .put("pending", questionService.getPendingWrites())
+                .put("rejected", questionService.getRejectedWrites());
+        final SnapshotStatus snapshotStatus = questionService.getSnapshotStatus();
+        final JsonObject snapshot = new JsonObject()
+                .put("journalEntries", snapshotStatus.getJournalEntries())
+                .put("journalBytes", snapshotStatus.getJournalBytes())
+                .put("snapshots", snapshotStatus.getSnapshots())
+                .put("lastDuration", snapshotStatus.getLastDuration());
+        ResultsHandler.send(routingContext, new JsonObject().put("writes", writes).put("snapshot", snapshot));
+    }
+
+}
@@ -0,0 +1,175 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.boundary;
+
+import ch.fihlon.moodini.server.business.question.control.QuestionService;
+import ch.fihlon.moodini.server.business.question.entity.Answer;
+import ch.fihlon.moodini.server.exception.AbstractStatusCodeException;
+import ch.fihlon.moodini.server.exception.BadRequestException;
+import ch.fihlon.moodini.server.exception.NotFoundException;
+import io.vertx.core.Context;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.ext.web.RoutingContext;
+
+import javax.validation.constraints.NotNull;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * This class handles the HTTP requests to vote, the hottest path of the
+ * server. It does not use the BodyHandler: the few bytes of the body are
+ * collected in a small {@link Buffer} and mapped to the {@link Answer}
+ * through a table indexed by their first byte, comparing the remaining
+ * bytes without decoding them into a {@link String}. The id is parsed
+ * without a {@link NumberFormatException}, and invalid ids and answers fail
+ * with the (stackless) status exceptions.
+ */
+class VoteHandler {
+
+    private static final String PARAM_NAME_ID = "id";
+    private static final String VOTER_TOKEN = "Voter-Token";
+    private static final int MAX_TOKEN_LENGTH = 255;
+    private static final int MAX_BODY_BYTES = 16;
+    private static final int MAX_ID_DIGITS = 18;
+    private static final int RADIX = 10;
+    private static final int ASCII = 128;
+
+    private static final Answer[] BY_FIRST_BYTE = new Answer[ASCII];
+    private static final byte[][] NAMES = new byte[Answer.values().length][];
+
+    static {
+        for (final Answer answer : Answer.values()) {
+            final byte[] name = answer.name().getBytes(StandardCharsets.US_ASCII);
+            if (BY_FIRST_BYTE[name[0]] != null) {
+                throw new IllegalStateException("The answers must start with different letters: " + answer);
+            }
+            BY_FIRST_BYTE[name[0]] = answer;
+            NAMES[answer.ordinal()] = name;
+        }
+    }
+
+    private final QuestionService questionService;
+    private final IdempotencyCache idempotencyCache;
+
+    VoteHandler(@NotNull final QuestionService questionService,
+                @NotNull final IdempotencyCache idempotencyCache) {
+        this.questionService = questionService;
+        this.idempotencyCache = idempotencyCache;
+    }
+
+    void vote(@NotNull final RoutingContext routingContext) {
+        final Long questionId = parseId(routingContext.request().getParam(PARAM_NAME_ID));
+        final HttpServerRequest request = routingContext.request();
+        final Buffer body = Buffer.buffer(MAX_BODY_BYTES);
+        request.handler(chunk -> {
+            // a longer body is no answer anyway, so it is not collected
+            if (body.length() <= MAX_BODY_BYTES) {
+                body.appendBuffer(chunk);
+            }
+        });
+        request.endHandler(end -> {
+            try {
+                vote(routingContext, questionId, body);
+            } catch (final AbstractStatusCodeException e) {
+                routingContext.fail(e);
+            }
+        });
+    }
+
+    private void vote(@NotNull final RoutingContext routingContext,
+                      @NotNull final Long questionId,
+                      @NotNull final Buffer body) {
+        ServerTiming.mark(routingContext, "body");
+        final Answer answer = parseAnswer(body);
+        ServerTiming.mark(routingContext, "parse");
+        // the idempotency cache fingerprints the body of the request
+        routingContext.setBody(body);
+        final CompletionStage<Long> stage = idempotencyCache.execute(routingContext,
+            () -> questionService.vote(questionId, answer, voterToken(routingContext)));
+        ServerTiming.mark(routingContext, "service");
+        final Context context = routingContext.vertx().getOrCreateContext();
+        stage.whenComplete((votes, failure) ->
+            context.runOnContext(done -> {
+                ServerTiming.mark(routingContext, "persist");
+                if (failure == null) {
+                    routingContext.response().end();
+                } else {
+                    routingContext.fail(failure);
+                }
+            }));
+    }
+
+    /**
+     * Parse the id of a {@link ch.fihlon.moodini.server.business.question.entity.Question}.
+     *
+     * @param value the id from the path of the request
+     * @return the id
+     * @throws NotFoundException if the id is no positive number
+     */
+    @SuppressWarnings("PMD.DataflowAnomalyAnalysis")
+    static Long parseId(@NotNull final String value) {
+        if (value.isEmpty() || value.length() > MAX_ID_DIGITS) {
+            throw new NotFoundException();
+        }
+        long questionId = 0;
+        for (int i = 0; i < value.length(); i++) {
+            final int digit = Character.digit(value.charAt(i), RADIX);
+            if (digit < 0) {
+                throw new NotFoundException();
+            }
+            questionId = questionId * RADIX + digit;
+        }
+        return questionId;
+    }
+
+    /**
+     * Map the body of a vote to the {@link Answer} with the same name.
+     *
+     * @param body the body of the request
+     * @return the {@link Answer}
+     * @throws BadRequestException if the body is not the name of an {@link Answer}
+     */
+    @SuppressWarnings("PMD.DataflowAnomalyAnalysis")
+    static Answer parseAnswer(@NotNull final Buffer body) {
+        Answer answer = null;
+        if (body.length() > 0 && body.getByte(0) >= 0) {
+            answer = BY_FIRST_BYTE[body.getByte(0)];
+        }
+        if (answer == null || !matches(body, NAMES[answer.ordinal()])) {
+            throw new BadRequestException("Unknown answer");
+        }
+        return answer;
+    }
+
+    private static boolean matches(@NotNull final Buffer body, @NotNull final byte[] name) {
+        boolean matches = body.length() == name.length;
+        for (int i = 1; matches && i < name.length; i++) {
+            matches = body.getByte(i) == name[i];
+        }
+        return matches;
+    }
+
+    private static String voterToken(@NotNull final RoutingContext routingContext) {
+        final String voterToken = routingContext.request().getHeader(VOTER_TOKEN);
+        if (voterToken != null && voterToken.length() > MAX_TOKEN_LENGTH) {
+            throw new BadRequestException("The Voter-Token must not be longer than " + MAX_TOKEN_LENGTH);
+        }
+        return voterToken;
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.control;
+
+import ch.fihlon.moodini.server.SnapshotController;
+import ch.fihlon.moodini.server.SnapshotStatus;
+import ch.fihlon.moodini.server.business.question.entity.BulkVote;
+import ch.fihlon.moodini.server.business.question.entity.Question;
+import ch.fihlon.moodini.server.business.question.entity.Vote;
+
+import javax.validation.constraints.NotNull;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This persistence engine journals every change as a serialized command
+ * using airomem and Prevayler. Votes are counted at the execution time of
+ * their command, which Prevayler journals with the command.
+ */
+class AiromemQuestionStore implements QuestionStore {
+
+    private final SnapshotController<QuestionRepository> controller;
+
+    AiromemQuestionStore(@NotNull final SnapshotController<QuestionRepository> controller) {
+        this.controller = controller;
+    }
+
+    /**
+     * Get the repository to read from it. It must not be modified!
+     *
+     * @return the repository
+     */
+    @Override
+    public QuestionRepository readOnly() {
+        return controller.readOnly();
+    }
+
+    /**
+     * Create a new {@link Question} and journal the command.
+     *
+     * @param question the new {@link Question}
+     * @return the created {@link Question} with id and version
+     */
+    @Override
+    public Question create(@NotNull final Question question) {
+        return controller.executeAndQuery((ctrl) -> ctrl.create(question));
+    }
+
+    /**
+     * Create new {@link Question}s and journal them as one command.
+     *
+     * @param questions the new {@link Question}s
+     * @return the created {@link Question}s with ids and versions
+     */
+    @Override
+    public List<Question> createAll(@NotNull final List<Question> questions) {
+        final List<Question> batch = new ArrayList<>(questions);
+        return controller.executeAndQuery((ctrl) -> ctrl.createAll(batch));
+    }
+
+    /**
+     * Update an existing {@link Question} and journal the command.
+     *
+     * @param question the changed {@link Question}
+     * @return the updated {@link Question} with the new version
+     */
+    @Override
+    public Question update(@NotNull final Question question) {
+        return controller.executeAndQuery((ctrl) -> ctrl.update(question));
+    }
+
+    /**
+     * Delete a {@link Question} and journal the command.
+     *
+     * @param questionId the id of the {@link Question}
+     * @return the id of the deleted {@link Question}
+     */
+    @Override
+    public Long delete(@NotNull final Long questionId) {
+        controller.executeAndQuery((ctrl) -> {
+            ctrl.delete(questionId);
+            return null;
+        });
+        return questionId;
+    }
+
+    /**
+     * Count a vote and journal the command.
+     *
+     * @param vote the vote
+     * @return the number of votes for the answer
+     */
+    @Override
+    public Long vote(@NotNull final Vote vote) {
+        return controller.executeAndQuery((ctrl, context) -> ctrl.vote(vote, context.time.toEpochMilli()));
+    }
+
+    /**
+     * Count a batch of votes and journal the command.
+     *
+     * @param votes the votes
+     * @return the number of votes for each answer voted, zero for unknown {@link Question}s
+     */
+    @Override
+    public long[] vote(@NotNull final List<Vote> votes) {
+        final List<Vote> batch = new ArrayList<>(votes);
+        return controller.executeAndQuery((ctrl, context) -> ctrl.vote(batch, context.time.toEpochMilli()));
+    }
+
+    /**
+     * Count votes uploaded in bulk and journal the command.
+     *
+     * @param votes the votes with their counts
+     * @return the number of votes for each answer voted, zero for unknown {@link Question}s
+     */
+    @Override
+    public long[] voteBulk(@NotNull final List<BulkVote> votes) {
+        final List<BulkVote> bulk = new ArrayList<>(votes);
+        return controller.executeAndQuery((ctrl, context) -> ctrl.voteBulk(bulk, context.time.toEpochMilli()));
+    }
+
+    /**
+     * Take a snapshot of all {@link Question}s and votes and delete the journal written before.
+     *
+     * @return the status after the snapshot
+     */
+    @Override
+    public SnapshotStatus snapshot() {
+        return controller.snapshot();
+    }
+
+    /**
+     * Get the status of the journal and the snapshots.
+     *
+     * @return the status
+     */
+    @Override
+    public SnapshotStatus getStatus() {
+        return controller.getStatus();
+    }
+
+    /**
+     * Close the persistence store. A last snapshot is taken, so the next start
+     * does not need to replay the journal.
+     */
+    @Override
+    public void close() {
+        controller.close();
+    }
+
+}
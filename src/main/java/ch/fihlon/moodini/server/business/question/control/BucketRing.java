@@ -0,0 +1,82 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.control;
+
+import ch.fihlon.moodini.server.business.question.entity.Answer;
+import ch.fihlon.moodini.server.business.question.entity.HistoryBucket;
+import ch.fihlon.moodini.server.business.question.entity.Resolution;
+
+import javax.validation.constraints.NotNull;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class counts the votes in a fixed number of buckets of the same
+ * width. The buckets are kept in a ring of primitive arrays: a bucket is
+ * stored in the slot of its number modulo the size of the ring, so a new
+ * bucket overwrites the oldest one. Votes for buckets which were already
+ * overwritten are ignored.
+ */
+final class BucketRing implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+    private static final int ANSWERS = Answer.values().length;
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private final long width;
+    private final long[] keys;
+    private final long[] counts;
+    private long newest = EMPTY;
+
+    BucketRing(@NotNull final Resolution resolution) {
+        width = resolution.getMillis();
+        keys = new long[resolution.getRetention()];
+        counts = new long[keys.length * ANSWERS];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    void add(final long time, @NotNull final Answer answer, final long count) {
+        final long bucket = Math.floorDiv(time, width);
+        final int slot = slot(bucket);
+        if (keys[slot] < bucket) {
+            keys[slot] = bucket;
+            Arrays.fill(counts, slot * ANSWERS, (slot + 1) * ANSWERS, 0);
+            newest = Math.max(newest, bucket);
+        }
+        if (keys[slot] == bucket) {
+            counts[slot * ANSWERS + answer.ordinal()] += count;
+        }
+    }
+
+    void read(final long from, final long until, @NotNull final List<HistoryBucket> buckets) {
+        final long last = Math.min(Math.floorDiv(until - 1, width), newest);
+        final long first = Math.max(Math.floorDiv(from, width), newest - keys.length + 1);
+        for (long bucket = first; bucket <= last; bucket++) {
+            final int slot = slot(bucket);
+            if (keys[slot] == bucket) {
+                buckets.add(MoodHistory.bucket(bucket * width, counts, slot * ANSWERS));
+            }
+        }
+    }
+
+    private int slot(final long bucket) {
+        return (int) Math.floorMod(bucket, (long) keys.length);
+    }
+
+}
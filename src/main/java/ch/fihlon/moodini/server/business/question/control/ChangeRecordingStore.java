@@ -0,0 +1,268 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.control;
+
+import ch.fihlon.moodini.server.ChangeLog;
+import ch.fihlon.moodini.server.PersistenceManager;
+import ch.fihlon.moodini.server.SnapshotStatus;
+import ch.fihlon.moodini.server.business.question.entity.BulkVote;
+import ch.fihlon.moodini.server.business.question.entity.Change;
+import ch.fihlon.moodini.server.business.question.entity.ChangeType;
+import ch.fihlon.moodini.server.business.question.entity.Question;
+import ch.fihlon.moodini.server.business.question.entity.Vote;
+import io.vertx.core.json.Json;
+
+import javax.validation.constraints.NotNull;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+import java.util.stream.Collectors;
+
+/**
+ * This persistence engine decorates another one and appends every change it
+ * applied to the {@link ChangeLog} as a {@link Change} encoded in JSON. The
+ * changes are appended after they were persisted, in the same critical
+ * section, so their offsets follow the order in which they were applied;
+ * rejected changes are not published. The changes of a batch are appended
+ * with one flush. Votes for unknown {@link Question}s are skipped.
+ */
+@SuppressWarnings("PMD.TooManyMethods")
+class ChangeRecordingStore implements QuestionStore {
+
+    private final QuestionStore store;
+    private final ChangeLog changeLog;
+    private final Object lock = new Object();
+
+    ChangeRecordingStore(@NotNull final QuestionStore store,
+                         @NotNull final ChangeLog changeLog) {
+        this.store = store;
+        this.changeLog = changeLog;
+    }
+
+    /**
+     * Open the persistence engine with the specified name and publish its
+     * changes to the {@link ChangeLog} of the {@link Question}s.
+     *
+     * @param engine the name of the persistence engine, see {@link QuestionStore#open(String)}
+     * @return the decorated engine
+     */
+    static ChangeRecordingStore open(@NotNull final String engine) {
+        return new ChangeRecordingStore(QuestionStore.open(engine), PersistenceManager.createChangeLog(Question.class));
+    }
+
+    /**
+     * Get the {@link ChangeLog} the changes are published to.
+     *
+     * @return the {@link ChangeLog}
+     */
+    ChangeLog getChangeLog() {
+        return changeLog;
+    }
+
+    /**
+     * Get the repository to read from it. It must not be modified!
+     *
+     * @return the repository
+     */
+    @Override
+    public QuestionRepository readOnly() {
+        return store.readOnly();
+    }
+
+    /**
+     * Create a new {@link Question} and publish the change.
+     *
+     * @param question the new {@link Question}
+     * @return the created {@link Question} with id and version
+     */
+    @Override
+    public Question create(@NotNull final Question question) {
+        synchronized (lock) {
+            final Question createdQuestion = store.create(question);
+            publish(Collections.singletonList(created(createdQuestion)));
+            return createdQuestion;
+        }
+    }
+
+    /**
+     * Create new {@link Question}s and publish a change for every {@link Question} created.
+     *
+     * @param questions the new {@link Question}s
+     * @return the created {@link Question}s with ids and versions
+     */
+    @Override
+    public List<Question> createAll(@NotNull final List<Question> questions) {
+        synchronized (lock) {
+            final List<Question> createdQuestions = store.createAll(questions);
+            publish(createdQuestions.stream().map(ChangeRecordingStore::created).collect(Collectors.toList()));
+            return createdQuestions;
+        }
+    }
+
+    /**
+     * Update an existing {@link Question} and publish the change.
+     *
+     * @param question the changed {@link Question}
+     * @return the updated {@link Question} with the new version
+     */
+    @Override
+    public Question update(@NotNull final Question question) {
+        synchronized (lock) {
+            final Question updatedQuestion = store.update(question);
+            publish(Collections.singletonList(change(ChangeType.QUESTION_UPDATED, updatedQuestion.getQuestionId(),
+                builder -> builder.question(updatedQuestion))));
+            return updatedQuestion;
+        }
+    }
+
+    /**
+     * Delete a {@link Question} and publish the change.
+     *
+     * @param questionId the id of the {@link Question}
+     * @return the id of the deleted {@link Question}
+     */
+    @Override
+    public Long delete(@NotNull final Long questionId) {
+        synchronized (lock) {
+            store.delete(questionId);
+            publish(Collections.singletonList(change(ChangeType.QUESTION_DELETED, questionId, Function.identity())));
+            return questionId;
+        }
+    }
+
+    /**
+     * Count a vote and publish the change.
+     *
+     * @param vote the vote
+     * @return the number of votes for the answer
+     */
+    @Override
+    public Long vote(@NotNull final Vote vote) {
+        synchronized (lock) {
+            final Long total = store.vote(vote);
+            final List<LongFunction<String>> changes = new ArrayList<>(1);
+            addVotes(changes, new BulkVote(vote.getQuestionId(), vote.getAnswer(), 1), total);
+            publish(changes);
+            return total;
+        }
+    }
+
+    /**
+     * Count a batch of votes and publish a change for every vote counted.
+     *
+     * @param votes the votes
+     * @return the number of votes for each answer voted, zero for unknown {@link Question}s
+     */
+    @Override
+    @SuppressWarnings("PMD.AvoidInstantiatingObjectsInLoops")
+    public long[] vote(@NotNull final List<Vote> votes) {
+        synchronized (lock) {
+            final long[] totals = store.vote(votes);
+            final List<LongFunction<String>> changes = new ArrayList<>(totals.length);
+            for (int i = 0; i < totals.length; i++) {
+                final Vote vote = votes.get(i);
+                addVotes(changes, new BulkVote(vote.getQuestionId(), vote.getAnswer(), 1), totals[i]);
+            }
+            publish(changes);
+            return totals;
+        }
+    }
+
+    /**
+     * Count votes uploaded in bulk and publish a change for every bulk counted.
+     *
+     * @param votes the votes with their counts
+     * @return the number of votes for each answer voted, zero for unknown {@link Question}s
+     */
+    @Override
+    public long[] voteBulk(@NotNull final List<BulkVote> votes) {
+        synchronized (lock) {
+            final long[] totals = store.voteBulk(votes);
+            final List<LongFunction<String>> changes = new ArrayList<>(totals.length);
+            for (int i = 0; i < totals.length; i++) {
+                addVotes(changes, votes.get(i), totals[i]);
+            }
+            publish(changes);
+            return totals;
+        }
+    }
+
+    private static LongFunction<String> created(@NotNull final Question createdQuestion) {
+        return change(ChangeType.QUESTION_CREATED, createdQuestion.getQuestionId(),
+            builder -> builder.question(createdQuestion));
+    }
+
+    private static void addVotes(@NotNull final List<LongFunction<String>> changes,
+                                 @NotNull final BulkVote votes, final long total) {
+        if (total > 0) {
+            changes.add(change(ChangeType.VOTES_CAST, votes.getQuestionId(),
+                builder -> builder.answer(votes.getAnswer()).count(votes.getCount()).total(total)));
+        }
+    }
+
+    private static LongFunction<String> change(@NotNull final ChangeType type,
+                                               @NotNull final Long questionId,
+                                               @NotNull final Function<Change.ChangeBuilder,
+                                                   Change.ChangeBuilder> details) {
+        final long time = System.currentTimeMillis();
+        return offset -> Json.encode(details.apply(Change.builder()
+                .offset(offset)
+                .time(time)
+                .type(type)
+                .questionId(questionId))
+                .build());
+    }
+
+    private void publish(@NotNull final List<LongFunction<String>> changes) {
+        if (!changes.isEmpty()) {
+            changeLog.appendAll(changes);
+        }
+    }
+
+    /**
+     * Take a snapshot of the decorated engine.
+     *
+     * @return the status after the snapshot
+     */
+    @Override
+    public SnapshotStatus snapshot() {
+        return store.snapshot();
+    }
+
+    /**
+     * Get the status of the decorated engine.
+     *
+     * @return the status
+     */
+    @Override
+    public SnapshotStatus getStatus() {
+        return store.getStatus();
+    }
+
+    /**
+     * Close the decorated engine and the {@link ChangeLog}.
+     */
+    @Override
+    public void close() {
+        store.close();
+        changeLog.close();
+    }
+
+}
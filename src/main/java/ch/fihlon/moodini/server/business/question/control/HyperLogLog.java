@@ -0,0 +1,134 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.control;
+
+import javax.validation.constraints.NotNull;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+
+/**
+ * This class is a HyperLogLog sketch estimating the number of distinct
+ * voters from the 64-bit hashes of their tokens. It has 4096 registers of
+ * one byte, so it needs 4 KB no matter how many voters it has seen, and
+ * estimates with a standard error of about 1.6%. Small numbers of voters are
+ * estimated by linear counting. Sketches are merged by keeping the maximum
+ * of every register, the merged sketch estimates the voters of the union.
+ * <p>
+ * The sum of the inverse registers is maintained on every change, so an
+ * estimate is computed in constant time. A sketch is changed by one thread
+ * at a time, concurrent readers may see a slightly outdated estimate.
+ */
+final class HyperLogLog implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int PRECISION = 12;
+    private static final int REGISTERS = 1 << PRECISION;
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / REGISTERS);
+    private static final double LINEAR_LIMIT = 2.5 * REGISTERS;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final long MIX_1 = 0xff51afd7ed558ccdL;
+    private static final long MIX_2 = 0xc4ceb9fe1a85ec53L;
+    private static final int MIX_SHIFT = 33;
+
+    private final byte[] registers = new byte[REGISTERS];
+
+    // Derived from the registers and recomputed on deserialization.
+    private transient double inverseSum = REGISTERS;
+    private transient int zeros = REGISTERS;
+
+    /**
+     * Hash a voter token to 64 bits, FNV-1a finished by the MurmurHash3 mix
+     * to spread the bits evenly. The token itself is never stored.
+     *
+     * @param token the token of a voter
+     * @return the hash of the token
+     */
+    @SuppressWarnings("PMD.DataflowAnomalyAnalysis")
+    static long hash(@NotNull final String token) {
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < token.length(); i++) {
+            hash = (hash ^ token.charAt(i)) * FNV_PRIME;
+        }
+        hash = (hash ^ (hash >>> MIX_SHIFT)) * MIX_1;
+        hash = (hash ^ (hash >>> MIX_SHIFT)) * MIX_2;
+        return hash ^ (hash >>> MIX_SHIFT);
+    }
+
+    /**
+     * Add a voter. The first bits of the hash select the register, the
+     * position of the first set bit of the rest is its rank.
+     *
+     * @param hash the hash of the voter token
+     */
+    void add(final long hash) {
+        final int index = (int) (hash >>> (Long.SIZE - PRECISION));
+        final long rest = hash << PRECISION | 1L << (PRECISION - 1);
+        update(index, Long.numberOfLeadingZeros(rest) + 1);
+    }
+
+    /**
+     * Add all voters of another sketch.
+     *
+     * @param other the other sketch
+     */
+    void merge(@NotNull final HyperLogLog other) {
+        for (int i = 0; i < REGISTERS; i++) {
+            update(i, other.registers[i]);
+        }
+    }
+
+    private void update(final int index, final int rank) {
+        final int current = registers[index];
+        if (rank > current) {
+            inverseSum += Math.scalb(1.0, -rank) - Math.scalb(1.0, -current);
+            if (current == 0) {
+                zeros--;
+            }
+            registers[index] = (byte) rank;
+        }
+    }
+
+    /**
+     * Estimate the number of distinct voters.
+     *
+     * @return the estimated number of distinct voters
+     */
+    @SuppressWarnings("PMD.DataflowAnomalyAnalysis")
+    long estimate() {
+        double estimate = ALPHA * REGISTERS * REGISTERS / inverseSum;
+        if (estimate <= LINEAR_LIMIT && zeros > 0) {
+            estimate = REGISTERS * Math.log((double) REGISTERS / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    private void readObject(@NotNull final ObjectInputStream stream) throws IOException, ClassNotFoundException {
+        stream.defaultReadObject();
+        inverseSum = 0;
+        zeros = 0;
+        for (final byte register : registers) {
+            inverseSum += Math.scalb(1.0, -register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.control;
+
+import ch.fihlon.moodini.server.EventLog;
+import ch.fihlon.moodini.server.SnapshotStatus;
+import ch.fihlon.moodini.server.business.question.entity.BulkVote;
+import ch.fihlon.moodini.server.business.question.entity.Question;
+import ch.fihlon.moodini.server.business.question.entity.Vote;
+
+import javax.validation.constraints.NotNull;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * This persistence engine writes every change as a binary
+ * {@link QuestionEvent} to a memory-mapped {@link EventLog}. A change is
+ * checked against the repository first, so an invalid change throws before it
+ * is written to the log, and applied to the repository only after it was
+ * appended, so a change which could not be written leaves the repository as
+ * it was. Votes are written with the time they were counted.
+ */
+@SuppressWarnings("PMD.TooManyMethods")
+class LogQuestionStore implements QuestionStore {
+
+    private final EventLog eventLog;
+    private final QuestionRepository repository;
+    private final Object lock = new Object();
+
+    LogQuestionStore(@NotNull final EventLog eventLog) {
+        this.eventLog = eventLog;
+        this.repository = eventLog.load(QuestionRepository::new, QuestionEventCodec::replay);
+    }
+
+    /**
+     * Get the repository to read from it. It must not be modified!
+     *
+     * @return the repository
+     */
+    @Override
+    public QuestionRepository readOnly() {
+        return repository;
+    }
+
+    /**
+     * Create a new {@link Question} and append the event to the log.
+     *
+     * @param question the new {@link Question}
+     * @return the created {@link Question} with id and version
+     */
+    @Override
+    public Question create(@NotNull final Question question) {
+        synchronized (lock) {
+            return apply(QuestionEventCodec.question(QuestionEvent.QUESTION_CREATED, question),
+                () -> repository.create(question));
+        }
+    }
+
+    /**
+     * Create new {@link Question}s and append them to the log as one event.
+     *
+     * @param questions the new {@link Question}s
+     * @return the created {@link Question}s with ids and versions
+     */
+    @Override
+    public List<Question> createAll(@NotNull final List<Question> questions) {
+        synchronized (lock) {
+            return apply(QuestionEventCodec.imported(questions), () -> repository.createAll(questions));
+        }
+    }
+
+    /**
+     * Update an existing {@link Question} and append the event to the log.
+     *
+     * @param question the changed {@link Question}
+     * @return the updated {@link Question} with the new version
+     */
+    @Override
+    public Question update(@NotNull final Question question) {
+        synchronized (lock) {
+            repository.checkUpdate(question);
+            return apply(QuestionEventCodec.question(QuestionEvent.QUESTION_UPDATED, question),
+                () -> repository.update(question));
+        }
+    }
+
+    /**
+     * Delete a {@link Question} and append the event to the log.
+     *
+     * @param questionId the id of the {@link Question}
+     * @return the id of the deleted {@link Question}
+     */
+    @Override
+    public Long delete(@NotNull final Long questionId) {
+        synchronized (lock) {
+            repository.checkDelete(questionId);
+            return apply(QuestionEventCodec.deleted(questionId), () -> {
+                repository.delete(questionId);
+                return questionId;
+            });
+        }
+    }
+
+    /**
+     * Count a vote and append the event to the log.
+     *
+     * @param vote the vote
+     * @return the number of votes for the answer
+     */
+    @Override
+    public Long vote(@NotNull final Vote vote) {
+        synchronized (lock) {
+            final long time = System.currentTimeMillis();
+            repository.require(vote.getQuestionId());
+            return apply(QuestionEventCodec.voteCast(Collections.singletonList(vote), time),
+                () -> repository.vote(vote, time));
+        }
+    }
+
+    /**
+     * Count a batch of votes and append the event to the log.
+     *
+     * @param votes the votes
+     * @return the number of votes for each answer voted, zero for unknown {@link Question}s
+     */
+    @Override
+    public long[] vote(@NotNull final List<Vote> votes) {
+        synchronized (lock) {
+            final long time = System.currentTimeMillis();
+            return apply(QuestionEventCodec.voteCast(votes, time), () -> repository.vote(votes, time));
+        }
+    }
+
+    /**
+     * Count votes uploaded in bulk and append the event to the log.
+     *
+     * @param votes the votes with their counts
+     * @return the number of votes for each answer voted, zero for unknown {@link Question}s
+     */
+    @Override
+    public long[] voteBulk(@NotNull final List<BulkVote> votes) {
+        synchronized (lock) {
+            final long time = System.currentTimeMillis();
+            return apply(QuestionEventCodec.votesCounted(votes, time), () -> repository.voteBulk(votes, time));
+        }
+    }
+
+    /**
+     * Take a snapshot of all {@link Question}s and votes and delete the segments written before.
+     *
+     * @return the status after the snapshot
+     */
+    @Override
+    public SnapshotStatus snapshot() {
+        synchronized (lock) {
+            return eventLog.snapshot(repository);
+        }
+    }
+
+    /**
+     * Get the status of the event log and the snapshots.
+     *
+     * @return the status
+     */
+    @Override
+    public SnapshotStatus getStatus() {
+        return eventLog.getStatus();
+    }
+
+    /**
+     * Close the event log. A last snapshot is taken, so the next start
+     * does not need to replay the log.
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            eventLog.snapshot(repository);
+            eventLog.close();
+        }
+    }
+
+    private <T> T apply(@NotNull final QuestionEventCodec.EncodedEvent event, @NotNull final Supplier<T> change) {
+        eventLog.append(event.getLength(), event.getWriter());
+        final T result = change.get();
+        if (eventLog.isSnapshotDue()) {
+            eventLog.snapshot(repository);
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.control;
+
+import ch.fihlon.moodini.server.business.question.entity.Answer;
+import ch.fihlon.moodini.server.business.question.entity.HistoryBucket;
+import ch.fihlon.moodini.server.business.question.entity.Period;
+import ch.fihlon.moodini.server.business.question.entity.Resolution;
+
+import javax.validation.constraints.NotNull;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * This class records when the votes for one question were cast.
+ * Every vote is counted in a bucket of every {@link Resolution}: the minutes
+ * and hours in a {@link BucketRing} each, the days in a sorted map which is
+ * never truncated. The coarse buckets are rolled up while voting, so reading
+ * a long period only reads a few buckets and never the minutes. The votes
+ * are counted by the single writer of the repository, the readers lock the
+ * history (on the map of days) only while they copy the buckets they read.
+ */
+final class MoodHistory implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+    private static final Answer[] ANSWERS = Answer.values();
+
+    private final BucketRing minutes = new BucketRing(Resolution.MINUTE);
+    private final BucketRing hours = new BucketRing(Resolution.HOUR);
+    private final NavigableMap<Long, long[]> days = new TreeMap<>();
+
+    void add(final long time, @NotNull final Answer answer, final long count) {
+        synchronized (days) {
+            minutes.add(time, answer, count);
+            hours.add(time, answer, count);
+            final long day = Math.floorDiv(time, Resolution.DAY.getMillis());
+            days.computeIfAbsent(day, key -> new long[ANSWERS.length])[answer.ordinal()] += count;
+        }
+    }
+
+    List<HistoryBucket> read(@NotNull final Resolution resolution, @NotNull final Period period) {
+        final List<HistoryBucket> buckets = new ArrayList<>();
+        synchronized (days) {
+            if (resolution == Resolution.MINUTE) {
+                minutes.read(period.getFrom(), period.getUntil(), buckets);
+            } else if (resolution == Resolution.HOUR) {
+                hours.read(period.getFrom(), period.getUntil(), buckets);
+            } else {
+                final long width = Resolution.DAY.getMillis();
+                days.subMap(Math.floorDiv(period.getFrom(), width), true,
+                        Math.floorDiv(period.getUntil() - 1, width), true)
+                        .forEach((day, counts) -> buckets.add(bucket(day * width, counts, 0)));
+            }
+        }
+        return buckets;
+    }
+
+    static HistoryBucket bucket(final long start, @NotNull final long[] counts, final int offset) {
+        final EnumMap<Answer, Long> votes = new EnumMap<>(Answer.class);
+        for (final Answer answer : ANSWERS) {
+            votes.put(answer, counts[offset + answer.ordinal()]);
+        }
+        return new HistoryBucket(start, Collections.unmodifiableMap(votes));
+    }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.control;
+
+import ch.fihlon.moodini.server.exception.ServiceUnavailableException;
+
+import javax.validation.constraints.NotNull;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * This class runs the persistence commands on a dedicated writer thread, so a
+ * disk stall while journaling never blocks a Vert.x event loop. The queue of
+ * waiting commands is bounded: when it is full, new commands are rejected
+ * with a {@link ServiceUnavailableException} instead of piling up.
+ */
+class PersistenceWriter {
+
+    private static final long CLOSE_TIMEOUT = 10;
+
+    private final ThreadPoolExecutor executor;
+    private final AtomicLong rejected = new AtomicLong();
+
+    PersistenceWriter(final int capacity) {
+        executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(capacity), PersistenceWriter::newThread);
+    }
+
+    @SuppressWarnings("PMD.DataflowAnomalyAnalysis")
+    <T> CompletionStage<T> submit(@NotNull final Supplier<T> command) {
+        CompletableFuture<T> future;
+        try {
+            future = CompletableFuture.supplyAsync(command, executor);
+        } catch (final RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            future = new CompletableFuture<>();
+            future.completeExceptionally(new ServiceUnavailableException("The write queue is full!"));
+        }
+        return future;
+    }
+
+    int getQueueDepth() {
+        return executor.getQueue().size() + executor.getActiveCount();
+    }
+
+    long getRejected() {
+        return rejected.get();
+    }
+
+    void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(CLOSE_TIMEOUT, TimeUnit.SECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Thread newThread(@NotNull final Runnable runnable) {
+        final Thread thread = new Thread(runnable, "moodini-writer");
+        thread.setDaemon(true);
+        return thread;
+    }
+}
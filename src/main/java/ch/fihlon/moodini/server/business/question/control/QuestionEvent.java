@@ -0,0 +1,46 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.control;
+
+import ch.fihlon.moodini.server.business.question.entity.Question;
+
+/**
+ * This enum represents the events written to the binary event log. Every
+ * record starts with the ordinal of the event as a byte. The events record
+ * the input of the changes, replaying them through the
+ * {@link QuestionRepository} assigns the same ids and versions again. The
+ * votes are followed by the time they were counted; votes written before the
+ * time was recorded are replayed with an unknown time. The answer of an
+ * identified vote is flagged and followed by the hash of the voter token.
+ * An import is written as one event with all the {@link Question}s created.
+ * The records are encoded and replayed by the {@link QuestionEventCodec}.
+ */
+enum QuestionEvent {
+
+    // CHECKSTYLE DISABLE JavadocVariable FOR 9 LINES
+    QUESTION_CREATED,
+    QUESTION_UPDATED,
+    QUESTION_DELETED,
+    VOTE_CAST,
+    VOTES_COUNTED,
+    TIMED_VOTE_CAST,
+    TIMED_VOTES_COUNTED,
+    IDENTIFIED_VOTE_CAST,
+    QUESTIONS_IMPORTED;
+
+}
@@ -0,0 +1,294 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.control;
+
+import ch.fihlon.moodini.server.business.question.entity.Answer;
+import ch.fihlon.moodini.server.business.question.entity.BulkVote;
+import ch.fihlon.moodini.server.business.question.entity.Question;
+import ch.fihlon.moodini.server.business.question.entity.Vote;
+import lombok.Value;
+import lombok.experimental.UtilityClass;
+
+import javax.validation.constraints.NotNull;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * This utility class encodes the {@link QuestionEvent}s straight into the
+ * buffer of their record and replays the records through the
+ * {@link QuestionRepository}.
+ */
+@UtilityClass
+class QuestionEventCodec {
+
+    private static final QuestionEvent[] EVENTS = QuestionEvent.values();
+    private static final Answer[] ANSWERS = Answer.values();
+
+    private static final int ID_PRESENT = 1;
+    private static final int VERSION_PRESENT = 2;
+    private static final int NO_TEXT = -1;
+    private static final int VOTER_PRESENT = 0x80;
+    private static final int UNSIGNED_BYTE = 0xFF;
+
+    // the flags, the id, the version and the length of the text
+    private static final int QUESTION_BYTES = 1 + 2 * Long.BYTES + Integer.BYTES;
+    private static final int VOTE_BYTES = Long.BYTES + 1;
+    private static final int BULK_VOTE_BYTES = VOTE_BYTES + Long.BYTES;
+
+    /**
+     * Encode the creation or the update of a {@link Question}.
+     *
+     * @param event either {@link QuestionEvent#QUESTION_CREATED} or {@link QuestionEvent#QUESTION_UPDATED}
+     * @param question the {@link Question} as it was passed to the {@link QuestionRepository}
+     * @return the record
+     */
+    static EncodedEvent question(@NotNull final QuestionEvent event, @NotNull final Question question) {
+        final byte[] utf8 = utf8(question);
+        return new EncodedEvent(1 + QUESTION_BYTES + utf8.length,
+            buffer -> putQuestion(buffer.put((byte) event.ordinal()), question, utf8));
+    }
+
+    /**
+     * Encode the import of {@link Question}s, created at once.
+     *
+     * @param questions the {@link Question}s as they were passed to the {@link QuestionRepository}
+     * @return the record
+     */
+    static EncodedEvent imported(@NotNull final List<Question> questions) {
+        final List<byte[]> texts = questions.stream().map(QuestionEventCodec::utf8).collect(toList());
+        final int length = 1 + Integer.BYTES + texts.stream().mapToInt(utf8 -> QUESTION_BYTES + utf8.length).sum();
+        return new EncodedEvent(length, buffer -> {
+            buffer.put((byte) QuestionEvent.QUESTIONS_IMPORTED.ordinal()).putInt(questions.size());
+            for (int index = 0; index < questions.size(); index++) {
+                putQuestion(buffer, questions.get(index), texts.get(index));
+            }
+        });
+    }
+
+    private static byte[] utf8(@NotNull final Question question) {
+        return Optional.ofNullable(question.getText())
+                .map(text -> text.getBytes(StandardCharsets.UTF_8))
+                .orElseGet(() -> new byte[0]);
+    }
+
+    private static void putQuestion(@NotNull final ByteBuffer buffer, @NotNull final Question question,
+                                    @NotNull final byte[] utf8) {
+        buffer.put((byte) (flag(question.getQuestionId(), ID_PRESENT) | flag(question.getVersion(), VERSION_PRESENT)));
+        buffer.putLong(valueOf(question.getQuestionId()));
+        buffer.putLong(valueOf(question.getVersion()));
+        if (question.getText() == null) {
+            buffer.putInt(NO_TEXT);
+        } else {
+            buffer.putInt(utf8.length).put(utf8);
+        }
+    }
+
+    /**
+     * Encode the deletion of a {@link Question}.
+     *
+     * @param questionId the id of the deleted {@link Question}
+     * @return the record
+     */
+    static EncodedEvent deleted(@NotNull final Long questionId) {
+        return new EncodedEvent(1 + Long.BYTES, buffer -> buffer
+                .put((byte) QuestionEvent.QUESTION_DELETED.ordinal())
+                .putLong(questionId));
+    }
+
+    /**
+     * Encode a batch of votes.
+     *
+     * @param votes the votes
+     * @param time the time the votes were counted in milliseconds since the epoch
+     * @return the record
+     */
+    static EncodedEvent voteCast(@NotNull final List<Vote> votes, final long time) {
+        final long voters = votes.stream().filter(vote -> vote.getVoter() != null).count();
+        final int length = 1 + Integer.BYTES + votes.size() * VOTE_BYTES + (int) voters * Long.BYTES + Long.BYTES;
+        return new EncodedEvent(length, buffer -> {
+            buffer.put((byte) QuestionEvent.IDENTIFIED_VOTE_CAST.ordinal()).putInt(votes.size());
+            votes.forEach(vote -> putVote(buffer, vote));
+            buffer.putLong(time);
+        });
+    }
+
+    private static void putVote(@NotNull final ByteBuffer buffer, @NotNull final Vote vote) {
+        buffer.putLong(vote.getQuestionId());
+        if (vote.getVoter() == null) {
+            buffer.put((byte) vote.getAnswer().ordinal());
+        } else {
+            buffer.put((byte) (vote.getAnswer().ordinal() | VOTER_PRESENT)).putLong(vote.getVoter());
+        }
+    }
+
+    /**
+     * Encode a bulk of votes with their counts.
+     *
+     * @param votes the votes
+     * @param time the time the votes were counted in milliseconds since the epoch
+     * @return the record
+     */
+    static EncodedEvent votesCounted(@NotNull final List<BulkVote> votes, final long time) {
+        return new EncodedEvent(1 + Integer.BYTES + votes.size() * BULK_VOTE_BYTES + Long.BYTES, buffer -> {
+            buffer.put((byte) QuestionEvent.TIMED_VOTES_COUNTED.ordinal()).putInt(votes.size());
+            votes.forEach(vote -> buffer.putLong(vote.getQuestionId())
+                    .put((byte) vote.getAnswer().ordinal())
+                    .putLong(vote.getCount()));
+            buffer.putLong(time);
+        });
+    }
+
+    /**
+     * Apply a record to the repository.
+     *
+     * @param repository the {@link QuestionRepository}
+     * @param record the record, positioned at its beginning
+     */
+    static void replay(@NotNull final QuestionRepository repository, @NotNull final ByteBuffer record) {
+        final QuestionEvent event = EVENTS[record.get()];
+        switch (event) {
+            case QUESTION_CREATED:
+                repository.create(readQuestion(record));
+                break;
+            case QUESTIONS_IMPORTED:
+                repository.createAll(readQuestions(record));
+                break;
+            case QUESTION_UPDATED:
+                repository.update(readQuestion(record));
+                break;
+            case QUESTION_DELETED:
+                repository.delete(record.getLong());
+                break;
+            default:
+                replayVotes(repository, event, record);
+                break;
+        }
+    }
+
+    private static void replayVotes(@NotNull final QuestionRepository repository,
+                                    @NotNull final QuestionEvent event,
+                                    @NotNull final ByteBuffer record) {
+        switch (event) {
+            case VOTE_CAST:
+                repository.vote(readVotes(record, 0), QuestionRepository.UNKNOWN_TIME);
+                break;
+            case VOTES_COUNTED:
+                repository.voteBulk(readBulkVotes(record), QuestionRepository.UNKNOWN_TIME);
+                break;
+            // The arguments are evaluated from left to right, so the time is read after the votes.
+            case TIMED_VOTE_CAST:
+                repository.vote(readVotes(record, 0), record.getLong());
+                break;
+            case IDENTIFIED_VOTE_CAST:
+                repository.vote(readVotes(record, VOTER_PRESENT), record.getLong());
+                break;
+            case TIMED_VOTES_COUNTED:
+                repository.voteBulk(readBulkVotes(record), record.getLong());
+                break;
+            default:
+                throw new IllegalStateException("Unknown event: " + event);
+        }
+    }
+
+    private static List<Question> readQuestions(@NotNull final ByteBuffer record) {
+        return IntStream.range(0, record.getInt())
+                .mapToObj(index -> readQuestion(record))
+                .collect(toList());
+    }
+
+    @SuppressWarnings("PMD.DataflowAnomalyAnalysis")
+    private static Question readQuestion(@NotNull final ByteBuffer record) {
+        final byte flags = record.get();
+        final long questionId = record.getLong();
+        final long version = record.getLong();
+        final int length = record.getInt();
+        final Question.QuestionBuilder builder = Question.builder();
+        if ((flags & ID_PRESENT) != 0) {
+            builder.questionId(questionId);
+        }
+        if ((flags & VERSION_PRESENT) != 0) {
+            builder.version(version);
+        }
+        if (length != NO_TEXT) {
+            final byte[] utf8 = new byte[length];
+            record.get(utf8);
+            builder.text(new String(utf8, StandardCharsets.UTF_8));
+        }
+        return builder.build();
+    }
+
+    private static List<Vote> readVotes(@NotNull final ByteBuffer record, final int voterFlag) {
+        return IntStream.range(0, record.getInt())
+                .mapToObj(index -> readVote(record, voterFlag))
+                .collect(toList());
+    }
+
+    @SuppressWarnings("PMD.DataflowAnomalyAnalysis")
+    private static Vote readVote(@NotNull final ByteBuffer record, final int voterFlag) {
+        final long questionId = record.getLong();
+        final int answer = record.get() & UNSIGNED_BYTE;
+        Long voter = null;
+        if ((answer & voterFlag) != 0) {
+            voter = record.getLong();
+        }
+        return new Vote(questionId, ANSWERS[answer & ~voterFlag], voter);
+    }
+
+    private static List<BulkVote> readBulkVotes(@NotNull final ByteBuffer record) {
+        return IntStream.range(0, record.getInt())
+                .mapToObj(index -> new BulkVote(record.getLong(), ANSWERS[record.get()], record.getLong()))
+                .collect(toList());
+    }
+
+    private static int flag(final Long value, final int flag) {
+        return Optional.ofNullable(value).map(present -> flag).orElse(0);
+    }
+
+    private static long valueOf(final Long value) {
+        return Optional.ofNullable(value).orElse(0L);
+    }
+
+    /**
+     * An event with the length of its record, encoded only when it is written
+     * to the buffer of the record, e.g. the mapped slice of the event log.
+     */
+    @Value
+    @SuppressWarnings("PMD.UnusedPrivateField")
+    class EncodedEvent {
+        private final int length;
+        private final Consumer<ByteBuffer> writer;
+
+        /**
+         * Encode the event into a new array, e.g. to replay it without a log.
+         *
+         * @return the record
+         */
+        byte[] toArray() {
+            final ByteBuffer buffer = ByteBuffer.allocate(length);
+            writer.accept(buffer);
+            return buffer.array();
+        }
+    }
+
+}
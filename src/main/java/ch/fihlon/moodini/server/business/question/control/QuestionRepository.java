@@ -17,60 +17,108 @@
  */
 package ch.fihlon.moodini.server.business.question.control;
 
+import ch.fihlon.moodini.server.Cluster;
 import ch.fihlon.moodini.server.business.question.entity.Answer;
+import ch.fihlon.moodini.server.business.question.entity.BulkVote;
+import ch.fihlon.moodini.server.business.question.entity.HistoryBucket;
+import ch.fihlon.moodini.server.business.question.entity.Period;
 import ch.fihlon.moodini.server.business.question.entity.Question;
+import ch.fihlon.moodini.server.business.question.entity.Resolution;
+import ch.fihlon.moodini.server.business.question.entity.Vote;
 import ch.fihlon.moodini.server.exception.MethodNotAllowedException;
 import ch.fihlon.moodini.server.exception.NotFoundException;
 
 import javax.validation.constraints.NotNull;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.util.Collections;
 import java.util.ConcurrentModificationException;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.atomic.AtomicLong;
 
-import static java.util.Comparator.comparingLong;
 import static java.util.stream.Collectors.toList;
 
 /**
  * This class is the repository of {@link Question}s.
- * It represents the persistence layer.
+ * It represents the persistence layer. The votes are counted with the time
+ * they were cast, which is passed in by the persistence engine, so replaying
+ * the journal records them in the same {@link MoodHistory} buckets again.
+ * The distinct voters of a {@link Question} are estimated by a
+ * {@link HyperLogLog} sketch, created with the first identified vote.
+ * The ids of new {@link Question}s are allocated in the shard of this node
+ * of the {@link Cluster}.
  */
+@SuppressWarnings("PMD.TooManyMethods")
 class QuestionRepository implements Serializable {
 
+    /**
+     * The time of votes journaled before their time was recorded. They are
+     * counted, but not added to the {@link MoodHistory}.
+     */
+    static final long UNKNOWN_TIME = Long.MIN_VALUE;
+
     private static final long serialVersionUID = 1L;
 
     private final Map<Long, Question> questions = new ConcurrentHashMap<>();
-    private final Map<Long, Map<Answer, AtomicLong>> votes = new ConcurrentHashMap<>();
+    private VoteCounters counters = new VoteCounters();
+    private Map<Long, MoodHistory> histories = new ConcurrentHashMap<>();
+    private Map<Long, HyperLogLog> voters = new ConcurrentHashMap<>();
+
+    // Only read to migrate snapshots written before the vote counters existed.
+    private Map<Long, Map<Answer, AtomicLong>> votes = Collections.emptyMap();
+
+    // The index is derived from the questions map and rebuilt on deserialization.
+    private transient ConcurrentNavigableMap<Long, Question> index = new ConcurrentSkipListMap<>();
 
     private final AtomicLong questionSeq = new AtomicLong(0);
 
+    // The cluster is configured, the PersistenceManager refuses data written with another layout.
+    private transient Cluster cluster = Cluster.configured();
+
     Question create(@NotNull final Question question) {
-        final Long questionId = questionSeq.incrementAndGet();
+        final Long questionId = cluster.questionId(questionSeq.incrementAndGet());
         final Long version = (long) question.hashCode();
         final Question questionToCreate = question.toBuilder()
                 .questionId(questionId)
                 .version(version)
                 .build();
         questions.put(questionId, questionToCreate);
+        index.put(questionId, questionToCreate);
         return questionToCreate;
     }
 
-    Question update(@NotNull final Question question) {
-        if (!getAnswers(question.getQuestionId()).isEmpty()) {
+    List<Question> createAll(@NotNull final List<Question> batch) {
+        return batch.stream()
+                .map(this::create)
+                .collect(toList());
+    }
+
+    void checkUpdate(@NotNull final Question question) {
+        if (counters.get(question.getQuestionId()) != null) {
             throw new MethodNotAllowedException("It is not allowed to update questions with votes!");
         }
         final Question previousQuestion = read(question.getQuestionId()).orElseThrow(NotFoundException::new);
         if (!previousQuestion.getVersion().equals(question.getVersion())) {
             throw new ConcurrentModificationException("You tried to update a question that was modified concurrently!");
         }
+    }
+
+    Question update(@NotNull final Question question) {
+        checkUpdate(question);
         final Long version = (long) question.hashCode();
         final Question questionToUpdate = question.toBuilder()
                 .version(version)
                 .build();
         questions.put(questionToUpdate.getQuestionId(), questionToUpdate);
+        index.put(questionToUpdate.getQuestionId(), questionToUpdate);
         return questionToUpdate;
     }
 
@@ -78,50 +126,137 @@ class QuestionRepository implements Serializable {
         return Optional.ofNullable(questions.get(questionId));
     }
 
-    List<Question> readAll() {
-        return questions.values().stream()
-                .sorted(comparingLong(Question::getQuestionId))
+    Question require(@NotNull final Long questionId) {
+        final Question question = questions.get(questionId);
+        if (question == null) {
+            throw new NotFoundException();
+        }
+        return question;
+    }
+
+    @SuppressWarnings("PMD.DataflowAnomalyAnalysis")
+    List<Question> readPage(final Long after,
+                            final int limit,
+                            final boolean descending) {
+        NavigableMap<Long, Question> view = index;
+        if (descending) {
+            if (after != null) {
+                view = view.headMap(after, false);
+            }
+            view = view.descendingMap();
+        } else if (after != null) {
+            view = view.tailMap(after, false);
+        }
+        return view.values().stream()
+                .limit(limit)
+                .collect(toList());
+    }
+
+    List<BulkVote> filterKnown(@NotNull final List<BulkVote> bulk) {
+        return bulk.stream()
+                .filter(vote -> questions.containsKey(vote.getQuestionId()))
                 .collect(toList());
     }
 
     Optional<Question> readLatest() {
-        return questions.values().stream()
-                .max(comparingLong(Question::getQuestionId));
+        return Optional.ofNullable(index.lastEntry()).map(Map.Entry::getValue);
     }
 
-    void delete(@NotNull final Long questionId) {
-        if (!getAnswers(questionId).isEmpty()) {
+    void checkDelete(@NotNull final Long questionId) {
+        if (counters.get(questionId) != null) {
             throw new MethodNotAllowedException("It is not allowed to delete questions with votes!");
         }
+    }
+
+    void delete(@NotNull final Long questionId) {
+        checkDelete(questionId);
         questions.remove(questionId);
+        index.remove(questionId);
     }
 
-    Long vote(@NotNull final Long questionId,
-              @NotNull final Answer answer) {
-        if (!questions.containsKey(questionId)) {
-            throw new NotFoundException();
-        }
-        final AtomicLong counter = getCounter(questionId, answer);
-        return counter.incrementAndGet();
+    Long vote(@NotNull final Vote vote, final long time) {
+        require(vote.getQuestionId());
+        return count(vote, time);
     }
 
-    private AtomicLong getCounter(@NotNull final Long questionId,
-                                  @NotNull final Answer answer) {
-        final Map<Answer, AtomicLong> answers = getAnswers(questionId);
-        if (!answers.containsKey(answer)) {
-            synchronized (answers) {
-                answers.putIfAbsent(answer, new AtomicLong(0));
+    long[] vote(@NotNull final List<Vote> batch, final long time) {
+        final long[] counts = new long[batch.size()];
+        for (int i = 0; i < counts.length; i++) {
+            final Vote vote = batch.get(i);
+            if (questions.containsKey(vote.getQuestionId())) {
+                counts[i] = count(vote, time);
             }
         }
-        return answers.get(answer);
+        return counts;
     }
 
-    private Map<Answer, AtomicLong> getAnswers(@NotNull final Long questionId) {
-        if (!votes.containsKey(questionId)) {
-            synchronized (votes) {
-                votes.putIfAbsent(questionId, new ConcurrentHashMap<>());
+    private long count(@NotNull final Vote vote, final long time) {
+        if (time != UNKNOWN_TIME) {
+            history(vote.getQuestionId()).add(time, vote.getAnswer(), 1);
+        }
+        if (vote.getVoter() != null) {
+            voters.computeIfAbsent(vote.getQuestionId(), key -> new HyperLogLog()).add(vote.getVoter());
+        }
+        return counters.increment(vote.getQuestionId(), vote.getAnswer());
+    }
+
+    long[] voteBulk(@NotNull final List<BulkVote> bulk, final long time) {
+        final long[] counts = new long[bulk.size()];
+        for (int i = 0; i < counts.length; i++) {
+            final BulkVote vote = bulk.get(i);
+            if (questions.containsKey(vote.getQuestionId())) {
+                if (time != UNKNOWN_TIME) {
+                    history(vote.getQuestionId()).add(time, vote.getAnswer(), vote.getCount());
+                }
+                counts[i] = counters.add(vote.getQuestionId(), vote.getAnswer(), vote.getCount());
             }
         }
-        return votes.get(questionId);
+        return counts;
+    }
+
+    private MoodHistory history(@NotNull final Long questionId) {
+        return histories.computeIfAbsent(questionId, key -> new MoodHistory());
+    }
+
+    List<HistoryBucket> readHistory(@NotNull final Long questionId,
+                                    @NotNull final Resolution resolution,
+                                    @NotNull final Period period) {
+        return Optional.ofNullable(histories.get(questionId))
+                .map(history -> history.read(resolution, period))
+                .orElseGet(Collections::emptyList);
+    }
+
+    Optional<Long> readVoters(@NotNull final Long questionId) {
+        return Optional.ofNullable(voters.get(questionId)).map(HyperLogLog::estimate);
+    }
+
+    long readAllVoters() {
+        final HyperLogLog board = new HyperLogLog();
+        voters.values().forEach(board::merge);
+        return board.estimate();
+    }
+
+    Map<Answer, Long> readVotes(@NotNull final Long questionId) {
+        return Optional.ofNullable(counters.get(questionId))
+                .map(VoteCounter::toMap)
+                .orElseGet(() -> new EnumMap<>(Answer.class));
+    }
+
+    private void readObject(@NotNull final ObjectInputStream stream) throws IOException, ClassNotFoundException {
+        stream.defaultReadObject();
+        index = new ConcurrentSkipListMap<>(questions);
+        cluster = Cluster.configured();
+        if (histories == null) {
+            histories = new ConcurrentHashMap<>();
+        }
+        if (voters == null) {
+            voters = new ConcurrentHashMap<>();
+        }
+        if (counters == null) {
+            counters = new VoteCounters();
+            votes.forEach((questionId, answers) -> answers.forEach(
+                (answer, count) -> counters.getOrCreate(questionId).add(answer, count.get())));
+            votes = Collections.emptyMap();
+        }
     }
 }
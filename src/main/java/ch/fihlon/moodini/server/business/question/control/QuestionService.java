@@ -17,53 +17,95 @@
  */
 package ch.fihlon.moodini.server.business.question.control;
 
-import ch.fihlon.moodini.server.PersistenceManager;
+import ch.fihlon.moodini.server.ChangeLog;
+import ch.fihlon.moodini.server.Configuration;
+import ch.fihlon.moodini.server.SnapshotStatus;
 import ch.fihlon.moodini.server.business.question.entity.Answer;
+import ch.fihlon.moodini.server.business.question.entity.BulkVote;
+import ch.fihlon.moodini.server.business.question.entity.History;
+import ch.fihlon.moodini.server.business.question.entity.Period;
 import ch.fihlon.moodini.server.business.question.entity.Question;
+import ch.fihlon.moodini.server.business.question.entity.Resolution;
+import ch.fihlon.moodini.server.business.question.entity.Tally;
+import ch.fihlon.moodini.server.business.question.entity.Vote;
 import ch.fihlon.moodini.server.exception.NotFoundException;
-import pl.setblack.airomem.core.SimpleController;
 
 import javax.inject.Singleton;
 import javax.validation.constraints.NotNull;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * This singleton is a service for working with {@link Question}s.
+ * This singleton is a service for working with {@link Question}s. Reads are
+ * served directly from memory, all writes run asynchronously on the
+ * {@link PersistenceWriter} (or the {@link VoteBatcher}), so the callers
+ * never wait for the journal to hit the disk.
  */
 @Singleton
+@SuppressWarnings("PMD.TooManyMethods")
 public class QuestionService {
 
-    private final SimpleController<QuestionRepository> controller;
+    private static final int DEF_QUEUE_SIZE = 1024;
+    private static final String DEF_ENGINE = "airomem";
+
+    private final ChangeRecordingStore store;
+    private final Optional<VoteBatcher> voteBatcher;
+    private final PersistenceWriter writer;
+    private final TallyBoard tallyBoard = new TallyBoard();
+    private final AtomicLong generation = new AtomicLong();
 
     /**
      * This constructor should only be called once because this class is a {@link Singleton}!
+     * {@code persistence.queue.size} limits the pending writes, {@code persistence.engine} selects the engine:
+     * {@code airomem} (default) or the event log {@code log}. All changes are published in the {@link ChangeLog}.
      */
     public QuestionService() {
-        controller = PersistenceManager.createSimpleController(Question.class, QuestionRepository::new);
-        Runtime.getRuntime().addShutdownHook(new Thread(controller::close));
+        store = ChangeRecordingStore.open(Configuration.getString("persistence.engine", DEF_ENGINE));
+        writer = new PersistenceWriter(Configuration.getInteger("persistence.queue.size", DEF_QUEUE_SIZE));
+        voteBatcher = VoteBatcher.create(store);
+        tallyBoard.registerAll(store.readOnly());
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close));
     }
 
     /**
      * Create a new {@link Question}.
      *
      * @param question the new {@link Question}
-     * @return the new {@link Question}
+     * @return the new {@link Question}, completed when it is persisted
      */
-    public Question create(@NotNull final Question question) {
-        return controller.executeAndQuery((ctrl) -> ctrl.create(question));
+    public CompletionStage<Question> create(@NotNull final Question question) {
+        return writer.submit(() -> store.create(question)).thenApply(created -> changed(tallyBoard.register(created)));
+    }
+
+    /**
+     * Create new {@link Question}s at once, e.g. for an import. They are
+     * persisted as one write, so either all of them are created or none.
+     *
+     * @param questions the new {@link Question}s
+     * @return the created {@link Question}s, completed when they are persisted
+     */
+    public CompletionStage<List<Question>> createAll(@NotNull final List<Question> questions) {
+        return writer.submit(() -> store.createAll(questions))
+                .thenApply(created -> changed(tallyBoard.register(created)));
     }
 
     /**
      * Update the {@link Question}.
      *
      * @param question the updated {@link Question}
-     * @return the updated {@link Question}
+     * @return the updated {@link Question}, completed when it is persisted
      */
-    public Question update(@NotNull final Question question) {
-        final Long questionId = question.getQuestionId();
-        read(questionId).orElseThrow(NotFoundException::new);
-        return controller.executeAndQuery((ctrl) -> ctrl.update(question));
+    public CompletionStage<Question> update(@NotNull final Question question) {
+        read(question.getQuestionId()).orElseThrow(NotFoundException::new);
+        return writer.submit(() -> store.update(question)).thenApply(this::changed);
+    }
+
+    private <T> T changed(final T result) {
+        generation.incrementAndGet();
+        return result;
     }
 
     /**
@@ -73,16 +115,21 @@ public class QuestionService {
      * @return the {@link Question}
      */
     public Optional<Question> read(@NotNull final Long questionId) {
-        return controller.readOnly().read(questionId);
+        return store.readOnly().read(questionId);
     }
 
     /**
-     * Read (get) all {@link Question}s.
+     * Read (get) a page of {@link Question}s ordered by their id. The page
+     * starts right after the specified cursor, so a client can continue with
+     * the id of the last {@link Question} of the previous page.
      *
-     * @return a {@link List} of all {@link Question}s
+     * @param after the id after which the page starts or {@code null} to start at the beginning
+     * @param limit the maximum number of {@link Question}s on the page
+     * @param descending {@code true} to read from the newest to the oldest {@link Question}
+     * @return a {@link List} of at most {@code limit} {@link Question}s
      */
-    public List<Question> readAll() {
-        return controller.readOnly().readAll();
+    public List<Question> readPage(final Long after, final int limit, final boolean descending) {
+        return store.readOnly().readPage(after, limit, descending);
     }
 
     /**
@@ -91,18 +138,18 @@ public class QuestionService {
      * @return the latest {@link Question}
      */
     public Question readLatest() {
-        final Optional<Question> optional = controller.readOnly().readLatest();
-        return optional.orElseThrow(NotFoundException::new);
+        return store.readOnly().readLatest().orElseThrow(NotFoundException::new);
     }
 
     /**
      * Delete the {@link Question} with the specified id.
      *
      * @param questionId the id of a {@link Question}
+     * @return a stage which is completed when the deletion is persisted
      */
-    public void delete(@NotNull final Long questionId) {
+    public CompletionStage<Void> delete(@NotNull final Long questionId) {
         read(questionId).orElseThrow(NotFoundException::new);
-        controller.execute((ctrl) -> ctrl.delete(questionId));
+        return writer.submit(() -> store.delete(questionId)).thenAccept(deleted -> tallyBoard.remove(changed(deleted)));
     }
 
     /**
@@ -110,11 +157,144 @@ public class QuestionService {
      *
      * @param questionId the id of a {@link Question}
      * @param answer the {@link Answer}
-     * @return the number of votes for this {@link Answer}
+     * @param voterToken identifies the voter (only its hash is kept) or {@code null} for an anonymous vote
+     * @return the number of votes for this {@link Answer}, completed when the vote is persisted
+     */
+    public CompletionStage<Long> vote(@NotNull final Long questionId, @NotNull final Answer answer,
+                                      final String voterToken) {
+        store.readOnly().require(questionId);
+        final Vote vote = new Vote(questionId, answer,
+                Optional.ofNullable(voterToken).map(HyperLogLog::hash).orElse(null));
+        return voteBatcher
+                .map(batcher -> batcher.vote(vote))
+                .orElseGet(() -> writer.submit(() -> store.vote(vote)))
+                .thenApply(count -> tallyBoard.update(vote, count, store.readOnly()));
+    }
+
+    /**
+     * Count votes uploaded in bulk. They are validated against the
+     * {@link Question}s once and all votes for known {@link Question}s are
+     * persisted as one write.
+     *
+     * @param votes the votes with their counts
+     * @return the number of votes for each {@link Answer} voted, zero for unknown {@link Question}s,
+     *         completed when the votes are persisted
+     */
+    public CompletionStage<long[]> voteBulk(@NotNull final List<BulkVote> votes) {
+        final List<BulkVote> known = store.readOnly().filterKnown(votes);
+        return Optional.of(known)
+                .filter(batch -> !batch.isEmpty())
+                .map(batch -> writer.submit(() -> store.voteBulk(batch)))
+                .orElseGet(() -> CompletableFuture.completedFuture(new long[0]))
+                .thenApply(counts -> tallyBoard.update(votes, known, counts));
+    }
+
+    /**
+     * Read (get) how the votes for the {@link Question} with the specified id
+     * changed during a {@link Period}, counted in buckets of a {@link Resolution}.
+     *
+     * @param questionId the id of a {@link Question}
+     * @param resolution the width of the buckets
+     * @param period the period to read
+     * @return the {@link History} with the buckets which have votes
      */
-    public Long vote(@NotNull final Long questionId,
-                     @NotNull final Answer answer) {
+    public History readHistory(@NotNull final Long questionId, @NotNull final Resolution resolution,
+                               @NotNull final Period period) {
         read(questionId).orElseThrow(NotFoundException::new);
-        return controller.executeAndQuery((ctrl) -> ctrl.vote(questionId, answer));
+        return new History(questionId, resolution, store.readOnly().readHistory(questionId, resolution, period));
+    }
+
+    /**
+     * Read (get) the {@link Tally} of the votes for the {@link Question} with the specified id.
+     * The {@link Tally} is a precomputed snapshot, reading it does not slow down voting.
+     *
+     * @param questionId the id of a {@link Question}
+     * @return the {@link Tally}
+     */
+    public Optional<Tally> readResults(@NotNull final Long questionId) {
+        return tallyBoard.read(questionId);
+    }
+
+    /**
+     * Read (get) the {@link Tally}s of the votes for all {@link Question}s.
+     * The {@link List} is a read-only view of the latest {@link Tally} of every {@link Question}.
+     *
+     * @return a read-only {@link List} of the {@link Tally}s of all {@link Question}s
+     */
+    public List<Tally> readAllResults() {
+        return tallyBoard.readAll();
+    }
+
+    /**
+     * Estimate the distinct voters of all {@link Question}s together.
+     *
+     * @return the estimated number of distinct voters who voted at least once
+     */
+    public long countVoters() {
+        return store.readOnly().readAllVoters();
+    }
+
+    /**
+     * Get the generation of the {@link Question}s. It changes whenever a
+     * {@link Question} is created, updated or deleted (but not on votes), so
+     * it can be used to validate cached lists of {@link Question}s.
+     *
+     * @return the current generation
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Get the feed of the changes applied to the {@link Question}s and votes.
+     *
+     * @return the {@link ChangeLog} with the changes encoded in JSON
+     */
+    public ChangeLog getChangeLog() {
+        return store.getChangeLog();
+    }
+
+    /**
+     * Get the number of writes waiting to be persisted.
+     *
+     * @return the number of pending writes including the pending votes
+     */
+    public long getPendingWrites() {
+        return writer.getQueueDepth() + voteBatcher.map(VoteBatcher::getQueueDepth).orElse(0);
+    }
+
+    /**
+     * Get the number of writes which were rejected because the queue was full.
+     *
+     * @return the number of rejected writes including the rejected votes
+     */
+    public long getRejectedWrites() {
+        return writer.getRejected() + voteBatcher.map(VoteBatcher::getRejected).orElse(0L);
+    }
+
+    /**
+     * Get the status of the journal and the snapshots of the persistence store.
+     *
+     * @return the status of the snapshots
+     */
+    public SnapshotStatus getSnapshotStatus() {
+        return store.getStatus();
+    }
+
+    /**
+     * Take a snapshot of all {@link Question}s and votes and delete the journal
+     * written before. The snapshot is taken by the {@link PersistenceWriter}
+     * in order with the other writes.
+     *
+     * @return the status of the snapshots after the snapshot was taken
+     */
+    public CompletionStage<SnapshotStatus> snapshot() {
+        return writer.submit(store::snapshot);
+    }
+
+    private void close() {
+        voteBatcher.ifPresent(VoteBatcher::close);
+        writer.close();
+        store.close();
     }
 }
@@ -0,0 +1,141 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.control;
+
+import ch.fihlon.moodini.server.PersistenceManager;
+import ch.fihlon.moodini.server.SnapshotStatus;
+import ch.fihlon.moodini.server.business.question.entity.BulkVote;
+import ch.fihlon.moodini.server.business.question.entity.Question;
+import ch.fihlon.moodini.server.business.question.entity.Vote;
+
+import javax.validation.constraints.NotNull;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * This interface is implemented by the persistence engines of the
+ * {@link Question}s. An engine keeps the {@link Question}s and votes in a
+ * {@link QuestionRepository} in memory and persists every change before it
+ * returns. The writes may be called concurrently, the engine serializes them.
+ */
+@SuppressWarnings("PMD.TooManyMethods")
+interface QuestionStore extends AutoCloseable {
+
+    /**
+     * Open the persistence engine with the specified name.
+     *
+     * @param engine {@code airomem} for the journal of airomem or {@code log} for the binary event log
+     * @return the engine with the {@link Question}s loaded
+     */
+    static QuestionStore open(@NotNull final String engine) {
+        final Map<String, Supplier<QuestionStore>> engines = new ConcurrentHashMap<>();
+        engines.put("airomem", () -> new AiromemQuestionStore(
+                PersistenceManager.createSnapshotController(Question.class, QuestionRepository::new)));
+        engines.put("log", () -> new LogQuestionStore(PersistenceManager.createEventLog(Question.class)));
+        return Optional.ofNullable(engines.get(engine))
+                .orElseThrow(() -> new IllegalStateException("Unknown persistence engine: " + engine))
+                .get();
+    }
+
+    /**
+     * Get the repository to read from it. It must not be modified!
+     *
+     * @return the repository
+     */
+    QuestionRepository readOnly();
+
+    /**
+     * Create and persist a new {@link Question}.
+     *
+     * @param question the new {@link Question}
+     * @return the created {@link Question} with id and version
+     */
+    Question create(@NotNull Question question);
+
+    /**
+     * Create and persist new {@link Question}s at once.
+     *
+     * @param questions the new {@link Question}s
+     * @return the created {@link Question}s with ids and versions
+     */
+    List<Question> createAll(@NotNull List<Question> questions);
+
+    /**
+     * Update and persist an existing {@link Question}.
+     *
+     * @param question the changed {@link Question}
+     * @return the updated {@link Question} with the new version
+     */
+    Question update(@NotNull Question question);
+
+    /**
+     * Delete a {@link Question} and persist the deletion.
+     *
+     * @param questionId the id of the {@link Question}
+     * @return the id of the deleted {@link Question}
+     */
+    Long delete(@NotNull Long questionId);
+
+    /**
+     * Count and persist a vote.
+     *
+     * @param vote the vote
+     * @return the number of votes for the answer
+     */
+    Long vote(@NotNull Vote vote);
+
+    /**
+     * Count and persist a batch of votes at once.
+     *
+     * @param votes the votes
+     * @return the number of votes for each answer voted, zero for unknown {@link Question}s
+     */
+    long[] vote(@NotNull List<Vote> votes);
+
+    /**
+     * Count and persist votes uploaded in bulk at once.
+     *
+     * @param votes the votes with their counts
+     * @return the number of votes for each answer voted, zero for unknown {@link Question}s
+     */
+    long[] voteBulk(@NotNull List<BulkVote> votes);
+
+    /**
+     * Take a snapshot of all {@link Question}s and votes, so they do not need to be replayed.
+     *
+     * @return the status after the snapshot
+     */
+    SnapshotStatus snapshot();
+
+    /**
+     * Get the status of the journal and the snapshots.
+     *
+     * @return the status
+     */
+    SnapshotStatus getStatus();
+
+    /**
+     * Close the engine. All changes are persisted.
+     */
+    @Override
+    void close();
+
+}
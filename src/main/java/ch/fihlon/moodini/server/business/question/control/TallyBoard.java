@@ -0,0 +1,154 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.control;
+
+import ch.fihlon.moodini.server.business.question.entity.Answer;
+import ch.fihlon.moodini.server.business.question.entity.BulkVote;
+import ch.fihlon.moodini.server.business.question.entity.Question;
+import ch.fihlon.moodini.server.business.question.entity.Tally;
+import ch.fihlon.moodini.server.business.question.entity.Vote;
+import lombok.Value;
+
+import javax.validation.constraints.NotNull;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * This class holds the precomputed {@link Tally} snapshots of all questions.
+ * The snapshots are updated incrementally when votes are counted, so reading
+ * them never touches the vote counters of the {@link QuestionRepository}.
+ * Every question owns a slot holding its latest {@link Tally}; counting a vote
+ * only replaces the content of the slot. The list of all slots is rebuilt
+ * lazily on read, and only after questions were created or deleted; every
+ * read copies the content of the slots once, so the tallies returned do not
+ * change while they are sent.
+ */
+@SuppressWarnings("PMD.TooManyMethods")
+class TallyBoard {
+
+    private final ConcurrentNavigableMap<Long, AtomicReference<Tally>> tallies = new ConcurrentSkipListMap<>();
+    private final AtomicLong version = new AtomicLong(0);
+    private final AtomicReference<Snapshot> snapshot =
+            new AtomicReference<>(new Snapshot(-1, Collections.emptyList()));
+
+    void register(@NotNull final Long questionId,
+                  @NotNull final Map<Answer, Long> votes) {
+        tallies.put(questionId, new AtomicReference<>(Tally.create(questionId, votes)));
+        version.incrementAndGet();
+    }
+
+    Question register(@NotNull final Question question) {
+        register(question.getQuestionId(), Collections.emptyMap());
+        return question;
+    }
+
+    List<Question> register(@NotNull final List<Question> questions) {
+        questions.forEach(this::register);
+        return questions;
+    }
+
+    void registerAll(@NotNull final QuestionRepository repository) {
+        repository.readPage(null, Integer.MAX_VALUE, false).forEach(question -> {
+            register(question.getQuestionId(), repository.readVotes(question.getQuestionId()));
+            repository.readVoters(question.getQuestionId())
+                    .ifPresent(voters -> updateVoters(question.getQuestionId(), voters));
+        });
+    }
+
+    void remove(@NotNull final Long questionId) {
+        tallies.remove(questionId);
+        version.incrementAndGet();
+    }
+
+    void update(@NotNull final Long questionId,
+                @NotNull final Answer answer,
+                final long count) {
+        final AtomicReference<Tally> slot = tallies.get(questionId);
+        if (slot != null) {
+            slot.updateAndGet(tally -> tally.withVotes(answer, count));
+        }
+    }
+
+    long update(@NotNull final Vote vote,
+                final long count,
+                @NotNull final QuestionRepository repository) {
+        update(vote.getQuestionId(), vote.getAnswer(), count);
+        if (vote.getVoter() != null) {
+            repository.readVoters(vote.getQuestionId()).ifPresent(voters -> updateVoters(vote.getQuestionId(), voters));
+        }
+        return count;
+    }
+
+    @SuppressWarnings("PMD.UseVarargs")
+    long[] update(@NotNull final List<BulkVote> votes,
+                  @NotNull final List<BulkVote> known,
+                  @NotNull final long[] counts) {
+        final long[] allCounts = new long[votes.size()];
+        int next = 0;
+        for (int i = 0; i < allCounts.length && next < counts.length; i++) {
+            final BulkVote vote = votes.get(i);
+            if (vote == known.get(next)) {
+                allCounts[i] = counts[next++];
+                update(vote.getQuestionId(), vote.getAnswer(), allCounts[i]);
+            }
+        }
+        return allCounts;
+    }
+
+    private void updateVoters(@NotNull final Long questionId, final long voters) {
+        final AtomicReference<Tally> slot = tallies.get(questionId);
+        if (slot != null) {
+            slot.updateAndGet(tally -> tally.withVoters(voters));
+        }
+    }
+
+    Optional<Tally> read(@NotNull final Long questionId) {
+        return Optional.ofNullable(tallies.get(questionId)).map(AtomicReference::get);
+    }
+
+    List<Tally> readAll() {
+        final long currentVersion = version.get();
+        Snapshot current = snapshot.get();
+        if (current.getVersion() != currentVersion) {
+            current = new Snapshot(currentVersion, new ArrayList<>(tallies.values()));
+            snapshot.set(current);
+        }
+        return Collections.unmodifiableList(current.getSlots().stream()
+                .map(AtomicReference::get)
+                .collect(toList()));
+    }
+
+    /**
+     * The list of all {@link Tally} slots for a version of the board (the set of questions).
+     */
+    @Value
+    private static class Snapshot {
+        private long version;
+        private List<AtomicReference<Tally>> slots;
+    }
+
+}
@@ -0,0 +1,225 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.control;
+
+import ch.fihlon.moodini.server.Configuration;
+import ch.fihlon.moodini.server.business.question.entity.Vote;
+import ch.fihlon.moodini.server.exception.NotFoundException;
+import ch.fihlon.moodini.server.exception.ServiceUnavailableException;
+import lombok.Value;
+
+import javax.validation.constraints.NotNull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.stream.Collectors.toCollection;
+
+/**
+ * This class coalesces the {@link Vote}s arriving within a configurable
+ * window into one persistence command (group commit). The window is closed
+ * when either the maximum batch size is reached or the time window elapsed
+ * since the first vote of the batch arrived. The futures of the votes are
+ * completed only after the whole batch was journaled. At most a few batches
+ * may wait in the queue, further votes are rejected with a
+ * {@link ServiceUnavailableException}, and so are votes arriving after the
+ * batcher was closed. Closing commits the votes still queued.
+ */
+class VoteBatcher {
+
+    private static final long IDLE_POLL_MILLIS = 100;
+    private static final int QUEUED_BATCHES = 16;
+    private static final long DEF_BATCH_WINDOW = 0;
+    private static final int DEF_BATCH_SIZE = 256;
+    private static final String CLOSED_MESSAGE = "The vote queue is closed!";
+
+    private final QuestionStore store;
+    private final long windowNanos;
+    private final int maxBatchSize;
+
+    private final BlockingQueue<PendingVote> queue;
+    private final AtomicBoolean running = new AtomicBoolean(true);
+    private final AtomicLong rejected = new AtomicLong();
+    private final Thread thread;
+
+    VoteBatcher(@NotNull final QuestionStore store,
+                final long windowMillis, final int maxBatchSize) {
+        this.store = store;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.maxBatchSize = maxBatchSize;
+        this.queue = new LinkedBlockingQueue<>(maxBatchSize * QUEUED_BATCHES);
+        this.thread = new Thread(this::run, "moodini-vote-batcher");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Create a {@link VoteBatcher} if group commit of votes is enabled: when
+     * {@code vote.batch.window} (in milliseconds) is configured to a positive
+     * value, {@code vote.batch.size} limits the size of a batch.
+     *
+     * @param store the persistence engine
+     * @return the {@link VoteBatcher} or nothing if group commit is disabled
+     */
+    static Optional<VoteBatcher> create(@NotNull final QuestionStore store) {
+        final long batchWindow = Configuration.getLong("vote.batch.window", DEF_BATCH_WINDOW);
+        final int batchSize = Configuration.getInteger("vote.batch.size", DEF_BATCH_SIZE);
+        return Optional.of(batchWindow)
+                .filter(window -> window > 0 && batchSize > 1)
+                .map(window -> new VoteBatcher(store, window, batchSize));
+    }
+
+    CompletionStage<Long> vote(@NotNull final Vote vote) {
+        final PendingVote pendingVote = new PendingVote(vote, new CompletableFuture<>());
+        if (running.get()) {
+            enqueue(pendingVote);
+        } else {
+            pendingVote.getFuture().completeExceptionally(new ServiceUnavailableException(CLOSED_MESSAGE));
+        }
+        return pendingVote.getFuture();
+    }
+
+    private void enqueue(@NotNull final PendingVote pendingVote) {
+        if (queue.offer(pendingVote)) {
+            if (!running.get() && queue.remove(pendingVote)) {
+                // closed while offering and not drained by close, so nobody would commit it
+                pendingVote.getFuture().completeExceptionally(new ServiceUnavailableException(CLOSED_MESSAGE));
+            }
+        } else {
+            rejected.incrementAndGet();
+            pendingVote.getFuture().completeExceptionally(
+                    new ServiceUnavailableException("The vote queue is full!"));
+        }
+    }
+
+    int getQueueDepth() {
+        return queue.size();
+    }
+
+    long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * Stop the batcher and commit the votes still queued. The worker is not
+     * interrupted, it stops after its current batch, so no commit runs with
+     * the interrupt flag set (it would close the interruptible channels of
+     * the persistence engine). An interrupt of the closing thread is
+     * restored after the final commit.
+     */
+    @SuppressWarnings("PMD.DataflowAnomalyAnalysis")
+    void close() {
+        running.set(false);
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (final InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        final List<PendingVote> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        commit(remaining);
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @SuppressWarnings("PMD.DataflowAnomalyAnalysis")
+    private void run() {
+        final List<PendingVote> batch = new ArrayList<>(maxBatchSize);
+        boolean interrupted = false;
+        while (running.get() && !interrupted) {
+            try {
+                collect(batch);
+            } catch (final InterruptedException e) {
+                interrupted = true;
+            }
+            // the interrupt flag is cleared while the collected votes are committed
+            commit(batch);
+            batch.clear();
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @SuppressWarnings("PMD.DataflowAnomalyAnalysis")
+    private void collect(@NotNull final List<PendingVote> batch) throws InterruptedException {
+        final PendingVote first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+        if (first != null) {
+            batch.add(first);
+            final long deadline = System.nanoTime() + windowNanos;
+            long remaining = windowNanos;
+            // poll in slices, so close() does not have to wait for a long window
+            final long slice = TimeUnit.MILLISECONDS.toNanos(IDLE_POLL_MILLIS);
+            while (batch.size() < maxBatchSize && remaining > 0 && running.get()) {
+                final PendingVote next = queue.poll(Math.min(remaining, slice), TimeUnit.NANOSECONDS);
+                if (next != null) {
+                    batch.add(next);
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                }
+                remaining = deadline - System.nanoTime();
+            }
+        }
+    }
+
+    @SuppressWarnings("PMD.AvoidCatchingGenericException")
+    private void commit(@NotNull final List<PendingVote> batch) {
+        if (!batch.isEmpty()) {
+            final List<Vote> votes = batch.stream()
+                    .map(PendingVote::getVote)
+                    .collect(toCollection(ArrayList::new));
+            try {
+                final long[] counts = store.vote(votes);
+                for (int i = 0; i < counts.length; i++) {
+                    complete(batch.get(i).getFuture(), counts[i]);
+                }
+            // CHECKSTYLE DISABLE IllegalCatch FOR 1 LINES
+            } catch (final RuntimeException e) {
+                batch.forEach(pendingVote -> pendingVote.getFuture().completeExceptionally(e));
+            }
+        }
+    }
+
+    private static void complete(@NotNull final CompletableFuture<Long> future, final long count) {
+        if (count > 0) {
+            future.complete(count);
+        } else {
+            future.completeExceptionally(new NotFoundException());
+        }
+    }
+
+    /**
+     * A vote waiting to be committed with its batch.
+     */
+    @Value
+    private static class PendingVote {
+        private Vote vote;
+        private CompletableFuture<Long> future;
+    }
+
+}
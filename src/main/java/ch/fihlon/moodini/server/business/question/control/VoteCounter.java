@@ -0,0 +1,68 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.control;
+
+import ch.fihlon.moodini.server.business.question.entity.Answer;
+
+import javax.validation.constraints.NotNull;
+import java.util.EnumMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * This class counts the votes of one question. The counters are indexed by
+ * {@link Answer#ordinal()} and striped ({@link LongAdder}), so a burst of
+ * votes for a hot question does not make all voting threads spin on the
+ * same memory location.
+ */
+final class VoteCounter {
+
+    private static final Answer[] ANSWERS = Answer.values();
+
+    private final LongAdder[] counters = Stream.generate(LongAdder::new)
+            .limit(ANSWERS.length)
+            .toArray(LongAdder[]::new);
+
+    long increment(@NotNull final Answer answer) {
+        final LongAdder counter = counters[answer.ordinal()];
+        counter.increment();
+        return counter.sum();
+    }
+
+    long add(@NotNull final Answer answer, final long count) {
+        final LongAdder counter = counters[answer.ordinal()];
+        counter.add(count);
+        return counter.sum();
+    }
+
+    long get(@NotNull final Answer answer) {
+        return counters[answer.ordinal()].sum();
+    }
+
+    EnumMap<Answer, Long> toMap() {
+        final EnumMap<Answer, Long> votes = new EnumMap<>(Answer.class);
+        for (final Answer answer : ANSWERS) {
+            final long count = get(answer);
+            if (count > 0) {
+                votes.put(answer, count);
+            }
+        }
+        return votes;
+    }
+
+}
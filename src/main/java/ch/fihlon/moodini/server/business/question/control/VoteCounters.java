@@ -0,0 +1,170 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.control;
+
+import ch.fihlon.moodini.server.business.question.entity.Answer;
+
+import javax.validation.constraints.NotNull;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * This class maps the question ids to their {@link VoteCounter}s. It is an
+ * open addressing hash table keyed by primitive {@code long}s, so a lookup
+ * neither boxes the id nor follows a chain of entries. The commands of the
+ * repository are executed one at a time, so there is only one writer; the
+ * readers never lock. A slot publishes its counter before its key, and a
+ * resized table is published as a whole, so a reader never sees a key
+ * without its counter. Question ids start at one, zero marks an empty slot.
+ */
+class VoteCounters implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+    private static final int INITIAL_CAPACITY = 64;
+    private static final long EMPTY = 0;
+    private static final long GOLDEN_RATIO = 0x9E3779B97F4A7C15L;
+    private static final int HASH_SHIFT = 32;
+
+    private transient AtomicReference<Table> table = new AtomicReference<>(new Table(INITIAL_CAPACITY));
+    private transient int size;
+
+    long increment(final long questionId, @NotNull final Answer answer) {
+        return getOrCreate(questionId).increment(answer);
+    }
+
+    long add(final long questionId, @NotNull final Answer answer, final long count) {
+        return getOrCreate(questionId).add(answer, count);
+    }
+
+    @SuppressWarnings("PMD.DataflowAnomalyAnalysis")
+    VoteCounter get(final long questionId) {
+        final Table current = table.get();
+        VoteCounter counter = null;
+        for (int slot = current.slot(questionId); current.keys.get(slot) != EMPTY; slot = current.next(slot)) {
+            if (current.keys.get(slot) == questionId) {
+                counter = current.counters.get(slot);
+                break;
+            }
+        }
+        return counter;
+    }
+
+    VoteCounter getOrCreate(final long questionId) {
+        VoteCounter counter = get(questionId);
+        if (counter == null) {
+            if ((size + 1) * 2 > table.get().capacity()) {
+                table.set(table.get().resize());
+            }
+            counter = new VoteCounter();
+            table.get().insert(questionId, counter);
+            size++;
+        }
+        return counter;
+    }
+
+    private void writeObject(@NotNull final ObjectOutputStream stream) throws IOException {
+        stream.defaultWriteObject();
+        final Answer[] answers = Answer.values();
+        stream.writeInt(size);
+        stream.writeInt(answers.length);
+        for (final Answer answer : answers) {
+            stream.writeUTF(answer.name());
+        }
+        final Table current = table.get();
+        for (int slot = 0; slot < current.capacity(); slot++) {
+            final long questionId = current.keys.get(slot);
+            if (questionId != EMPTY) {
+                stream.writeLong(questionId);
+                for (final Answer answer : answers) {
+                    stream.writeLong(current.counters.get(slot).get(answer));
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("PMD.DataflowAnomalyAnalysis")
+    private void readObject(@NotNull final ObjectInputStream stream) throws IOException, ClassNotFoundException {
+        stream.defaultReadObject();
+        table = new AtomicReference<>(new Table(INITIAL_CAPACITY));
+        final int entries = stream.readInt();
+        final Answer[] answers = new Answer[stream.readInt()];
+        for (int i = 0; i < answers.length; i++) {
+            answers[i] = Answer.valueOf(stream.readUTF());
+        }
+        for (int entry = 0; entry < entries; entry++) {
+            final VoteCounter counter = getOrCreate(stream.readLong());
+            for (final Answer answer : answers) {
+                counter.add(answer, stream.readLong());
+            }
+        }
+    }
+
+    /**
+     * The slots of the hash table, the capacity is always a power of two.
+     */
+    private static final class Table {
+
+        private final AtomicLongArray keys;
+        private final AtomicReferenceArray<VoteCounter> counters;
+        private final int mask;
+
+        Table(final int capacity) {
+            keys = new AtomicLongArray(capacity);
+            counters = new AtomicReferenceArray<>(capacity);
+            mask = capacity - 1;
+        }
+
+        int capacity() {
+            return keys.length();
+        }
+
+        int slot(final long key) {
+            final long hash = key * GOLDEN_RATIO;
+            return (int) (hash ^ (hash >>> HASH_SHIFT)) & mask;
+        }
+
+        int next(final int slot) {
+            return (slot + 1) & mask;
+        }
+
+        void insert(final long key, @NotNull final VoteCounter counter) {
+            int slot = slot(key);
+            while (keys.get(slot) != EMPTY) {
+                slot = next(slot);
+            }
+            counters.set(slot, counter);
+            keys.set(slot, key);
+        }
+
+        Table resize() {
+            final Table resized = new Table(capacity() * 2);
+            for (int slot = 0; slot < capacity(); slot++) {
+                if (keys.get(slot) != EMPTY) {
+                    resized.insert(keys.get(slot), counters.get(slot));
+                }
+            }
+            return resized;
+        }
+    }
+
+}
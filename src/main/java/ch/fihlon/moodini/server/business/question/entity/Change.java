@@ -0,0 +1,58 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.entity;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Value;
+
+import java.io.Serializable;
+
+/**
+ * This entity class is representing a change applied to the {@link Question}s
+ * or their votes, as published in the change feed. The offset orders the
+ * changes, the time is in milliseconds since the epoch. Only the fields of
+ * the {@link ChangeType} are set: the {@link Question} when it was created or
+ * updated, the {@link Answer} with the number of votes cast and the new total
+ * when votes were cast.
+ */
+@Value
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@SuppressWarnings("PMD.UnusedPrivateField")
+public class Change implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private long offset;
+
+    private long time;
+
+    private ChangeType type;
+
+    private Long questionId;
+
+    private Question question;
+
+    private Answer answer;
+
+    private Long count;
+
+    private Long total;
+
+}
@@ -0,0 +1,31 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.entity;
+
+/**
+ * This enum represents the kinds of {@link Change}s in the change feed.
+ */
+public enum ChangeType {
+
+    // CHECKSTYLE DISABLE JavadocVariable FOR 4 LINES
+    QUESTION_CREATED,
+    QUESTION_UPDATED,
+    QUESTION_DELETED,
+    VOTES_CAST
+
+}
@@ -0,0 +1,39 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.entity;
+
+import lombok.Value;
+
+import java.io.Serializable;
+import java.util.Map;
+
+/**
+ * This entity class is representing the votes for the {@link Answer}s of a
+ * {@link Question} which were cast during one bucket of a {@link History}.
+ */
+@Value
+@SuppressWarnings("PMD.UnusedPrivateField")
+public class HistoryBucket implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private long start;
+
+    private Map<Answer, Long> votes;
+
+}
@@ -0,0 +1,38 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.entity;
+
+import lombok.Value;
+
+import java.io.Serializable;
+
+/**
+ * This entity class is representing a period of time in milliseconds since
+ * the epoch. It starts with {@code from} and ends right before {@code until}.
+ */
+@Value
+@SuppressWarnings("PMD.UnusedPrivateField")
+public class Period implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private long from;
+
+    private long until;
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.entity;
+
+import javax.validation.constraints.NotNull;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This enum represents the width of the buckets of a {@link History}. The
+ * minutes and hours are kept for a limited number of buckets only, the
+ * days are kept as long as the {@link Question}.
+ */
+public enum Resolution {
+
+    // CHECKSTYLE DISABLE JavadocVariable FOR 3 LINES
+    MINUTE(TimeUnit.MINUTES, Resolution.MINUTES_KEPT),
+    HOUR(TimeUnit.HOURS, Resolution.HOURS_KEPT),
+    DAY(TimeUnit.DAYS, 0);
+
+    private static final int MINUTES_KEPT = 180;
+    private static final int HOURS_KEPT = 168;
+
+    private final long millis;
+    private final int retention;
+
+    Resolution(@NotNull final TimeUnit unit, final int retention) {
+        this.millis = unit.toMillis(1);
+        this.retention = retention;
+    }
+
+    /**
+     * Get the width of a bucket.
+     *
+     * @return the width of a bucket in milliseconds
+     */
+    public long getMillis() {
+        return millis;
+    }
+
+    /**
+     * Get the number of buckets which are kept.
+     *
+     * @return the number of buckets kept or {@code 0} if all buckets are kept
+     */
+    public int getRetention() {
+        return retention;
+    }
+
+    /**
+     * Get the finest {@link Resolution} which still keeps the buckets
+     * starting at the specified time. Long ranges are read from the
+     * coarse buckets, so they never need more buckets than are kept.
+     *
+     * @param from the start of the range in milliseconds since the epoch
+     * @param now the current time in milliseconds since the epoch
+     * @return the finest {@link Resolution} covering the range
+     */
+    public static Resolution covering(final long from, final long now) {
+        return Arrays.stream(values())
+                .filter(resolution -> resolution.retention == 0
+                        || from >= (now / resolution.millis - resolution.retention + 1) * resolution.millis)
+                .findFirst()
+                .orElse(DAY);
+    }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.entity;
+
+import ch.fihlon.moodini.server.business.question.entity.Tally.TallyBuilder;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonPOJOBuilder;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Value;
+
+import javax.validation.constraints.NotNull;
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * This entity class is representing an immutable snapshot of the votes for
+ * the {@link Answer}s of a {@link Question}. The version is increased with
+ * every change of the votes. The number of distinct voters is an estimate,
+ * it is only known for {@link Question}s with identified votes. The builder
+ * is used to deserialize a {@link Tally} received from another node.
+ */
+@Value
+@SuppressWarnings("PMD.UnusedPrivateField")
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+@Builder
+@JsonDeserialize(builder = TallyBuilder.class)
+public class Tally implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private Long questionId;
+
+    private Long version;
+
+    private Map<Answer, Long> votes;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long voters;
+
+    /**
+     * Create a {@link Tally} for the specified {@link Question}.
+     *
+     * @param questionId the id of a {@link Question}
+     * @param votes the number of votes per {@link Answer}, missing answers have no votes
+     * @return a new {@link Tally} with version {@code 0}
+     */
+    public static Tally create(@NotNull final Long questionId,
+                               @NotNull final Map<Answer, Long> votes) {
+        final EnumMap<Answer, Long> allVotes = new EnumMap<>(Answer.class);
+        for (final Answer answer : Answer.values()) {
+            allVotes.put(answer, votes.getOrDefault(answer, 0L));
+        }
+        return new Tally(questionId, 0L, Collections.unmodifiableMap(allVotes), null);
+    }
+
+    /**
+     * Create a new version of this {@link Tally} with a changed number of votes for an {@link Answer}.
+     * The number of votes is never decreased, so updates arriving out of order are ignored.
+     *
+     * @param answer the {@link Answer}
+     * @param count the number of votes for the {@link Answer}
+     * @return a new {@link Tally} or this {@link Tally} if the number of votes did not increase
+     */
+    @SuppressWarnings("PMD.DataflowAnomalyAnalysis")
+    public Tally withVotes(@NotNull final Answer answer, final long count) {
+        Tally tally = this;
+        if (count > votes.get(answer)) {
+            final EnumMap<Answer, Long> changedVotes = new EnumMap<>(votes);
+            changedVotes.put(answer, count);
+            tally = new Tally(questionId, version + 1, Collections.unmodifiableMap(changedVotes), voters);
+        }
+        return tally;
+    }
+
+    /**
+     * Create a new version of this {@link Tally} with a changed estimate of the distinct voters.
+     *
+     * @param estimate the estimated number of distinct voters
+     * @return a new {@link Tally} or this {@link Tally} if the estimate did not change
+     */
+    @SuppressWarnings("PMD.DataflowAnomalyAnalysis")
+    public Tally withVoters(final long estimate) {
+        Tally tally = this;
+        if (voters == null || estimate != voters) {
+            tally = new Tally(questionId, version + 1, votes, estimate);
+        }
+        return tally;
+    }
+
+    /**
+     * This is the builder for the {@link Tally}.
+     */
+    @JsonPOJOBuilder(withPrefix = "")
+    public static final class TallyBuilder {
+    }
+
+}
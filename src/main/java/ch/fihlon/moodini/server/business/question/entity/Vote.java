@@ -0,0 +1,55 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Value;
+
+import javax.validation.constraints.NotNull;
+
+import java.io.Serializable;
+
+/**
+ * This entity class is representing a single vote for an {@link Answer} of
+ * a {@link Question}. A voter who identified with a token is represented by
+ * the hash of the token, an anonymous vote has no voter.
+ */
+@Value
+@AllArgsConstructor
+@SuppressWarnings({"PMD.UnusedPrivateField", "PMD.ShortClassName"})
+public class Vote implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private Long questionId;
+
+    private Answer answer;
+
+    private Long voter;
+
+    /**
+     * This constructor creates an anonymous {@link Vote}.
+     *
+     * @param questionId the id of the {@link Question}
+     * @param answer the {@link Answer}
+     */
+    public Vote(@NotNull final Long questionId, @NotNull final Answer answer) {
+        this(questionId, answer, null);
+    }
+
+}
@@ -23,6 +23,9 @@ import javax.validation.constraints.NotNull;
  * This is the base class of all custom exceptions used in this project and
  * allows the custom exception to specify a HTTP status code which is used by
  * the Vert.x error handler to create a more meaningful HTTP error response.
+ * The exceptions only signal the status of a request, so they are created
+ * without a stack trace, which is the expensive part of throwing them on the
+ * hot paths (e.g. votes for unknown questions). A cause keeps its own trace.
  */
 public abstract class AbstractStatusCodeException extends RuntimeException {
 
@@ -35,7 +38,13 @@ public abstract class AbstractStatusCodeException extends RuntimeException {
     }
 
     AbstractStatusCodeException(@NotNull final Integer statusCode, @NotNull final String message) {
-        super(message);
+        super(message, null, false, false);
+        this.statusCode = statusCode;
+    }
+
+    AbstractStatusCodeException(@NotNull final Integer statusCode, @NotNull final String message,
+                                @NotNull final Throwable cause) {
+        super(message, cause, false, false);
         this.statusCode = statusCode;
     }
 
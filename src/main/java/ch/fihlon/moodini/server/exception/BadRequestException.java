@@ -0,0 +1,47 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.exception;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * This implementation of an exception is mapped to a HTTP status code of "400 BAD REQUEST".
+ */
+public class BadRequestException extends AbstractStatusCodeException {
+
+    private static final int STATUS_CODE = 400;
+
+    /**
+     * This constructor creates a {@link BadRequestException} with a message.
+     *
+     * @param message a message explaining what is wrong with the request
+     */
+    public BadRequestException(@NotNull final String message) {
+        super(STATUS_CODE, message);
+    }
+
+    /**
+     * This constructor creates a {@link BadRequestException} with a message and a cause.
+     *
+     * @param message a message explaining what is wrong with the request
+     * @param cause the exception which revealed the problem
+     */
+    public BadRequestException(@NotNull final String message, @NotNull final Throwable cause) {
+        super(STATUS_CODE, message, cause);
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.exception;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * This implementation of an exception is mapped to a HTTP status code of "503 SERVICE UNAVAILABLE".
+ * It signals a temporary overload, the client should retry after {@link #getRetryAfter()} seconds.
+ */
+public class ServiceUnavailableException extends AbstractStatusCodeException {
+
+    private static final int STATUS_CODE = 503;
+    private static final long RETRY_AFTER = 1;
+
+    /**
+     * This constructor creates a {@link ServiceUnavailableException} with a message.
+     *
+     * @param message the message
+     */
+    public ServiceUnavailableException(@NotNull final String message) {
+        super(STATUS_CODE, message);
+    }
+
+    /**
+     * Get the number of seconds after which the client should retry the request.
+     *
+     * @return the number of seconds to wait before retrying
+     */
+    public long getRetryAfter() {
+        return RETRY_AFTER;
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.exception;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * This implementation of an exception is mapped to a HTTP status code of "422 UNPROCESSABLE ENTITY".
+ */
+public class UnprocessableEntityException extends AbstractStatusCodeException {
+
+    private static final int STATUS_CODE = 422;
+
+    /**
+     * This constructor creates a {@link UnprocessableEntityException} with a message.
+     *
+     * @param message a message explaining why the request can not be processed
+     */
+    public UnprocessableEntityException(@NotNull final String message) {
+        super(STATUS_CODE, message);
+    }
+}
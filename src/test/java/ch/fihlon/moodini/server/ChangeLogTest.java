@@ -0,0 +1,180 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server;
+
+import io.vertx.core.json.JsonObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import pl.setblack.airomem.core.disk.PersistenceDiskHelper;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongFunction;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * This is the unit test for the class {@link ChangeLog}.
+ */
+public class ChangeLogTest {
+
+    private static final Path FOLDER = PersistenceDiskHelper.calcUserPath("moodini-test-changelog");
+    private static final int WINDOW = 2;
+    private static final int SEGMENT_LINES = 3;
+    private static final int SEGMENTS = 2;
+    private static final int LIMIT = 100;
+    private static final String WRONG_CHANGES = "Wrong changes";
+    private static final String WRONG_LAST_OFFSET = "Wrong last offset";
+    private static final String WRONG_CALLS = "Wrong number of calls";
+    private static final String SUFFIX = ".changes";
+
+    @Before
+    public void setUp() {
+        PersistenceDiskHelper.delete(FOLDER.toString());
+        Configuration.setConfig(new JsonObject()
+                .put("changes.window", WINDOW)
+                .put("changes.segment.lines", SEGMENT_LINES)
+                .put("changes.segments", SEGMENTS));
+    }
+
+    @After
+    public void tearDown() {
+        Configuration.resetConfig();
+        PersistenceDiskHelper.delete(FOLDER.toString());
+    }
+
+    @Test
+    public void changesBehindTheWindowAreReadFromDisk() {
+        try (ChangeLog changeLog = new ChangeLog(FOLDER)) {
+            append(changeLog, SEGMENT_LINES + 1);
+            assertThat(WRONG_CHANGES, changeLog.read(0, LIMIT), is(range(1, SEGMENT_LINES + 1)));
+            assertThat(WRONG_CHANGES, changeLog.read(1, WINDOW), is(range(2, SEGMENT_LINES)));
+            assertThat("There should be no newer changes",
+                    changeLog.read(SEGMENT_LINES + 1, LIMIT).isEmpty(), is(true));
+        }
+    }
+
+    @Test
+    public void offsetsBeyondTheLastChangeReadNothing() {
+        try (ChangeLog changeLog = new ChangeLog(FOLDER)) {
+            append(changeLog, 2);
+            assertThat("There should be no changes after the maximum offset",
+                    changeLog.read(Long.MAX_VALUE, LIMIT).isEmpty(), is(true));
+        }
+    }
+
+    @Test
+    public void offsetsContinueAfterRestart() {
+        try (ChangeLog changeLog = new ChangeLog(FOLDER)) {
+            append(changeLog, 2);
+        }
+        try (ChangeLog changeLog = new ChangeLog(FOLDER)) {
+            assertThat(WRONG_LAST_OFFSET, changeLog.getLastOffset(), is(2L));
+            append(changeLog, 1);
+            assertThat(WRONG_CHANGES, changeLog.read(0, LIMIT), is(range(1, SEGMENT_LINES)));
+        }
+    }
+
+    @Test
+    public void restartsContinueTheLastSegment() {
+        final int changes = SEGMENT_LINES * SEGMENTS - 1;
+        for (int i = 0; i < changes; i++) {
+            try (ChangeLog changeLog = new ChangeLog(FOLDER)) {
+                append(changeLog, 1);
+            }
+        }
+        try (ChangeLog changeLog = new ChangeLog(FOLDER)) {
+            assertThat(WRONG_CHANGES, changeLog.read(0, LIMIT), is(range(1, changes)));
+        }
+        final File[] segments = FOLDER.toFile().listFiles((dir, fileName) -> fileName.endsWith(SUFFIX));
+        assertThat("Restarts should not start new segments", segments.length, is(SEGMENTS));
+    }
+
+    @Test
+    public void readersContinueWithTheOldestChangeLeft() {
+        try (ChangeLog changeLog = new ChangeLog(FOLDER)) {
+            append(changeLog, SEGMENT_LINES * SEGMENTS + 1);
+            final File[] segments = FOLDER.toFile()
+                    .listFiles((dir, fileName) -> fileName.endsWith(SUFFIX));
+            assertThat("The oldest segments should be deleted", segments.length, is(SEGMENTS));
+            assertThat(WRONG_CHANGES, changeLog.read(0, SEGMENT_LINES),
+                    is(range(SEGMENT_LINES + 1, 2 * SEGMENT_LINES)));
+        }
+    }
+
+    @Test
+    public void listenersAreCalledAfterAppend() {
+        final AtomicInteger calls = new AtomicInteger();
+        try (ChangeLog changeLog = new ChangeLog(FOLDER)) {
+            final Runnable listener = calls::incrementAndGet;
+            changeLog.addListener(listener);
+            append(changeLog, 1);
+            changeLog.removeListener(listener);
+            append(changeLog, 1);
+        }
+        assertThat(WRONG_CALLS, calls.get(), is(1));
+    }
+
+    @Test
+    public void batchIsAppendedAtOnceAcrossSegments() {
+        final AtomicInteger calls = new AtomicInteger();
+        try (ChangeLog changeLog = new ChangeLog(FOLDER)) {
+            changeLog.addListener(calls::incrementAndGet);
+            final List<LongFunction<String>> encoders = Collections.nCopies(SEGMENT_LINES + 1, Long::toString);
+            assertThat(WRONG_LAST_OFFSET, changeLog.appendAll(encoders), is(SEGMENT_LINES + 1L));
+            assertThat(WRONG_CHANGES, changeLog.read(0, LIMIT), is(range(1, SEGMENT_LINES + 1)));
+        }
+        assertThat(WRONG_CALLS, calls.get(), is(1));
+    }
+
+    @Test
+    public void tornLineIsCutOffOnRestart() throws IOException {
+        try (ChangeLog changeLog = new ChangeLog(FOLDER)) {
+            append(changeLog, 2);
+        }
+        final File[] segments = FOLDER.toFile().listFiles((dir, fileName) -> fileName.endsWith(SUFFIX));
+        Files.write(segments[0].toPath(), "3".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        try (ChangeLog changeLog = new ChangeLog(FOLDER)) {
+            assertThat("The torn line should not count", changeLog.getLastOffset(), is(2L));
+            append(changeLog, 1);
+            assertThat(WRONG_CHANGES, changeLog.read(0, LIMIT), is(range(1, SEGMENT_LINES)));
+        }
+    }
+
+    private static void append(final ChangeLog changeLog, final int changes) {
+        for (int i = 0; i < changes; i++) {
+            changeLog.append(Long::toString);
+        }
+    }
+
+    private static List<String> range(final long first, final long last) {
+        return LongStream.rangeClosed(first, last).mapToObj(Long::toString).collect(Collectors.toList());
+    }
+
+}
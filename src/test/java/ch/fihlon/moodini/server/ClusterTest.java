@@ -0,0 +1,94 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * This is the unit test for the class {@link Cluster}.
+ */
+public class ClusterTest {
+
+    private static final List<String> NODES = Arrays.asList("127.0.0.1:8081", "127.0.0.1:8082", "localhost:8083");
+    private static final int SEQUENCE = 100;
+    private static final int PORT = 8083;
+    private static final String PREFIX = "cluster";
+
+    @Test
+    public void idsAreUniqueAndOwnedByTheirNode() {
+        final Set<Long> ids = new HashSet<>();
+        for (int node = 0; node < NODES.size(); node++) {
+            final Cluster cluster = new Cluster(NODES, node);
+            for (long sequence = 1; sequence <= SEQUENCE; sequence++) {
+                final long questionId = cluster.questionId(sequence);
+                assertThat("The id should be new!", ids.add(questionId), is(true));
+                assertThat("The node should own its ids!", cluster.owns(questionId), is(true));
+                assertThat("Wrong owner", new Cluster(NODES, 0).ownerOf(questionId), is(node));
+            }
+        }
+        assertThat("The ids should be dense!", ids.size(), is(NODES.size() * SEQUENCE));
+    }
+
+    @Test
+    public void standaloneKeepsTheSequence() {
+        final Cluster standalone = new Cluster(Collections.emptyList(), 0);
+        assertThat("A standalone node is no cluster!", standalone.isClustered(), is(false));
+        assertThat("Wrong id", standalone.questionId(SEQUENCE), is((long) SEQUENCE));
+        assertThat("A standalone node owns everything!", standalone.owns(SEQUENCE), is(true));
+    }
+
+    @Test
+    public void addressesAreSplit() {
+        final Cluster cluster = new Cluster(NODES, 1);
+        assertThat("Wrong host", cluster.hostOf(2), is("localhost"));
+        assertThat("Wrong port", cluster.portOf(2), is(PORT));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownNodeIsRejected() {
+        new Cluster(NODES, NODES.size());
+    }
+
+    @Test
+    public void sameLayoutIsAccepted() throws IOException {
+        final Path directory = Files.createTempDirectory(PREFIX);
+        new Cluster(NODES, 1).checkLayout(directory);
+        new Cluster(NODES, 1).checkLayout(directory);
+        assertThat("The layout should be recorded!", Files.list(directory).count(), is(1L));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void otherLayoutIsRefused() throws IOException {
+        final Path directory = Files.createTempDirectory(PREFIX);
+        new Cluster(NODES, 1).checkLayout(directory);
+        new Cluster(NODES.subList(0, 2), 1).checkLayout(directory);
+    }
+
+}
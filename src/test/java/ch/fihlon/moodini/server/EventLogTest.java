@@ -0,0 +1,137 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server;
+
+import io.vertx.core.json.JsonObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import pl.setblack.airomem.core.disk.PersistenceDiskHelper;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * This is the unit test for the class {@link EventLog}.
+ */
+public class EventLogTest {
+
+    private static final Path FOLDER = PersistenceDiskHelper.calcUserPath("moodini-test-eventlog");
+    private static final int RECORD_BYTES = 2 * Integer.BYTES + Integer.BYTES;
+    private static final int ENTRY_LIMIT = 100;
+    private static final int RECORDS = 5;
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String WRONG_RECORDS = "Wrong records";
+    private static final String WRONG_REPLAYED = "Wrong number of replayed records";
+
+    @Before
+    public void setUp() {
+        PersistenceDiskHelper.delete(FOLDER.toString());
+        Configuration.setConfig(new JsonObject()
+                .put("persistence.snapshot.entries", ENTRY_LIMIT)
+                .put("persistence.journal.segment.bytes", 2 * RECORD_BYTES));
+    }
+
+    @After
+    public void tearDown() {
+        Configuration.resetConfig();
+        PersistenceDiskHelper.delete(FOLDER.toString());
+    }
+
+    @Test
+    public void recordsAreReplayedAfterCrash() {
+        final EventLog crashing = new EventLog(FOLDER);
+        load(crashing);
+        for (int i = 0; i < RECORDS; i++) {
+            append(crashing, i);
+        }
+        try (EventLog eventLog = new EventLog(FOLDER)) {
+            assertThat(WRONG_RECORDS, load(eventLog), is(range(RECORDS)));
+            assertThat(WRONG_REPLAYED, eventLog.getStatus().getJournalEntries(), is((long) RECORDS));
+        }
+    }
+
+    @Test
+    public void tornRecordIsIgnored() throws IOException {
+        final EventLog crashing = new EventLog(FOLDER);
+        load(crashing);
+        append(crashing, 1);
+        final File[] segments = FOLDER.toFile().listFiles((dir, fileName) -> fileName.endsWith(SEGMENT_SUFFIX));
+        final ByteBuffer torn = ByteBuffer.allocate(RECORD_BYTES);
+        torn.putInt(Integer.BYTES).putInt(2).putInt(2).flip();
+        try (FileChannel channel = FileChannel.open(segments[0].toPath(), StandardOpenOption.WRITE)) {
+            channel.write(torn, RECORD_BYTES);
+        }
+        try (EventLog eventLog = new EventLog(FOLDER)) {
+            assertThat("The torn record should be ignored", load(eventLog), is(Arrays.asList(1)));
+        }
+    }
+
+    @Test
+    public void snapshotDeletesTheReplayedSegments() {
+        final EventLog crashing = new EventLog(FOLDER);
+        final ArrayList<Integer> state = load(crashing);
+        for (int i = 0; i < RECORDS; i++) {
+            append(crashing, i);
+            state.add(i);
+        }
+        crashing.snapshot(state);
+        append(crashing, RECORDS);
+        try (EventLog eventLog = new EventLog(FOLDER)) {
+            assertThat(WRONG_RECORDS, load(eventLog), is(range(RECORDS + 1)));
+            assertThat(WRONG_REPLAYED, eventLog.getStatus().getJournalEntries(), is(1L));
+        }
+        final File[] snapshots = FOLDER.toFile().listFiles((dir, fileName) -> fileName.endsWith(".snapshot"));
+        final File[] segments = FOLDER.toFile().listFiles((dir, fileName) -> fileName.endsWith(SEGMENT_SUFFIX));
+        assertThat("Wrong number of snapshots", snapshots.length, is(1));
+        assertThat("The replayed segments should be deleted", segments.length, is(2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void recordLargerThanSegmentIsRejected() {
+        try (EventLog eventLog = new EventLog(FOLDER)) {
+            load(eventLog);
+            eventLog.append(2 * RECORD_BYTES, buffer -> buffer.position(buffer.limit()));
+        }
+    }
+
+    private static ArrayList<Integer> load(final EventLog eventLog) {
+        return eventLog.load(ArrayList::new, (list, record) -> list.add(record.getInt()));
+    }
+
+    private static List<Integer> range(final int records) {
+        return IntStream.range(0, records).boxed().collect(Collectors.toList());
+    }
+
+    private static void append(final EventLog eventLog, final int value) {
+        eventLog.append(Integer.BYTES, buffer -> buffer.putInt(value));
+    }
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server;
+
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.json.JsonObject;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * This is the unit test for the class {@link MoodiniLauncher}.
+ */
+public class MoodiniLauncherTest {
+
+    private static final String INSTANCES_KEY = "http.instances";
+    private static final String WRONG_INSTANCES = "Got the wrong number of instances!";
+    private static final int CONFIGURED_INSTANCES = 3;
+    private static final int COMMAND_LINE_INSTANCES = 2;
+
+    @Test
+    public void instancesDefaultToOne() {
+        assertThat(WRONG_INSTANCES, MoodiniLauncher.instances(null), is(1));
+        assertThat(WRONG_INSTANCES, MoodiniLauncher.instances(new JsonObject()), is(1));
+    }
+
+    @Test
+    public void instancesFromConfiguration() {
+        final JsonObject config = new JsonObject().put(INSTANCES_KEY, CONFIGURED_INSTANCES);
+        assertThat(WRONG_INSTANCES, MoodiniLauncher.instances(config), is(CONFIGURED_INSTANCES));
+    }
+
+    @Test
+    public void instancesPerProcessorCore() {
+        final JsonObject config = new JsonObject().put(INSTANCES_KEY, 0);
+        assertThat(WRONG_INSTANCES, MoodiniLauncher.instances(config),
+                is(Runtime.getRuntime().availableProcessors()));
+    }
+
+    @Test
+    public void commandLineTakesPrecedence() {
+        final DeploymentOptions options = deploy(COMMAND_LINE_INSTANCES, "-instances", "2");
+        assertThat(WRONG_INSTANCES, options.getInstances(), is(COMMAND_LINE_INSTANCES));
+    }
+
+    @Test
+    public void explicitSingleInstanceTakesPrecedence() {
+        final DeploymentOptions options = deploy(1, "--instances=1");
+        assertThat(WRONG_INSTANCES, options.getInstances(), is(1));
+    }
+
+    @Test
+    public void configurationWithoutCommandLineOption() {
+        final DeploymentOptions options = deploy(1, "-conf", "config.json");
+        assertThat(WRONG_INSTANCES, options.getInstances(), is(CONFIGURED_INSTANCES));
+    }
+
+    private static DeploymentOptions deploy(final int instances, final String... args) {
+        final DeploymentOptions options = new DeploymentOptions()
+                .setInstances(instances)
+                .setConfig(new JsonObject().put(INSTANCES_KEY, CONFIGURED_INSTANCES));
+        final MoodiniLauncher launcher = new MoodiniLauncher();
+        launcher.parseInstancesOption(args);
+        launcher.beforeDeployingVerticle(options);
+        return options;
+    }
+}
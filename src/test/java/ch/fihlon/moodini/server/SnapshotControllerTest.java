@@ -0,0 +1,122 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server;
+
+import io.vertx.core.json.JsonObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import pl.setblack.airomem.core.disk.PersistenceDiskHelper;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * This is the unit test for the class {@link SnapshotController}.
+ */
+public class SnapshotControllerTest {
+
+    private static final String NAME = "moodini-test-snapshots";
+    private static final String ENTRY = "entry";
+    private static final String WRONG_ENTRIES = "Wrong number of entries";
+    private static final int ENTRY_LIMIT = 5;
+    private static final int WRITES = 12;
+    private static final Path FOLDER = PersistenceDiskHelper.calcUserPath(NAME);
+
+    @Before
+    public void setUp() {
+        PersistenceDiskHelper.delete(FOLDER.toString());
+        Configuration.setConfig(new JsonObject()
+                .put("persistence.snapshot.entries", ENTRY_LIMIT)
+                .put("persistence.journal.segment.bytes", 1));
+    }
+
+    @After
+    public void tearDown() {
+        Configuration.resetConfig();
+        PersistenceDiskHelper.delete(FOLDER.toString());
+    }
+
+    @Test
+    public void snapshotIsTakenWhenEntryLimitIsReached() {
+        try (SnapshotController<ArrayList<String>> controller = new SnapshotController<>(NAME, ArrayList::new)) {
+            for (int i = 0; i < WRITES; i++) {
+                controller.executeAndQuery(list -> list.add(ENTRY));
+            }
+            final SnapshotStatus status = controller.getStatus();
+            assertThat("Wrong number of snapshots", status.getSnapshots(), is(2L));
+            assertThat("Wrong number of journal entries", status.getJournalEntries(), is(2L));
+        }
+        final File[] snapshots = FOLDER.toFile()
+                .listFiles((dir, fileName) -> fileName.endsWith(".snapshot"));
+        assertThat("The old snapshots should be deleted", snapshots.length, is(1));
+    }
+
+    @Test
+    public void restartAfterCrashReplaysOnlyTheJournalSinceTheSnapshot() {
+        final SnapshotController<ArrayList<String>> crashing = new SnapshotController<>(NAME, ArrayList::new);
+        for (int i = 0; i < ENTRY_LIMIT + 2; i++) {
+            crashing.executeAndQuery(list -> list.add(ENTRY));
+        }
+        crashing.shut();
+        try (SnapshotController<ArrayList<String>> controller = new SnapshotController<>(NAME, ArrayList::new)) {
+            assertThat(WRONG_ENTRIES, controller.readOnly().size(), is(ENTRY_LIMIT + 2));
+            assertThat("Wrong number of replayed entries", controller.getStatus().getJournalEntries(), is(2L));
+        }
+    }
+
+    @Test
+    public void olderJournalWithEntriesToReplayIsRefused() throws IOException {
+        final SnapshotController<ArrayList<String>> crashing = new SnapshotController<>(NAME, ArrayList::new);
+        crashing.executeAndQuery(list -> list.add(ENTRY));
+        crashing.shut();
+        writeJournalVersion(SnapshotController.JOURNAL_VERSION - 1);
+        try (SnapshotController<ArrayList<String>> controller = new SnapshotController<>(NAME, ArrayList::new)) {
+            fail("The older journal should be refused: " + controller.readOnly());
+        } catch (final IllegalStateException e) {
+            assertThat("Wrong message", e.getMessage(), containsString("before upgrading"));
+        }
+    }
+
+    @Test
+    public void olderJournalCoveredBySnapshotIsAccepted() throws IOException {
+        try (SnapshotController<ArrayList<String>> controller = new SnapshotController<>(NAME, ArrayList::new)) {
+            controller.executeAndQuery(list -> list.add(ENTRY));
+        }
+        writeJournalVersion(SnapshotController.JOURNAL_VERSION - 1);
+        try (SnapshotController<ArrayList<String>> controller = new SnapshotController<>(NAME, ArrayList::new)) {
+            assertThat(WRONG_ENTRIES, controller.readOnly().size(), is(1));
+        }
+        assertThat("The journal version should be updated", new JournalFolder(FOLDER.toFile()).journalVersion(),
+                is(SnapshotController.JOURNAL_VERSION));
+    }
+
+    private static void writeJournalVersion(final int version) throws IOException {
+        Files.write(FOLDER.resolve("journal.version"), String.valueOf(version).getBytes(StandardCharsets.UTF_8));
+    }
+
+}
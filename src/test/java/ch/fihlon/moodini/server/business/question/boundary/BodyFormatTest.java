@@ -0,0 +1,108 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.boundary;
+
+import ch.fihlon.moodini.server.business.question.entity.Answer;
+import ch.fihlon.moodini.server.business.question.entity.Question;
+import ch.fihlon.moodini.server.business.question.entity.Tally;
+import ch.fihlon.moodini.server.exception.BadRequestException;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * This is the unit test for the enum {@link BodyFormat}.
+ */
+public class BodyFormatTest {
+
+    private static final String WRONG_FORMAT = "Wrong format";
+    private static final String ACCEPT = "Accept";
+    private static final String CONTENT_TYPE = "Content-Type";
+    private static final String CBOR = "application/cbor";
+    private static final Question QUESTION = Question.builder().questionId(1L).version(2L).text("Binary?").build();
+
+    @Test
+    public void jsonIsTheDefault() {
+        assertThat(WRONG_FORMAT, BodyFormat.accepted(request(ACCEPT, null)), is(BodyFormat.JSON));
+        assertThat(WRONG_FORMAT, BodyFormat.accepted(request(ACCEPT, "text/html, */*;q=0.8")), is(BodyFormat.JSON));
+        assertThat(WRONG_FORMAT, BodyFormat.received(request(CONTENT_TYPE, "text/plain")), is(BodyFormat.JSON));
+    }
+
+    @Test
+    public void theBestQualityWins() {
+        assertThat(WRONG_FORMAT, BodyFormat.accepted(request(ACCEPT, CBOR)), is(BodyFormat.CBOR));
+        assertThat(WRONG_FORMAT, BodyFormat.accepted(request(ACCEPT, "application/json;q=0.5, application/cbor")),
+                is(BodyFormat.CBOR));
+        assertThat(WRONG_FORMAT, BodyFormat.accepted(request(ACCEPT, "application/cbor;q=0, application/*;q=0.1")),
+                is(BodyFormat.JSON));
+        assertThat(WRONG_FORMAT, BodyFormat.received(request(CONTENT_TYPE, "Application/X-Jackson-Smile")),
+                is(BodyFormat.SMILE));
+    }
+
+    @Test
+    public void allFormatsRoundTrip() {
+        final Tally tally = Tally.create(1L, Collections.singletonMap(Answer.AMPED, 2L)).withVoters(1);
+        final Map<?, ?> json = BodyFormat.JSON.decode(BodyFormat.JSON.encode(tally), Map.class);
+        for (final BodyFormat format : BodyFormat.values()) {
+            assertThat("Wrong question", format.decode(format.encode(QUESTION), Question.class), is(QUESTION));
+            assertThat("Wrong tally", format.decode(format.encode(tally), Map.class), is(json));
+        }
+        assertThat("CBOR should be more compact than JSON",
+                BodyFormat.CBOR.encode(QUESTION).length() < BodyFormat.JSON.encode(QUESTION).length(), is(true));
+    }
+
+    @Test
+    public void vertxJsonTypesAreWrittenInAllFormats() {
+        final JsonObject status = new JsonObject()
+                .put("writes", new JsonObject().put("pending", 1))
+                .put("results", new JsonArray().add(new JsonObject().put("status", 200)));
+        final Map<?, ?> json = BodyFormat.JSON.decode(Buffer.buffer(status.encode()), Map.class);
+        for (final BodyFormat format : BodyFormat.values()) {
+            assertThat("Wrong status in " + format, format.decode(format.encode(status), Map.class), is(json));
+        }
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void invalidBodiesAreBadRequests() {
+        BodyFormat.CBOR.decode(Buffer.buffer("{\"text\":"), Question.class);
+    }
+
+    @Test
+    public void representationsHaveTheirOwnEntityTags() {
+        final String etag = "\"1-2\"";
+        assertThat("JSON should keep the entity tag", BodyFormat.JSON.tag(etag), is(etag));
+        assertThat("Smile should have its own entity tag", BodyFormat.SMILE.tag(etag), is("\"1-2-smile\""));
+    }
+
+    private static HttpServerRequest request(final String header, final String value) {
+        final HttpServerRequest request = mock(HttpServerRequest.class);
+        when(request.getHeader(header)).thenReturn(value);
+        return request;
+    }
+
+}
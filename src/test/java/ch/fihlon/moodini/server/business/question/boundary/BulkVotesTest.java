@@ -0,0 +1,117 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.boundary;
+
+import ch.fihlon.moodini.server.business.question.entity.Answer;
+import ch.fihlon.moodini.server.business.question.entity.BulkVote;
+import ch.fihlon.moodini.server.exception.BadRequestException;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.json.JsonArray;
+import io.vertx.ext.web.RoutingContext;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * This is the unit test for the class {@link BulkVotes}.
+ */
+public class BulkVotesTest {
+
+    private static final int MAX_VOTES = 3;
+    private static final long COUNT = 3;
+    private static final long MAX_COUNT = 5;
+    private static final long VOTES = 7;
+    private static final String WRONG_VOTES = "Wrong votes";
+    private static final String WRONG_STATUS = "Wrong status";
+    private static final String STATUS = "status";
+    private static final String APPLICATION_JSON = "application/json";
+    private static final int SC_OK = 200;
+    private static final int SC_BAD_REQUEST = 400;
+    private static final int SC_NOT_FOUND = 404;
+
+    @Test
+    public void readNewlineDelimitedJson() {
+        final RoutingContext routingContext = request("application/x-ndjson",
+                "{\"questionId\": 1, \"answer\": \"GOOD\", \"count\": 3}\n\nno json\r\n"
+                        + "{\"questionId\": 2, \"answer\": \"MEH\"}");
+        assertThat(WRONG_VOTES, BulkVotes.read(routingContext, MAX_VOTES, MAX_COUNT), is(Arrays.asList(
+                Optional.of(new BulkVote(1L, Answer.GOOD, COUNT)),
+                Optional.empty(),
+                Optional.of(new BulkVote(2L, Answer.MEH, 1L)))));
+    }
+
+    @Test
+    public void readJsonArray() {
+        final RoutingContext routingContext = request(APPLICATION_JSON,
+                "[{\"questionId\": 1, \"answer\": \"MAYBE\"}, "
+                        + "{\"questionId\": 1, \"answer\": \"AMPED\", \"count\": 0}, "
+                        + "{\"questionId\": \"one\", \"answer\": \"AMPED\"}]");
+        assertThat(WRONG_VOTES, BulkVotes.read(routingContext, MAX_VOTES, MAX_COUNT),
+                is(Arrays.asList(Optional.empty(), Optional.empty(), Optional.empty())));
+    }
+
+    @Test
+    public void readCountAboveMaximumIsInvalid() {
+        final RoutingContext routingContext = request(APPLICATION_JSON,
+                "[{\"questionId\": 1, \"answer\": \"GOOD\", \"count\": 5}, "
+                        + "{\"questionId\": 1, \"answer\": \"GOOD\", \"count\": 6}]");
+        assertThat(WRONG_VOTES, BulkVotes.read(routingContext, MAX_VOTES, MAX_COUNT),
+                is(Arrays.asList(Optional.of(new BulkVote(1L, Answer.GOOD, MAX_COUNT)), Optional.empty())));
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void readMalformedArrayFails() {
+        BulkVotes.read(request(null, "{\"questionId\": 1}"), MAX_VOTES, MAX_COUNT);
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void readTooManyVotesFails() {
+        BulkVotes.read(request(null, "[{}, {}, {}, {}]"), MAX_VOTES, MAX_COUNT);
+    }
+
+    @Test
+    public void writeStatusOfEveryVote() {
+        final List<Optional<BulkVote>> votes = Arrays.asList(
+                Optional.of(new BulkVote(1L, Answer.GOOD, COUNT)),
+                Optional.empty(),
+                Optional.of(new BulkVote(2L, Answer.MEH, 1L)));
+        final JsonArray results = BulkVotes.write(votes, new long[] {VOTES, 0});
+        assertThat("Wrong number of results", results.size(), is(votes.size()));
+        assertThat(WRONG_STATUS, results.getJsonObject(0).getInteger(STATUS), is(SC_OK));
+        assertThat("Wrong number of votes", results.getJsonObject(0).getLong("votes"), is(VOTES));
+        assertThat(WRONG_STATUS, results.getJsonObject(1).getInteger(STATUS), is(SC_BAD_REQUEST));
+        assertThat(WRONG_STATUS, results.getJsonObject(2).getInteger(STATUS), is(SC_NOT_FOUND));
+    }
+
+    private static RoutingContext request(final String contentType, final String body) {
+        final HttpServerRequest request = mock(HttpServerRequest.class);
+        when(request.getHeader("Content-Type")).thenReturn(contentType);
+        final RoutingContext routingContext = mock(RoutingContext.class);
+        when(routingContext.request()).thenReturn(request);
+        when(routingContext.getBodyAsString()).thenReturn(body);
+        return routingContext;
+    }
+
+}
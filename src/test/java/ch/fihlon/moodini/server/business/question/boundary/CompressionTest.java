@@ -0,0 +1,105 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.boundary;
+
+import ch.fihlon.moodini.server.business.question.entity.Question;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpVersion;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * This is the unit test for the class {@link Compression}.
+ */
+public class CompressionTest {
+
+    private static final int LENGTH = 100;
+    private static final Compression COMPRESSION = new Compression(true);
+    private static final String GZIP = "gzip, deflate";
+    private static final String SHOULD_ACCEPT = "The body should be gzipped!";
+    private static final String SHOULD_REFUSE = "The body should be sent plain!";
+    private static final String WRONG_TAG = "Wrong entity tag";
+    private static final String TAG = "\"1-2\"";
+
+    @Test
+    public void gzipIsAccepted() {
+        assertThat(SHOULD_ACCEPT, COMPRESSION.accepts(request(GZIP)), is(true));
+        assertThat(SHOULD_ACCEPT, COMPRESSION.accepts(request("br;q=1.0, *;q=0.5")), is(true));
+    }
+
+    @Test
+    public void gzipIsRefused() {
+        assertThat(SHOULD_REFUSE, COMPRESSION.accepts(request(null)), is(false));
+        assertThat(SHOULD_REFUSE, COMPRESSION.accepts(request("deflate")), is(false));
+        assertThat(SHOULD_REFUSE, COMPRESSION.accepts(request("gzip;q=0, *")), is(false));
+        assertThat(SHOULD_REFUSE, new Compression(false).accepts(request(GZIP)), is(false));
+        final HttpServerRequest http2 = request(GZIP);
+        when(http2.version()).thenReturn(HttpVersion.HTTP_2);
+        assertThat(SHOULD_REFUSE, COMPRESSION.accepts(http2), is(false));
+    }
+
+    @Test
+    public void gzippedBodiesHaveTheirOwnEntityTags() {
+        final CachedBody body = CachedBody.forQuestion(Question.builder().questionId(1L).version(2L).text("?").build());
+        assertThat(WRONG_TAG, body.getTag(BodyFormat.JSON), is(TAG));
+        assertThat(WRONG_TAG, body.getGzippedTag(BodyFormat.JSON), is("\"1-2-gzip\""));
+        assertThat(WRONG_TAG, body.getGzippedTag(BodyFormat.SMILE), is("\"1-2-smile-gzip\""));
+    }
+
+    @Test
+    public void entityTagsAreWeakOverHttp2() {
+        final HttpServerRequest http2 = request(GZIP);
+        when(http2.version()).thenReturn(HttpVersion.HTTP_2);
+        assertThat(WRONG_TAG, COMPRESSION.entityTag(http2, TAG), is("W/" + TAG));
+        assertThat(WRONG_TAG, COMPRESSION.entityTag(request(GZIP), TAG), is(TAG));
+        assertThat(WRONG_TAG, new Compression(false).entityTag(http2, TAG), is(TAG));
+    }
+
+    @Test
+    public void compressedBodyIsGzip() throws IOException {
+        final Buffer body = Buffer.buffer(new String(new char[LENGTH]).replace('\0', 'm'));
+        final Buffer gzipped = Compression.compress(body);
+        assertThat("The body should shrink!", gzipped.length() < body.length(), is(true));
+        final ByteArrayOutputStream plain = new ByteArrayOutputStream();
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped.getBytes()))) {
+            final byte[] bytes = new byte[LENGTH];
+            for (int read = in.read(bytes); read > 0; read = in.read(bytes)) {
+                plain.write(bytes, 0, read);
+            }
+        }
+        assertThat("The body should be restored!", Buffer.buffer(plain.toByteArray()), is(body));
+    }
+
+    private static HttpServerRequest request(final String acceptEncoding) {
+        final HttpServerRequest request = mock(HttpServerRequest.class);
+        when(request.getHeader("Accept-Encoding")).thenReturn(acceptEncoding);
+        return request;
+    }
+
+}
@@ -0,0 +1,68 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.boundary;
+
+import ch.fihlon.moodini.server.business.question.entity.Answer;
+import ch.fihlon.moodini.server.business.question.entity.Question;
+import ch.fihlon.moodini.server.business.question.entity.Tally;
+import io.vertx.core.buffer.Buffer;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * This is the unit test for the enum {@link ExportFormat}.
+ */
+public class ExportFormatTest {
+
+    private static final Question QUESTION = Question.builder()
+            .questionId(1L)
+            .version(2L)
+            .text("Say \"hi\", please")
+            .build();
+    private static final Tally TALLY = Tally.create(1L, Collections.singletonMap(Answer.GOOD, 3L));
+    private static final String WRONG_LINE = "Wrong line";
+
+    @Test
+    public void csvQuotesTheText() {
+        final Buffer buffer = Buffer.buffer();
+        ExportFormat.parse("CSV").writeHeader(buffer);
+        ExportFormat.CSV.write(buffer, QUESTION, TALLY.withVoters(2));
+        assertThat(WRONG_LINE, buffer.toString(), is("questionId,version,text,Amped,Good,Fine,Meh,Pissed,voters\r\n"
+                + "1,2,\"Say \"\"hi\"\", please\",0,3,0,0,0,2\r\n"));
+    }
+
+    @Test
+    public void ndjsonWritesOneObjectPerLine() {
+        final Buffer buffer = Buffer.buffer();
+        ExportFormat.parse("ndjson").writeHeader(buffer);
+        ExportFormat.NDJSON.write(buffer, QUESTION, TALLY);
+        assertThat(WRONG_LINE, buffer.toString(), is(
+                "{\"questionId\":1,\"version\":2,\"text\":\"Say \\\"hi\\\", please\","
+                + "\"votes\":{\"Amped\":0,\"Good\":3,\"Fine\":0,\"Meh\":0,\"Pissed\":0}}\n"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownFormatIsRejected() {
+        ExportFormat.parse("xml");
+    }
+
+}
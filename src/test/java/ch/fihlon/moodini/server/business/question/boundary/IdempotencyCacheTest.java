@@ -0,0 +1,139 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.boundary;
+
+import ch.fihlon.moodini.server.Configuration;
+import ch.fihlon.moodini.server.exception.UnprocessableEntityException;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * This is the unit test for the class {@link IdempotencyCache}.
+ */
+public class IdempotencyCacheTest {
+
+    private static final String PATH = "/api/questions/1/vote";
+    private static final String KEY = "8e03978e-40d5-43e8-bc93-6894a57f9324";
+    private static final String BODY = "GOOD";
+    // both are invalid UTF-8 and decode to the same replacement characters
+    private static final byte[] BINARY_BODY = {(byte) 0xa1, (byte) 0xff};
+    private static final byte[] OTHER_BINARY_BODY = {(byte) 0xa1, (byte) 0xfe};
+    private static final long MAX_BYTES = 1024;
+    private static final String WRONG_RESULT = "Wrong result";
+    private static final String WRONG_EXECUTIONS = "Wrong number of executions";
+
+    private final AtomicLong executions = new AtomicLong();
+    private IdempotencyCache cache;
+
+    @Before
+    public void setUp() {
+        Configuration.setConfig(new JsonObject().put("idempotency.max.bytes", MAX_BYTES));
+        cache = new IdempotencyCache();
+    }
+
+    @After
+    public void tearDown() {
+        Configuration.resetConfig();
+    }
+
+    @Test
+    public void retriesGetTheOriginalResult() {
+        final RoutingContext retry = request(KEY, BODY);
+        assertThat(WRONG_RESULT, execute(request(KEY, BODY)), is(1L));
+        assertThat(WRONG_RESULT, execute(retry), is(1L));
+        assertThat(WRONG_RESULT, execute(request(null, BODY)), is(2L));
+        assertThat(WRONG_EXECUTIONS, executions.get(), is(2L));
+        assertThat("Wrong hits", cache.getHits(), is(1L));
+        verify(retry.response()).putHeader(IdempotencyCache.REPLAYED, "true");
+    }
+
+    @Test(expected = UnprocessableEntityException.class)
+    public void keysCanNotBeReusedForOtherRequests() {
+        execute(request(KEY, BODY));
+        execute(request(KEY, "MEH"));
+    }
+
+    @Test(expected = UnprocessableEntityException.class)
+    public void bodiesWithTheSameHashCodeAreDistinguished() {
+        execute(request(KEY, "Aa"));
+        execute(request(KEY, "BB"));
+    }
+
+    @Test(expected = UnprocessableEntityException.class)
+    public void binaryBodiesAreDistinguished() {
+        execute(request(KEY, Buffer.buffer(BINARY_BODY)));
+        execute(request(KEY, Buffer.buffer(OTHER_BINARY_BODY)));
+    }
+
+    @Test
+    public void failedRequestsAreForgotten() {
+        final CompletableFuture<Long> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new IllegalStateException());
+        final CompletionStage<Long> result = cache.execute(request(KEY, BODY), () -> failed);
+        assertThat("The request should fail", result.toCompletableFuture().isCompletedExceptionally(), is(true));
+        assertThat(WRONG_RESULT, execute(request(KEY, BODY)), is(1L));
+        assertThat("Wrong misses", cache.getMisses(), is(2L));
+    }
+
+    @Test
+    public void oldestEntriesAreEvictedWithinTheBudget() {
+        for (int i = 0; i < MAX_BYTES; i++) {
+            execute(request(Integer.toString(i), BODY));
+        }
+        assertThat("The budget is exceeded", cache.getBytes() <= MAX_BYTES, is(true));
+        assertThat("Wrong evictions", cache.getEvictions(), is(MAX_BYTES - cache.getEntries()));
+        assertThat(WRONG_RESULT, execute(request("0", BODY)), is(MAX_BYTES + 1));
+    }
+
+    private long execute(final RoutingContext routingContext) {
+        return cache.execute(routingContext, () -> CompletableFuture.completedFuture(executions.incrementAndGet()))
+                .toCompletableFuture().join();
+    }
+
+    private static RoutingContext request(final String idempotencyKey, final String body) {
+        return request(idempotencyKey, Buffer.buffer(body));
+    }
+
+    private static RoutingContext request(final String idempotencyKey, final Buffer body) {
+        final HttpServerRequest request = mock(HttpServerRequest.class);
+        when(request.getHeader(IdempotencyCache.HEADER)).thenReturn(idempotencyKey);
+        when(request.path()).thenReturn(PATH);
+        final RoutingContext routingContext = mock(RoutingContext.class);
+        when(routingContext.request()).thenReturn(request);
+        when(routingContext.response()).thenReturn(mock(HttpServerResponse.class));
+        when(routingContext.getBody()).thenReturn(body);
+        return routingContext;
+    }
+
+}
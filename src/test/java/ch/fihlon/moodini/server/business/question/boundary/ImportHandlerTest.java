@@ -0,0 +1,141 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.boundary;
+
+import ch.fihlon.moodini.server.business.question.control.QuestionService;
+import ch.fihlon.moodini.server.business.question.entity.Question;
+import io.vertx.core.Context;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * This is the unit test for the class {@link ImportHandler}.
+ */
+@SuppressWarnings("unchecked")
+public class ImportHandlerTest {
+
+    private static final int CHUNK_SIZE = 2;
+    private static final int MAX_LINE_BYTES = 32;
+    private static final int SC_TOO_LARGE = 413;
+    private static final String VALID = "{\"text\":\"How do you feel?\"}\n";
+    private static final String IMPORTED = "imported";
+    private static final String REJECTED = "rejected";
+    private static final String ERROR = "error";
+    private static final String WRONG_IMPORTED = "Wrong number of imported questions";
+    private static final String WRONG_REJECTED = "Wrong number of rejected questions";
+
+    private final QuestionService questionService = mock(QuestionService.class);
+    private final HttpServerRequest request = mock(HttpServerRequest.class);
+    private final HttpServerResponse response = mock(HttpServerResponse.class);
+
+    @Before
+    public void setUp() {
+        when(response.setChunked(true)).thenReturn(response);
+        when(response.putHeader(anyString(), anyString())).thenReturn(response);
+        when(questionService.createAll(anyListOf(Question.class))).thenAnswer(invocation ->
+                CompletableFuture.completedFuture(invocation.getArguments()[0]));
+    }
+
+    @Test
+    public void malformedLinesAreRejected() {
+        upload("{bad\n" + VALID + "{\"text\":\"\"}\n");
+        final ArgumentCaptor<String> lines = ArgumentCaptor.forClass(String.class);
+        verify(response, atLeastOnce()).write(lines.capture());
+        final JsonObject firstLine = new JsonObject(lines.getAllValues().get(0));
+        assertThat("Wrong line rejected", firstLine.getLong("line"), is(1L));
+        assertThat("The line should be rejected", firstLine.containsKey(ERROR), is(true));
+        final JsonObject summary = summary();
+        assertThat(WRONG_IMPORTED, summary.getLong(IMPORTED), is(1L));
+        assertThat(WRONG_REJECTED, summary.getLong(REJECTED), is(2L));
+    }
+
+    @Test
+    public void failedChunksAreRejectedAsAWhole() {
+        final CompletableFuture<List<Question>> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new IllegalStateException("Disk full"));
+        when(questionService.createAll(anyListOf(Question.class))).thenReturn(failed);
+        upload(VALID + VALID);
+        final JsonObject summary = summary();
+        assertThat(WRONG_IMPORTED, summary.getLong(IMPORTED), is(0L));
+        assertThat(WRONG_REJECTED, summary.getLong(REJECTED), is((long) CHUNK_SIZE));
+    }
+
+    @Test
+    public void tooLongLinesAreRefused() {
+        final String half = String.format("%" + MAX_LINE_BYTES / 2 + "s", "-");
+        upload(VALID + half, half + half);
+        verify(response).setStatusCode(SC_TOO_LARGE);
+        assertThat("The import should be refused", summary().containsKey(ERROR), is(true));
+        verify(response, never()).write(anyString());
+        verify(questionService, never()).createAll(anyListOf(Question.class));
+    }
+
+    private void upload(final String... buffers) {
+        final Context context = mock(Context.class);
+        doAnswer(invocation -> {
+            ((Handler<Void>) invocation.getArguments()[0]).handle(null);
+            return null;
+        }).when(context).runOnContext(any(Handler.class));
+        final Vertx vertx = mock(Vertx.class);
+        when(vertx.getOrCreateContext()).thenReturn(context);
+        final RoutingContext routingContext = mock(RoutingContext.class);
+        when(routingContext.vertx()).thenReturn(vertx);
+        when(routingContext.request()).thenReturn(request);
+        when(routingContext.response()).thenReturn(response);
+        new ImportHandler(questionService, CHUNK_SIZE, MAX_LINE_BYTES).importQuestions(routingContext);
+
+        final ArgumentCaptor<Handler<Buffer>> data = ArgumentCaptor.forClass((Class) Handler.class);
+        verify(request, atLeastOnce()).handler(data.capture());
+        final ArgumentCaptor<Handler<Void>> end = ArgumentCaptor.forClass((Class) Handler.class);
+        verify(request).endHandler(end.capture());
+        for (final String buffer : buffers) {
+            data.getAllValues().get(0).handle(Buffer.buffer(buffer));
+        }
+        end.getValue().handle(null);
+    }
+
+    private JsonObject summary() {
+        final ArgumentCaptor<String> body = ArgumentCaptor.forClass(String.class);
+        verify(response).end(body.capture());
+        return new JsonObject(body.getValue());
+    }
+
+}
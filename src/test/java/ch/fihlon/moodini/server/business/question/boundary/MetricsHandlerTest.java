@@ -0,0 +1,125 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.boundary;
+
+import ch.fihlon.moodini.server.SnapshotStatus;
+import ch.fihlon.moodini.server.business.question.control.QuestionService;
+import ch.fihlon.moodini.server.business.question.entity.Answer;
+import ch.fihlon.moodini.server.business.question.entity.Tally;
+import io.vertx.core.Handler;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.ext.web.RoutingContext;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * This is the unit test for the classes {@link MetricsHandler} and {@link RequestMetrics}.
+ */
+public class MetricsHandlerTest {
+
+    private static final int SC_OK = 200;
+    private static final int SC_NOT_FOUND = 404;
+    private static final long SLOW_MILLIS = 5;
+    private static final String ROUTE = "read";
+    private static final String MISSING = "Missing metric";
+    private static final String QUESTIONS = "moodini_questions 1\n";
+    private static final long JOURNAL_ENTRIES = 3;
+    private static final long PENDING_WRITES = 5;
+    private static final String DURATION = "moodini_http_request_duration_seconds";
+
+    private QuestionService serviceMock;
+    private RequestMetrics requestMetrics;
+
+    @Before
+    public void setUp() {
+        serviceMock = mock(QuestionService.class);
+        when(serviceMock.readAllResults()).thenReturn(Collections.singletonList(
+                Tally.create(1L, Collections.singletonMap(Answer.GOOD, 2L))));
+        when(serviceMock.getSnapshotStatus()).thenReturn(new SnapshotStatus(JOURNAL_ENTRIES, 0, 1, 0));
+        when(serviceMock.getPendingWrites()).thenReturn(PENDING_WRITES);
+        requestMetrics = new RequestMetrics();
+    }
+
+    @Test
+    public void metricsAreWrittenInPrometheusFormat() throws InterruptedException {
+        final Handler<RoutingContext> timed = requestMetrics.timed(ROUTE, routingContext -> { });
+        request(timed, SC_OK);
+        request(timed, SC_OK);
+        request(timed, SC_NOT_FOUND);
+
+        final String text = scrape(new MetricsHandler(serviceMock, requestMetrics, new IdempotencyCache()));
+        assertThat(MISSING, text, containsString("# TYPE " + DURATION + " summary\n"));
+        assertThat(MISSING, text, containsString(DURATION + "{route=\"read\",quantile=\"0.999\"} "));
+        assertThat(MISSING, text, containsString(DURATION + "_count{route=\"read\"} 3\n"));
+        assertThat(MISSING, text, containsString("moodini_http_requests_total{route=\"read\",status=\"200\"} 2\n"));
+        assertThat(MISSING, text, containsString("moodini_http_requests_total{route=\"read\",status=\"404\"} 1\n"));
+        assertThat(MISSING, text, containsString(QUESTIONS));
+        assertThat(MISSING, text, containsString("moodini_votes_total{answer=\"Good\"} 2\n"));
+        assertThat(MISSING, text, containsString("moodini_journal_entries 3\n"));
+        assertThat(MISSING, text, containsString("moodini_writes_pending 5\n"));
+        assertThat(MISSING, text, containsString("moodini_idempotency_hits_total 0\n"));
+    }
+
+    @Test
+    public void questionsAreMergedOncePerInterval() {
+        final MetricsHandler handler = new MetricsHandler(serviceMock, requestMetrics, new IdempotencyCache());
+        scrape(handler);
+        final String text = scrape(handler);
+        assertThat(MISSING, text, containsString(QUESTIONS));
+        verify(serviceMock, times(1)).readAllResults();
+        verify(serviceMock, times(1)).countVoters();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void request(final Handler<RoutingContext> timed, final int statusCode)
+            throws InterruptedException {
+        final HttpServerResponse response = mock(HttpServerResponse.class);
+        when(response.getStatusCode()).thenReturn(statusCode);
+        final RoutingContext routingContext = mock(RoutingContext.class);
+        when(routingContext.response()).thenReturn(response);
+        timed.handle(routingContext);
+        final ArgumentCaptor<Handler> bodyEnd = ArgumentCaptor.forClass(Handler.class);
+        verify(routingContext).addBodyEndHandler(bodyEnd.capture());
+        TimeUnit.MILLISECONDS.sleep(SLOW_MILLIS);
+        bodyEnd.getValue().handle(null);
+    }
+
+    private static String scrape(final MetricsHandler handler) {
+        final HttpServerResponse response = mock(HttpServerResponse.class);
+        when(response.putHeader(anyString(), anyString())).thenReturn(response);
+        final RoutingContext routingContext = mock(RoutingContext.class);
+        when(routingContext.response()).thenReturn(response);
+        handler.metrics(routingContext);
+        final ArgumentCaptor<String> text = ArgumentCaptor.forClass(String.class);
+        verify(response).end(text.capture());
+        return text.getValue();
+    }
+
+}
@@ -0,0 +1,165 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.boundary;
+
+import ch.fihlon.moodini.server.Injector;
+import ch.fihlon.moodini.server.business.question.control.QuestionService;
+import ch.fihlon.moodini.server.business.question.entity.Answer;
+import ch.fihlon.moodini.server.business.question.entity.Question;
+import ch.fihlon.moodini.server.business.question.entity.Tally;
+import com.google.inject.AbstractModule;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.ReplyException;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import javax.validation.constraints.NotNull;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static java.util.Collections.singletonList;
+import static java.util.Collections.singletonMap;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * This is the unit test for the class {@link QuestionsBus}.
+ */
+@RunWith(VertxUnitRunner.class)
+public class QuestionsBusTest {
+
+    private static final Long QUESTION_ID = 1L;
+    private static final String ID = "1";
+    private static final String UNKNOWN_ID = "3";
+    private static final String VOTER = "slack";
+    private static final int SC_BAD_REQUEST = 400;
+    private static final int SC_NOT_FOUND = 404;
+    private static final int SC_INTERNAL_ERROR = 500;
+    private static final Question QUESTION = Question.builder()
+            .questionId(QUESTION_ID).version(2L).text("Do you like the bus?").build();
+    private static final Tally TALLY = Tally.create(QUESTION_ID, singletonMap(Answer.GOOD, 1L));
+
+    private Vertx vertx;
+
+    @Before
+    public void setUp(@NotNull final TestContext context) throws IOException {
+        final QuestionService serviceMock = mock(QuestionService.class);
+        when(serviceMock.read(QUESTION_ID)).thenReturn(Optional.of(QUESTION));
+        when(serviceMock.readPage(null, 2, true)).thenReturn(singletonList(QUESTION));
+        when(serviceMock.readResults(Long.valueOf(UNKNOWN_ID))).thenReturn(Optional.empty());
+        when(serviceMock.readAllResults()).thenReturn(singletonList(TALLY));
+        when(serviceMock.readLatest()).thenThrow(new IllegalStateException("The bus broke down"));
+        when(serviceMock.vote(QUESTION_ID, Answer.GOOD, VOTER)).thenReturn(CompletableFuture.completedFuture(2L));
+        Injector.setModule(new AbstractModule() {
+            @Override
+            protected void configure() {
+                bind(QuestionService.class).toInstance(serviceMock);
+            }
+        });
+        vertx = Vertx.vertx();
+        final int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        final DeploymentOptions options = new DeploymentOptions()
+                .setConfig(new JsonObject().put("http.port", port));
+        vertx.deployVerticle(QuestionsVerticle.class.getName(), options, context.asyncAssertSuccess());
+    }
+
+    @After
+    public void tearDown(@NotNull final TestContext context) {
+        vertx.close(context.asyncAssertSuccess());
+        Injector.resetModule();
+    }
+
+    @Test
+    @SuppressWarnings("PMD.JUnitTestsShouldIncludeAssert")
+    public void questionsArePassedByReference(@NotNull final TestContext context) {
+        final DeliveryOptions options = new DeliveryOptions().addHeader(QuestionsBus.QUESTION_ID, ID);
+        vertx.eventBus().<Question>send(QuestionsBus.READ, null, options, context.asyncAssertSuccess(
+            reply -> context.assertTrue(reply.body() == QUESTION)));
+    }
+
+    @Test
+    @SuppressWarnings("PMD.JUnitTestsShouldIncludeAssert")
+    public void listsArePaged(@NotNull final TestContext context) {
+        final DeliveryOptions options = new DeliveryOptions().addHeader("limit", "2").addHeader("order", "desc");
+        vertx.eventBus().<List<Question>>send(QuestionsBus.LIST, null, options, context.asyncAssertSuccess(
+            reply -> context.assertEquals(singletonList(QUESTION), reply.body())));
+        vertx.eventBus().<List<Tally>>send(QuestionsBus.RESULTS, null, context.asyncAssertSuccess(
+            reply -> context.assertEquals(singletonList(TALLY), reply.body())));
+    }
+
+    @Test
+    @SuppressWarnings("PMD.JUnitTestsShouldIncludeAssert")
+    public void votesAreCounted(@NotNull final TestContext context) {
+        final DeliveryOptions options = new DeliveryOptions()
+                .addHeader(QuestionsBus.QUESTION_ID, ID).addHeader(QuestionsBus.VOTER, VOTER);
+        vertx.eventBus().<Long>send(QuestionsBus.VOTE, Answer.GOOD, options, context.asyncAssertSuccess(
+            reply -> context.assertEquals(2L, reply.body())));
+    }
+
+    @Test
+    @SuppressWarnings("PMD.JUnitTestsShouldIncludeAssert")
+    public void unknownQuestionsAreNotFound(@NotNull final TestContext context) {
+        final DeliveryOptions options = new DeliveryOptions().addHeader(QuestionsBus.QUESTION_ID, UNKNOWN_ID);
+        vertx.eventBus().send(QuestionsBus.RESULTS, null, options, context.asyncAssertFailure(
+            failure -> context.assertEquals(SC_NOT_FOUND, ((ReplyException) failure).failureCode())));
+    }
+
+    @Test
+    @SuppressWarnings("PMD.JUnitTestsShouldIncludeAssert")
+    public void bodiesOfTheWrongTypeAreBadRequests(@NotNull final TestContext context) {
+        vertx.eventBus().send(QuestionsBus.CREATE, "Is this a question?", context.asyncAssertFailure(
+            failure -> context.assertEquals(SC_BAD_REQUEST, ((ReplyException) failure).failureCode())));
+    }
+
+    @Test
+    @SuppressWarnings("PMD.JUnitTestsShouldIncludeAssert")
+    public void unexpectedFailuresAreInternalErrors(@NotNull final TestContext context) {
+        vertx.eventBus().send(QuestionsBus.LATEST, null, context.asyncAssertFailure(
+            failure -> context.assertEquals(SC_INTERNAL_ERROR, ((ReplyException) failure).failureCode())));
+    }
+
+    @Test
+    public void valuesAreSerializedForOtherNodes() {
+        final ReferenceCodec<Question> questionCodec = new ReferenceCodec<>(Question.class);
+        final ReferenceCodec<List<Tally>> talliesCodec = ReferenceCodec.listOf("tallies", Tally.class);
+        final Buffer buffer = Buffer.buffer().appendByte((byte) 0);
+        questionCodec.encodeToWire(buffer, QUESTION);
+        final int tallies = buffer.length();
+        talliesCodec.encodeToWire(buffer, Collections.singletonList(TALLY));
+        assertThat("Wrong question", questionCodec.decodeFromWire(1, buffer), is(QUESTION));
+        assertThat("Wrong tallies", talliesCodec.decodeFromWire(tallies, buffer), is(singletonList(TALLY)));
+    }
+
+}
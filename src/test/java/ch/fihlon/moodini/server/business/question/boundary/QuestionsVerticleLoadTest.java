@@ -0,0 +1,212 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.boundary;
+
+import ch.fihlon.moodini.server.Configuration;
+import ch.fihlon.moodini.server.Injector;
+import ch.fihlon.moodini.server.business.question.control.QuestionService;
+import ch.fihlon.moodini.server.business.question.entity.Answer;
+import ch.fihlon.moodini.server.business.question.entity.Question;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpClientResponse;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.inject.Inject;
+import javax.validation.constraints.NotNull;
+import java.net.ServerSocket;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * This is the load test for the class {@link QuestionsVerticle}. It deploys
+ * the verticle with an increasing number of instances and measures the
+ * requests per second of a read-heavy and a vote-heavy mix of requests. It
+ * uses the real persistence, so it is skipped unless it is enabled with
+ * {@code -Dloadtest=true}. The options {@code -Dloadtest.seconds} and
+ * {@code -Dloadtest.connections} tune the load.
+ */
+public class QuestionsVerticleLoadTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(QuestionsVerticleLoadTest.class);
+
+    private static final String HOSTNAME = "localhost";
+    private static final int MIX_SIZE = 20;
+    private static final int READ_HEAVY_VOTES = 1;
+    private static final int VOTE_HEAVY_VOTES = 18;
+    private static final int DEF_SECONDS = 10;
+    private static final int DEF_CONNECTIONS = 64;
+    private static final int MIN_INSTANCES = 4;
+    private static final long TIMEOUT = 60;
+    private static final int SC_OK = 200;
+    private static final int BATCH_WINDOW = 2;
+    private static final int BATCH_SIZE = 256;
+
+    private final int seconds = Integer.getInteger("loadtest.seconds", DEF_SECONDS);
+    private final int connections = Integer.getInteger("loadtest.connections", DEF_CONNECTIONS);
+    private final int cores = Runtime.getRuntime().availableProcessors();
+
+    @Inject
+    private QuestionService questionService;
+
+    private Vertx server;
+    private Vertx client;
+    private int port;
+    private JsonObject config;
+    private String questionPath;
+
+    @Before
+    public void setUp() throws Exception {
+        assumeTrue(Boolean.getBoolean("loadtest"));
+        final ServerSocket socket = new ServerSocket(0);
+        port = socket.getLocalPort();
+        socket.close();
+        config = new JsonObject()
+                .put("http.port", port)
+                .put("vote.batch.window", BATCH_WINDOW)
+                .put("vote.batch.size", BATCH_SIZE);
+        Configuration.setConfig(config);
+        Injector.resetModule();
+        Injector.injectMembers(this);
+        final Question question = questionService.create(Question.builder().text("Load test").build())
+                .toCompletableFuture().get(TIMEOUT, TimeUnit.SECONDS);
+        questionPath = "/api/questions/" + question.getQuestionId();
+        server = Vertx.vertx();
+        client = Vertx.vertx(new VertxOptions().setEventLoopPoolSize(cores));
+    }
+
+    @After
+    public void tearDown() {
+        if (server != null) {
+            server.close();
+            client.close();
+        }
+        Configuration.resetConfig();
+    }
+
+    @Test
+    public void scaling() throws Exception {
+        // warm up the JIT compiler, otherwise the first measurement is too low
+        measure(1);
+        for (int instances = 1; instances <= Math.max(MIN_INSTANCES, cores); instances *= 2) {
+            final double[] throughput = measure(instances);
+            LOGGER.info(String.format("%d instance(s) on %d core(s): read-heavy %.0f req/s, vote-heavy %.0f req/s",
+                    instances, cores, throughput[0], throughput[1]));
+            assertThat(throughput[0], greaterThan(0.0));
+            assertThat(throughput[1], greaterThan(0.0));
+        }
+    }
+
+    private double[] measure(final int instances) throws Exception {
+        final String deploymentId = deploy(instances);
+        final double[] throughput = {run(READ_HEAVY_VOTES), run(VOTE_HEAVY_VOTES)};
+        final CompletableFuture<Void> undeployed = new CompletableFuture<>();
+        server.undeploy(deploymentId, result -> undeployed.complete(null));
+        undeployed.get(TIMEOUT, TimeUnit.SECONDS);
+        return throughput;
+    }
+
+    private String deploy(final int instances) throws Exception {
+        final CompletableFuture<String> deployed = new CompletableFuture<>();
+        final DeploymentOptions options = new DeploymentOptions().setConfig(config).setInstances(instances);
+        server.deployVerticle(QuestionsVerticle.class.getName(), options, result -> {
+            if (result.succeeded()) {
+                deployed.complete(result.result());
+            } else {
+                deployed.completeExceptionally(result.cause());
+            }
+        });
+        return deployed.get(TIMEOUT, TimeUnit.SECONDS);
+    }
+
+    private double run(final int votesPerMix) throws InterruptedException {
+        final HttpClient http = client.createHttpClient(new HttpClientOptions()
+                .setDefaultHost(HOSTNAME)
+                .setDefaultPort(port)
+                .setKeepAlive(true)
+                .setMaxPoolSize(connections));
+        final Load load = new Load(http, votesPerMix, System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds));
+        for (int connection = 0; connection < connections; connection++) {
+            final long sequence = connection;
+            client.runOnContext(start -> load.next(sequence));
+        }
+        load.done.await(seconds + TIMEOUT, TimeUnit.SECONDS);
+        http.close();
+        assertThat("Some requests failed!", load.failed.get(), is(0L));
+        return load.completed.get() / (double) seconds;
+    }
+
+    /**
+     * One connection loop per connection sends the next request of the mix
+     * as soon as the previous one completed, until the time is up.
+     */
+    private final class Load {
+
+        private final HttpClient http;
+        private final int votesPerMix;
+        private final long deadline;
+        private final AtomicLong completed = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final CountDownLatch done = new CountDownLatch(connections);
+
+        private Load(@NotNull final HttpClient http, final int votesPerMix, final long deadline) {
+            this.http = http;
+            this.votesPerMix = votesPerMix;
+            this.deadline = deadline;
+        }
+
+        private void next(final long sequence) {
+            if (System.nanoTime() > deadline) {
+                done.countDown();
+            } else {
+                final Handler<HttpClientResponse> handler = response -> response.bodyHandler(body -> {
+                    if (response.statusCode() == SC_OK) {
+                        completed.incrementAndGet();
+                    } else {
+                        failed.incrementAndGet();
+                    }
+                    next(sequence + 1);
+                });
+                final long slot = sequence % MIX_SIZE;
+                if (slot < votesPerMix) {
+                    http.post(questionPath + "/vote", handler).end(Answer.GOOD.name());
+                } else if (slot % 2 == 0) {
+                    http.getNow(questionPath, handler);
+                } else {
+                    http.getNow(questionPath + "/results", handler);
+                }
+            }
+        }
+    }
+}
@@ -19,7 +19,10 @@ package ch.fihlon.moodini.server.business.question.boundary;
 
 import ch.fihlon.moodini.server.Injector;
 import ch.fihlon.moodini.server.business.question.control.QuestionService;
+import ch.fihlon.moodini.server.business.question.entity.Answer;
 import ch.fihlon.moodini.server.business.question.entity.Question;
+import ch.fihlon.moodini.server.business.question.entity.Tally;
+import ch.fihlon.moodini.server.exception.ServiceUnavailableException;
 import com.google.inject.AbstractModule;
 import io.vertx.core.DeploymentOptions;
 import io.vertx.core.MultiMap;
@@ -38,9 +41,14 @@ import org.mockito.Mock;
 import javax.validation.constraints.NotNull;
 import java.io.IOException;
 import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 import static com.jayway.restassured.RestAssured.port;
 import static java.util.Collections.singletonList;
+import static java.util.Collections.singletonMap;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -62,6 +70,18 @@ public class QuestionsVerticleTest {
     private static final String API_ENDPOINT = "/api/questions";
     private static final int SC_OK = 200;
     private static final int SC_CREATED = 201;
+    private static final int SC_NOT_MODIFIED = 304;
+    private static final int SC_BAD_REQUEST = 400;
+    private static final String ETAG = "ETag";
+    private static final int SC_SERVICE_UNAVAILABLE = 503;
+    private static final Long PAGE_AFTER = 5L;
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final long LIVE_TICK = 50;
+    private static final String VOTES = "votes";
+    private static final String QUESTION_ID_KEY = "questionId";
+    private static final String LIVE_ENDPOINT = "/api/questions/1/live";
+
+    private static final Tally TALLY = Tally.create(QUESTION_ID, singletonMap(Answer.GOOD, 1L));
 
     private Vertx vertx;
 
@@ -76,8 +96,14 @@ public class QuestionsVerticleTest {
                 .version(QUESTION_VERSION)
                 .build();
         serviceMock = mock(QuestionService.class);
-        when(serviceMock.create(any(Question.class))).thenReturn(answerQuestion);
-        when(serviceMock.readAll()).thenReturn(singletonList(answerQuestion));
+        when(serviceMock.create(any(Question.class))).thenReturn(CompletableFuture.completedFuture(answerQuestion));
+        when(serviceMock.readPage(null, DEFAULT_PAGE_SIZE, false)).thenReturn(singletonList(answerQuestion));
+        when(serviceMock.readPage(PAGE_AFTER, 1, true)).thenReturn(singletonList(answerQuestion));
+        when(serviceMock.readResults(QUESTION_ID)).thenReturn(Optional.of(TALLY));
+        when(serviceMock.read(QUESTION_ID)).thenReturn(Optional.of(answerQuestion));
+        final CompletableFuture<Long> rejectedVote = new CompletableFuture<>();
+        rejectedVote.completeExceptionally(new ServiceUnavailableException("full"));
+        when(serviceMock.vote(QUESTION_ID, Answer.PISSED, null)).thenReturn(rejectedVote);
         Injector.setModule(new AbstractModule() {
             @Override
             protected void configure() {
@@ -90,7 +116,7 @@ public class QuestionsVerticleTest {
         port = socket.getLocalPort();
         socket.close();
         final DeploymentOptions options = new DeploymentOptions()
-                .setConfig(new JsonObject().put("http.port", port));
+                .setConfig(new JsonObject().put("http.port", port).put("live.tick.millis", LIVE_TICK));
         vertx.deployVerticle(QuestionsVerticle.class.getName(), options, context.asyncAssertSuccess());
     }
 
@@ -145,4 +171,119 @@ public class QuestionsVerticleTest {
             });
     }
 
+    @Test
+    @SuppressWarnings("PMD.JUnitTestsShouldIncludeAssert")
+    public void testReadPage(@NotNull final TestContext context) {
+        final Async async = context.async();
+
+        vertx.createHttpClient().getNow(port, HOSTNAME, API_ENDPOINT + "?after=5&limit=1&order=desc",
+            response -> {
+                context.assertEquals(response.statusCode(), SC_OK);
+                context.assertEquals(response.headers().get("Link"),
+                        "</api/questions?after=1&limit=1&order=desc>; rel=\"next\"");
+                response.bodyHandler(body -> {
+                    context.assertEquals(body.toJsonArray().size(), 1);
+                    async.complete();
+                });
+            });
+    }
+
+    @Test
+    @SuppressWarnings("PMD.JUnitTestsShouldIncludeAssert")
+    public void testConditionalRead(@NotNull final TestContext context) {
+        final Async async = context.async();
+        final String uri = API_ENDPOINT + "/1";
+        vertx.createHttpClient().getNow(port, HOSTNAME, uri, response -> {
+            context.assertEquals(response.statusCode(), SC_OK);
+            final String etag = response.headers().get(ETAG);
+            context.assertEquals(etag, "\"1-42\"");
+            vertx.createHttpClient().get(port, HOSTNAME, uri, notModified -> {
+                context.assertEquals(notModified.statusCode(), SC_NOT_MODIFIED);
+                context.assertEquals(notModified.headers().get(ETAG), etag);
+                async.complete();
+            }).putHeader("If-None-Match", etag).end();
+        });
+    }
+
+    @Test
+    @SuppressWarnings("PMD.JUnitTestsShouldIncludeAssert")
+    public void testReadPageWithInvalidLimit(@NotNull final TestContext context) {
+        final Async async = context.async();
+
+        vertx.createHttpClient().getNow(port, HOSTNAME, API_ENDPOINT + "?limit=many",
+            response -> {
+                context.assertEquals(response.statusCode(), SC_BAD_REQUEST);
+                async.complete();
+            });
+    }
+
+    @Test
+    @SuppressWarnings("PMD.JUnitTestsShouldIncludeAssert")
+    public void testVoteRejectedWhenQueueIsFull(@NotNull final TestContext context) {
+        final Async async = context.async();
+        vertx.createHttpClient().post(port, HOSTNAME, API_ENDPOINT + "/1/vote")
+            .handler(response -> {
+                context.assertEquals(response.statusCode(), SC_SERVICE_UNAVAILABLE);
+                context.assertEquals(response.headers().get("Retry-After"), "1");
+                async.complete();
+            })
+            .end(Answer.PISSED.name());
+    }
+
+    @Test
+    @SuppressWarnings("PMD.JUnitTestsShouldIncludeAssert")
+    public void testReadResults(@NotNull final TestContext context) {
+        final Async async = context.async();
+
+        vertx.createHttpClient().getNow(port, HOSTNAME, API_ENDPOINT + "/1/results",
+            response -> {
+                context.assertEquals(response.statusCode(), SC_OK);
+                response.bodyHandler(body -> {
+                    final JsonObject tally = body.toJsonObject();
+                    context.assertEquals(tally.getLong(QUESTION_ID_KEY), QUESTION_ID);
+                    context.assertEquals(tally.getJsonObject(VOTES).getLong(Answer.GOOD.getAnswer()), 1L);
+                    async.complete();
+                });
+            });
+    }
+
+    @Test
+    @SuppressWarnings("PMD.JUnitTestsShouldIncludeAssert")
+    public void testLiveEvents(@NotNull final TestContext context) {
+        final Async async = context.async();
+        final List<JsonObject> events = new ArrayList<>();
+
+        vertx.createHttpClient().getNow(port, HOSTNAME, LIVE_ENDPOINT,
+            response -> {
+                context.assertEquals(response.statusCode(), SC_OK);
+                context.assertTrue(response.headers().get(CONTENT_TYPE).contains("text/event-stream"));
+                response.handler(chunk -> {
+                    events.add(new JsonObject(chunk.toString().substring("data: ".length()).trim()));
+                    if (events.size() == 1) {
+                        when(serviceMock.readResults(QUESTION_ID)).thenReturn(
+                                Optional.of(TALLY.withVotes(Answer.MEH, 2L)));
+                    } else {
+                        context.assertEquals(events.get(0).getJsonObject(VOTES).size(), Answer.values().length);
+                        context.assertEquals(events.get(1).getJsonObject(VOTES).size(), 1);
+                        context.assertEquals(events.get(1).getJsonObject(VOTES).getLong(Answer.MEH.getAnswer()), 2L);
+                        async.complete();
+                    }
+                });
+            });
+    }
+
+    @Test
+    @SuppressWarnings("PMD.JUnitTestsShouldIncludeAssert")
+    public void testLiveWebSocket(@NotNull final TestContext context) {
+        final Async async = context.async();
+
+        vertx.createHttpClient().websocket(port, HOSTNAME, LIVE_ENDPOINT,
+            webSocket -> webSocket.frameHandler(frame -> {
+                final JsonObject event = new JsonObject(frame.textData());
+                context.assertEquals(event.getLong(QUESTION_ID_KEY), QUESTION_ID);
+                context.assertEquals(event.getJsonObject(VOTES).getLong(Answer.GOOD.getAnswer()), 1L);
+                async.complete();
+            }));
+    }
+
 }
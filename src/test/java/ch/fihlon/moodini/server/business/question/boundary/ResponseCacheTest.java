@@ -0,0 +1,68 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.boundary;
+
+import ch.fihlon.moodini.server.business.question.entity.Question;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * This is the unit test for the class {@link ResponseCache}.
+ */
+public class ResponseCacheTest {
+
+    private static final String PAGE = "page";
+    private static final String SAME_BODY = "The cached body should be reused!";
+    private static final String NEW_BODY = "A new body should be created!";
+
+    private ResponseCache responseCache;
+    private Question question;
+
+    @Before
+    public void setUp() {
+        responseCache = new ResponseCache();
+        question = Question.builder().questionId(1L).version(1L).text("Cached?").build();
+    }
+
+    @Test
+    public void questionIsCachedPerVersion() {
+        final CachedBody first = responseCache.question(question);
+        assertThat(SAME_BODY, responseCache.question(question), is(sameInstance(first)));
+        final CachedBody updated = responseCache.question(question.toBuilder().version(2L).build());
+        assertThat(NEW_BODY, updated, is(not(sameInstance(first))));
+        assertThat("The entity tag should change!", updated.getEtag(), is(not(first.getEtag())));
+    }
+
+    @Test
+    public void pagesAreCachedPerGeneration() {
+        final CachedBody first = responseCache.page(1, PAGE, () -> CachedBody.forContent(Collections.emptyList()));
+        final CachedBody second = responseCache.page(1, PAGE, () -> CachedBody.forContent(Collections.emptyList()));
+        assertThat(SAME_BODY, second, is(sameInstance(first)));
+        final CachedBody next = responseCache.page(2, PAGE, () -> CachedBody.forContent(Collections.emptyList()));
+        assertThat(NEW_BODY, next, is(not(sameInstance(first))));
+        assertThat("Equal content should have an equal entity tag!", next.getEtag(), is(first.getEtag()));
+    }
+
+}
@@ -0,0 +1,103 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.boundary;
+
+import io.vertx.core.Handler;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.ext.web.RoutingContext;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * This is the unit test for the classes {@link ServerTiming} and {@link StageTimer}.
+ */
+public class ServerTimingTest {
+
+    private static final String HEADER = "Server-Timing";
+    private static final String PARSE = "parse";
+
+    private RoutingContext routingContext;
+    private HttpServerRequest request;
+    private HttpServerResponse response;
+
+    @Before
+    public void setUp() {
+        routingContext = mock(RoutingContext.class);
+        request = mock(HttpServerRequest.class);
+        response = mock(HttpServerResponse.class);
+        when(routingContext.request()).thenReturn(request);
+        when(routingContext.response()).thenReturn(response);
+    }
+
+    @Test
+    public void stagesAreWrittenToTheHeader() {
+        new ServerTiming(true, false, 0).start(routingContext);
+
+        final ArgumentCaptor<StageTimer> timer = ArgumentCaptor.forClass(StageTimer.class);
+        verify(routingContext).put(anyString(), timer.capture());
+        when(routingContext.get(anyString())).thenReturn(timer.getValue());
+        ServerTiming.mark(routingContext, "body");
+        ServerTiming.mark(routingContext, PARSE);
+
+        headersEndHandler().handle(null);
+        final ArgumentCaptor<String> value = ArgumentCaptor.forClass(String.class);
+        verify(response).putHeader(eq(HEADER), value.capture());
+        assertThat(value.getValue().matches(
+                "body;dur=\\d+\\.\\d{3}, parse;dur=\\d+\\.\\d{3}, total;dur=\\d+\\.\\d{3}"), is(true));
+        verify(routingContext).next();
+    }
+
+    @Test
+    public void requestHeaderEnablesTiming() {
+        when(request.getHeader("X-Server-Timing")).thenReturn("");
+        new ServerTiming(false, true, 0).start(routingContext);
+
+        verify(routingContext).put(anyString(), any(StageTimer.class));
+        verify(routingContext).next();
+    }
+
+    @Test
+    public void disabledTimingAddsNothing() {
+        new ServerTiming(false, true, 0).start(routingContext);
+        ServerTiming.mark(routingContext, PARSE);
+
+        verify(routingContext, never()).put(anyString(), any());
+        verify(routingContext, never()).addHeadersEndHandler(any());
+        verify(routingContext).next();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Handler<Void> headersEndHandler() {
+        final ArgumentCaptor<Handler<Void>> handler = ArgumentCaptor.forClass((Class) Handler.class);
+        verify(routingContext).addHeadersEndHandler(handler.capture());
+        return handler.getValue();
+    }
+
+}
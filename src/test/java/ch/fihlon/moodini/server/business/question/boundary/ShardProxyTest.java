@@ -0,0 +1,147 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.boundary;
+
+import ch.fihlon.moodini.server.Cluster;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpServer;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.ext.web.Router;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import javax.validation.constraints.NotNull;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.Arrays;
+
+/**
+ * This is the unit test for the class {@link ShardProxy}. Two nodes listen
+ * on the loopback interface: this node routes the requests, the other node
+ * echoes them.
+ */
+@RunWith(VertxUnitRunner.class)
+public class ShardProxyTest {
+
+    private static final String HOST = "127.0.0.1";
+    private static final String LOCAL = "local";
+    private static final String NODE = "Node";
+    private static final int SC_OK = 200;
+    private static final int SC_CREATED = 201;
+    private static final int SC_MISDIRECTED = 421;
+    private static final int SC_GATEWAY_TIMEOUT = 504;
+    private static final long TIMEOUT = 500;
+    private static final String SLOW = "/slow";
+    private static final String OTHER_QUESTION = "/api/questions/4";
+
+    private Vertx vertx;
+    private HttpClient client;
+    private int port;
+
+    @Before
+    public void setUp(@NotNull final TestContext context) throws IOException {
+        vertx = Vertx.vertx();
+        client = vertx.createHttpClient();
+        port = freePort();
+        final int otherPort = freePort();
+        final Cluster cluster = new Cluster(Arrays.asList(address(port), address(otherPort)), 0);
+
+        final Router router = Router.router(vertx);
+        final ShardProxy proxy = new ShardProxy(new ShardClient(cluster,
+                vertx.createHttpClient(new HttpClientOptions().setMaxPoolSize(2)), TIMEOUT));
+        ShardProxy.PATHS.forEach(path -> router.route(path).handler(proxy::route));
+        router.route().handler(routingContext -> routingContext.response().end(LOCAL));
+
+        final HttpServer other = vertx.createHttpServer().requestHandler(request -> request.bodyHandler(body -> {
+            if (!request.uri().endsWith(SLOW)) {
+                request.response()
+                    .setStatusCode(SC_CREATED)
+                    .putHeader(NODE, request.getHeader(ShardProxy.FORWARDED))
+                    .end(String.join(" ", request.method().name(), request.uri(), body.toString()));
+            }
+        }));
+        other.listen(otherPort, HOST, context.asyncAssertSuccess(
+            started -> vertx.createHttpServer().requestHandler(router::accept)
+                    .listen(port, HOST, context.asyncAssertSuccess())));
+    }
+
+    @After
+    public void tearDown(@NotNull final TestContext context) {
+        vertx.close(context.asyncAssertSuccess());
+    }
+
+    @Test
+    @SuppressWarnings("PMD.JUnitTestsShouldIncludeAssert")
+    public void ownedQuestionsAreServedLocally(@NotNull final TestContext context) {
+        final Async async = context.async();
+        client.getNow(port, HOST, "/api/questions/3/results", response -> response.bodyHandler(body -> {
+            context.assertEquals(SC_OK, response.statusCode());
+            context.assertEquals(LOCAL, body.toString());
+            async.complete();
+        }));
+    }
+
+    @Test
+    @SuppressWarnings("PMD.JUnitTestsShouldIncludeAssert")
+    public void otherQuestionsAreForwarded(@NotNull final TestContext context) {
+        final Async async = context.async();
+        client.post(port, HOST, "/api/questions/4/vote?x=1", response -> response.bodyHandler(body -> {
+            context.assertEquals(SC_CREATED, response.statusCode());
+            context.assertEquals("0", response.getHeader(NODE));
+            context.assertEquals("POST /api/questions/4/vote?x=1 GOOD", body.toString());
+            async.complete();
+        })).end("GOOD");
+    }
+
+    @Test
+    @SuppressWarnings("PMD.JUnitTestsShouldIncludeAssert")
+    public void forwardedRequestsAreNotForwardedAgain(@NotNull final TestContext context) {
+        final Async async = context.async();
+        client.get(port, HOST, OTHER_QUESTION, response -> {
+            context.assertEquals(SC_MISDIRECTED, response.statusCode());
+            async.complete();
+        }).putHeader(ShardProxy.FORWARDED, "1").end();
+    }
+
+    @Test
+    @SuppressWarnings("PMD.JUnitTestsShouldIncludeAssert")
+    public void slowOwnersAreTimedOut(@NotNull final TestContext context) {
+        final Async async = context.async();
+        client.getNow(port, HOST, OTHER_QUESTION + SLOW, response -> {
+            context.assertEquals(SC_GATEWAY_TIMEOUT, response.statusCode());
+            async.complete();
+        });
+    }
+
+    private static String address(final int nodePort) {
+        return HOST + ":" + nodePort;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+}
@@ -0,0 +1,165 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.boundary;
+
+import ch.fihlon.moodini.server.Cluster;
+import ch.fihlon.moodini.server.business.question.control.QuestionService;
+import ch.fihlon.moodini.server.business.question.entity.Answer;
+import ch.fihlon.moodini.server.business.question.entity.BulkVote;
+import ch.fihlon.moodini.server.exception.ServiceUnavailableException;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import javax.validation.constraints.NotNull;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * This is the unit test for the class {@link ShardVotes}. This node owns the
+ * odd question ids and counts them with a mocked service, the other node
+ * owns the even ones and answers with the id as the number of votes.
+ */
+@RunWith(VertxUnitRunner.class)
+public class ShardVotesTest {
+
+    private static final String HOST = "127.0.0.1";
+    private static final String STATUS = "status";
+    private static final String VOTES = "votes";
+    private static final String WRONG_STATUS = "Wrong status";
+    private static final int SC_OK = 200;
+    private static final int SC_MISDIRECTED = 421;
+    private static final int SC_BAD_GATEWAY = 502;
+    private static final int SC_UNAVAILABLE = 503;
+    private static final long TIMEOUT = 1000;
+    private static final List<BulkVote> BULK = Arrays.asList(vote(1), vote(2), vote(3), vote(4));
+
+    private Vertx vertx;
+    private QuestionService questionService;
+    private int port;
+
+    @Before
+    public void setUp(@NotNull final TestContext context) throws IOException {
+        vertx = Vertx.vertx();
+        questionService = mock(QuestionService.class);
+        when(questionService.voteBulk(anyListOf(BulkVote.class))).thenAnswer(invocation ->
+            CompletableFuture.completedFuture(counts(invocation.getArgumentAt(0, List.class))));
+        port = freePort();
+        vertx.createHttpServer().requestHandler(request -> request.bodyHandler(body -> {
+            final JsonArray statuses = new JsonArray();
+            new JsonArray(body.toString()).forEach(vote -> statuses.add(new JsonObject()
+                    .put(STATUS, SC_OK)
+                    .put(VOTES, ((JsonObject) vote).getLong("questionId"))));
+            request.response().end(statuses.encode());
+        })).listen(port, HOST, context.asyncAssertSuccess());
+    }
+
+    @After
+    public void tearDown(@NotNull final TestContext context) {
+        vertx.close(context.asyncAssertSuccess());
+    }
+
+    @Test
+    @SuppressWarnings("PMD.JUnitTestsShouldIncludeAssert")
+    public void votesAreCountedByTheirOwners(@NotNull final TestContext context) {
+        final Async async = context.async();
+        shardVotes(port).vote(BULK, false).whenComplete((results, failure) -> {
+            context.assertNull(failure);
+            for (int index = 0; index < BULK.size(); index++) {
+                context.assertEquals(SC_OK, results.get(index).getInteger(STATUS), WRONG_STATUS);
+                context.assertEquals(BULK.get(index).getQuestionId(), results.get(index).getLong(VOTES));
+            }
+            async.complete();
+        });
+    }
+
+    @Test
+    @SuppressWarnings("PMD.JUnitTestsShouldIncludeAssert")
+    public void forwardedVotesAreNotForwardedAgain(@NotNull final TestContext context) {
+        final Async async = context.async();
+        shardVotes(port).vote(BULK, true).whenComplete((results, failure) -> {
+            context.assertEquals(SC_OK, results.get(0).getInteger(STATUS), WRONG_STATUS);
+            context.assertEquals(SC_MISDIRECTED, results.get(1).getInteger(STATUS), WRONG_STATUS);
+            async.complete();
+        });
+    }
+
+    @Test
+    @SuppressWarnings("PMD.JUnitTestsShouldIncludeAssert")
+    public void unreachableOwnersFailTheirVotesOnly(@NotNull final TestContext context) throws IOException {
+        final Async async = context.async();
+        shardVotes(freePort()).vote(BULK, false).whenComplete((results, failure) -> {
+            context.assertEquals(SC_OK, results.get(2).getInteger(STATUS), WRONG_STATUS);
+            context.assertEquals(SC_BAD_GATEWAY, results.get(BULK.size() - 1).getInteger(STATUS), WRONG_STATUS);
+            async.complete();
+        });
+    }
+
+    @Test
+    @SuppressWarnings("PMD.JUnitTestsShouldIncludeAssert")
+    public void failingLocalWritesFailTheirVotesOnly(@NotNull final TestContext context) {
+        final CompletableFuture<long[]> full = new CompletableFuture<>();
+        full.completeExceptionally(new ServiceUnavailableException("The write queue is full!"));
+        when(questionService.voteBulk(anyListOf(BulkVote.class))).thenReturn(full);
+        final Async async = context.async();
+        shardVotes(port).vote(BULK, false).whenComplete((results, failure) -> {
+            context.assertNull(failure);
+            context.assertEquals(SC_UNAVAILABLE, results.get(0).getInteger(STATUS), WRONG_STATUS);
+            context.assertEquals(SC_OK, results.get(1).getInteger(STATUS), WRONG_STATUS);
+            context.assertEquals(SC_UNAVAILABLE, results.get(2).getInteger(STATUS), WRONG_STATUS);
+            context.assertEquals(SC_OK, results.get(BULK.size() - 1).getInteger(STATUS), WRONG_STATUS);
+            async.complete();
+        });
+    }
+
+    private ShardVotes shardVotes(final int otherPort) {
+        final Cluster cluster = new Cluster(Arrays.asList(HOST + ":0", HOST + ":" + otherPort), 0);
+        return new ShardVotes(new ShardClient(cluster,
+                vertx.createHttpClient(new HttpClientOptions()), TIMEOUT), questionService);
+    }
+
+    private static long[] counts(@NotNull final List<?> votes) {
+        return votes.stream().mapToLong(vote -> ((BulkVote) vote).getQuestionId()).toArray();
+    }
+
+    private static BulkVote vote(final long questionId) {
+        return new BulkVote(questionId, Answer.GOOD, 1);
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+}
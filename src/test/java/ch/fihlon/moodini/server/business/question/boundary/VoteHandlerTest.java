@@ -0,0 +1,76 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.boundary;
+
+import ch.fihlon.moodini.server.business.question.entity.Answer;
+import ch.fihlon.moodini.server.exception.BadRequestException;
+import ch.fihlon.moodini.server.exception.NotFoundException;
+import io.vertx.core.buffer.Buffer;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * This is the unit test for the parsing of the class {@link VoteHandler}.
+ */
+public class VoteHandlerTest {
+
+    private static final long LARGE_ID = 123_456_789_012L;
+    private static final int SC_NOT_FOUND = 404;
+    private static final String WRONG_ID = "Wrong id";
+
+    @Test
+    public void answersAreMappedByTheirName() {
+        for (final Answer answer : Answer.values()) {
+            assertThat("Wrong answer", VoteHandler.parseAnswer(Buffer.buffer(answer.name())), is(answer));
+        }
+    }
+
+    @Test
+    public void unknownAnswersAreRejected() {
+        for (final String body : new String[] {"", "GOO", "GOODS", "good", "Good", "XYZ", "é", "GOOD\n"}) {
+            try {
+                VoteHandler.parseAnswer(Buffer.buffer(body));
+                fail("The answer should be rejected: " + body);
+            } catch (final BadRequestException e) {
+                assertThat("The exception should not have a stack trace", e.getStackTrace().length, is(0));
+            }
+        }
+    }
+
+    @Test
+    public void idsAreParsed() {
+        assertThat(WRONG_ID, VoteHandler.parseId("1"), is(1L));
+        assertThat(WRONG_ID, VoteHandler.parseId(Long.toString(LARGE_ID)), is(LARGE_ID));
+    }
+
+    @Test
+    public void invalidIdsAreNotFound() {
+        for (final String id : new String[] {"", "-1", "1a", "1234567890123456789"}) {
+            try {
+                VoteHandler.parseId(id);
+                fail("The id should be rejected: " + id);
+            } catch (final NotFoundException e) {
+                assertThat("The exception should have a status code", e.getStatusCode(), is(SC_NOT_FOUND));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.control;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+
+/**
+ * This is the unit test for the class {@link HyperLogLog}.
+ */
+public class HyperLogLogTest {
+
+    private static final int VOTERS = 100_000;
+    private static final int OVERLAP = 20_000;
+    private static final int FEW_VOTERS = 10;
+    private static final double ERROR = 0.05;
+    private static final String WRONG_ESTIMATE = "Wrong estimate";
+
+    @Test
+    public void fewVotersAreCountedExactly() {
+        final HyperLogLog sketch = sketch(0, FEW_VOTERS);
+        sketch.merge(sketch(0, FEW_VOTERS));
+        assertThat(WRONG_ESTIMATE, sketch.estimate(), is((long) FEW_VOTERS));
+    }
+
+    @Test
+    public void manyVotersAreEstimated() {
+        assertThat(WRONG_ESTIMATE, (double) sketch(0, VOTERS).estimate(), closeTo(VOTERS, VOTERS * ERROR));
+    }
+
+    @Test
+    public void mergedSketchesEstimateTheUnion() {
+        final HyperLogLog sketch = sketch(0, VOTERS / 2 + OVERLAP);
+        sketch.merge(sketch(VOTERS / 2 - OVERLAP, VOTERS));
+        assertThat(WRONG_ESTIMATE, (double) sketch.estimate(), closeTo(VOTERS, VOTERS * ERROR));
+    }
+
+    @Test
+    public void estimateSurvivesSerialization() throws IOException, ClassNotFoundException {
+        final HyperLogLog sketch = sketch(0, VOTERS);
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            output.writeObject(sketch);
+        }
+        try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            assertThat(WRONG_ESTIMATE, ((HyperLogLog) input.readObject()).estimate(), is(sketch.estimate()));
+        }
+    }
+
+    private static HyperLogLog sketch(final int first, final int end) {
+        final HyperLogLog sketch = new HyperLogLog();
+        for (int voter = first; voter < end; voter++) {
+            sketch.add(HyperLogLog.hash("voter-" + voter));
+        }
+        return sketch;
+    }
+
+}
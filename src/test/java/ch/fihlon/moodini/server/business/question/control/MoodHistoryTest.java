@@ -0,0 +1,115 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.control;
+
+import ch.fihlon.moodini.server.business.question.entity.Answer;
+import ch.fihlon.moodini.server.business.question.entity.HistoryBucket;
+import ch.fihlon.moodini.server.business.question.entity.Period;
+import ch.fihlon.moodini.server.business.question.entity.Question;
+import ch.fihlon.moodini.server.business.question.entity.Resolution;
+import ch.fihlon.moodini.server.business.question.entity.Vote;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * This is the unit test for the classes {@link MoodHistory} and {@link BucketRing}.
+ */
+public class MoodHistoryTest {
+
+    private static final long DAY = Instant.parse("2016-10-18T00:00:00Z").toEpochMilli();
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+    private static final Period WHOLE_DAY = new Period(DAY, DAY + TimeUnit.DAYS.toMillis(1));
+    private static final int THREE = 3;
+    private static final String WRONG_BUCKETS = "Wrong number of buckets";
+    private static final String WRONG_START = "Wrong start of the bucket";
+    private static final String WRONG_VOTES = "Wrong number of votes";
+
+    private MoodHistory history;
+
+    @Before
+    public void setUp() {
+        history = new MoodHistory();
+    }
+
+    @Test
+    public void votesAreRolledUp() {
+        history.add(DAY + MINUTE / 2, Answer.GOOD, 1);
+        history.add(DAY + MINUTE + 1, Answer.GOOD, 2);
+        history.add(DAY + 2 * HOUR, Answer.MEH, 1);
+
+        final List<HistoryBucket> minutes = history.read(Resolution.MINUTE, WHOLE_DAY);
+        assertThat(WRONG_BUCKETS, minutes.size(), is(THREE));
+        assertThat(WRONG_START, minutes.get(1).getStart(), is(DAY + MINUTE));
+        assertThat(WRONG_VOTES, minutes.get(1).getVotes().get(Answer.GOOD), is(2L));
+
+        final List<HistoryBucket> hours = history.read(Resolution.HOUR, WHOLE_DAY);
+        assertThat(WRONG_BUCKETS, hours.size(), is(2));
+        assertThat(WRONG_VOTES, hours.get(0).getVotes().get(Answer.GOOD), is((long) THREE));
+        assertThat(WRONG_START, hours.get(1).getStart(), is(DAY + 2 * HOUR));
+
+        final List<HistoryBucket> days = history.read(Resolution.DAY, WHOLE_DAY);
+        assertThat(WRONG_BUCKETS, days.size(), is(1));
+        assertThat(WRONG_VOTES, days.get(0).getVotes().get(Answer.GOOD), is((long) THREE));
+        assertThat(WRONG_VOTES, days.get(0).getVotes().get(Answer.MEH), is(1L));
+    }
+
+    @Test
+    public void oldMinutesAreOverwritten() {
+        final long later = DAY + Resolution.MINUTE.getRetention() * MINUTE;
+        history.add(DAY, Answer.FINE, 1);
+        history.add(later, Answer.FINE, 1);
+        history.add(DAY, Answer.FINE, 1);
+
+        final List<HistoryBucket> minutes = history.read(Resolution.MINUTE, WHOLE_DAY);
+        assertThat(WRONG_BUCKETS, minutes.size(), is(1));
+        assertThat(WRONG_START, minutes.get(0).getStart(), is(later));
+        assertThat(WRONG_VOTES, history.read(Resolution.HOUR, WHOLE_DAY).get(0).getVotes().get(Answer.FINE), is(2L));
+    }
+
+    @Test
+    public void replayedVotesKeepTheirTime() {
+        final Question question = Question.builder().text("Replayed?").build();
+        final List<Vote> votes = Collections.singletonList(new Vote(1L, Answer.AMPED));
+        final QuestionRepository repository = new QuestionRepository();
+        final byte[] created = QuestionEventCodec.question(QuestionEvent.QUESTION_CREATED, question).toArray();
+        QuestionEventCodec.replay(repository, ByteBuffer.wrap(created));
+        final byte[] voted = QuestionEventCodec.voteCast(votes, DAY + HOUR).toArray();
+        QuestionEventCodec.replay(repository, ByteBuffer.wrap(voted));
+        final byte[] untimed = ByteBuffer.allocate(1 + Integer.BYTES + Long.BYTES + 1)
+                .put((byte) QuestionEvent.VOTE_CAST.ordinal()).putInt(1).putLong(1L).put((byte) 0)
+                .array();
+        QuestionEventCodec.replay(repository, ByteBuffer.wrap(untimed));
+
+        assertThat(WRONG_VOTES, repository.readVotes(1L).get(Answer.AMPED), is(2L));
+        final List<HistoryBucket> hours = repository.readHistory(1L, Resolution.HOUR, WHOLE_DAY);
+        assertThat(WRONG_BUCKETS, hours.size(), is(1));
+        assertThat(WRONG_START, hours.get(0).getStart(), is(DAY + HOUR));
+        assertThat(WRONG_VOTES, hours.get(0).getVotes().get(Answer.AMPED), is(1L));
+    }
+
+}
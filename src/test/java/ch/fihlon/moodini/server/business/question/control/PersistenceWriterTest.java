@@ -0,0 +1,96 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.control;
+
+import ch.fihlon.moodini.server.exception.ServiceUnavailableException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * This is the unit test for the class {@link PersistenceWriter}.
+ */
+public class PersistenceWriterTest {
+
+    private static final int CAPACITY = 1;
+    private static final String RESULT = "done";
+
+    private PersistenceWriter writer;
+
+    @Before
+    public void setUp() {
+        writer = new PersistenceWriter(CAPACITY);
+    }
+
+    @After
+    public void tearDown() {
+        writer.close();
+    }
+
+    @Test
+    public void commandRunsOnWriterThread() throws InterruptedException, ExecutionException {
+        final String threadName = writer.submit(() -> Thread.currentThread().getName())
+                .toCompletableFuture().get();
+        assertThat("The command should run on the writer thread", threadName, is("moodini-writer"));
+    }
+
+    @Test
+    public void commandsAreRejectedWhenQueueIsFull() throws InterruptedException, ExecutionException {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch blocker = new CountDownLatch(1);
+        final Supplier<String> blocking = () -> {
+            started.countDown();
+            await(blocker);
+            return RESULT;
+        };
+        final CompletableFuture<String> running = writer.submit(blocking).toCompletableFuture();
+        started.await();
+        final CompletableFuture<String> queued = writer.submit(() -> RESULT).toCompletableFuture();
+        final CompletableFuture<String> rejected = writer.submit(() -> RESULT).toCompletableFuture();
+        assertThat("The queue depth is wrong", writer.getQueueDepth(), is(2));
+        try {
+            rejected.get();
+            fail("The command should be rejected");
+        } catch (final ExecutionException e) {
+            assertThat("Wrong exception", e.getCause(), instanceOf(ServiceUnavailableException.class));
+        }
+        assertThat("The rejected command should be counted", writer.getRejected(), is(1L));
+        blocker.countDown();
+        assertThat("The running command should complete", running.get(), is(RESULT));
+        assertThat("The queued command should complete", queued.get(), is(RESULT));
+    }
+
+    private static void await(final CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -0,0 +1,234 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.control;
+
+import ch.fihlon.moodini.server.Configuration;
+import ch.fihlon.moodini.server.EventLog;
+import ch.fihlon.moodini.server.SnapshotController;
+import ch.fihlon.moodini.server.business.question.entity.Answer;
+import ch.fihlon.moodini.server.business.question.entity.BulkVote;
+import ch.fihlon.moodini.server.business.question.entity.Period;
+import ch.fihlon.moodini.server.business.question.entity.Question;
+import ch.fihlon.moodini.server.business.question.entity.Resolution;
+import ch.fihlon.moodini.server.business.question.entity.Vote;
+import ch.fihlon.moodini.server.exception.MethodNotAllowedException;
+import io.vertx.core.json.JsonObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+import pl.setblack.airomem.core.disk.PersistenceDiskHelper;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeFalse;
+
+/**
+ * This is the unit test for the persistence engines implementing {@link QuestionStore}.
+ * All engines have to pass the same tests.
+ */
+@RunWith(Parameterized.class)
+public class QuestionStoreTest {
+
+    private static final String AIROMEM = "airomem";
+    private static final String NAME = "moodini-test-store-";
+    private static final String WRONG_QUESTION = "Wrong question";
+    private static final String WRONG_VOTES = "Wrong number of votes";
+    private static final String WRONG_ID = "Wrong id";
+    private static final String WRONG_ENTRIES = "Wrong number of journal entries";
+    private static final long THIRD_ID = 3L;
+    private static final long UNKNOWN_ID = 42L;
+    private static final int SMALL_SEGMENT = 256;
+
+    private final String engine;
+    private QuestionStore store;
+
+    /**
+     * Create the test for the specified engine.
+     *
+     * @param engine the name of the engine
+     */
+    public QuestionStoreTest(final String engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * Get the names of the engines to test.
+     *
+     * @return the names of the engines
+     */
+    @Parameters(name = "{0}")
+    public static Collection<Object[]> engines() {
+        return Arrays.asList(new Object[][] {{AIROMEM}, {"log"}});
+    }
+
+    @Before
+    public void setUp() {
+        Configuration.resetConfig();
+        PersistenceDiskHelper.delete(PersistenceDiskHelper.calcUserPath(NAME + engine).toString());
+        store = open();
+    }
+
+    @After
+    public void tearDown() {
+        store.close();
+        PersistenceDiskHelper.delete(PersistenceDiskHelper.calcUserPath(NAME + engine).toString());
+    }
+
+    @Test
+    public void changesSurviveRestart() {
+        final Question first = store.create(Question.builder().text("First?").build());
+        final Question second = store.create(Question.builder().text("Second?").build());
+        final Question updated = store.update(second.toBuilder().text("Updated?").build());
+        store.delete(first.getQuestionId());
+        store.vote(new Vote(updated.getQuestionId(), Answer.AMPED));
+        store.vote(Arrays.asList(new Vote(updated.getQuestionId(), Answer.AMPED),
+                new Vote(updated.getQuestionId(), Answer.MEH)));
+        restart();
+
+        final QuestionRepository repository = store.readOnly();
+        assertThat("The deleted question should be gone", repository.read(first.getQuestionId()), is(Optional.empty()));
+        assertThat(WRONG_QUESTION, repository.read(updated.getQuestionId()), is(Optional.of(updated)));
+        assertThat(WRONG_VOTES, repository.readVotes(updated.getQuestionId()).get(Answer.AMPED), is(2L));
+        assertThat(WRONG_VOTES, repository.readVotes(updated.getQuestionId()).get(Answer.MEH), is(1L));
+        assertThat(WRONG_ID, store.create(Question.builder().text("Third?").build()).getQuestionId(), is(THIRD_ID));
+    }
+
+    @Test
+    public void importSurvivesRestart() {
+        store.create(Question.builder().text("Before?").build());
+        final List<Question> imported = store.createAll(Arrays.asList(Question.builder().text("Imported?").build(),
+                Question.builder().questionId(UNKNOWN_ID).text("Also imported?").build()));
+        assertThat("Wrong ids", imported.stream().map(Question::getQuestionId).collect(toList()),
+                is(Arrays.asList(2L, THIRD_ID)));
+        restart();
+
+        final QuestionRepository repository = store.readOnly();
+        assertThat(WRONG_QUESTION, repository.read(THIRD_ID), is(Optional.of(imported.get(1))));
+        assertThat(WRONG_QUESTION, repository.readLatest(), is(Optional.of(imported.get(1))));
+    }
+
+    @Test
+    public void bulkVotesSurviveRestart() {
+        final Question question = store.create(Question.builder().text("Bulk?").build());
+        final Long questionId = question.getQuestionId();
+        final long[] counts = store.voteBulk(Arrays.asList(new BulkVote(questionId, Answer.GOOD, THIRD_ID),
+                new BulkVote(UNKNOWN_ID, Answer.GOOD, 1L), new BulkVote(questionId, Answer.GOOD, 1L)));
+        assertThat(WRONG_VOTES, counts[0], is(THIRD_ID));
+        assertThat(WRONG_VOTES, counts[1], is(0L));
+        assertThat(WRONG_VOTES, counts[2], is(THIRD_ID + 1));
+        restart();
+        assertThat(WRONG_VOTES, store.readOnly().readVotes(questionId).get(Answer.GOOD), is(THIRD_ID + 1));
+    }
+
+    @Test
+    public void historySurvivesRestart() {
+        final long before = System.currentTimeMillis();
+        final Question question = store.create(Question.builder().text("History?").build());
+        final Long questionId = question.getQuestionId();
+        store.vote(new Vote(questionId, Answer.MEH));
+        store.voteBulk(Collections.singletonList(new BulkVote(questionId, Answer.MEH, THIRD_ID)));
+        final Period period = new Period(before, System.currentTimeMillis() + 1);
+        restart();
+
+        final QuestionRepository repository = store.readOnly();
+        for (final Resolution resolution : Resolution.values()) {
+            final long votes = repository.readHistory(questionId, resolution, period).stream()
+                    .mapToLong(bucket -> bucket.getVotes().get(Answer.MEH))
+                    .sum();
+            assertThat(WRONG_VOTES, votes, is(THIRD_ID + 1));
+        }
+    }
+
+    @Test
+    public void votersSurviveRestart() {
+        final Long questionId = store.create(Question.builder().text("Who?").build()).getQuestionId();
+        final long alice = HyperLogLog.hash("alice");
+        store.vote(new Vote(questionId, Answer.GOOD, alice));
+        store.vote(Arrays.asList(new Vote(questionId, Answer.MEH, HyperLogLog.hash("bob")),
+                new Vote(questionId, Answer.AMPED, alice),
+                new Vote(questionId, Answer.AMPED)));
+        restart();
+        assertThat("Wrong number of voters", store.readOnly().readVoters(questionId), is(Optional.of(2L)));
+        assertThat(WRONG_VOTES, store.readOnly().readVotes(questionId).get(Answer.AMPED), is(2L));
+    }
+
+    @Test
+    public void rejectedChangeIsNotPersisted() {
+        final Question question = store.create(Question.builder().text("Voted?").build());
+        store.vote(new Vote(question.getQuestionId(), Answer.GOOD));
+        try {
+            store.update(question.toBuilder().text("Changed?").build());
+            fail("A question with votes should not be updated");
+        } catch (final MethodNotAllowedException e) {
+            restart();
+        }
+        assertThat(WRONG_QUESTION, store.readOnly().read(question.getQuestionId()), is(Optional.of(question)));
+    }
+
+    @Test
+    public void unwrittenChangeIsNotApplied() {
+        assumeFalse("The journal of airomem has no size limit", AIROMEM.equals(engine));
+        Configuration.setConfig(new JsonObject().put("persistence.journal.segment.bytes", SMALL_SEGMENT));
+        restart();
+        try {
+            store.create(Question.builder().text(String.join("", Collections.nCopies(SMALL_SEGMENT, "?"))).build());
+            fail("A question larger than a segment should not be written");
+        } catch (final IllegalArgumentException e) {
+            assertThat("The question should not be created", store.readOnly().readLatest(), is(Optional.empty()));
+        }
+        assertThat(WRONG_ID, store.create(Question.builder().text("Small?").build()).getQuestionId(), is(1L));
+    }
+
+    @Test
+    public void snapshotResetsTheJournal() {
+        final Question question = store.create(Question.builder().text("Snapshot?").build());
+        store.vote(new Vote(question.getQuestionId(), Answer.FINE));
+        assertThat(WRONG_ENTRIES, store.getStatus().getJournalEntries(), is(2L));
+        assertThat(WRONG_ENTRIES, store.snapshot().getJournalEntries(), is(0L));
+        restart();
+        assertThat(WRONG_VOTES, store.readOnly().readVotes(question.getQuestionId()).get(Answer.FINE),
+                is(1L));
+    }
+
+    private QuestionStore open() {
+        final QuestionStore opened;
+        if (AIROMEM.equals(engine)) {
+            opened = new AiromemQuestionStore(new SnapshotController<>(NAME + engine, QuestionRepository::new));
+        } else {
+            opened = new LogQuestionStore(new EventLog(PersistenceDiskHelper.calcUserPath(NAME + engine)));
+        }
+        return opened;
+    }
+
+    private void restart() {
+        store.close();
+        store = open();
+    }
+
+}
@@ -0,0 +1,49 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.control;
+
+import ch.fihlon.moodini.server.business.question.entity.Answer;
+import ch.fihlon.moodini.server.business.question.entity.Tally;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * This is the unit test for the class {@link TallyBoard}.
+ */
+public class TallyBoardTest {
+
+    private static final long QUESTION_ID = 1L;
+    private static final String WRONG_COUNT = "Got the wrong count!";
+
+    @Test
+    public void readTalliesDoNotChangeWithLaterVotes() {
+        final TallyBoard board = new TallyBoard();
+        board.register(QUESTION_ID, Collections.emptyMap());
+        board.update(QUESTION_ID, Answer.AMPED, 1);
+        final List<Tally> tallies = board.readAll();
+        board.update(QUESTION_ID, Answer.AMPED, 2);
+        assertThat(WRONG_COUNT, tallies.get(0).getVotes().get(Answer.AMPED), is(1L));
+        assertThat(WRONG_COUNT, board.readAll().get(0).getVotes().get(Answer.AMPED), is(2L));
+    }
+
+}
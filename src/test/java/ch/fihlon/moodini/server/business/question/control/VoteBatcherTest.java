@@ -0,0 +1,134 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.control;
+
+import ch.fihlon.moodini.server.business.question.entity.Answer;
+import ch.fihlon.moodini.server.business.question.entity.Question;
+import ch.fihlon.moodini.server.business.question.entity.Vote;
+import ch.fihlon.moodini.server.exception.NotFoundException;
+import ch.fihlon.moodini.server.exception.ServiceUnavailableException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * This is the unit test for the class {@link VoteBatcher}.
+ */
+public class VoteBatcherTest {
+
+    private static final String WRONG_EXCEPTION = "Wrong exception";
+    private static final String PENDING_COMMITTED = "The pending vote should be committed";
+    private static final long WINDOW_MILLIS = 10_000;
+    private static final int BATCH_SIZE = 3;
+    private static final long QUESTION_ID = 1L;
+    private static final long UNKNOWN_QUESTION_ID = 2L;
+
+    private QuestionRepository repository;
+    private QuestionStore storeMock;
+    private VoteBatcher voteBatcher;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        repository = new QuestionRepository();
+        repository.create(Question.builder().text("?").build());
+        storeMock = mock(QuestionStore.class);
+        when(storeMock.vote(any(List.class))).thenAnswer(invocation ->
+                repository.vote((List<Vote>) invocation.getArguments()[0], System.currentTimeMillis()));
+        voteBatcher = new VoteBatcher(storeMock, WINDOW_MILLIS, BATCH_SIZE);
+    }
+
+    @After
+    public void tearDown() {
+        voteBatcher.close();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void votesAreCommittedAsOneBatch() throws InterruptedException, ExecutionException {
+        final CompletableFuture<Long> first = vote(QUESTION_ID, Answer.AMPED);
+        final CompletableFuture<Long> second = vote(QUESTION_ID, Answer.AMPED);
+        final CompletableFuture<Long> third = vote(QUESTION_ID, Answer.MEH);
+
+        assertThat("The first vote should be counted", first.get(), is(1L));
+        assertThat("The second vote should be counted", second.get(), is(2L));
+        assertThat("The third vote should be counted", third.get(), is(1L));
+        verify(storeMock, times(1)).vote(any(List.class));
+    }
+
+    @Test
+    public void voteForUnknownQuestionFails() throws InterruptedException, ExecutionException {
+        final CompletableFuture<Long> known = vote(QUESTION_ID, Answer.GOOD);
+        final CompletableFuture<Long> unknown = vote(UNKNOWN_QUESTION_ID, Answer.GOOD);
+        final CompletableFuture<Long> other = vote(QUESTION_ID, Answer.GOOD);
+        try {
+            unknown.get();
+            fail("The vote for an unknown question should fail");
+        } catch (final ExecutionException e) {
+            assertThat(WRONG_EXCEPTION, e.getCause(), instanceOf(NotFoundException.class));
+        }
+        assertThat("The known vote should be counted", known.get(), is(1L));
+        assertThat("The other vote should be counted", other.get(), is(2L));
+    }
+
+    @Test
+    public void pendingVotesAreCommittedOnClose() throws InterruptedException, ExecutionException {
+        final CompletableFuture<Long> pending = vote(QUESTION_ID, Answer.FINE);
+        voteBatcher.close();
+        assertThat(PENDING_COMMITTED, pending.get(), is(1L));
+    }
+
+    @Test
+    public void votesAfterCloseAreRejected() throws InterruptedException {
+        voteBatcher.close();
+        try {
+            vote(QUESTION_ID, Answer.FINE).get();
+            fail("A vote after close should be rejected");
+        } catch (final ExecutionException e) {
+            assertThat(WRONG_EXCEPTION, e.getCause(), instanceOf(ServiceUnavailableException.class));
+        }
+    }
+
+    @Test
+    public void closeRestoresInterruptAfterFinalCommit() throws InterruptedException, ExecutionException {
+        final CompletableFuture<Long> pending = vote(QUESTION_ID, Answer.FINE);
+        Thread.currentThread().interrupt();
+        voteBatcher.close();
+        assertThat("The interrupt should be restored", Thread.interrupted(), is(true));
+        assertThat(PENDING_COMMITTED, pending.get(), is(1L));
+    }
+
+    private CompletableFuture<Long> vote(final long questionId, final Answer answer) {
+        return voteBatcher.vote(new Vote(questionId, answer)).toCompletableFuture();
+    }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.control;
+
+import ch.fihlon.moodini.server.business.question.entity.Answer;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * This is the unit test for the class {@link VoteCounters}.
+ */
+public class VoteCountersTest {
+
+    private static final long QUESTION_ID = 1L;
+    private static final int MANY_QUESTIONS = 1000;
+    private static final String WRONG_COUNT = "Got the wrong count!";
+
+    private VoteCounters counters;
+
+    @Before
+    public void setUp() {
+        counters = new VoteCounters();
+    }
+
+    @Test
+    public void incrementCountsPerAnswer() {
+        assertThat("There should be no counter yet", counters.get(QUESTION_ID), is(nullValue()));
+        assertThat(WRONG_COUNT, counters.increment(QUESTION_ID, Answer.AMPED), is(1L));
+        assertThat(WRONG_COUNT, counters.increment(QUESTION_ID, Answer.AMPED), is(2L));
+        assertThat(WRONG_COUNT, counters.increment(QUESTION_ID, Answer.MEH), is(1L));
+        assertThat(WRONG_COUNT, counters.get(QUESTION_ID).get(Answer.GOOD), is(0L));
+    }
+
+    @Test
+    public void tableGrowsWithQuestions() {
+        for (long questionId = 1; questionId <= MANY_QUESTIONS; questionId++) {
+            counters.increment(questionId, Answer.FINE);
+        }
+        for (long questionId = 1; questionId <= MANY_QUESTIONS; questionId++) {
+            assertThat(WRONG_COUNT, counters.get(questionId).get(Answer.FINE), is(1L));
+        }
+        assertThat("There should be no counter", counters.get(MANY_QUESTIONS + 1), is(nullValue()));
+    }
+
+    @Test
+    public void countersAreSerializable() throws IOException, ClassNotFoundException {
+        counters.increment(QUESTION_ID, Answer.PISSED);
+        counters.increment(MANY_QUESTIONS, Answer.GOOD);
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(counters);
+        }
+        try (ObjectInputStream stream = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            final VoteCounters copy = (VoteCounters) stream.readObject();
+            assertThat(WRONG_COUNT, copy.get(QUESTION_ID).get(Answer.PISSED), is(1L));
+            assertThat(WRONG_COUNT, copy.get(MANY_QUESTIONS).get(Answer.GOOD), is(1L));
+            assertThat(WRONG_COUNT, copy.increment(QUESTION_ID, Answer.PISSED), is(2L));
+        }
+    }
+
+}
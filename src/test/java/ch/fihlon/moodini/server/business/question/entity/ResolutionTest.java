@@ -0,0 +1,46 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.entity;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * This is the unit test for the enum {@link Resolution}.
+ */
+public class ResolutionTest {
+
+    private static final long NOW = 1_476_800_000_000L;
+    private static final long MONTH = 30;
+    private static final String WRONG_RESOLUTION = "Wrong resolution";
+
+    @Test
+    public void longPeriodsUseCoarseBuckets() {
+        assertThat(WRONG_RESOLUTION, Resolution.covering(NOW - TimeUnit.HOURS.toMillis(1), NOW),
+                is(Resolution.MINUTE));
+        assertThat(WRONG_RESOLUTION, Resolution.covering(NOW - TimeUnit.DAYS.toMillis(1), NOW),
+                is(Resolution.HOUR));
+        assertThat(WRONG_RESOLUTION, Resolution.covering(NOW - TimeUnit.DAYS.toMillis(MONTH), NOW),
+                is(Resolution.DAY));
+    }
+
+}
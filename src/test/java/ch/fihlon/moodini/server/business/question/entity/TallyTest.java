@@ -0,0 +1,67 @@
+/*
+ * Moodini
+ * Copyright (C) 2016 Marcus Fihlon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.fihlon.moodini.server.business.question.entity;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * This is the unit test for the class {@link Tally}.
+ */
+public class TallyTest {
+
+    private static final Long QUESTION_ID = 1L;
+    private static final long VOTES = 3L;
+    private static final String WRONG_VOTES = "Got the wrong votes!";
+    private static final String WRONG_VERSION = "Got the wrong version!";
+
+    private Tally tally;
+
+    @Before
+    public void setUp() {
+        tally = Tally.create(QUESTION_ID, Collections.singletonMap(Answer.GOOD, VOTES));
+    }
+
+    @Test
+    public void createContainsAllAnswers() {
+        assertThat("Got the wrong number of answers!", tally.getVotes().size(), is(Answer.values().length));
+        assertThat(WRONG_VOTES, tally.getVotes().get(Answer.GOOD), is(VOTES));
+        assertThat(WRONG_VOTES, tally.getVotes().get(Answer.MEH), is(0L));
+        assertThat(WRONG_VERSION, tally.getVersion(), is(0L));
+    }
+
+    @Test
+    public void withVotesCreatesNewVersion() {
+        final Tally changed = tally.withVotes(Answer.MEH, 1L);
+        assertThat(WRONG_VOTES, changed.getVotes().get(Answer.MEH), is(1L));
+        assertThat(WRONG_VERSION, changed.getVersion(), is(1L));
+        assertThat("The original should not change!", tally.getVotes().get(Answer.MEH), is(0L));
+    }
+
+    @Test
+    public void withVotesIgnoresOutdatedCount() {
+        assertThat("Got a new version!", tally.withVotes(Answer.GOOD, VOTES - 1), is(sameInstance(tally)));
+    }
+
+}